@@ -0,0 +1,71 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import technology.zeroalpha.zaes.core.aggregate.AggregateIdentifierGenerator;
+import technology.zeroalpha.zaes.core.aggregate.AggregateService;
+import technology.zeroalpha.zaes.core.aggregate.snapshot.InMemorySnapshotRepository;
+import technology.zeroalpha.zaes.core.aggregate.snapshot.SnapshotPolicy;
+import technology.zeroalpha.zaes.core.event.EventService;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time taken by {@link AggregateService#buildLatestAggregate(String)} to rebuild an aggregate from its stream, with
+ * and without snapshots.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class AggregateRehydrationBenchmark {
+
+    private static final String STREAM_ID = "ledger";
+
+    @Param({"10", "1000", "100000", "1000000"})
+    private int streamLength;
+
+    /** Whether a snapshot is taken every 1,000 events, in which case at most that many are replayed. */
+    @Param({"false", "true"})
+    private boolean snapshots;
+
+    private AggregateService<LedgerAggregate> aggregateService;
+
+    @Setup
+    public void setUp() {
+        final InMemoryEventRepository eventRepository = new InMemoryEventRepository();
+        BenchmarkStreams.populate(eventRepository, STREAM_ID, streamLength);
+
+        final EventService eventService = new EventService(eventRepository);
+        final AggregateIdentifierGenerator identifierGenerator = new AggregateIdentifierGenerator() { };
+        aggregateService = snapshots
+                ? new AggregateService<>(
+                        LedgerAggregate.class, identifierGenerator, eventService,
+                        new InMemorySnapshotRepository(), SnapshotPolicy.everyEvents(1000))
+                : new AggregateService<>(LedgerAggregate.class, identifierGenerator, eventService);
+    }
+
+    @Benchmark
+    public LedgerAggregate buildLatestAggregate() {
+        return aggregateService.buildLatestAggregate(STREAM_ID);
+    }
+}
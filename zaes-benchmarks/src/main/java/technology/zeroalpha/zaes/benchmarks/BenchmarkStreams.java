@@ -0,0 +1,71 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.benchmarks;
+
+import technology.zeroalpha.zaes.core.event.Event;
+import technology.zeroalpha.zaes.core.event.EventRepository;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helpers for populating {@link EventRepository}s with {@link LedgerEvent} streams.
+ */
+final class BenchmarkStreams {
+
+    /** Timestamp of the first {@link Event} in each populated stream; subsequent {@link Event}s are a second apart. */
+    static final ZonedDateTime EPOCH = ZonedDateTime.of(2017, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    /** Number of {@link Event}s persisted per call while populating a stream. */
+    private static final int BATCH_SIZE = 10_000;
+
+    private BenchmarkStreams() {
+    }
+
+    /**
+     * Persist a stream of {@link LedgerEvent}s numbered from one.
+     *
+     * @param eventRepository Repository to populate
+     * @param eventStreamId Identifier of stream
+     * @param eventCount Number of {@link Event}s to persist
+     */
+    static void populate(final EventRepository eventRepository, final String eventStreamId, final int eventCount) {
+        final List<Event> batch = new ArrayList<>(Math.min(eventCount, BATCH_SIZE));
+        for(int sequenceNumber = 1; sequenceNumber <= eventCount; sequenceNumber++) {
+            batch.add(newEvent(sequenceNumber));
+            if(batch.size() == BATCH_SIZE || sequenceNumber == eventCount) {
+                eventRepository.persistEvents(eventStreamId, new ArrayList<>(batch));
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * @param sequenceNumber Sequence number of {@link Event}
+     * @return {@link Event} timestamped {@code sequenceNumber} seconds after {@link #EPOCH}
+     */
+    static LedgerEvent newEvent(final int sequenceNumber) {
+        final LedgerEvent event = new LedgerEvent(sequenceNumber);
+        event.setSequenceNumber(sequenceNumber);
+        event.setEventTimestamp(EPOCH.plusSeconds(sequenceNumber));
+        return event;
+    }
+}
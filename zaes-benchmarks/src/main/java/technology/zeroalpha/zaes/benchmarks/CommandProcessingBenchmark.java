@@ -0,0 +1,105 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import technology.zeroalpha.zaes.core.aggregate.AggregateIdentifierGenerator;
+import technology.zeroalpha.zaes.core.aggregate.AggregateService;
+import technology.zeroalpha.zaes.core.aggregate.cache.AggregateCache;
+import technology.zeroalpha.zaes.core.aggregate.cache.CachingAggregateService;
+import technology.zeroalpha.zaes.core.event.Event;
+import technology.zeroalpha.zaes.core.event.EventService;
+import technology.zeroalpha.zaes.cqrs.command.CommandProcessor;
+import technology.zeroalpha.zaes.cqrs.command.CommandResult;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time taken by {@link CommandProcessor#process(String, technology.zeroalpha.zaes.cqrs.command.Command)} to load an
+ * aggregate, decide a {@link LedgerCommand} and publish the resulting {@link Event}, round-robin across a set of
+ * aggregates. The streams grow as the benchmark runs, so they are reset at the start of every iteration.
+ * <p>
+ * {@code processBatchOfExistingAggregate} sends bursts of {@value #BATCH_SIZE} commands to each aggregate through
+ * {@link CommandProcessor#processBatch}, and is reported per command for comparison. Cached aggregates are copied
+ * for each command with {@link LedgerAggregate}'s copy constructor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class CommandProcessingBenchmark {
+
+    private static final int AGGREGATE_COUNT = 1024;
+
+    private static final int BATCH_SIZE = 16;
+
+    /** Number of {@link Event}s in each aggregate's stream at the start of each iteration. */
+    @Param({"10", "1000"})
+    private int streamLength;
+
+    /** Whether aggregates are loaded through a {@link CachingAggregateService}. */
+    @Param({"false", "true"})
+    private boolean cached;
+
+    private final LedgerCommand command = new LedgerCommand(1);
+
+    private final List<LedgerCommand> batch = Collections.nCopies(BATCH_SIZE, command);
+
+    private CommandProcessor<LedgerAggregate, LedgerCommand> commandProcessor;
+
+    private int nextAggregate;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        final InMemoryEventRepository eventRepository = new InMemoryEventRepository();
+        for(int aggregate = 0; aggregate < AGGREGATE_COUNT; aggregate++) {
+            BenchmarkStreams.populate(eventRepository, aggregateIdentifier(aggregate), streamLength);
+        }
+
+        final EventService eventService = new EventService(eventRepository);
+        final AggregateIdentifierGenerator identifierGenerator = new AggregateIdentifierGenerator() { };
+        final AggregateService<LedgerAggregate> aggregateService = cached
+                ? new CachingAggregateService<>(
+                        LedgerAggregate.class, identifierGenerator, eventService,
+                        new AggregateCache<>(AGGREGATE_COUNT), LedgerAggregate::new)
+                : new AggregateService<>(LedgerAggregate.class, identifierGenerator, eventService);
+        commandProcessor = new LedgerCommandProcessor(aggregateService, eventService);
+    }
+
+    @Benchmark
+    public List<Event> processExistingAggregate() {
+        nextAggregate = (nextAggregate + 1) % AGGREGATE_COUNT;
+        return commandProcessor.process(aggregateIdentifier(nextAggregate), command);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<CommandResult> processBatchOfExistingAggregate() {
+        nextAggregate = (nextAggregate + 1) % AGGREGATE_COUNT;
+        return commandProcessor.processBatch(aggregateIdentifier(nextAggregate), batch);
+    }
+
+    private static String aggregateIdentifier(final int aggregate) {
+        return "ledger-" + aggregate;
+    }
+}
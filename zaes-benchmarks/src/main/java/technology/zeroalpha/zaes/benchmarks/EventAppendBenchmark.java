@@ -0,0 +1,141 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import technology.zeroalpha.zaes.core.event.Event;
+import technology.zeroalpha.zaes.core.event.EventRepository;
+import technology.zeroalpha.zaes.core.event.EventService;
+import technology.zeroalpha.zaes.core.event.GroupCommitPolicy;
+import technology.zeroalpha.zaes.core.event.serialization.JavaEventSerializer;
+import technology.zeroalpha.zaes.log.SegmentLogEventRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Throughput of {@link EventService#publishEvents} with one or more threads each appending single {@link Event}s to
+ * their own stream, against the in-memory and segment log stores and with and without group commit. The store is
+ * recreated for every iteration so that its growth does not skew later iterations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class EventAppendBenchmark {
+
+    @Param({"memory", "segment-log"})
+    private String store;
+
+    @Param({"direct", "group"})
+    private String commit;
+
+    /** Directory of the segment log, or null when benchmarking the in-memory store. */
+    private Path directory;
+
+    private EventRepository eventRepository;
+
+    private EventService eventService;
+
+    /** Allocates each benchmark thread its own stream. */
+    private final AtomicInteger streamCount = new AtomicInteger();
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        if("segment-log".equals(store)) {
+            directory = Files.createTempDirectory("zaes-append-benchmark");
+            eventRepository = new SegmentLogEventRepository(directory, new JavaEventSerializer());
+        } else {
+            eventRepository = new InMemoryEventRepository();
+        }
+
+        eventService = "group".equals(commit)
+                ? new EventService(eventRepository, new GroupCommitPolicy(Duration.ofNanos(200_000), 64))
+                : new EventService(eventRepository);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        eventService.close();
+        if(directory != null) {
+            ((SegmentLogEventRepository) eventRepository).close();
+            try(final Stream<Path> paths = Files.walk(directory)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                    try {
+                        Files.delete(path);
+                    } catch (final IOException ioe) {
+                        throw new UncheckedIOException(ioe);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Stream appended to by a single benchmark thread, so appends never conflict.
+     */
+    @State(Scope.Thread)
+    public static class AppendStream {
+
+        private String eventStreamId;
+
+        private int lastSeenSequenceNumber;
+
+        @Setup(Level.Iteration)
+        public void setUp(final EventAppendBenchmark benchmark) {
+            eventStreamId = "ledger-" + benchmark.streamCount.incrementAndGet();
+            lastSeenSequenceNumber = 0;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void append1Thread(final AppendStream stream) {
+        append(stream);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void append2Threads(final AppendStream stream) {
+        append(stream);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void append4Threads(final AppendStream stream) {
+        append(stream);
+    }
+
+    private void append(final AppendStream stream) {
+        final Event event = new LedgerEvent(1);
+        eventService.publishEvents(
+                stream.eventStreamId, stream.lastSeenSequenceNumber, Collections.singletonList(event));
+        stream.lastSeenSequenceNumber = event.getSequenceNumber();
+    }
+}
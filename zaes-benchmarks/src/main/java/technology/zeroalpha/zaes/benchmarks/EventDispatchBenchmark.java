@@ -0,0 +1,66 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import technology.zeroalpha.zaes.core.aggregate.Aggregate;
+import technology.zeroalpha.zaes.core.aggregate.EventHandler;
+import technology.zeroalpha.zaes.core.event.Event;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time taken to apply 1,000 {@link Event}s to an {@link Aggregate} that routes them itself, compared with one using
+ * an {@link EventHandler} method.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class EventDispatchBenchmark {
+
+    private final Event[] events = new Event[1000];
+
+    @Setup
+    public void setUp() {
+        for(int i = 0; i < events.length; i++) {
+            events[i] = BenchmarkStreams.newEvent(i + 1);
+        }
+    }
+
+    @Benchmark
+    public Aggregate applyOverridden() {
+        return apply(new LedgerAggregate());
+    }
+
+    @Benchmark
+    public Aggregate applyAnnotated() {
+        return apply(new AnnotatedLedgerAggregate());
+    }
+
+    private Aggregate apply(final Aggregate aggregate) {
+        for(final Event event : events) {
+            aggregate.applyEvent(event);
+        }
+
+        return aggregate;
+    }
+}
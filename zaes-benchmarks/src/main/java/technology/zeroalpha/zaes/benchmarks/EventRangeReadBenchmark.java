@@ -0,0 +1,89 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import technology.zeroalpha.zaes.core.event.Event;
+import technology.zeroalpha.zaes.core.event.EventService;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Time taken by {@link EventService} to read a range from the middle of a 100,000 event stream, by sequence number
+ * and by date.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class EventRangeReadBenchmark {
+
+    private static final String STREAM_ID = "ledger";
+
+    private static final int STREAM_LENGTH = 100_000;
+
+    @Param({"10", "1000"})
+    private int rangeSize;
+
+    private EventService eventService;
+
+    private int startSequenceNumber;
+
+    private int endSequenceNumber;
+
+    private ZonedDateTime startDate;
+
+    private ZonedDateTime endDate;
+
+    @Setup
+    public void setUp() {
+        final InMemoryEventRepository eventRepository = new InMemoryEventRepository();
+        BenchmarkStreams.populate(eventRepository, STREAM_ID, STREAM_LENGTH);
+        eventService = new EventService(eventRepository);
+
+        startSequenceNumber = STREAM_LENGTH / 2;
+        endSequenceNumber = startSequenceNumber + rangeSize - 1;
+        startDate = BenchmarkStreams.EPOCH.plusSeconds(startSequenceNumber);
+        endDate = BenchmarkStreams.EPOCH.plusSeconds(endSequenceNumber);
+    }
+
+    @Benchmark
+    public List<Event> retrieveBetweenSequenceNumbers() {
+        return eventService.retrieveEventsBetweenSequenceNumbers(STREAM_ID, startSequenceNumber, endSequenceNumber);
+    }
+
+    @Benchmark
+    public void streamBetweenSequenceNumbers(final Blackhole blackhole) {
+        try(final Stream<Event> events =
+                    eventService.streamEventsBetweenSequenceNumbers(STREAM_ID, startSequenceNumber, endSequenceNumber)) {
+            events.forEach(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public List<Event> retrieveBetweenDates() {
+        return eventService.retrieveEventsBetweenDates(STREAM_ID, startDate, endDate);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import technology.zeroalpha.zaes.core.aggregate.AggregateId;
+import technology.zeroalpha.zaes.core.aggregate.AggregateIdentifierGenerator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link AggregateIdentifierGenerator#generateNewIdentifier()}, uncontended and with several threads
+ * sharing the generator, comparing the default random UUIDs with time-ordered {@link AggregateId}s in compact and text
+ * form.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class IdentifierGenerationBenchmark {
+
+    private final AggregateIdentifierGenerator identifierGenerator = new AggregateIdentifierGenerator() { };
+
+    private final AggregateIdentifierGenerator timeOrderedGenerator = AggregateIdentifierGenerator.timeOrdered();
+
+    @Benchmark
+    @Threads(1)
+    public String generate1Thread() {
+        return identifierGenerator.generateNewIdentifier();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String generate4Threads() {
+        return identifierGenerator.generateNewIdentifier();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public AggregateId timeOrdered1Thread() {
+        return timeOrderedGenerator.generateNewAggregateId();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public AggregateId timeOrdered4Threads() {
+        return timeOrderedGenerator.generateNewAggregateId();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String timeOrderedText1Thread() {
+        return timeOrderedGenerator.generateNewIdentifier();
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.benchmarks;
+
+import technology.zeroalpha.zaes.core.event.Event;
+import technology.zeroalpha.zaes.core.event.EventRepository;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * {@link EventRepository} holding each stream in an {@link ArrayList}, so that benchmarks of the services measure the
+ * services rather than storage. Sequence numbers are expected to start at one and be contiguous, so ranges are read
+ * by index.
+ */
+public class InMemoryEventRepository implements EventRepository {
+
+    private final Map<String, List<Event>> eventStreams = new ConcurrentHashMap<>();
+
+    @Override
+    public List<Event> retrieveEventStream(final String eventStreamId) {
+        try(final Stream<Event> events = streamEventStream(eventStreamId)) {
+            return events.collect(Collectors.toList());
+        }
+    }
+
+    @Override
+    public List<Event> retrieveEventStream(
+            final String eventStreamId, final int startSequenceNumber, final int endSequenceNumber) {
+        try(final Stream<Event> events = streamEventStream(eventStreamId, startSequenceNumber, endSequenceNumber)) {
+            return events.collect(Collectors.toList());
+        }
+    }
+
+    @Override
+    public List<Event> retrieveEventStream(
+            final String eventStreamId, final ZonedDateTime startDate, final ZonedDateTime endDate) {
+        try(final Stream<Event> events = streamEventStream(eventStreamId, startDate, endDate)) {
+            return events.collect(Collectors.toList());
+        }
+    }
+
+    @Override
+    public Stream<String> streamEventStreamIdentifiers() {
+        return new ArrayList<>(eventStreams.keySet()).stream();
+    }
+
+    @Override
+    public Stream<Event> streamEventStream(final String eventStreamId) {
+        return streamEventStream(eventStreamId, 1, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Stream<Event> streamEventStream(
+            final String eventStreamId, final int startSequenceNumber, final int endSequenceNumber) {
+        final List<Event> events = eventStreams.getOrDefault(eventStreamId, Collections.emptyList());
+        synchronized(events) {
+            final int from = Math.max(startSequenceNumber, 1) - 1;
+            final int to = (int) Math.min((long) endSequenceNumber, events.size());
+            return from >= to ? Stream.empty() : new ArrayList<>(events.subList(from, to)).stream();
+        }
+    }
+
+    @Override
+    public Stream<Event> streamEventStream(
+            final String eventStreamId, final ZonedDateTime startDate, final ZonedDateTime endDate) {
+        return streamEventStream(eventStreamId)
+                .filter(event -> !event.getEventTimestamp().isBefore(startDate))
+                .filter(event -> !event.getEventTimestamp().isAfter(endDate));
+    }
+
+    @Override
+    public int retrieveLatestSequenceNumber(final String eventStreamId) {
+        final List<Event> events = eventStreams.getOrDefault(eventStreamId, Collections.emptyList());
+        synchronized(events) {
+            return events.size();
+        }
+    }
+
+    @Override
+    public void persistEvents(final String eventStreamId, final List<Event> events)
+            throws ConcurrentModificationException {
+        final List<Event> stream = eventStreams.computeIfAbsent(eventStreamId, id -> new ArrayList<>());
+        synchronized(stream) {
+            int expected = stream.size() + 1;
+            for(final Event event : events) {
+                if(event.getSequenceNumber() != expected++) {
+                    throw new ConcurrentModificationException("Stream " + eventStreamId + " has been modified");
+                }
+            }
+            stream.addAll(events);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.benchmarks;
+
+import technology.zeroalpha.zaes.core.aggregate.Aggregate;
+import technology.zeroalpha.zaes.core.event.Event;
+
+/**
+ * {@link Aggregate} summing the amounts of the {@link LedgerEvent}s applied to it.
+ */
+public class LedgerAggregate extends Aggregate {
+
+    private static final long serialVersionUID = 1L;
+
+    private long balance;
+
+    public LedgerAggregate() {
+    }
+
+    /**
+     * @param aggregate {@link LedgerAggregate} to copy
+     */
+    public LedgerAggregate(final LedgerAggregate aggregate) {
+        super(aggregate);
+        this.balance = aggregate.balance;
+    }
+
+    public long getBalance() {
+        return balance;
+    }
+
+    @Override
+    protected void processEvent(final Event event) {
+        balance += ((LedgerEvent) event).getAmount();
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.benchmarks;
+
+import technology.zeroalpha.zaes.core.aggregate.AggregateService;
+import technology.zeroalpha.zaes.core.event.Event;
+import technology.zeroalpha.zaes.core.event.EventService;
+import technology.zeroalpha.zaes.cqrs.command.CommandProcessor;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Raises a single {@link LedgerEvent} for each {@link LedgerCommand}.
+ */
+public class LedgerCommandProcessor extends CommandProcessor<LedgerAggregate, LedgerCommand> {
+
+    public LedgerCommandProcessor(
+            final AggregateService<LedgerAggregate> aggregateService, final EventService eventService) {
+        super(aggregateService, eventService, 3);
+    }
+
+    @Override
+    protected List<Event> processCommand(final LedgerAggregate aggregate, final LedgerCommand command) {
+        return Collections.singletonList(new LedgerEvent(command.getAmount()));
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.benchmarks;
+
+import technology.zeroalpha.zaes.core.event.codec.PayloadCodec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * {@link PayloadCodec} for {@link LedgerEvent}s, which may opt in to reusing instances during replays.
+ */
+class LedgerEventCodec implements PayloadCodec<LedgerEvent> {
+
+    private final boolean reuseInstances;
+
+    /**
+     * @param reuseInstances Whether replays may refill a previously decoded {@link LedgerEvent}
+     */
+    LedgerEventCodec(final boolean reuseInstances) {
+        this.reuseInstances = reuseInstances;
+    }
+
+    @Override
+    public void encode(final LedgerEvent event, final ByteBuffer buffer) {
+        buffer.putLong(event.getAmount());
+    }
+
+    @Override
+    public LedgerEvent decode(final ByteBuffer buffer) {
+        return new LedgerEvent(buffer.getLong());
+    }
+
+    @Override
+    public LedgerEvent decode(final ByteBuffer buffer, final LedgerEvent reusable) {
+        if(!reuseInstances || reusable == null) {
+            return decode(buffer);
+        }
+
+        reusable.setAmount(buffer.getLong());
+        return reusable;
+    }
+}
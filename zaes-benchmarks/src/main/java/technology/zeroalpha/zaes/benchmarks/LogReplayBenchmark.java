@@ -0,0 +1,109 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import technology.zeroalpha.zaes.core.aggregate.AggregateIdentifierGenerator;
+import technology.zeroalpha.zaes.core.aggregate.AggregateService;
+import technology.zeroalpha.zaes.core.event.Event;
+import technology.zeroalpha.zaes.core.event.EventService;
+import technology.zeroalpha.zaes.core.event.codec.BinaryEventSerializer;
+import technology.zeroalpha.zaes.core.event.codec.EventTypeRegistry;
+import technology.zeroalpha.zaes.log.SegmentLogEventRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Time and allocation of rebuilding an aggregate from a {@link SegmentLogEventRepository} with a
+ * {@link BinaryEventSerializer}, through the replay path {@link AggregateService} uses versus streaming the
+ * {@link Event}s, with and without {@link LedgerEvent} instances being reused.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class LogReplayBenchmark {
+
+    private static final String STREAM_ID = "ledger";
+
+    @Param({"1000", "100000"})
+    private int streamLength;
+
+    /** Whether the {@link LedgerEventCodec} opts in to reusing instances during replays. */
+    @Param({"false", "true"})
+    private boolean reuse;
+
+    private Path directory;
+
+    private SegmentLogEventRepository eventRepository;
+
+    private EventService eventService;
+
+    private AggregateService<LedgerAggregate> aggregateService;
+
+    @Setup
+    public void setUp() throws IOException {
+        final EventTypeRegistry registry = new EventTypeRegistry()
+                .register(1, LedgerEvent.class, new LedgerEventCodec(reuse));
+        directory = Files.createTempDirectory("zaes-replay-benchmark");
+        eventRepository = new SegmentLogEventRepository(directory, new BinaryEventSerializer(registry));
+        BenchmarkStreams.populate(eventRepository, STREAM_ID, streamLength);
+
+        eventService = new EventService(eventRepository);
+        aggregateService =
+                new AggregateService<>(LedgerAggregate.class, new AggregateIdentifierGenerator() { }, eventService);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        eventRepository.close();
+        try(final Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (final IOException ioe) {
+                    throw new UncheckedIOException(ioe);
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public LedgerAggregate replay() {
+        return aggregateService.buildLatestAggregate(STREAM_ID);
+    }
+
+    @Benchmark
+    public LedgerAggregate stream() {
+        final LedgerAggregate aggregate = new LedgerAggregate();
+        try(final Stream<Event> events = eventService.streamAllEvents(STREAM_ID)) {
+            events.forEach(aggregate::applyEvent);
+        }
+
+        return aggregate;
+    }
+}
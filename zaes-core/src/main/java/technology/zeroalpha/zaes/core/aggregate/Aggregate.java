@@ -20,6 +20,9 @@ package technology.zeroalpha.zaes.core.aggregate;
 
 import technology.zeroalpha.zaes.core.event.Event;
 
+import java.io.Serializable;
+import java.time.Instant;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
 
 /**
@@ -27,18 +30,99 @@ import java.time.ZonedDateTime;
  * invariant checking, and raises resulting {@link Event}s. Can be recreated to any previous state by re-applying
  * {@link Event}s in order.
  */
-public abstract class Aggregate {
+public abstract class Aggregate implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private String aggregateIdentifier;
 
     /** Sequence number of last {@link Event} applied. */
     private int sequenceNumber;
 
-    /** Timestamp of last {@link Event} applied. */
-    private ZonedDateTime lastModificationDate;
+    /**
+     * Timestamp of last {@link Event} applied, in microseconds since the epoch, kept in compact form so that replays
+     * do not create a {@link ZonedDateTime} per {@link Event}. Only meaningful if {@link #lastModificationZone} is set.
+     */
+    private long lastModificationMicros;
+
+    /** Zone of the timestamp of last {@link Event} applied, or null if it had none. */
+    private ZoneId lastModificationZone;
+
+    /** {@link EventHandler}s of this class, looked up on first use. */
+    private transient EventHandlers eventHandlers;
+
+    /** Compact form of {@link #aggregateIdentifier}, if it has one, parsed on first use. */
+    private transient AggregateId aggregateId;
+
+    protected Aggregate() {
+    }
+
+    /**
+     * Copy the identifier and the position in the Event Stream of another {@link Aggregate}, for subclasses' copy
+     * constructors; see {@link technology.zeroalpha.zaes.core.aggregate.cache.AggregateCopier}.
+     *
+     * @param aggregate {@link Aggregate} to copy
+     */
+    protected Aggregate(final Aggregate aggregate) {
+        this.aggregateIdentifier = aggregate.aggregateIdentifier;
+        this.sequenceNumber = aggregate.sequenceNumber;
+        this.lastModificationMicros = aggregate.lastModificationMicros;
+        this.lastModificationZone = aggregate.lastModificationZone;
+        this.eventHandlers = aggregate.eventHandlers;
+        this.aggregateId = aggregate.aggregateId;
+    }
 
     public final void setAggregateIdentifier(final String aggregateIdentifier) {
         this.aggregateIdentifier = aggregateIdentifier;
+        this.aggregateId = null;
+    }
+
+    /**
+     * Set the identifier from its compact form; {@link #getAggregateIdentifier()} returns its text form.
+     *
+     * @param aggregateId Compact identifier
+     */
+    public final void setAggregateIdentifier(final AggregateId aggregateId) {
+        this.aggregateIdentifier = aggregateId.toString();
+        this.aggregateId = aggregateId;
+    }
+
+    public String getAggregateIdentifier() {
+        return aggregateIdentifier;
+    }
+
+    /**
+     * @return Compact form of the identifier, or null if the identifier is not the text form of an {@link AggregateId}
+     */
+    public AggregateId getAggregateId() {
+        if(aggregateId == null && AggregateId.isAggregateId(aggregateIdentifier)) {
+            aggregateId = AggregateId.parse(aggregateIdentifier);
+        }
+
+        return aggregateId;
+    }
+
+    /**
+     * @return Sequence number of the last {@link Event} applied, or zero if no {@link Event}s have been applied
+     */
+    public int getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    /**
+     * @return Timestamp of the last {@link Event} applied, to microsecond precision, or null if no {@link Event}s with
+     *         timestamps have been applied
+     */
+    public ZonedDateTime getLastModificationDate() {
+        if(lastModificationZone == null) {
+            return null;
+        }
+
+        return ZonedDateTime.ofInstant(
+                Instant.ofEpochSecond(
+                        Math.floorDiv(lastModificationMicros, 1_000_000L),
+                        Math.floorMod(lastModificationMicros, 1_000_000L) * 1_000L),
+                lastModificationZone);
     }
 
     /**
@@ -48,8 +132,24 @@ public abstract class Aggregate {
      */
     public void applyEvent(final Event event) {
         this.sequenceNumber = event.getSequenceNumber();
+        this.lastModificationMicros = event.getTimestampMicros();
+        this.lastModificationZone = event.getTimestampZone();
         processEvent(event);
     }
 
-    protected abstract void processEvent(final Event event);
+    /**
+     * Update the {@link Aggregate}'s state based on the given {@link Event}. By default the {@link Event} is passed to
+     * the {@link EventHandler} method for its class, or its nearest superclass; {@link Event}s without a handler are
+     * ignored. Subclasses may instead override this method to route {@link Event}s themselves.
+     *
+     * @param event {@link Event} to apply
+     * @throws IllegalStateException If the class' {@link EventHandler}s are invalid
+     */
+    protected void processEvent(final Event event) {
+        if(eventHandlers == null) {
+            eventHandlers = EventHandlers.forClass(getClass());
+        }
+
+        eventHandlers.dispatch(this, event);
+    }
 }
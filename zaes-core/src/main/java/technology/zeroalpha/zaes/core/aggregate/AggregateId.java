@@ -0,0 +1,162 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.aggregate;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Compact 128-bit {@link Aggregate} identifier, held as two longs so that stores can key streams by value rather
+ * than by hashing and comparing Strings.
+ * <p>
+ * Identifiers follow the ULID layout: the high 48 bits are the creation time in milliseconds since the epoch and the
+ * remaining 80 bits are random, so identifiers sort by creation time and new streams are appended to the end of any
+ * ordered index. Their text form is 26 characters of Crockford's base 32, which sorts in the same order.
+ * <p>
+ * Only the canonical upper-case text form is accepted, without Crockford's lower-case and I/L/O aliases, so that each
+ * identifier has exactly one text form and {@code parse(text).toString()} always equals {@code text}. Streams keyed
+ * by the text form can then never be split between spellings of the same identifier.
+ */
+public final class AggregateId implements Comparable<AggregateId>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Number of characters in the text form. */
+    public static final int LENGTH = 26;
+
+    private static final char[] ENCODING = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+
+    /** Value of each character of the canonical text form, or -1 if it is not one. */
+    private static final byte[] DECODING = new byte[128];
+
+    static {
+        Arrays.fill(DECODING, (byte) -1);
+        for(int value = 0; value < ENCODING.length; value++) {
+            DECODING[ENCODING[value]] = (byte) value;
+        }
+    }
+
+    private final long mostSignificantBits;
+
+    private final long leastSignificantBits;
+
+    public AggregateId(final long mostSignificantBits, final long leastSignificantBits) {
+        this.mostSignificantBits = mostSignificantBits;
+        this.leastSignificantBits = leastSignificantBits;
+    }
+
+    /**
+     * @param text Canonical text form of an identifier, as produced by {@link #toString()}
+     * @return Identifier represented by the text
+     * @throws IllegalArgumentException If the text is not the canonical text form of an identifier
+     */
+    public static AggregateId parse(final CharSequence text) {
+        if(!isAggregateId(text)) {
+            throw new IllegalArgumentException("Not an AggregateId: " + text);
+        }
+
+        long high = 0;
+        long low = 0;
+        for(int index = 0; index < LENGTH; index++) {
+            high = (high << 5) | (low >>> 59);
+            low = (low << 5) | DECODING[text.charAt(index)];
+        }
+
+        return new AggregateId(high, low);
+    }
+
+    /**
+     * @param text Text to check
+     * @return Whether the text is the text form of an identifier, as produced by {@link #toString()}
+     */
+    public static boolean isAggregateId(final CharSequence text) {
+        if(text == null || text.length() != LENGTH) {
+            return false;
+        }
+
+        for(int index = 0; index < LENGTH; index++) {
+            final char character = text.charAt(index);
+            if(character >= DECODING.length || DECODING[character] < 0) {
+                return false;
+            }
+        }
+
+        // 26 characters hold 130 bits, so the first may only use the lowest 3 of its 5
+        return DECODING[text.charAt(0)] < 8;
+    }
+
+    public long getMostSignificantBits() {
+        return mostSignificantBits;
+    }
+
+    public long getLeastSignificantBits() {
+        return leastSignificantBits;
+    }
+
+    /**
+     * @return Time the identifier was generated, to the millisecond
+     */
+    public Instant getTimestamp() {
+        return Instant.ofEpochMilli(mostSignificantBits >>> 16);
+    }
+
+    @Override
+    public int compareTo(final AggregateId other) {
+        final int comparison = Long.compareUnsigned(mostSignificantBits, other.mostSignificantBits);
+        return comparison != 0 ? comparison : Long.compareUnsigned(leastSignificantBits, other.leastSignificantBits);
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if(this == other) {
+            return true;
+        }
+        if(!(other instanceof AggregateId)) {
+            return false;
+        }
+
+        final AggregateId aggregateId = (AggregateId) other;
+        return mostSignificantBits == aggregateId.mostSignificantBits
+                && leastSignificantBits == aggregateId.leastSignificantBits;
+    }
+
+    @Override
+    public int hashCode() {
+        final long hash = mostSignificantBits ^ leastSignificantBits;
+        return (int) (hash >> 32) ^ (int) hash;
+    }
+
+    /**
+     * @return 26 character text form of the identifier
+     */
+    @Override
+    public String toString() {
+        final char[] text = new char[LENGTH];
+        long high = mostSignificantBits;
+        long low = leastSignificantBits;
+        for(int index = LENGTH - 1; index >= 0; index--) {
+            text[index] = ENCODING[(int) (low & 31)];
+            low = (low >>> 5) | (high << 59);
+            high >>>= 5;
+        }
+
+        return new String(text);
+    }
+}
@@ -6,4 +6,18 @@ public interface AggregateIdentifierGenerator {
     default String generateNewIdentifier() {
         return UUID.randomUUID().toString();
     }
+
+    /**
+     * @return New compact identifier, or null if the generator only produces String identifiers, as by default
+     */
+    default AggregateId generateNewAggregateId() {
+        return null;
+    }
+
+    /**
+     * @return Generator of contention-free, time-ordered {@link AggregateId}s
+     */
+    static AggregateIdentifierGenerator timeOrdered() {
+        return new TimeOrderedIdentifierGenerator();
+    }
 }
@@ -18,11 +18,34 @@
  */
 package technology.zeroalpha.zaes.core.aggregate;
 
+import technology.zeroalpha.zaes.core.aggregate.snapshot.JavaSnapshotSerializer;
+import technology.zeroalpha.zaes.core.aggregate.snapshot.Snapshot;
+import technology.zeroalpha.zaes.core.aggregate.snapshot.SnapshotPolicy;
+import technology.zeroalpha.zaes.core.aggregate.snapshot.SnapshotRepository;
+import technology.zeroalpha.zaes.core.aggregate.snapshot.SnapshotSerializer;
+import technology.zeroalpha.zaes.core.event.AsyncEventService;
 import technology.zeroalpha.zaes.core.event.Event;
 import technology.zeroalpha.zaes.core.event.EventService;
+import technology.zeroalpha.zaes.core.event.ReplayableEventRepository;
+import technology.zeroalpha.zaes.core.instrumentation.Histogram;
+import technology.zeroalpha.zaes.core.instrumentation.Instrumentation;
 
 import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 /**
  * Service used to construct {@link Aggregate} objects, either from scratch, or from their constituent events. When
@@ -30,43 +53,335 @@ import java.util.List;
  */
 public class AggregateService<A extends Aggregate> {
 
+    /** Histogram of the time taken to build an {@link Aggregate} from its snapshot and stream, in nanoseconds. */
+    public static final String REHYDRATION_LATENCY = "zaes.aggregate.rehydration.latency";
+
+    /** Histogram of the number of {@link Event}s replayed to build each {@link Aggregate}. */
+    public static final String EVENTS_REPLAYED = "zaes.aggregate.events-replayed";
+
+    private static final Logger LOGGER = Logger.getLogger(AggregateService.class.getName());
+
     /** The {@link Class) of the {@link Aggregate}s that will be managed by this instance of the service. */
     private final Class<A> aggregateClass;
 
+    /** Creates empty instances of {@link #aggregateClass} without reflection. */
+    private final Supplier<A> aggregateFactory;
+
     private final AggregateIdentifierGenerator aggregateIdentifierGenerator;
 
     /** Instance of an {@link EventService}, used to retrieve {@link Event}s associated with the given aggregate. */
     private final EventService eventService;
 
+    /** Store of {@link Snapshot}s used to avoid replaying whole streams, or null if snapshots are disabled. */
+    private final SnapshotRepository snapshotRepository;
+
+    /** Decides when a rebuilt {@link Aggregate} should have a new {@link Snapshot} taken. */
+    private final SnapshotPolicy snapshotPolicy;
+
+    /** Converts {@link Aggregate}s to and from {@link Snapshot} state. */
+    private final SnapshotSerializer snapshotSerializer;
+
+    private final Histogram rehydrationLatency;
+
+    private final Histogram rehydrationEventCount;
+
     /**
-     * @param aggregateClass Class of {@link Aggregate}s to manage
+     * @param aggregateClass Class of {@link Aggregate}s to manage, which must have a no-argument constructor
      * @param eventService Service for retrieving {@link Event}s
+     * @throws AggregateInstantiationException If {@code aggregateClass} cannot be instantiated
      */
     public AggregateService(
             final Class<A> aggregateClass,
             final AggregateIdentifierGenerator aggregateIdentifierGenerator,
             final EventService eventService) {
+        this(aggregateClass, aggregateIdentifierGenerator, eventService, Instrumentation.noOp());
+    }
+
+    /**
+     * @param aggregateClass Class of {@link Aggregate}s to manage, which must have a no-argument constructor
+     * @param eventService Service for retrieving {@link Event}s
+     * @param instrumentation Instrumentation to record rehydration latency and {@link Event}s replayed with
+     * @throws AggregateInstantiationException If {@code aggregateClass} cannot be instantiated
+     */
+    public AggregateService(
+            final Class<A> aggregateClass,
+            final AggregateIdentifierGenerator aggregateIdentifierGenerator,
+            final EventService eventService,
+            final Instrumentation instrumentation) {
+        this.aggregateClass = aggregateClass;
+        this.aggregateFactory = Invokers.constructorOf(aggregateClass);
+        this.aggregateIdentifierGenerator = aggregateIdentifierGenerator;
+        this.eventService = eventService;
+        this.snapshotRepository = null;
+        this.snapshotPolicy = SnapshotPolicy.never();
+        this.snapshotSerializer = null;
+        this.rehydrationLatency = instrumentation.histogram(REHYDRATION_LATENCY);
+        this.rehydrationEventCount = instrumentation.histogram(EVENTS_REPLAYED);
+    }
+
+    /**
+     * @param aggregateClass Class of {@link Aggregate}s to manage, which must have a no-argument constructor
+     * @param eventService Service for retrieving {@link Event}s
+     * @param snapshotRepository Store of {@link Snapshot}s
+     * @param snapshotPolicy Policy deciding when new {@link Snapshot}s are taken
+     * @throws AggregateInstantiationException If {@code aggregateClass} cannot be instantiated
+     */
+    public AggregateService(
+            final Class<A> aggregateClass,
+            final AggregateIdentifierGenerator aggregateIdentifierGenerator,
+            final EventService eventService,
+            final SnapshotRepository snapshotRepository,
+            final SnapshotPolicy snapshotPolicy) {
+        this(
+                aggregateClass,
+                aggregateIdentifierGenerator,
+                eventService,
+                snapshotRepository,
+                snapshotPolicy,
+                new JavaSnapshotSerializer());
+    }
+
+    /**
+     * @param aggregateClass Class of {@link Aggregate}s to manage, which must have a no-argument constructor
+     * @param eventService Service for retrieving {@link Event}s
+     * @param snapshotRepository Store of {@link Snapshot}s
+     * @param snapshotPolicy Policy deciding when new {@link Snapshot}s are taken
+     * @param snapshotSerializer Converts {@link Aggregate}s to and from {@link Snapshot} state
+     * @throws AggregateInstantiationException If {@code aggregateClass} cannot be instantiated
+     */
+    public AggregateService(
+            final Class<A> aggregateClass,
+            final AggregateIdentifierGenerator aggregateIdentifierGenerator,
+            final EventService eventService,
+            final SnapshotRepository snapshotRepository,
+            final SnapshotPolicy snapshotPolicy,
+            final SnapshotSerializer snapshotSerializer) {
+        this(
+                aggregateClass,
+                aggregateIdentifierGenerator,
+                eventService,
+                snapshotRepository,
+                snapshotPolicy,
+                snapshotSerializer,
+                Instrumentation.noOp());
+    }
+
+    /**
+     * @param aggregateClass Class of {@link Aggregate}s to manage, which must have a no-argument constructor
+     * @param eventService Service for retrieving {@link Event}s
+     * @param snapshotRepository Store of {@link Snapshot}s
+     * @param snapshotPolicy Policy deciding when new {@link Snapshot}s are taken
+     * @param snapshotSerializer Converts {@link Aggregate}s to and from {@link Snapshot} state
+     * @param instrumentation Instrumentation to record rehydration latency and {@link Event}s replayed with
+     * @throws AggregateInstantiationException If {@code aggregateClass} cannot be instantiated
+     */
+    public AggregateService(
+            final Class<A> aggregateClass,
+            final AggregateIdentifierGenerator aggregateIdentifierGenerator,
+            final EventService eventService,
+            final SnapshotRepository snapshotRepository,
+            final SnapshotPolicy snapshotPolicy,
+            final SnapshotSerializer snapshotSerializer,
+            final Instrumentation instrumentation) {
         this.aggregateClass = aggregateClass;
+        this.aggregateFactory = Invokers.constructorOf(aggregateClass);
         this.aggregateIdentifierGenerator = aggregateIdentifierGenerator;
         this.eventService = eventService;
+        this.snapshotRepository = Objects.requireNonNull(snapshotRepository);
+        this.snapshotPolicy = Objects.requireNonNull(snapshotPolicy);
+        this.snapshotSerializer = Objects.requireNonNull(snapshotSerializer);
+        this.rehydrationLatency = instrumentation.histogram(REHYDRATION_LATENCY);
+        this.rehydrationEventCount = instrumentation.histogram(EVENTS_REPLAYED);
+    }
+
+    /**
+     * @return Service used to retrieve the {@link Event}s applied to managed {@link Aggregate}s
+     */
+    protected EventService getEventService() {
+        return eventService;
+    }
+
+    /**
+     * Discard any state retained for the given {@link Aggregate}, so the next request rebuilds it from its stream.
+     * This service retains nothing, so the default does nothing.
+     *
+     * @param aggregateIdentifier Identifier of {@link Aggregate}
+     */
+    public void invalidate(final String aggregateIdentifier) {
     }
 
+    /**
+     * Pass on {@link Event}s just published to an {@link Aggregate}'s stream, so that any state retained for it can be
+     * brought forward without reading them back. This service retains nothing, so the default does nothing.
+     *
+     * @param aggregateIdentifier Identifier of {@link Aggregate}
+     * @param events {@link Event}s published, with their sequence numbers assigned
+     */
+    public void recordPublished(final String aggregateIdentifier, final List<Event> events) {
+    }
+
+    /**
+     * Create an {@link Aggregate} with a new identifier, using the compact {@link AggregateId} form if the
+     * {@link AggregateIdentifierGenerator} produces one.
+     *
+     * @return Empty {@link Aggregate}
+     */
     public A createNewAggregate() {
         final A aggregate = createInstance();
-        aggregate.setAggregateIdentifier(aggregateIdentifierGenerator.generateNewIdentifier());
+        final AggregateId aggregateId = aggregateIdentifierGenerator.generateNewAggregateId();
+        if(aggregateId != null) {
+            aggregate.setAggregateIdentifier(aggregateId);
+        } else {
+            aggregate.setAggregateIdentifier(aggregateIdentifierGenerator.generateNewIdentifier());
+        }
 
         return aggregate;
     }
 
     /**
      * Build an {@link Aggregate} of the appropriate type with its current state (i.e. using all events in the specified
-     * stream).
+     * stream). If snapshots are enabled, the latest {@link Snapshot} is restored and only the {@link Event}s after it
+     * are replayed. Every call returns a new instance owned by the caller.
      *
      * @param eventStreamId Identifier of event stream
      * @return {@link Aggregate} with current state
      */
     public A buildLatestAggregate(final String eventStreamId) {
-        return buildAggregate(eventService.retrieveAllEvents(eventStreamId));
+        if(snapshotRepository == null) {
+            return buildAggregate(
+                    eventStreamId, aggregate -> eventService.replayAllEvents(eventStreamId, aggregate::applyEvent));
+        }
+
+        final long start = System.nanoTime();
+        final Optional<Snapshot> snapshot = snapshotRepository.retrieveLatestSnapshot(eventStreamId);
+        if(!snapshot.isPresent()) {
+            final A aggregate = createInstance();
+            aggregate.setAggregateIdentifier(eventStreamId);
+            final int eventsReplayed = eventService.replayAllEvents(eventStreamId, aggregate::applyEvent);
+            recordRehydration(start, eventsReplayed);
+            snapshotIfRequired(aggregate, eventsReplayed, null);
+
+            return aggregate;
+        }
+
+        final A aggregate = snapshotSerializer.deserialize(snapshot.get().getState(), aggregateClass);
+        final int eventsReplayed =
+                replayEvents(aggregate, eventStreamId, snapshot.get().getSequenceNumber() + 1, Integer.MAX_VALUE);
+        recordRehydration(start, eventsReplayed);
+        snapshotIfRequired(aggregate, eventsReplayed, snapshot.get().getSnapshotTimestamp());
+
+        return aggregate;
+    }
+
+    /**
+     * Build an {@link Aggregate} with its current state, identified by its compact {@link AggregateId}, which allows
+     * stores to look its stream up without hashing a String.
+     *
+     * @param aggregateId Identifier of {@link Aggregate}
+     * @return {@link Aggregate} with current state
+     */
+    public A buildLatestAggregate(final AggregateId aggregateId) {
+        if(snapshotRepository != null) {
+            // Snapshots are keyed by the text form of the identifier
+            return buildLatestAggregate(aggregateId.toString());
+        }
+
+        final long start = System.nanoTime();
+        final A aggregate = createInstance();
+        aggregate.setAggregateIdentifier(aggregateId);
+        recordRehydration(start, eventService.replayAllEvents(aggregateId, aggregate::applyEvent));
+
+        return aggregate;
+    }
+
+    /**
+     * Build an {@link Aggregate} with its current state as {@link #buildLatestAggregate(String)} does, but read its
+     * {@link Event}s through the given {@link AsyncEventService} so the calling thread is not blocked on the store. The
+     * latest {@link Snapshot}, if snapshots are enabled, is still looked up before returning.
+     *
+     * @param eventStreamId Identifier of event stream
+     * @param asyncEventService Service to read {@link Event}s with
+     * @return Future of the {@link Aggregate} with current state
+     */
+    public CompletableFuture<A> buildLatestAggregateAsync(
+            final String eventStreamId, final AsyncEventService asyncEventService) {
+        final long start = System.nanoTime();
+        final Optional<Snapshot> snapshot = snapshotRepository == null
+                ? Optional.empty()
+                : snapshotRepository.retrieveLatestSnapshot(eventStreamId);
+        final CompletableFuture<List<Event>> events = snapshot.isPresent()
+                ? asyncEventService.retrieveEventsFromSequenceNumber(
+                        eventStreamId, snapshot.get().getSequenceNumber() + 1)
+                : asyncEventService.retrieveAllEvents(eventStreamId);
+
+        return events.thenApply(tail -> {
+            final A aggregate;
+            if(snapshot.isPresent()) {
+                aggregate = snapshotSerializer.deserialize(snapshot.get().getState(), aggregateClass);
+            } else {
+                aggregate = createInstance();
+                aggregate.setAggregateIdentifier(eventStreamId);
+            }
+            tail.forEach(aggregate::applyEvent);
+            recordRehydration(start, tail.size());
+            if(snapshotRepository != null) {
+                snapshotIfRequired(
+                        aggregate, tail.size(), snapshot.map(Snapshot::getSnapshotTimestamp).orElse(null));
+            }
+
+            return aggregate;
+        });
+    }
+
+    /**
+     * Build several {@link Aggregate}s with their current state, reading all of their {@link Event}s with a single bulk
+     * request rather than one request per {@link Aggregate}. If snapshots are enabled, each {@link Aggregate} is
+     * restored from its latest {@link Snapshot} and only the {@link Event}s after it are read.
+     * <p>
+     * Unlike {@link #buildLatestAggregate(String)}, every {@link Event} read is held in memory until all the
+     * {@link Aggregate}s have been built, so very large batches should be split.
+     *
+     * @param eventStreamIds Identifiers of event streams
+     * @return {@link Aggregate}s with current state, keyed by identifier in the order given
+     */
+    public Map<String, A> buildLatestAggregates(final Collection<String> eventStreamIds) {
+        final long start = System.nanoTime();
+        final Map<String, A> aggregates = new LinkedHashMap<>();
+        final Map<String, Integer> startSequenceNumbers = new LinkedHashMap<>();
+        final Map<String, ZonedDateTime> snapshotTimestamps = new HashMap<>();
+        for(final String eventStreamId : eventStreamIds) {
+            if(aggregates.containsKey(eventStreamId)) {
+                continue;
+            }
+
+            final Optional<Snapshot> snapshot = snapshotRepository == null
+                    ? Optional.empty()
+                    : snapshotRepository.retrieveLatestSnapshot(eventStreamId);
+            if(snapshot.isPresent()) {
+                aggregates.put(
+                        eventStreamId, snapshotSerializer.deserialize(snapshot.get().getState(), aggregateClass));
+                startSequenceNumbers.put(eventStreamId, snapshot.get().getSequenceNumber() + 1);
+                snapshotTimestamps.put(eventStreamId, snapshot.get().getSnapshotTimestamp());
+            } else {
+                final A aggregate = createInstance();
+                aggregate.setAggregateIdentifier(eventStreamId);
+                aggregates.put(eventStreamId, aggregate);
+                startSequenceNumbers.put(eventStreamId, Integer.MIN_VALUE);
+            }
+        }
+
+        final Map<String, List<Event>> eventStreams = eventService.retrieveEventStreams(startSequenceNumbers);
+        aggregates.forEach((eventStreamId, aggregate) -> {
+            final List<Event> events = eventStreams.getOrDefault(eventStreamId, Collections.emptyList());
+            events.forEach(aggregate::applyEvent);
+            // Every Aggregate waits for the shared read, so its latency runs from the start of the call
+            recordRehydration(start, events.size());
+            if(snapshotRepository != null) {
+                snapshotIfRequired(aggregate, events.size(), snapshotTimestamps.get(eventStreamId));
+            }
+        });
+
+        return aggregates;
     }
 
     /**
@@ -78,7 +393,8 @@ public class AggregateService<A extends Aggregate> {
      * @return {@link Aggregate} with state as at given sequence number
      */
     public A buildAggregateToSequenceNumber(final String eventStreamId, final int sequenceNumber) {
-        return buildAggregate(eventService.retrieveEventsToSequenceNumber(eventStreamId, sequenceNumber));
+        return buildAggregate(
+                eventStreamId, aggregate -> replayEvents(aggregate, eventStreamId, Integer.MIN_VALUE, sequenceNumber));
     }
 
     /**
@@ -90,37 +406,107 @@ public class AggregateService<A extends Aggregate> {
      * @return {@link Aggregate} with state as at given date/time
      */
     public A buildAggregateToDate(final String eventStreamId, final ZonedDateTime dateTime) {
-        return buildAggregate(eventService.retrieveEventsToDate(eventStreamId, dateTime));
+        return buildAggregate(eventStreamId, aggregate -> applyEvents(
+                aggregate, eventService.retrieveEventsToDate(eventStreamId, dateTime).stream()));
     }
 
     /**
-     * Build an {@link Aggregate} of the managed type, using the provided Event Stream.
+     * Build an {@link Aggregate} of the managed type from the {@link Event}s applied by the given function.
      *
-     * @param eventStream {@link Event}s to apply to build {@link Aggregate}
-     * @return {@link Aggregate} based on {@link Event}s provided
+     * @param eventStreamId Identifier of event stream
+     * @param eventApplier Applies the {@link Event}s to build the {@link Aggregate} from, returning their number
+     * @return {@link Aggregate} based on {@link Event}s applied
      */
-    private A buildAggregate(final List<Event> eventStream) {
+    private A buildAggregate(final String eventStreamId, final ToIntFunction<A> eventApplier) {
+        final long start = System.nanoTime();
         final A aggregate = createInstance();
+        aggregate.setAggregateIdentifier(eventStreamId);
 
-        eventStream.forEach(aggregate::applyEvent);
+        recordRehydration(start, eventApplier.applyAsInt(aggregate));
 
         return aggregate;
     }
 
+    /**
+     * Apply the {@link Event}s of the stream between the given sequence numbers (inclusive) to the {@link Aggregate}.
+     * This is the replay path used for rehydration: if the store is a {@link ReplayableEventRepository}, instances of
+     * {@link Event} classes whose codecs opt in to reuse are refilled rather than allocated for each {@link Event}, so
+     * {@link Aggregate}s must not retain the {@link Event}s they apply.
+     *
+     * @param aggregate {@link Aggregate} to update
+     * @param eventStreamId Identifier of event stream
+     * @param startSequenceNumber First sequence number to apply
+     * @param endSequenceNumber Last sequence number to apply
+     * @return Number of {@link Event}s applied
+     */
+    protected int replayEvents(
+            final A aggregate, final String eventStreamId, final int startSequenceNumber, final int endSequenceNumber) {
+        return eventService.replayEvents(eventStreamId, startSequenceNumber, endSequenceNumber, aggregate::applyEvent);
+    }
+
+    /**
+     * Apply each {@link Event} to the given {@link Aggregate} as it is read from the stream, then close the stream.
+     * {@link Event}s are not retained, so each can be garbage collected as soon as it has been applied.
+     *
+     * @param aggregate {@link Aggregate} to update
+     * @param eventStream {@link Event}s to apply
+     * @return Number of {@link Event}s applied
+     */
+    protected int applyEvents(final A aggregate, final Stream<Event> eventStream) {
+        int eventsApplied = 0;
+        try(final Stream<Event> events = eventStream) {
+            final Iterator<Event> iterator = events.iterator();
+            while(iterator.hasNext()) {
+                aggregate.applyEvent(iterator.next());
+                eventsApplied++;
+            }
+        }
+
+        return eventsApplied;
+    }
+
+    private void recordRehydration(final long startNanos, final int eventsApplied) {
+        rehydrationLatency.recordSince(startNanos);
+        rehydrationEventCount.record(eventsApplied);
+    }
+
+    /**
+     * Take a new {@link Snapshot} of the given {@link Aggregate} if the {@link SnapshotPolicy} requires it, timestamped
+     * by the policy's clock. {@link Snapshot}s are only an optimisation, so a failure to take one is logged and the
+     * {@link Aggregate} still returned; the next rebuild tries again.
+     *
+     * @param aggregate Freshly rebuilt {@link Aggregate}
+     * @param eventsReplayed Number of {@link Event}s replayed since the previous {@link Snapshot}
+     * @param lastSnapshotTimestamp When the previous {@link Snapshot} was taken, or null if there is none
+     */
+    private void snapshotIfRequired(
+            final A aggregate, final int eventsReplayed, final ZonedDateTime lastSnapshotTimestamp) {
+        if(eventsReplayed > 0 && snapshotPolicy.shouldSnapshot(eventsReplayed, lastSnapshotTimestamp)) {
+            try {
+                snapshotRepository.saveSnapshot(new Snapshot(
+                        aggregate.getAggregateIdentifier(),
+                        aggregate.getSequenceNumber(),
+                        ZonedDateTime.now(snapshotPolicy.getClock()),
+                        snapshotSerializer.serialize(aggregate)));
+            } catch (final RuntimeException re) {
+                LOGGER.log(Level.WARNING, "Unable to snapshot aggregate " + aggregate.getAggregateIdentifier(), re);
+            }
+        }
+    }
+
     /**
      * Create a new, default, instance of the managed {@link Aggregate} type.
      *
      * @return Empty {@link Aggregate} of type {@link A}
+     * @throws AggregateInstantiationException If the {@link Aggregate}'s constructor throws an exception
      */
     private A createInstance() {
         try {
-            return aggregateClass.newInstance();
-        } catch (final InstantiationException ie) {
-            ie.printStackTrace();
-        } catch (final IllegalAccessException iae) {
-            iae.printStackTrace();
+            return aggregateFactory.get();
+        } catch (final AggregateInstantiationException aie) {
+            throw aie;
+        } catch (final RuntimeException re) {
+            throw new AggregateInstantiationException("Unable to create " + aggregateClass.getName(), re);
         }
-
-        return null;
     }
 }
@@ -0,0 +1,160 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.aggregate;
+
+import technology.zeroalpha.zaes.core.event.Event;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Dispatch table of the {@link EventHandler} methods of an {@link Aggregate} class, built once per class. Each
+ * {@link Event} class is resolved to the handler for it or its nearest superclass on first use, after which dispatch
+ * is a cached lookup followed by a direct call.
+ */
+final class EventHandlers {
+
+    private static final ClassValue<EventHandlers> HANDLERS = new ClassValue<EventHandlers>() {
+        @Override
+        protected EventHandlers computeValue(final Class<?> aggregateClass) {
+            return new EventHandlers(aggregateClass);
+        }
+    };
+
+    /** Handler applied to {@link Event}s without an {@link EventHandler}, which are ignored. */
+    private static final BiConsumer<Aggregate, Event> IGNORE = (aggregate, event) -> { };
+
+    /** Handlers keyed by the {@link Event} class they declare. */
+    private final Map<Class<?>, BiConsumer<Aggregate, Event>> declaredHandlers;
+
+    /** Handlers keyed by the runtime {@link Event} class they are applied to. */
+    private final ClassValue<BiConsumer<Aggregate, Event>> resolvedHandlers =
+            new ClassValue<BiConsumer<Aggregate, Event>>() {
+                @Override
+                protected BiConsumer<Aggregate, Event> computeValue(final Class<?> eventClass) {
+                    for(Class<?> type = eventClass; type != null; type = type.getSuperclass()) {
+                        final BiConsumer<Aggregate, Event> handler = declaredHandlers.get(type);
+                        if(handler != null) {
+                            return handler;
+                        }
+                    }
+
+                    return IGNORE;
+                }
+            };
+
+    /**
+     * Last {@link Event} class dispatched and its handler, checked before {@link #resolvedHandlers} as streams tend to
+     * apply runs of the same {@link Event} class. Immutable, so racing updates are harmless.
+     */
+    private ResolvedHandler lastResolved = new ResolvedHandler(null, IGNORE);
+
+    private EventHandlers(final Class<?> aggregateClass) {
+        final Map<Class<?>, BiConsumer<Aggregate, Event>> handlers = new HashMap<>();
+        final Map<Class<?>, Method> handlerMethods = new HashMap<>();
+        final Set<List<Object>> boundSignatures = new HashSet<>();
+
+        for(Class<?> type = aggregateClass; type != Aggregate.class && type != null; type = type.getSuperclass()) {
+            for(final Method method : type.getDeclaredMethods()) {
+                if(method.isBridge() || !method.isAnnotationPresent(EventHandler.class)) {
+                    continue;
+                }
+
+                final Class<?> eventClass = validate(method);
+
+                // Handlers overridden further down the hierarchy are already bound and invoked virtually
+                final List<Object> signature = Arrays.asList(method.getName(), eventClass);
+                if(!Modifier.isPrivate(method.getModifiers()) && !boundSignatures.add(signature)) {
+                    continue;
+                }
+
+                final Method existing = handlerMethods.putIfAbsent(eventClass, method);
+                if(existing != null) {
+                    throw new IllegalStateException("Both " + existing + " and " + method + " handle "
+                            + eventClass.getName());
+                }
+
+                handlers.put(eventClass, Invokers.handlerOf(method));
+            }
+        }
+
+        this.declaredHandlers = handlers;
+    }
+
+    /**
+     * @param aggregateClass Class of {@link Aggregate}
+     * @return Handlers declared by the class and its superclasses
+     * @throws IllegalStateException If an {@link EventHandler} is invalid, or several handle the same {@link Event}
+     *         class
+     */
+    static EventHandlers forClass(final Class<? extends Aggregate> aggregateClass) {
+        return HANDLERS.get(aggregateClass);
+    }
+
+    /**
+     * Apply the {@link Event} to the {@link Aggregate} using the most specific handler for its class, if any.
+     *
+     * @param aggregate {@link Aggregate} to update
+     * @param event {@link Event} to apply
+     */
+    void dispatch(final Aggregate aggregate, final Event event) {
+        final Class<?> eventClass = event.getClass();
+        ResolvedHandler resolved = lastResolved;
+        if(resolved.eventClass != eventClass) {
+            resolved = new ResolvedHandler(eventClass, resolvedHandlers.get(eventClass));
+            lastResolved = resolved;
+        }
+
+        resolved.handler.accept(aggregate, event);
+    }
+
+    /**
+     * @return {@link Event} class handled by the method
+     */
+    private static Class<?> validate(final Method method) {
+        if(Modifier.isStatic(method.getModifiers())
+                || method.getReturnType() != void.class
+                || method.getParameterCount() != 1
+                || !Event.class.isAssignableFrom(method.getParameterTypes()[0])) {
+            throw new IllegalStateException("Event handler " + method
+                    + " must be an instance method returning void with a single Event parameter");
+        }
+
+        return method.getParameterTypes()[0];
+    }
+
+    private static final class ResolvedHandler {
+
+        private final Class<?> eventClass;
+
+        private final BiConsumer<Aggregate, Event> handler;
+
+        private ResolvedHandler(final Class<?> eventClass, final BiConsumer<Aggregate, Event> handler) {
+            this.eventClass = eventClass;
+            this.handler = handler;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.aggregate;
+
+import technology.zeroalpha.zaes.core.event.Event;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Binds {@link Aggregate} constructors and {@link EventHandler} methods to functional interfaces once, so that they
+ * can then be invoked without reflection.
+ * <p>
+ * Where the target is public and visible from this class' loader, {@link LambdaMetafactory} is used to spin a class
+ * that calls it directly, exactly as a lambda in source would. Otherwise the target is made accessible and invoked
+ * through a {@link MethodHandle}, which is slower to warm up but still avoids per-call reflection.
+ */
+final class Invokers {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final MethodType HANDLER_TYPE = MethodType.methodType(void.class, Aggregate.class, Event.class);
+
+    private Invokers() {
+    }
+
+    /**
+     * @param aggregateClass {@link Aggregate} class with a no-argument constructor
+     * @param <A> Type of {@link Aggregate}
+     * @return {@link Supplier} of new instances of the class
+     * @throws AggregateInstantiationException If the class cannot be instantiated
+     */
+    static <A extends Aggregate> Supplier<A> constructorOf(final Class<A> aggregateClass) {
+        if(Modifier.isAbstract(aggregateClass.getModifiers())) {
+            throw new AggregateInstantiationException(aggregateClass.getName() + " is abstract", null);
+        }
+
+        final Constructor<A> constructor;
+        final MethodHandle handle;
+        try {
+            constructor = aggregateClass.getDeclaredConstructor();
+            handle = LOOKUP.unreflectConstructor(accessible(constructor));
+        } catch (final NoSuchMethodException | IllegalAccessException | SecurityException e) {
+            throw new AggregateInstantiationException(
+                    aggregateClass.getName() + " has no accessible no-argument constructor", e);
+        }
+
+        if(isDirectlyInvokable(constructor)) {
+            try {
+                @SuppressWarnings("unchecked")
+                final Supplier<A> supplier = (Supplier<A>) LambdaMetafactory.metafactory(
+                        LOOKUP,
+                        "get",
+                        MethodType.methodType(Supplier.class),
+                        MethodType.methodType(Object.class),
+                        handle,
+                        handle.type()).getTarget().invokeExact();
+                return supplier;
+            } catch (final Throwable t) {
+                // Fall back to invoking the handle
+            }
+        }
+
+        final MethodHandle supplierHandle = handle.asType(MethodType.methodType(Aggregate.class));
+        return () -> {
+            try {
+                return aggregateClass.cast((Aggregate) supplierHandle.invokeExact());
+            } catch (final Throwable t) {
+                throw Invokers.<RuntimeException>rethrow(t);
+            }
+        };
+    }
+
+    /**
+     * @param method {@link EventHandler} method, accepting a single {@link Event} and returning {@code void}
+     * @return Function invoking the method on the given {@link Aggregate} with the given {@link Event}
+     * @throws IllegalStateException If the method cannot be accessed
+     */
+    @SuppressWarnings("unchecked")
+    static BiConsumer<Aggregate, Event> handlerOf(final Method method) {
+        final MethodHandle handle;
+        try {
+            handle = LOOKUP.unreflect(accessible(method));
+        } catch (final IllegalAccessException | SecurityException e) {
+            throw new IllegalStateException("Unable to access event handler " + method, e);
+        }
+
+        if(isDirectlyInvokable(method)) {
+            try {
+                return (BiConsumer<Aggregate, Event>) LambdaMetafactory.metafactory(
+                        LOOKUP,
+                        "accept",
+                        MethodType.methodType(BiConsumer.class),
+                        MethodType.methodType(void.class, Object.class, Object.class),
+                        handle,
+                        handle.type()).getTarget().invokeExact();
+            } catch (final Throwable t) {
+                // Fall back to invoking the handle
+            }
+        }
+
+        final MethodHandle handlerHandle = handle.asType(HANDLER_TYPE);
+        return (aggregate, event) -> {
+            try {
+                handlerHandle.invokeExact(aggregate, event);
+            } catch (final Throwable t) {
+                throw Invokers.<RuntimeException>rethrow(t);
+            }
+        };
+    }
+
+    /**
+     * A class spun by {@link LambdaMetafactory} is defined alongside this one and links to its target by name, so it
+     * can only call targets that are public and resolve to the same class from this class' loader.
+     */
+    private static boolean isDirectlyInvokable(final Member member) {
+        final Class<?> declaringClass = member.getDeclaringClass();
+        if(!Modifier.isPublic(member.getModifiers()) || !Modifier.isPublic(declaringClass.getModifiers())) {
+            return false;
+        }
+
+        try {
+            return Class.forName(declaringClass.getName(), false, Invokers.class.getClassLoader()) == declaringClass;
+        } catch (final ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static <T extends AccessibleObject> T accessible(final T target) {
+        target.setAccessible(true);
+        return target;
+    }
+
+    /**
+     * Rethrow any {@link Throwable} unwrapped, as a directly invoked target would.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends Throwable> T rethrow(final Throwable t) throws T {
+        throw (T) t;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.aggregate;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * {@link AggregateIdentifierGenerator} producing time-ordered {@link AggregateId}s without contention.
+ * <p>
+ * Each thread keeps the last identifier it generated. The first identifier a thread generates in each millisecond
+ * takes its 80 random bits from {@link ThreadLocalRandom}; later ones in the same millisecond increment the previous
+ * identifier, so the identifiers of each thread are strictly increasing. Nothing is shared between threads, and unlike
+ * {@link java.util.UUID#randomUUID()} no {@link java.security.SecureRandom} is used, so the identifiers are unique
+ * but not unpredictable and must not be relied on as secrets.
+ */
+public class TimeOrderedIdentifierGenerator implements AggregateIdentifierGenerator {
+
+    private static final ThreadLocal<State> STATE = ThreadLocal.withInitial(State::new);
+
+    @Override
+    public String generateNewIdentifier() {
+        return generateNewAggregateId().toString();
+    }
+
+    @Override
+    public AggregateId generateNewAggregateId() {
+        return STATE.get().next(System.currentTimeMillis());
+    }
+
+    /**
+     * Last identifier generated by a thread.
+     */
+    private static final class State {
+
+        private long lastMillis = -1;
+
+        private long mostSignificantBits;
+
+        private long leastSignificantBits;
+
+        private AggregateId next(final long millis) {
+            if(millis > lastMillis) {
+                final ThreadLocalRandom random = ThreadLocalRandom.current();
+                lastMillis = millis;
+                mostSignificantBits = (millis << 16) | (random.nextInt() & 0xFFFF);
+                leastSignificantBits = random.nextLong();
+            } else if(++leastSignificantBits == 0) {
+                // The clock has not advanced (or has gone backwards): carry into the random bits of the high half
+                mostSignificantBits++;
+            }
+
+            return new AggregateId(mostSignificantBits, leastSignificantBits);
+        }
+    }
+}
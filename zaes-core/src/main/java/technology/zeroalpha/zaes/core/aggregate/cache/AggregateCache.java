@@ -0,0 +1,168 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.aggregate.cache;
+
+import technology.zeroalpha.zaes.core.aggregate.Aggregate;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Weight-bounded cache of recently used {@link Aggregate}s, keyed by aggregate identifier. When the combined weight of
+ * the cached {@link Aggregate}s exceeds the configured maximum, the least recently used entries are evicted.
+ *
+ * @param <A> Type of {@link Aggregate}
+ */
+public class AggregateCache<A extends Aggregate> {
+
+    /** Combined weight above which entries are evicted. */
+    private final long maximumWeight;
+
+    private final AggregateWeigher<A> weigher;
+
+    /** Entries in least to most recently used order. Guarded by {@code this}. */
+    private final LinkedHashMap<String, Entry<A>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Combined weight of all entries. Guarded by {@code this}. */
+    private long totalWeight;
+
+    private final LongAdder hitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * @param maximumSize Maximum number of {@link Aggregate}s to hold
+     */
+    public AggregateCache(final int maximumSize) {
+        this(maximumSize, AggregateWeigher.singleton());
+    }
+
+    /**
+     * @param maximumWeight Maximum combined weight of {@link Aggregate}s to hold
+     * @param weigher Calculates the weight of each {@link Aggregate}
+     */
+    public AggregateCache(final long maximumWeight, final AggregateWeigher<A> weigher) {
+        if(maximumWeight < 0) {
+            throw new IllegalArgumentException("maximumWeight must not be negative");
+        }
+
+        this.maximumWeight = maximumWeight;
+        this.weigher = Objects.requireNonNull(weigher);
+    }
+
+    /**
+     * Look up an {@link Aggregate}, marking it as most recently used and recording a hit or miss.
+     *
+     * @param aggregateIdentifier Identifier of {@link Aggregate}
+     * @return Cached {@link Aggregate}, or null if not cached
+     */
+    public synchronized A get(final String aggregateIdentifier) {
+        final Entry<A> entry = entries.get(aggregateIdentifier);
+        if(entry == null) {
+            missCount.increment();
+            return null;
+        }
+
+        hitCount.increment();
+        return entry.aggregate;
+    }
+
+    /**
+     * Look up an {@link Aggregate} without recording a hit or miss.
+     *
+     * @param aggregateIdentifier Identifier of {@link Aggregate}
+     * @return Cached {@link Aggregate}, or null if not cached
+     */
+    synchronized A peek(final String aggregateIdentifier) {
+        final Entry<A> entry = entries.get(aggregateIdentifier);
+        return entry == null ? null : entry.aggregate;
+    }
+
+    /**
+     * Add or replace an {@link Aggregate}, re-weighing it and evicting least recently used entries as required.
+     *
+     * @param aggregate {@link Aggregate} to cache
+     */
+    public synchronized void put(final A aggregate) {
+        final Entry<A> entry = new Entry<>(aggregate, weigher.weigh(aggregate));
+        final Entry<A> previous = entries.put(aggregate.getAggregateIdentifier(), entry);
+        if(previous != null) {
+            totalWeight -= previous.weight;
+        }
+        totalWeight += entry.weight;
+
+        final Iterator<Entry<A>> leastRecentlyUsed = entries.values().iterator();
+        while(totalWeight > maximumWeight && leastRecentlyUsed.hasNext()) {
+            totalWeight -= leastRecentlyUsed.next().weight;
+            leastRecentlyUsed.remove();
+            evictionCount.increment();
+        }
+    }
+
+    /**
+     * Remove an {@link Aggregate} from the cache, e.g. because its in-memory state may no longer match its stream.
+     *
+     * @param aggregateIdentifier Identifier of {@link Aggregate}
+     */
+    public synchronized void invalidate(final String aggregateIdentifier) {
+        final Entry<A> entry = entries.remove(aggregateIdentifier);
+        if(entry != null) {
+            totalWeight -= entry.weight;
+        }
+    }
+
+    /**
+     * Remove all {@link Aggregate}s from the cache.
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+        totalWeight = 0;
+    }
+
+    /**
+     * @return Current hit, miss and eviction counts
+     */
+    public CacheStatistics getStatistics() {
+        final int size;
+        final long weight;
+        synchronized (this) {
+            size = entries.size();
+            weight = totalWeight;
+        }
+
+        return new CacheStatistics(hitCount.sum(), missCount.sum(), evictionCount.sum(), size, weight);
+    }
+
+    private static final class Entry<A> {
+
+        private final A aggregate;
+
+        private final int weight;
+
+        private Entry(final A aggregate, final int weight) {
+            this.aggregate = aggregate;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.aggregate.cache;
+
+import technology.zeroalpha.zaes.core.aggregate.Aggregate;
+import technology.zeroalpha.zaes.core.aggregate.snapshot.JavaSnapshotSerializer;
+import technology.zeroalpha.zaes.core.aggregate.snapshot.SnapshotSerializer;
+
+/**
+ * Copies {@link Aggregate}s held by a {@link CachingAggregateService}, so that each caller receives an instance whose
+ * state can change without affecting the cache or other callers. The copy is made on every cache hit, so its cost is
+ * part of the cost of a hit: {@link Aggregate}s on hot paths should provide a copy constructor, calling
+ * {@link Aggregate}'s own, and use it as their copier (e.g. {@code LedgerAggregate::new}).
+ *
+ * @param <A> Type of {@link Aggregate}
+ */
+@FunctionalInterface
+public interface AggregateCopier<A extends Aggregate> {
+
+    /**
+     * @param aggregate {@link Aggregate} to copy, which the caller holds the lock of
+     * @return Independent copy of the {@link Aggregate}
+     */
+    A copy(final A aggregate);
+
+    /**
+     * @param <A> Type of {@link Aggregate}
+     * @return Copier round tripping {@link Aggregate}s through Java serialization, which works for any
+     *         {@link Aggregate} whose state is {@link java.io.Serializable} but allocates and copies all of it
+     */
+    @SuppressWarnings("unchecked")
+    static <A extends Aggregate> AggregateCopier<A> serializing() {
+        final SnapshotSerializer serializer = new JavaSnapshotSerializer();
+        return aggregate -> serializer.deserialize(serializer.serialize(aggregate), (Class<A>) aggregate.getClass());
+    }
+}
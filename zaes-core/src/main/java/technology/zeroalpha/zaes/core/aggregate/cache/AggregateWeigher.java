@@ -0,0 +1,44 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.aggregate.cache;
+
+import technology.zeroalpha.zaes.core.aggregate.Aggregate;
+
+/**
+ * Calculates the relative cost of keeping an {@link Aggregate} in an {@link AggregateCache}.
+ *
+ * @param <A> Type of {@link Aggregate}
+ */
+@FunctionalInterface
+public interface AggregateWeigher<A extends Aggregate> {
+
+    /**
+     * @param aggregate {@link Aggregate} being cached
+     * @return Weight of the {@link Aggregate}, must not be negative
+     */
+    int weigh(final A aggregate);
+
+    /**
+     * @param <A> Type of {@link Aggregate}
+     * @return Weigher giving every {@link Aggregate} a weight of one, bounding the cache by entry count
+     */
+    static <A extends Aggregate> AggregateWeigher<A> singleton() {
+        return aggregate -> 1;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.aggregate.cache;
+
+/**
+ * Point-in-time view of the counters maintained by an {@link AggregateCache}.
+ */
+public final class CacheStatistics {
+
+    private final long hitCount;
+
+    private final long missCount;
+
+    private final long evictionCount;
+
+    /** Number of {@link technology.zeroalpha.zaes.core.aggregate.Aggregate}s currently cached. */
+    private final int size;
+
+    /** Combined weight of all cached {@link technology.zeroalpha.zaes.core.aggregate.Aggregate}s. */
+    private final long weight;
+
+    public CacheStatistics(
+            final long hitCount, final long missCount, final long evictionCount, final int size, final long weight) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.size = size;
+        this.weight = weight;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return Proportion of lookups that were served from the cache, or 1.0 if there have been no lookups
+     */
+    public double getHitRate() {
+        final long requestCount = hitCount + missCount;
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStatistics{hitCount=" + hitCount + ", missCount=" + missCount + ", evictionCount=" + evictionCount
+                + ", size=" + size + ", weight=" + weight + "}";
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.aggregate.cache;
+
+import technology.zeroalpha.zaes.core.aggregate.Aggregate;
+import technology.zeroalpha.zaes.core.aggregate.AggregateId;
+import technology.zeroalpha.zaes.core.aggregate.AggregateIdentifierGenerator;
+import technology.zeroalpha.zaes.core.aggregate.AggregateService;
+import technology.zeroalpha.zaes.core.aggregate.snapshot.SnapshotPolicy;
+import technology.zeroalpha.zaes.core.aggregate.snapshot.SnapshotRepository;
+import technology.zeroalpha.zaes.core.event.Event;
+import technology.zeroalpha.zaes.core.event.EventService;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@link AggregateService} that keeps recently built {@link Aggregate}s in an {@link AggregateCache}. When a cached
+ * {@link Aggregate} is requested again, only the {@link Event}s appended since it was cached are retrieved and applied.
+ * <p>
+ * The cached instances are never handed out: each caller receives its own copy, taken while the cached instance is
+ * locked, so callers may decide commands against and apply {@link Event}s to their copy without affecting each other
+ * or the cache. Copies are made by an {@link AggregateCopier}: Java serialization by default, which copies any
+ * {@link java.io.Serializable} {@link Aggregate} but costs more than a short catch-up, so {@link Aggregate}s on hot
+ * paths should be given a copier using a copy constructor.
+ * <p>
+ * If applying an {@link Event} to a cached {@link Aggregate} fails, the {@link Aggregate} is dropped from the cache,
+ * as its state may reflect part of the {@link Event}; the next request rebuilds it from its stream.
+ *
+ * @param <A> Type of {@link Aggregate}
+ */
+public class CachingAggregateService<A extends Aggregate> extends AggregateService<A> {
+
+    private static final Logger LOGGER = Logger.getLogger(CachingAggregateService.class.getName());
+
+    private final AggregateCache<A> aggregateCache;
+
+    /** Copies cached {@link Aggregate}s for callers. */
+    private final AggregateCopier<A> aggregateCopier;
+
+    /**
+     * @param aggregateClass Class of {@link Aggregate}s to manage
+     * @param eventService Service for retrieving {@link Event}s
+     * @param aggregateCache Cache to hold recently used {@link Aggregate}s
+     */
+    public CachingAggregateService(
+            final Class<A> aggregateClass,
+            final AggregateIdentifierGenerator aggregateIdentifierGenerator,
+            final EventService eventService,
+            final AggregateCache<A> aggregateCache) {
+        this(aggregateClass, aggregateIdentifierGenerator, eventService, aggregateCache,
+                AggregateCopier.serializing());
+    }
+
+    /**
+     * @param aggregateClass Class of {@link Aggregate}s to manage
+     * @param eventService Service for retrieving {@link Event}s
+     * @param aggregateCache Cache to hold recently used {@link Aggregate}s
+     * @param aggregateCopier Copier giving each caller its own instance of a cached {@link Aggregate}
+     */
+    public CachingAggregateService(
+            final Class<A> aggregateClass,
+            final AggregateIdentifierGenerator aggregateIdentifierGenerator,
+            final EventService eventService,
+            final AggregateCache<A> aggregateCache,
+            final AggregateCopier<A> aggregateCopier) {
+        super(aggregateClass, aggregateIdentifierGenerator, eventService);
+        this.aggregateCache = Objects.requireNonNull(aggregateCache);
+        this.aggregateCopier = Objects.requireNonNull(aggregateCopier);
+    }
+
+    /**
+     * @param aggregateClass Class of {@link Aggregate}s to manage
+     * @param eventService Service for retrieving {@link Event}s
+     * @param snapshotRepository Store of snapshots used on a cache miss
+     * @param snapshotPolicy Policy deciding when new snapshots are taken
+     * @param aggregateCache Cache to hold recently used {@link Aggregate}s
+     */
+    public CachingAggregateService(
+            final Class<A> aggregateClass,
+            final AggregateIdentifierGenerator aggregateIdentifierGenerator,
+            final EventService eventService,
+            final SnapshotRepository snapshotRepository,
+            final SnapshotPolicy snapshotPolicy,
+            final AggregateCache<A> aggregateCache) {
+        this(aggregateClass, aggregateIdentifierGenerator, eventService, snapshotRepository, snapshotPolicy,
+                aggregateCache, AggregateCopier.serializing());
+    }
+
+    /**
+     * @param aggregateClass Class of {@link Aggregate}s to manage
+     * @param eventService Service for retrieving {@link Event}s
+     * @param snapshotRepository Store of snapshots used on a cache miss
+     * @param snapshotPolicy Policy deciding when new snapshots are taken
+     * @param aggregateCache Cache to hold recently used {@link Aggregate}s
+     * @param aggregateCopier Copier giving each caller its own instance of a cached {@link Aggregate}
+     */
+    public CachingAggregateService(
+            final Class<A> aggregateClass,
+            final AggregateIdentifierGenerator aggregateIdentifierGenerator,
+            final EventService eventService,
+            final SnapshotRepository snapshotRepository,
+            final SnapshotPolicy snapshotPolicy,
+            final AggregateCache<A> aggregateCache,
+            final AggregateCopier<A> aggregateCopier) {
+        super(aggregateClass, aggregateIdentifierGenerator, eventService, snapshotRepository, snapshotPolicy);
+        this.aggregateCache = Objects.requireNonNull(aggregateCache);
+        this.aggregateCopier = Objects.requireNonNull(aggregateCopier);
+    }
+
+    /**
+     * Return a copy of the cached {@link Aggregate}, brought up to date with any {@link Event}s appended since it was
+     * last used, or build it from its stream on a cache miss.
+     *
+     * @param eventStreamId Identifier of event stream
+     * @return {@link Aggregate} with current state, owned by the caller
+     */
+    @Override
+    public A buildLatestAggregate(final String eventStreamId) {
+        final A cachedAggregate = aggregateCache.get(eventStreamId);
+        if(cachedAggregate == null) {
+            final A aggregate = super.buildLatestAggregate(eventStreamId);
+            aggregateCache.put(copyOf(aggregate));
+
+            return aggregate;
+        }
+
+        final A aggregate;
+        synchronized (cachedAggregate) {
+            try {
+                replayEvents(
+                        cachedAggregate, eventStreamId, cachedAggregate.getSequenceNumber() + 1, Integer.MAX_VALUE);
+            } catch (final RuntimeException | Error e) {
+                aggregateCache.invalidate(eventStreamId);
+                throw e;
+            }
+            aggregate = copyOf(cachedAggregate);
+        }
+        aggregateCache.put(cachedAggregate);
+
+        return aggregate;
+    }
+
+    /**
+     * Return a copy of the cached {@link Aggregate}, which is cached under the text form of its identifier; see
+     * {@link #buildLatestAggregate(String)}.
+     *
+     * @param aggregateId Identifier of {@link Aggregate}
+     * @return {@link Aggregate} with current state
+     */
+    @Override
+    public A buildLatestAggregate(final AggregateId aggregateId) {
+        return buildLatestAggregate(aggregateId.toString());
+    }
+
+    /**
+     * Return a copy of each cached {@link Aggregate}, brought up to date, and build the rest from their streams. The
+     * {@link Event}s appended to every cached {@link Aggregate} are read with a single bulk request, as are the streams
+     * of the {@link Aggregate}s that were not cached.
+     *
+     * @param eventStreamIds Identifiers of event streams
+     * @return {@link Aggregate}s with current state, owned by the caller, keyed by identifier in the order given
+     */
+    @Override
+    public Map<String, A> buildLatestAggregates(final Collection<String> eventStreamIds) {
+        final Map<String, A> aggregates = new LinkedHashMap<>();
+        final List<String> misses = new ArrayList<>();
+        final Map<String, Integer> startSequenceNumbers = new LinkedHashMap<>();
+        for(final String eventStreamId : eventStreamIds) {
+            if(aggregates.containsKey(eventStreamId)) {
+                continue;
+            }
+
+            final A cachedAggregate = aggregateCache.get(eventStreamId);
+            aggregates.put(eventStreamId, cachedAggregate);
+            if(cachedAggregate == null) {
+                misses.add(eventStreamId);
+            } else {
+                startSequenceNumbers.put(eventStreamId, cachedAggregate.getSequenceNumber() + 1);
+            }
+        }
+
+        if(!misses.isEmpty()) {
+            super.buildLatestAggregates(misses).forEach((eventStreamId, aggregate) -> {
+                aggregates.put(eventStreamId, aggregate);
+                aggregateCache.put(copyOf(aggregate));
+            });
+        }
+
+        if(!startSequenceNumbers.isEmpty()) {
+            getEventService().retrieveEventStreams(startSequenceNumbers).forEach((eventStreamId, events) -> {
+                final A cachedAggregate = aggregates.get(eventStreamId);
+                synchronized (cachedAggregate) {
+                    try {
+                        for(final Event event : events) {
+                            // Another thread may have brought the Aggregate up to date since its position was read
+                            if(event.getSequenceNumber() > cachedAggregate.getSequenceNumber()) {
+                                cachedAggregate.applyEvent(event);
+                            }
+                        }
+                    } catch (final RuntimeException | Error e) {
+                        aggregateCache.invalidate(eventStreamId);
+                        throw e;
+                    }
+                    aggregates.put(eventStreamId, copyOf(cachedAggregate));
+                }
+                aggregateCache.put(cachedAggregate);
+            });
+        }
+
+        return aggregates;
+    }
+
+    /**
+     * Discard any cached state for the given {@link Aggregate}, forcing the next request to rebuild it.
+     *
+     * @param aggregateIdentifier Identifier of {@link Aggregate}
+     */
+    @Override
+    public void invalidate(final String aggregateIdentifier) {
+        aggregateCache.invalidate(aggregateIdentifier);
+    }
+
+    /**
+     * Apply the {@link Event}s to the cached {@link Aggregate}, if there is one and they directly follow its state;
+     * otherwise it catches up from its stream when next requested. The {@link Event}s have already been published, so
+     * if applying them fails the cached {@link Aggregate} is dropped and the failure logged rather than thrown.
+     *
+     * @param aggregateIdentifier Identifier of {@link Aggregate}
+     * @param events {@link Event}s published, with their sequence numbers assigned
+     */
+    @Override
+    public void recordPublished(final String aggregateIdentifier, final List<Event> events) {
+        final A cachedAggregate = aggregateCache.peek(aggregateIdentifier);
+        if(cachedAggregate == null || events.isEmpty()) {
+            return;
+        }
+
+        synchronized (cachedAggregate) {
+            if(cachedAggregate.getSequenceNumber() == events.get(0).getSequenceNumber() - 1) {
+                try {
+                    events.forEach(cachedAggregate::applyEvent);
+                } catch (final RuntimeException re) {
+                    aggregateCache.invalidate(aggregateIdentifier);
+                    LOGGER.log(Level.WARNING, "Unable to apply published events to cached aggregate "
+                            + aggregateIdentifier + "; it will be rebuilt from its stream", re);
+                } catch (final Error e) {
+                    aggregateCache.invalidate(aggregateIdentifier);
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy an {@link Aggregate}, so that the copy's state can change without affecting the original, with the
+     * {@link AggregateCopier} given on construction.
+     *
+     * @param aggregate {@link Aggregate} to copy, which callers hold the lock of if it is cached
+     * @return Independent copy of the {@link Aggregate}
+     */
+    protected A copyOf(final A aggregate) {
+        return aggregateCopier.copy(aggregate);
+    }
+
+    /**
+     * @return Hit, miss and eviction counts of the underlying cache
+     */
+    public CacheStatistics getCacheStatistics() {
+        return aggregateCache.getStatistics();
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.aggregate.snapshot;
+
+import technology.zeroalpha.zaes.core.io.DurableFiles;
+
+import java.io.*;
+import java.nio.file.*;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@link SnapshotRepository} storing the latest {@link Snapshot} of each aggregate in its own file within a directory.
+ * Files are replaced atomically and durably, so a reader will only ever see a complete {@link Snapshot}. As snapshots
+ * are only an optimisation, a file that cannot be read (e.g. one damaged outside the repository) is treated as no
+ * {@link Snapshot} at all, so the aggregate is rebuilt from its stream and a new {@link Snapshot} replaces the file.
+ */
+public class FileSnapshotRepository implements SnapshotRepository {
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String FILE_SUFFIX = ".snapshot";
+
+    private static final Logger LOGGER = Logger.getLogger(FileSnapshotRepository.class.getName());
+
+    /** Directory holding snapshot files. */
+    private final Path directory;
+
+    /**
+     * @param directory Directory to hold snapshot files, created if it does not exist
+     */
+    public FileSnapshotRepository(final Path directory) {
+        try {
+            this.directory = Files.createDirectories(directory);
+        } catch (final IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    @Override
+    public Optional<Snapshot> retrieveLatestSnapshot(final String aggregateIdentifier) {
+        final Path file = snapshotFile(aggregateIdentifier);
+        if(!Files.exists(file)) {
+            return Optional.empty();
+        }
+
+        try(final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            final Snapshot snapshot = readSnapshot(in, Files.size(file));
+            // Long identifiers are hashed to name their file, so check it is the one asked for
+            return snapshot.getAggregateIdentifier().equals(aggregateIdentifier)
+                    ? Optional.of(snapshot)
+                    : Optional.empty();
+        } catch (final NoSuchFileException nsfe) {
+            return Optional.empty();
+        } catch (final IOException | DateTimeException e) {
+            LOGGER.log(Level.WARNING, "Ignoring unreadable snapshot " + file, e);
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public synchronized void saveSnapshot(final Snapshot snapshot) {
+        final Optional<Snapshot> existing = retrieveLatestSnapshot(snapshot.getAggregateIdentifier());
+        if(existing.isPresent() && existing.get().getSequenceNumber() > snapshot.getSequenceNumber()) {
+            return;
+        }
+
+        try {
+            DurableFiles.replace(snapshotFile(snapshot.getAggregateIdentifier()), out -> writeSnapshot(snapshot, out));
+        } catch (final IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    private static void writeSnapshot(final Snapshot snapshot, final DataOutputStream out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(snapshot.getAggregateIdentifier());
+        out.writeInt(snapshot.getSequenceNumber());
+        out.writeLong(snapshot.getSnapshotTimestamp().toEpochSecond());
+        out.writeInt(snapshot.getSnapshotTimestamp().getNano());
+        out.writeUTF(snapshot.getSnapshotTimestamp().getZone().getId());
+        out.writeInt(snapshot.getState().length);
+        out.write(snapshot.getState());
+    }
+
+    private static Snapshot readSnapshot(final DataInputStream in, final long fileSize) throws IOException {
+        final int version = in.readInt();
+        if(version != FORMAT_VERSION) {
+            throw new IOException("Unsupported snapshot format version " + version);
+        }
+
+        final String aggregateIdentifier = in.readUTF();
+        final int sequenceNumber = in.readInt();
+        final Instant instant = Instant.ofEpochSecond(in.readLong(), in.readInt());
+        final ZonedDateTime snapshotTimestamp = ZonedDateTime.ofInstant(instant, ZoneId.of(in.readUTF()));
+        final int stateLength = in.readInt();
+        if(stateLength < 0 || stateLength > fileSize) {
+            throw new IOException("Invalid snapshot state length " + stateLength);
+        }
+        final byte[] state = new byte[stateLength];
+        in.readFully(state);
+
+        return new Snapshot(aggregateIdentifier, sequenceNumber, snapshotTimestamp, state);
+    }
+
+    private Path snapshotFile(final String aggregateIdentifier) {
+        return directory.resolve(DurableFiles.fileName(aggregateIdentifier, FILE_SUFFIX));
+    }
+}
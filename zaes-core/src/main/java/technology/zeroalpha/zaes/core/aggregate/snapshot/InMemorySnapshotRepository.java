@@ -0,0 +1,45 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.aggregate.snapshot;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link SnapshotRepository} holding the latest {@link Snapshot} of each aggregate on the heap.
+ */
+public class InMemorySnapshotRepository implements SnapshotRepository {
+
+    private final ConcurrentMap<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    @Override
+    public Optional<Snapshot> retrieveLatestSnapshot(final String aggregateIdentifier) {
+        return Optional.ofNullable(snapshots.get(aggregateIdentifier));
+    }
+
+    @Override
+    public void saveSnapshot(final Snapshot snapshot) {
+        snapshots.merge(
+                snapshot.getAggregateIdentifier(),
+                snapshot,
+                (existing, replacement) ->
+                        replacement.getSequenceNumber() >= existing.getSequenceNumber() ? replacement : existing);
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.aggregate.snapshot;
+
+import technology.zeroalpha.zaes.core.aggregate.Aggregate;
+
+import java.io.*;
+
+/**
+ * {@link SnapshotSerializer} using standard Java serialization. All state held by the {@link Aggregate} must therefore
+ * be {@link Serializable}.
+ */
+public class JavaSnapshotSerializer implements SnapshotSerializer {
+
+    @Override
+    public byte[] serialize(final Aggregate aggregate) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(aggregate);
+        } catch (final IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public <A extends Aggregate> A deserialize(final byte[] state, final Class<A> aggregateClass) {
+        try(final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(state))) {
+            return aggregateClass.cast(in.readObject());
+        } catch (final IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        } catch (final ClassNotFoundException cnfe) {
+            throw new IllegalStateException("Unable to restore snapshot of " + aggregateClass.getName(), cnfe);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.aggregate.snapshot;
+
+import technology.zeroalpha.zaes.core.aggregate.Aggregate;
+
+import java.time.ZonedDateTime;
+import java.util.Objects;
+
+/**
+ * Serialized state of an {@link Aggregate} as at a given sequence number in its Event Stream. Rebuilding an
+ * {@link Aggregate} from a Snapshot only requires the {@link technology.zeroalpha.zaes.core.event.Event}s after
+ * {@link #getSequenceNumber()} to be replayed.
+ */
+public final class Snapshot {
+
+    /** Identifier of the {@link Aggregate} (and its Event Stream). */
+    private final String aggregateIdentifier;
+
+    /** Sequence number of the last Event applied to the {@link Aggregate} before it was captured. */
+    private final int sequenceNumber;
+
+    /** Timestamp of when the Snapshot was taken. */
+    private final ZonedDateTime snapshotTimestamp;
+
+    /** Serialized {@link Aggregate} state. */
+    private final byte[] state;
+
+    /**
+     * @param aggregateIdentifier Identifier of the {@link Aggregate}
+     * @param sequenceNumber Sequence number the state was captured at
+     * @param snapshotTimestamp When the Snapshot was taken
+     * @param state Serialized {@link Aggregate} state
+     */
+    public Snapshot(
+            final String aggregateIdentifier,
+            final int sequenceNumber,
+            final ZonedDateTime snapshotTimestamp,
+            final byte[] state) {
+        this.aggregateIdentifier = Objects.requireNonNull(aggregateIdentifier);
+        this.sequenceNumber = sequenceNumber;
+        this.snapshotTimestamp = Objects.requireNonNull(snapshotTimestamp);
+        this.state = Objects.requireNonNull(state);
+    }
+
+    public String getAggregateIdentifier() {
+        return aggregateIdentifier;
+    }
+
+    public int getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    public ZonedDateTime getSnapshotTimestamp() {
+        return snapshotTimestamp;
+    }
+
+    public byte[] getState() {
+        return state;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.aggregate.snapshot;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+
+/**
+ * Decides when a new {@link Snapshot} should be taken of an {@link technology.zeroalpha.zaes.core.aggregate.Aggregate}
+ * that has just been rebuilt.
+ */
+@FunctionalInterface
+public interface SnapshotPolicy {
+
+    /**
+     * @param eventsSinceSnapshot Number of Events replayed on top of the latest {@link Snapshot} (or from the start of
+     *                            the stream if there is none)
+     * @param lastSnapshotTimestamp When the latest {@link Snapshot} was taken, or null if there is none
+     * @return true if a new {@link Snapshot} should be taken
+     */
+    boolean shouldSnapshot(final int eventsSinceSnapshot, final ZonedDateTime lastSnapshotTimestamp);
+
+    /**
+     * @return Clock that new {@link Snapshot}s are timestamped with, which policies based on time compare the latest
+     *         {@link Snapshot}'s timestamp against
+     */
+    default Clock getClock() {
+        return Clock.systemUTC();
+    }
+
+    /**
+     * @return Policy that never takes {@link Snapshot}s
+     */
+    static SnapshotPolicy never() {
+        return (eventsSinceSnapshot, lastSnapshotTimestamp) -> false;
+    }
+
+    /**
+     * @param eventCount Number of Events that must be replayed before a new {@link Snapshot} is taken
+     * @return Policy taking a {@link Snapshot} once at least the given number of Events have been replayed
+     */
+    static SnapshotPolicy everyEvents(final int eventCount) {
+        if(eventCount < 1) {
+            throw new IllegalArgumentException("eventCount must be positive");
+        }
+
+        return (eventsSinceSnapshot, lastSnapshotTimestamp) -> eventsSinceSnapshot >= eventCount;
+    }
+
+    /**
+     * @param period Minimum time between {@link Snapshot}s
+     * @return Policy taking a {@link Snapshot} if new Events have been replayed and the latest {@link Snapshot} is
+     *         older than the given period
+     */
+    static SnapshotPolicy everyPeriod(final Duration period) {
+        return everyPeriod(period, Clock.systemUTC());
+    }
+
+    /**
+     * @param period Minimum time between {@link Snapshot}s
+     * @param clock Source of the current time
+     * @return Policy taking a {@link Snapshot} if new Events have been replayed and the latest {@link Snapshot} is
+     *         older than the given period
+     */
+    static SnapshotPolicy everyPeriod(final Duration period, final Clock clock) {
+        return new SnapshotPolicy() {
+            @Override
+            public boolean shouldSnapshot(final int eventsSinceSnapshot, final ZonedDateTime lastSnapshotTimestamp) {
+                return eventsSinceSnapshot > 0
+                        && (lastSnapshotTimestamp == null
+                            || !lastSnapshotTimestamp.plus(period).isAfter(ZonedDateTime.now(clock)));
+            }
+
+            @Override
+            public Clock getClock() {
+                return clock;
+            }
+        };
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.aggregate.snapshot;
+
+import technology.zeroalpha.zaes.core.aggregate.Aggregate;
+
+/**
+ * Converts {@link Aggregate}s to and from the binary state held in a {@link Snapshot}.
+ */
+public interface SnapshotSerializer {
+
+    /**
+     * @param aggregate {@link Aggregate} to serialize
+     * @return Serialized state
+     */
+    byte[] serialize(final Aggregate aggregate);
+
+    /**
+     * @param state Serialized state, as produced by {@link #serialize(Aggregate)}
+     * @param aggregateClass Expected type of the {@link Aggregate}
+     * @param <A> Type of {@link Aggregate}
+     * @return Restored {@link Aggregate}
+     */
+    <A extends Aggregate> A deserialize(final byte[] state, final Class<A> aggregateClass);
+}
@@ -0,0 +1,61 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.event;
+
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link EventRepository}, for stores with asynchronous drivers. Each method starts the
+ * operation and returns immediately; the returned future completes once it has finished, so a fixed number of
+ * threads can have any number of operations in flight.
+ * <p>
+ * Existing {@link EventRepository} implementations can be used through {@link ExecutorAsyncEventRepository}.
+ */
+public interface AsyncEventRepository {
+
+    /**
+     * Retrieve {@link Event}s, in order, for the given Event Stream identifier, between the provided sequence numbers
+     * (inclusive).
+     *
+     * @param eventStreamId Identifier of stream
+     * @param startSequenceNumber First sequence number to retrieve
+     * @param endSequenceNumber Last sequence number to retrieve
+     * @return Future of the ordered list of {@link Event}s, which is empty if the stream does not exist
+     */
+    CompletableFuture<List<Event>> retrieveEventStream(
+            final String eventStreamId, final int startSequenceNumber, final int endSequenceNumber);
+
+    /**
+     * @param eventStreamId Identifier of stream
+     * @return Future of the sequence number of the last {@link Event} in the stream, or zero if it is empty
+     */
+    CompletableFuture<Integer> retrieveLatestSequenceNumber(final String eventStreamId);
+
+    /**
+     * Persist the given {@link Event}s to the end of the stream durably.
+     *
+     * @param eventStreamId Identifier of stream
+     * @param events {@link Event}s to persist, already assigned their sequence numbers
+     * @return Future completing once the {@link Event}s are durable, or exceptionally with a
+     *         {@link ConcurrentModificationException} if the stream has been appended to concurrently
+     */
+    CompletableFuture<Void> persistEvents(final String eventStreamId, final List<Event> events);
+}
@@ -0,0 +1,114 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.event;
+
+import technology.zeroalpha.zaes.core.listener.EventBus;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link EventService}, retrieving and publishing {@link Event}s through an
+ * {@link AsyncEventRepository}. Each method returns a future as soon as the operation has been started.
+ */
+public class AsyncEventService {
+
+    private final AsyncEventRepository eventRepository;
+
+    /** Bus to deliver newly published {@link Event}s to listeners, or null if there are none. */
+    private final EventBus eventBus;
+
+    /**
+     * @param eventRepository Asynchronous access to the underlying {@link Event} data store
+     */
+    public AsyncEventService(final AsyncEventRepository eventRepository) {
+        this.eventRepository = Objects.requireNonNull(eventRepository);
+        this.eventBus = null;
+    }
+
+    /**
+     * @param eventRepository Asynchronous access to the underlying {@link Event} data store
+     * @param eventBus Bus to deliver {@link Event}s to once they have been published
+     */
+    public AsyncEventService(final AsyncEventRepository eventRepository, final EventBus eventBus) {
+        this.eventRepository = Objects.requireNonNull(eventRepository);
+        this.eventBus = Objects.requireNonNull(eventBus);
+    }
+
+    /**
+     * @param eventStreamId Identifier of Event Stream
+     * @return Future of all {@link Event}s of the stream, in order
+     */
+    public CompletableFuture<List<Event>> retrieveAllEvents(final String eventStreamId) {
+        return retrieveEventsFromSequenceNumber(eventStreamId, Integer.MIN_VALUE);
+    }
+
+    /**
+     * @param eventStreamId Identifier of Event Stream
+     * @param sequenceNumber Sequence number to retrieve events from (inclusive)
+     * @return Future of the {@link Event}s of the stream from the sequence number, in order
+     */
+    public CompletableFuture<List<Event>> retrieveEventsFromSequenceNumber(
+            final String eventStreamId, final int sequenceNumber) {
+        Objects.requireNonNull(eventStreamId);
+
+        return eventRepository.retrieveEventStream(eventStreamId, sequenceNumber, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Publish the given List of {@link Event}s to the Event Stream, as {@link EventService#publishEvents} does.
+     *
+     * @param eventStreamId Identifier of Event Stream
+     * @param lastSeenSequenceNumber Last sequence number that was observed for this Stream
+     * @param unpublishedEvents {@link Event}s to publish
+     * @return Future completing once the {@link Event}s are durable and have been handed to the {@link EventBus} if
+     *         there is one, or exceptionally with a {@link ConcurrentModificationException} if the Event Stream has
+     *         been modified since it was last read
+     */
+    public CompletableFuture<Void> publishEvents(
+            final String eventStreamId, final int lastSeenSequenceNumber, final List<Event> unpublishedEvents) {
+        Objects.requireNonNull(eventStreamId);
+        if(unpublishedEvents.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        EventService.prepareForPublication(lastSeenSequenceNumber, unpublishedEvents);
+        final List<Event> events = new ArrayList<>(unpublishedEvents);
+
+        return eventRepository.retrieveLatestSequenceNumber(eventStreamId)
+                .thenCompose(head -> {
+                    if(head != lastSeenSequenceNumber) {
+                        final CompletableFuture<Void> conflict = new CompletableFuture<>();
+                        conflict.completeExceptionally(
+                                GroupCommitter.conflict(eventStreamId, lastSeenSequenceNumber, head));
+                        return conflict;
+                    }
+
+                    return eventRepository.persistEvents(eventStreamId, events);
+                })
+                .thenRun(() -> {
+                    if(eventBus != null) {
+                        eventBus.publish(events);
+                    }
+                });
+    }
+}
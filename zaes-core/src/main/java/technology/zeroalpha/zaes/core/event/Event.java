@@ -18,24 +18,113 @@
  */
 package technology.zeroalpha.zaes.core.event;
 
+import java.time.Instant;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.Objects;
 
 /**
  * Base representation of an Event in the system.
+ * <p>
+ * The timestamp is held as microseconds since the epoch plus a shared {@link ZoneId}, which stores can set without
+ * allocating; the {@link ZonedDateTime} returned by {@link #getEventTimestamp()} is only created when first requested.
  */
 public abstract class Event {
 
+    /** Global position of an {@link Event} that has not been read from, or appended to, a store with a global log. */
+    public static final long NO_POSITION = -1L;
+
+    /** Timestamp of an {@link Event} without one, in microseconds since the epoch. */
+    public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
     /** Sequence number of event in stream. */
     private int sequenceNumber;
 
-    /** Timestamp of when Event is deemed to have occurred. */
+    /** Position of event in the store's global log, across all streams; see {@link #getGlobalPosition()}. */
+    private long globalPosition = NO_POSITION;
+
+    /** Timestamp of when Event is deemed to have occurred, or null if it has not been requested since it was set. */
     private ZonedDateTime eventTimestamp;
 
+    /** Timestamp in microseconds since the epoch, or {@link #NO_TIMESTAMP}; see {@link #eventTimestamp}. */
+    private long timestampMicros = NO_TIMESTAMP;
+
+    /** Zone of the timestamp, or null if there is no timestamp. */
+    private ZoneId timestampZone;
+
     public int getSequenceNumber() {
         return sequenceNumber;
     }
 
+    public final void setSequenceNumber(final int sequenceNumber) {
+        this.sequenceNumber = sequenceNumber;
+    }
+
+    /**
+     * @return Position of the {@link Event} in the store's global log, which increases with every append across all
+     *         streams but need not be contiguous, or {@link #NO_POSITION} if the store does not assign positions
+     */
+    public long getGlobalPosition() {
+        return globalPosition;
+    }
+
+    public final void setGlobalPosition(final long globalPosition) {
+        this.globalPosition = globalPosition;
+    }
+
+    /**
+     * @return Timestamp of when the {@link Event} is deemed to have occurred, or null if it has none
+     */
     public ZonedDateTime getEventTimestamp() {
+        if(eventTimestamp == null && timestampMicros != NO_TIMESTAMP) {
+            eventTimestamp = ZonedDateTime.ofInstant(
+                    Instant.ofEpochSecond(
+                            Math.floorDiv(timestampMicros, 1_000_000L),
+                            Math.floorMod(timestampMicros, 1_000_000L) * 1_000L),
+                    timestampZone);
+        }
+
         return eventTimestamp;
     }
+
+    /**
+     * @return Timestamp in microseconds since the epoch, rounded down, or {@link #NO_TIMESTAMP} if the {@link Event}
+     *         has none
+     * @throws ArithmeticException If the timestamp is too far from the epoch to be held in microseconds
+     */
+    public long getTimestampMicros() {
+        if(timestampMicros == NO_TIMESTAMP && eventTimestamp != null) {
+            final Instant instant = eventTimestamp.toInstant();
+            timestampMicros = Math.addExact(
+                    Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1_000);
+        }
+
+        return timestampMicros;
+    }
+
+    /**
+     * @return Zone of the timestamp, or null if the {@link Event} has none
+     */
+    public ZoneId getTimestampZone() {
+        return timestampZone;
+    }
+
+    public final void setEventTimestamp(final ZonedDateTime eventTimestamp) {
+        this.eventTimestamp = eventTimestamp;
+        this.timestampMicros = NO_TIMESTAMP;
+        this.timestampZone = eventTimestamp == null ? null : eventTimestamp.getZone();
+    }
+
+    /**
+     * Set the timestamp from its compact form, without creating a {@link ZonedDateTime}. Stores reading many
+     * {@link Event}s should pass the same {@link ZoneId} instance for every {@link Event} in a zone.
+     *
+     * @param timestampMicros Microseconds since the epoch, or {@link #NO_TIMESTAMP} to clear the timestamp
+     * @param timestampZone Zone of the timestamp; ignored if there is no timestamp
+     */
+    public final void setEventTimestamp(final long timestampMicros, final ZoneId timestampZone) {
+        this.eventTimestamp = null;
+        this.timestampMicros = timestampMicros;
+        this.timestampZone = timestampMicros == NO_TIMESTAMP ? null : Objects.requireNonNull(timestampZone);
+    }
 }
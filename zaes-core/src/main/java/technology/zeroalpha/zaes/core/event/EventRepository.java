@@ -18,12 +18,25 @@
  */
 package technology.zeroalpha.zaes.core.event;
 
+import technology.zeroalpha.zaes.core.aggregate.AggregateId;
+
 import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.ConcurrentModificationException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * A service providing access to an {@link Event} Stream.
+ * <p>
+ * Events can be read either as fully materialized {@link List}s or as {@link Stream}s. The {@link Stream} variants
+ * default to adapting the {@link List} variants; stores able to read incrementally (e.g. with a database cursor or by
+ * paging through a file) should override them so that {@link Event}s are only held in memory while being applied.
+ * Returned {@link Stream}s may hold resources and must be closed by the caller.
  */
 public interface EventRepository {
 
@@ -59,6 +72,139 @@ public interface EventRepository {
     List<Event> retrieveEventStream(
             final String eventStreamId, final ZonedDateTime startDate, final ZonedDateTime endDate);
 
+    /**
+     * Stream all {@link Event}s, in order, for the given Event Stream identifier.
+     *
+     * @param eventStreamId Identifier of stream
+     * @return Ordered stream of {@link Event}s associated with identifier, which must be closed after use
+     */
+    default Stream<Event> streamEventStream(final String eventStreamId) {
+        return Optional.ofNullable(retrieveEventStream(eventStreamId)).map(List::stream).orElseGet(Stream::empty);
+    }
+
+    /**
+     * Stream {@link Event}s, in order, for the given Event Stream identifier, between the provided sequence numbers
+     * (inclusive).
+     *
+     * @param eventStreamId Identifier of stream
+     * @param startSequenceNumber First sequence number to retrieve
+     * @param endSequenceNumber Last sequence number to retrieve
+     * @return Ordered stream of {@link Event}s associated with identifier, which must be closed after use
+     */
+    default Stream<Event> streamEventStream(
+            final String eventStreamId, final int startSequenceNumber, final int endSequenceNumber) {
+        return Optional
+                .ofNullable(retrieveEventStream(eventStreamId, startSequenceNumber, endSequenceNumber))
+                .map(List::stream)
+                .orElseGet(Stream::empty);
+    }
+
+    /**
+     * Stream {@link Event}s, in order, for the stream of the {@link AggregateId}, between the provided sequence numbers
+     * (inclusive). The default implementation uses the text form of the identifier; stores may override it to key
+     * streams by the identifier's two longs rather than by String.
+     *
+     * @param aggregateId Compact identifier of stream
+     * @param startSequenceNumber First sequence number to retrieve
+     * @param endSequenceNumber Last sequence number to retrieve
+     * @return Ordered stream of {@link Event}s associated with identifier, which must be closed after use
+     */
+    default Stream<Event> streamEventStream(
+            final AggregateId aggregateId, final int startSequenceNumber, final int endSequenceNumber) {
+        return streamEventStream(aggregateId.toString(), startSequenceNumber, endSequenceNumber);
+    }
+
+    /**
+     * Stream {@link Event}s, in order, for the given Event Stream identifier, between the provided date/times
+     * (inclusive).
+     *
+     * @param eventStreamId Identifier of stream
+     * @param startDate Start of time period
+     * @param endDate End of time period
+     * @return Ordered stream of {@link Event}s associated with identifier, which must be closed after use
+     */
+    default Stream<Event> streamEventStream(
+            final String eventStreamId, final ZonedDateTime startDate, final ZonedDateTime endDate) {
+        return Optional
+                .ofNullable(retrieveEventStream(eventStreamId, startDate, endDate))
+                .map(List::stream)
+                .orElseGet(Stream::empty);
+    }
+
+    /**
+     * Retrieve all {@link Event}s of several Event Streams at once, e.g. to load every aggregate a batch job touches.
+     * See {@link #retrieveEventStreams(Map)}.
+     *
+     * @param eventStreamIds Identifiers of streams
+     * @return Ordered list of {@link Event}s of each stream, keyed by identifier in the order given, with an empty
+     *         list for any stream that does not exist
+     */
+    default Map<String, List<Event>> retrieveEventStreams(final Collection<String> eventStreamIds) {
+        final Map<String, Integer> startSequenceNumbers = new LinkedHashMap<>();
+        eventStreamIds.forEach(eventStreamId -> startSequenceNumbers.put(eventStreamId, Integer.MIN_VALUE));
+
+        return retrieveEventStreams(startSequenceNumbers);
+    }
+
+    /**
+     * Retrieve the {@link Event}s of several Event Streams at once, each starting at its own sequence number (e.g. the
+     * one following an aggregate's snapshot). The default implementation reads each stream in turn; stores should
+     * override it to serve every stream from a single query or scan.
+     *
+     * @param startSequenceNumbers First sequence number to retrieve (inclusive) of each stream, keyed by identifier
+     * @return Ordered list of {@link Event}s of each stream, keyed by identifier in the order given, with an empty
+     *         list for any stream that does not exist
+     */
+    default Map<String, List<Event>> retrieveEventStreams(final Map<String, Integer> startSequenceNumbers) {
+        final Map<String, List<Event>> eventStreams = new LinkedHashMap<>();
+        startSequenceNumbers.forEach((eventStreamId, startSequenceNumber) -> eventStreams.put(
+                eventStreamId,
+                Optional
+                        .ofNullable(retrieveEventStream(eventStreamId, startSequenceNumber, Integer.MAX_VALUE))
+                        .orElseGet(Collections::emptyList)));
+
+        return eventStreams;
+    }
+
+    /**
+     * Stream the identifiers of every Event Stream in the store, e.g. to rebuild read models from scratch. Streams
+     * created while the returned stream is consumed may or may not be included.
+     *
+     * @return Identifiers of Event Streams, in no particular order, which must be closed after use
+     * @throws UnsupportedOperationException If the store cannot enumerate its Event Streams, as by default
+     */
+    default Stream<String> streamEventStreamIdentifiers() {
+        throw new UnsupportedOperationException(getClass().getName() + " cannot enumerate Event Streams");
+    }
+
+    /**
+     * Stream {@link Event}s from every Event Stream in the order they were appended, starting after the given global
+     * position. Stores supporting this assign each {@link Event} a {@link Event#getGlobalPosition() global position}
+     * when it is appended. The returned stream only includes {@link Event}s committed when it was created, and is
+     * read lazily, so callers may read in batches by limiting it.
+     *
+     * @param globalPosition Position of the last {@link Event} already read, or {@link Event#NO_POSITION} to read
+     *        from the start of the log
+     * @return {@link Event}s in global position order, which must be closed after use
+     * @throws UnsupportedOperationException If the store does not maintain a global log, as by default
+     */
+    default Stream<Event> streamEventsAfterPosition(final long globalPosition) {
+        throw new UnsupportedOperationException(getClass().getName() + " does not maintain a global log");
+    }
+
+    /**
+     * Retrieve the sequence number of the last {@link Event} in the given Event Stream. The default implementation
+     * reads the whole stream; stores should override it with a direct lookup.
+     *
+     * @param eventStreamId Identifier of stream
+     * @return Sequence number of the last {@link Event}, or zero if the stream is empty
+     */
+    default int retrieveLatestSequenceNumber(final String eventStreamId) {
+        try(final Stream<Event> events = streamEventStream(eventStreamId)) {
+            return events.mapToInt(Event::getSequenceNumber).reduce((first, second) -> second).orElse(0);
+        }
+    }
+
     /**
      * Persist the provided {@link Event}s to the Event Stream identified by the given identifier.
      *
@@ -67,4 +213,47 @@ public interface EventRepository {
      * @throws ConcurrentModificationException If Event Stream has been modified since client last read it
      */
     void persistEvents(final String eventStreamId, final List<Event> events) throws ConcurrentModificationException;
+
+    /**
+     * Persist {@link Event}s to several Event Streams in a single operation. The default implementation persists each
+     * stream in turn; stores able to write them together (e.g. in one transaction or one log append) should override
+     * it. If a {@link ConcurrentModificationException} is thrown, callers cannot assume any particular stream was or
+     * was not written unless {@link #isBatchAtomic()} is true.
+     *
+     * @param eventStreams {@link Event}s to append, keyed by Event Stream identifier
+     * @throws ConcurrentModificationException If any Event Stream has been modified since client last read it
+     */
+    default void persistEventBatch(final Map<String, List<Event>> eventStreams)
+            throws ConcurrentModificationException {
+        eventStreams.forEach(this::persistEvents);
+    }
+
+    /**
+     * Whether {@link #persistEventBatch(Map)} writes either every Event Stream in the batch or none of them. The
+     * default implementation persists streams one at a time, so a failed batch may have been partially written.
+     *
+     * @return True if a batch that throws has written nothing
+     */
+    default boolean isBatchAtomic() {
+        return false;
+    }
+
+    /**
+     * Whether date range reads are answered from an index of {@link Event} timestamps held by the store, touching only
+     * the matching {@link Event}s and a logarithmic number of others however long the stream, including straight after
+     * the store is opened. Callers that would otherwise keep their own time index pass date range queries directly to
+     * such stores.
+     *
+     * @return True if date range reads are indexed by the store
+     */
+    default boolean isTimeIndexed() {
+        return false;
+    }
+
+    /**
+     * Ensure all previously persisted {@link Event}s are durable, e.g. by forcing buffered writes to disk. Stores that
+     * persist durably on every write need not override this.
+     */
+    default void flush() {
+    }
 }
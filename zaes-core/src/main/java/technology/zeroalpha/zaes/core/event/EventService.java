@@ -18,22 +18,167 @@
  */
 package technology.zeroalpha.zaes.core.event;
 
+import technology.zeroalpha.zaes.core.aggregate.AggregateId;
+import technology.zeroalpha.zaes.core.instrumentation.Counter;
+import technology.zeroalpha.zaes.core.instrumentation.Histogram;
+import technology.zeroalpha.zaes.core.instrumentation.Instrumentation;
+import technology.zeroalpha.zaes.core.listener.EventBus;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
- * Service used to retrieve {@link Event} Streams from the underlying {@link EventRepository}.
+ * Service used to retrieve {@link Event} Streams from the underlying {@link EventRepository}, and to publish new
+ * {@link Event}s to them.
  */
-public class EventService {
+public class EventService implements AutoCloseable {
+
+    /** Histogram of the time taken to retrieve a list of {@link Event}s, in nanoseconds. */
+    public static final String READ_LATENCY = "zaes.event.read.latency";
+
+    /** Histogram of the number of {@link Event}s in each retrieved list. */
+    public static final String READ_BATCH_SIZE = "zaes.event.read.batch-size";
+
+    /** Histogram of the time taken to publish {@link Event}s, including any wait for a group commit, in nanoseconds. */
+    public static final String APPEND_LATENCY = "zaes.event.append.latency";
+
+    /** Histogram of the number of {@link Event}s in each publication. */
+    public static final String APPEND_BATCH_SIZE = "zaes.event.append.batch-size";
+
+    /** Counter of publications rejected because their Event Stream had been modified. */
+    public static final String APPEND_CONFLICTS = "zaes.event.append.conflicts";
+
+    /** Number of {@link Event}s between the samples held by each {@link StreamTimeIndex}. */
+    private static final int TIME_INDEX_INTERVAL = 64;
+
+    /** Number of streams whose {@link StreamTimeIndex} is kept, the least recently queried being dropped first. */
+    private static final int MAXIMUM_TIME_INDEXES = 1024;
+
+    /** Number of locks ordering publications to the {@link EventBus} without group commit, shared between streams. */
+    private static final int PUBLICATION_LOCK_COUNT = 64;
+
+    /** Earliest date/time, used when a date range is unbounded at the start. */
+    private static final ZonedDateTime START_OF_TIME = LocalDateTime.MIN.atZone(ZoneOffset.UTC);
+
+    /** Latest date/time, used when a date range is unbounded at the end. */
+    private static final ZonedDateTime END_OF_TIME = LocalDateTime.MAX.atZone(ZoneOffset.UTC);
 
     /** {@link EventRepository} implementation for retrieving {@link Event}s from the underlying store. */
     private final EventRepository eventRepository;
 
+    /** Batches concurrent publications together, or null if each publication is persisted on its own. */
+    private final GroupCommitter groupCommitter;
+
+    /** Bus to deliver newly published {@link Event}s to listeners, or null if there are none. */
+    private final EventBus eventBus;
+
+    /**
+     * Locks held from persisting a publication until it is handed to the {@link EventBus}, so that listeners see each
+     * stream's {@link Event}s in sequence order when publications are not group-committed. A stream always uses the
+     * same lock, chosen by the hash of its identifier.
+     */
+    private final Object[] publicationLocks = new Object[PUBLICATION_LOCK_COUNT];
+
+    /**
+     * Time indexes of the streams most recently queried by date, built on first use and kept up to date, for stores
+     * that do not index timestamps themselves.
+     */
+    private final Map<String, StreamTimeIndex> timeIndexes =
+            Collections.synchronizedMap(new TimeIndexCache(MAXIMUM_TIME_INDEXES));
+
+    private final Histogram readLatency;
+
+    private final Histogram readBatchSize;
+
+    private final Histogram appendLatency;
+
+    private final Histogram appendBatchSize;
+
+    private final Counter appendConflicts;
+
     /**
      * @param eventRepository Service offering access to underlying {@link Event} data store
      */
     public EventService(final EventRepository eventRepository) {
+        this(eventRepository, null, null, Instrumentation.noOp());
+    }
+
+    /**
+     * Create a service that delivers published {@link Event}s to the {@link EventBus}. Publications to the same stream
+     * are persisted and delivered one at a time, so listeners see each stream's {@link Event}s in sequence order.
+     *
+     * @param eventRepository Service offering access to underlying {@link Event} data store
+     * @param eventBus Bus to deliver {@link Event}s to once they have been published
+     */
+    public EventService(final EventRepository eventRepository, final EventBus eventBus) {
+        this(eventRepository, null, Objects.requireNonNull(eventBus), Instrumentation.noOp());
+    }
+
+    /**
+     * Create a service that group-commits publications: concurrent calls to
+     * {@link #publishEvents(String, int, List)} are gathered according to the given policy, then persisted as a single
+     * batch with a single flush of the {@link EventRepository}.
+     *
+     * @param eventRepository Service offering access to underlying {@link Event} data store
+     * @param groupCommitPolicy How long to wait and how many {@link Event}s to gather into each batch
+     */
+    public EventService(final EventRepository eventRepository, final GroupCommitPolicy groupCommitPolicy) {
+        this(eventRepository, Objects.requireNonNull(groupCommitPolicy), null, Instrumentation.noOp());
+    }
+
+    /**
+     * Create a service that group-commits publications and delivers each committed batch to the {@link EventBus} in
+     * commit order.
+     *
+     * @param eventRepository Service offering access to underlying {@link Event} data store
+     * @param groupCommitPolicy How long to wait and how many {@link Event}s to gather into each batch
+     * @param eventBus Bus to deliver {@link Event}s to once they have been published
+     */
+    public EventService(
+            final EventRepository eventRepository,
+            final GroupCommitPolicy groupCommitPolicy,
+            final EventBus eventBus) {
+        this(
+                eventRepository,
+                Objects.requireNonNull(groupCommitPolicy),
+                Objects.requireNonNull(eventBus),
+                Instrumentation.noOp());
+    }
+
+    /**
+     * Create a service recording the latency and size of reads and appends, and the number of conflicting appends,
+     * with the given {@link Instrumentation}.
+     *
+     * @param eventRepository Service offering access to underlying {@link Event} data store
+     * @param groupCommitPolicy How long to wait and how many {@link Event}s to gather into each batch, or null to
+     *        persist each publication on its own
+     * @param eventBus Bus to deliver {@link Event}s to once they have been published, or null if there is none
+     * @param instrumentation Instrumentation to record metrics with
+     */
+    public EventService(
+            final EventRepository eventRepository,
+            final GroupCommitPolicy groupCommitPolicy,
+            final EventBus eventBus,
+            final Instrumentation instrumentation) {
         this.eventRepository = eventRepository;
+        this.groupCommitter = groupCommitPolicy == null
+                ? null
+                : new GroupCommitter(eventRepository, groupCommitPolicy, eventBus);
+        this.eventBus = eventBus;
+        this.readLatency = instrumentation.histogram(READ_LATENCY);
+        this.readBatchSize = instrumentation.histogram(READ_BATCH_SIZE);
+        this.appendLatency = instrumentation.histogram(APPEND_LATENCY);
+        this.appendBatchSize = instrumentation.histogram(APPEND_BATCH_SIZE);
+        this.appendConflicts = instrumentation.counter(APPEND_CONFLICTS);
+        for(int lock = 0; lock < PUBLICATION_LOCK_COUNT; lock++) {
+            publicationLocks[lock] = new Object();
+        }
     }
 
     /**
@@ -45,8 +190,9 @@ public class EventService {
     public List<Event> retrieveAllEvents(final String aggregateIdentifier) {
         Objects.requireNonNull(aggregateIdentifier);
 
+        final long start = System.nanoTime();
         final List<Event> events = eventRepository.retrieveEventStream(aggregateIdentifier);
-        return events == null ? Collections.emptyList() : events;
+        return recordRead(start, events == null ? Collections.emptyList() : events);
     }
 
     /**
@@ -85,15 +231,205 @@ public class EventService {
     public List<Event> retrieveEventsBetweenSequenceNumbers(
             final String eventStreamId, final int startSequenceNumber, final int endSequenceNumber) {
         if(Optional.ofNullable(eventStreamId).isPresent()) {
-            return Optional
+            final long start = System.nanoTime();
+            return recordRead(start, Optional
                     .ofNullable(
                             eventRepository.retrieveEventStream(eventStreamId, startSequenceNumber, endSequenceNumber))
-                    .orElseGet(Collections::emptyList);
+                    .orElseGet(Collections::emptyList));
         }
 
         return Collections.emptyList();
     }
 
+    /**
+     * Retrieve all {@link Event}s of several Event Streams with a single request to the underlying
+     * {@link EventRepository}, where it supports bulk reads.
+     *
+     * @param eventStreamIds Identifiers of Event Streams
+     * @return Ordered list of {@link Event}s of each stream, keyed by identifier in the order given
+     */
+    public Map<String, List<Event>> retrieveEventStreams(final Collection<String> eventStreamIds) {
+        eventStreamIds.forEach(Objects::requireNonNull);
+
+        final long start = System.nanoTime();
+        return recordBulkRead(start, eventRepository.retrieveEventStreams(eventStreamIds));
+    }
+
+    /**
+     * Retrieve the {@link Event}s of several Event Streams, each from its own sequence number (inclusive), with a
+     * single request to the underlying {@link EventRepository}, where it supports bulk reads.
+     *
+     * @param startSequenceNumbers First sequence number to retrieve of each Event Stream, keyed by identifier
+     * @return Ordered list of {@link Event}s of each stream, keyed by identifier in the order given
+     */
+    public Map<String, List<Event>> retrieveEventStreams(final Map<String, Integer> startSequenceNumbers) {
+        startSequenceNumbers.keySet().forEach(Objects::requireNonNull);
+
+        final long start = System.nanoTime();
+        return recordBulkRead(start, eventRepository.retrieveEventStreams(startSequenceNumbers));
+    }
+
+    /**
+     * Stream the identifiers of every Event Stream. The returned stream must be closed.
+     *
+     * @return Identifiers of Event Streams, in no particular order
+     * @throws UnsupportedOperationException If the underlying {@link EventRepository} cannot enumerate its streams
+     */
+    public Stream<String> streamEventStreamIdentifiers() {
+        return eventRepository.streamEventStreamIdentifiers();
+    }
+
+    /**
+     * Stream {@link Event}s from every Event Stream in the order they were appended, starting after the given global
+     * position. The returned stream must be closed.
+     *
+     * @param globalPosition Position of the last {@link Event} already read, or {@link Event#NO_POSITION}
+     * @return {@link Event}s in global position order
+     * @throws UnsupportedOperationException If the underlying {@link EventRepository} does not maintain a global log
+     */
+    public Stream<Event> streamEventsAfterPosition(final long globalPosition) {
+        return eventRepository.streamEventsAfterPosition(globalPosition);
+    }
+
+    /**
+     * Stream all {@link Event}s, in order, associated with the provided Event Stream identifier. {@link Event}s are
+     * read from the underlying {@link EventRepository} as the stream is consumed, so the returned stream must be
+     * closed.
+     *
+     * @param eventStreamId Identifier of Event Stream
+     * @return Ordered stream of {@link Event}s
+     */
+    public Stream<Event> streamAllEvents(final String eventStreamId) {
+        Objects.requireNonNull(eventStreamId);
+
+        return Optional.ofNullable(eventRepository.streamEventStream(eventStreamId)).orElseGet(Stream::empty);
+    }
+
+    /**
+     * Stream all {@link Event}s, in order, of the stream with the given compact identifier. The returned stream must
+     * be closed.
+     *
+     * @param aggregateId Compact identifier of Event Stream
+     * @return Ordered stream of {@link Event}s
+     */
+    public Stream<Event> streamAllEvents(final AggregateId aggregateId) {
+        Objects.requireNonNull(aggregateId);
+
+        return Optional
+                .ofNullable(eventRepository.streamEventStream(aggregateId, Integer.MIN_VALUE, Integer.MAX_VALUE))
+                .orElseGet(Stream::empty);
+    }
+
+    /**
+     * Stream all {@link Event}s, in order, associated with the provided Event Stream identifier, up to the given
+     * sequence number (inclusive). The returned stream must be closed.
+     *
+     * @param eventStreamId Identifier of Event Stream
+     * @param sequenceNumber Sequence number to retrieve events to
+     * @return Ordered stream of {@link Event}s
+     */
+    public Stream<Event> streamEventsToSequenceNumber(final String eventStreamId, final int sequenceNumber) {
+        return streamEventsBetweenSequenceNumbers(eventStreamId, Integer.MIN_VALUE, sequenceNumber);
+    }
+
+    /**
+     * Stream all {@link Event}s, in order, associated with the provided Event Stream identifier, starting at the given
+     * sequence number (inclusive). The returned stream must be closed.
+     *
+     * @param eventStreamId Identifier of Event Stream
+     * @param sequenceNumber Sequence number to retrieve events from
+     * @return Ordered stream of {@link Event}s
+     */
+    public Stream<Event> streamEventsFromSequenceNumber(final String eventStreamId, final int sequenceNumber) {
+        return streamEventsBetweenSequenceNumbers(eventStreamId, sequenceNumber, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Stream all {@link Event}s, in order, associated with the provided Event Stream identifier, between the two given
+     * sequence numbers (inclusive). The returned stream must be closed.
+     *
+     * @param eventStreamId Identifier of Event Stream
+     * @param startSequenceNumber Sequence number to retrieve events from
+     * @param endSequenceNumber Sequence number to retrieve events to
+     * @return Ordered stream of {@link Event}s
+     */
+    public Stream<Event> streamEventsBetweenSequenceNumbers(
+            final String eventStreamId, final int startSequenceNumber, final int endSequenceNumber) {
+        if(Optional.ofNullable(eventStreamId).isPresent()) {
+            return Optional
+                    .ofNullable(
+                            eventRepository.streamEventStream(eventStreamId, startSequenceNumber, endSequenceNumber))
+                    .orElseGet(Stream::empty);
+        }
+
+        return Stream.empty();
+    }
+
+    /**
+     * Pass {@link Event}s, in order, of the provided Event Stream to the callback, between the two given sequence
+     * numbers (inclusive), for rebuilding state. If the {@link EventRepository} is a {@link ReplayableEventRepository}
+     * it may reuse {@link Event} instances between calls, so the callback must not retain them.
+     *
+     * @param eventStreamId Identifier of Event Stream
+     * @param startSequenceNumber Sequence number to replay events from
+     * @param endSequenceNumber Sequence number to replay events to
+     * @param consumer Callback applying each {@link Event}
+     * @return Number of {@link Event}s replayed
+     */
+    public int replayEvents(
+            final String eventStreamId,
+            final int startSequenceNumber,
+            final int endSequenceNumber,
+            final Consumer<? super Event> consumer) {
+        Objects.requireNonNull(eventStreamId);
+
+        if(eventRepository instanceof ReplayableEventRepository) {
+            return ((ReplayableEventRepository) eventRepository)
+                    .replayEventStream(eventStreamId, startSequenceNumber, endSequenceNumber, consumer);
+        }
+
+        return replay(
+                streamEventsBetweenSequenceNumbers(eventStreamId, startSequenceNumber, endSequenceNumber), consumer);
+    }
+
+    /**
+     * Pass all {@link Event}s, in order, of the provided Event Stream to the callback; see
+     * {@link #replayEvents(String, int, int, Consumer)}.
+     *
+     * @param eventStreamId Identifier of Event Stream
+     * @param consumer Callback applying each {@link Event}
+     * @return Number of {@link Event}s replayed
+     */
+    public int replayAllEvents(final String eventStreamId, final Consumer<? super Event> consumer) {
+        Objects.requireNonNull(eventStreamId);
+
+        if(eventRepository instanceof ReplayableEventRepository) {
+            return ((ReplayableEventRepository) eventRepository)
+                    .replayEventStream(eventStreamId, Integer.MIN_VALUE, Integer.MAX_VALUE, consumer);
+        }
+
+        return replay(streamAllEvents(eventStreamId), consumer);
+    }
+
+    /**
+     * Pass all {@link Event}s, in order, of the stream with the given compact identifier to the callback; see
+     * {@link #replayEvents(String, int, int, Consumer)}.
+     *
+     * @param aggregateId Compact identifier of Event Stream
+     * @param consumer Callback applying each {@link Event}
+     * @return Number of {@link Event}s replayed
+     */
+    public int replayAllEvents(final AggregateId aggregateId, final Consumer<? super Event> consumer) {
+        Objects.requireNonNull(aggregateId);
+
+        if(eventRepository instanceof ReplayableEventRepository) {
+            return ((ReplayableEventRepository) eventRepository)
+                    .replayEventStream(aggregateId, Integer.MIN_VALUE, Integer.MAX_VALUE, consumer);
+        }
+
+        return replay(streamAllEvents(aggregateId), consumer);
+    }
+
     /**
      * Retrieve all {@link Event}s, in order, associated with the provided Event Stream identifier, up to the given
      * date/time (inclusive).
@@ -103,7 +439,7 @@ public class EventService {
      * @return Ordered list of {@link Event}s
      */
     public List<Event> retrieveEventsToDate(final String eventStreamId, final ZonedDateTime dateTime) {
-        return Collections.emptyList();
+        return retrieveEventsBetweenDates(eventStreamId, START_OF_TIME, dateTime);
     }
 
     /**
@@ -115,12 +451,19 @@ public class EventService {
      * @return Ordered list of {@link Event}s
      */
     public List<Event> retrieveEventsFromDate(final String eventStreamId, final ZonedDateTime dateTime) {
-        return Collections.emptyList();
+        return retrieveEventsBetweenDates(eventStreamId, dateTime, END_OF_TIME);
     }
 
     /**
      * Retrieve all {@link Event}s, in order, associated with the provided Event Stream identifier, between the two
      * given date/times (inclusive).
+     * <p>
+     * Stores that index timestamps themselves ({@link EventRepository#isTimeIndexed()}) answer the query directly.
+     * For other stores, the date range is converted to a sequence number range using a sparse time index of the
+     * stream, so only the matching {@link Event}s and at most one index interval either side of them are read. The
+     * index is built the first time a stream is queried and extended as {@link Event}s are published; indexes are kept
+     * for a bounded number of recently queried streams. If a stream's timestamps are not in order, the query is passed
+     * to the {@link EventRepository} instead.
      *
      * @param eventStreamId Identifier of Event Stream
      * @param startDateTime Date/time to retrieve {@link Event}s from
@@ -129,11 +472,44 @@ public class EventService {
      */
     public List<Event> retrieveEventsBetweenDates(
             final String eventStreamId, final ZonedDateTime startDateTime, final ZonedDateTime endDateTime) {
-        return Collections.emptyList();
+        if(!Optional.ofNullable(eventStreamId).isPresent()) {
+            return Collections.emptyList();
+        }
+
+        final long startTime = System.nanoTime();
+        if(eventRepository.isTimeIndexed()) {
+            return recordRead(startTime, Optional
+                    .ofNullable(eventRepository.retrieveEventStream(eventStreamId, startDateTime, endDateTime))
+                    .orElseGet(Collections::emptyList));
+        }
+
+        final StreamTimeIndex timeIndex = catchUpTimeIndex(eventStreamId);
+        if(!timeIndex.isOrdered()) {
+            return recordRead(startTime, Optional
+                    .ofNullable(eventRepository.retrieveEventStream(eventStreamId, startDateTime, endDateTime))
+                    .orElseGet(Collections::emptyList));
+        }
+
+        final Instant start = startDateTime.toInstant();
+        final Instant end = endDateTime.toInstant();
+        try(final Stream<Event> events = streamEventsBetweenSequenceNumbers(
+                eventStreamId, timeIndex.firstSequenceNumberFrom(start), timeIndex.lastSequenceNumberTo(end))) {
+            return recordRead(startTime, events
+                    .filter(event -> {
+                        final ZonedDateTime timestamp = event.getEventTimestamp();
+                        return timestamp != null
+                                && !timestamp.toInstant().isBefore(start)
+                                && !timestamp.toInstant().isAfter(end);
+                    })
+                    .collect(Collectors.toList()));
+        }
     }
 
     /**
-     * Publish the given List of {@link Event}s to the Event Stream.
+     * Publish the given List of {@link Event}s to the Event Stream. {@link Event}s are assigned consecutive sequence
+     * numbers following the last seen sequence number, and the current time if they do not already have a timestamp.
+     * The call returns once the {@link Event}s have been persisted and flushed, and handed to the {@link EventBus} if
+     * there is one.
      *
      * @param eventStreamId Identifier of Event Stream
      * @param lastSeenSequenceNumber Last sequence number that was observed for this Stream
@@ -143,6 +519,154 @@ public class EventService {
     public void publishEvents(
             final String eventStreamId, final int lastSeenSequenceNumber, final List<Event> unpublishedEvents)
             throws ConcurrentModificationException {
+        Objects.requireNonNull(eventStreamId);
+        if(unpublishedEvents.isEmpty()) {
+            return;
+        }
+
+        final long start = System.nanoTime();
+        prepareForPublication(lastSeenSequenceNumber, unpublishedEvents);
 
+        try {
+            if(groupCommitter != null) {
+                groupCommitter.append(eventStreamId, lastSeenSequenceNumber, new ArrayList<>(unpublishedEvents));
+            } else if(eventBus != null) {
+                synchronized (publicationLock(eventStreamId)) {
+                    persist(eventStreamId, lastSeenSequenceNumber, unpublishedEvents);
+                    deliver(eventBus, unpublishedEvents);
+                }
+            } else {
+                persist(eventStreamId, lastSeenSequenceNumber, unpublishedEvents);
+            }
+        } catch (final ConcurrentModificationException cme) {
+            appendConflicts.increment();
+            throw cme;
+        }
+        appendLatency.recordSince(start);
+        appendBatchSize.record(unpublishedEvents.size());
+
+        final StreamTimeIndex timeIndex = timeIndexes.get(eventStreamId);
+        if(timeIndex != null) {
+            unpublishedEvents.forEach(timeIndex::record);
+        }
+    }
+
+    /**
+     * Persist and flush a publication directly, without group commit.
+     */
+    private void persist(final String eventStreamId, final int lastSeenSequenceNumber, final List<Event> events) {
+        final int head = eventRepository.retrieveLatestSequenceNumber(eventStreamId);
+        if(head != lastSeenSequenceNumber) {
+            throw GroupCommitter.conflict(eventStreamId, lastSeenSequenceNumber, head);
+        }
+
+        eventRepository.persistEvents(eventStreamId, events);
+        eventRepository.flush();
+    }
+
+    private Object publicationLock(final String eventStreamId) {
+        final int hash = eventStreamId.hashCode();
+        return publicationLocks[Math.floorMod(hash ^ (hash >>> 16), PUBLICATION_LOCK_COUNT)];
+    }
+
+    /**
+     * Hand persisted {@link Event}s to the {@link EventBus}. A bus that has been closed no longer delivers anything,
+     * which does not undo the publication: the {@link Event}s are durable and listeners can read them from the store.
+     */
+    static void deliver(final EventBus eventBus, final List<Event> events) {
+        try {
+            eventBus.publish(events);
+        } catch (final IllegalStateException ise) {
+            // EventBus closed
+        }
+    }
+
+    /**
+     * Assign {@link Event}s consecutive sequence numbers following the last seen sequence number, and the current time
+     * if they do not already have a timestamp.
+     */
+    static void prepareForPublication(final int lastSeenSequenceNumber, final List<Event> unpublishedEvents) {
+        final ZonedDateTime publicationTimestamp = ZonedDateTime.now();
+        int sequenceNumber = lastSeenSequenceNumber;
+        for(final Event event : unpublishedEvents) {
+            event.setSequenceNumber(++sequenceNumber);
+            if(event.getEventTimestamp() == null) {
+                event.setEventTimestamp(publicationTimestamp);
+            }
+        }
+    }
+
+    private List<Event> recordRead(final long startNanos, final List<Event> events) {
+        readLatency.recordSince(startNanos);
+        readBatchSize.record(events.size());
+        return events;
+    }
+
+    private Map<String, List<Event>> recordBulkRead(
+            final long startNanos, final Map<String, List<Event>> eventStreams) {
+        readLatency.recordSince(startNanos);
+        eventStreams.values().forEach(events -> readBatchSize.record(events.size()));
+        return eventStreams;
+    }
+
+    private static int replay(final Stream<Event> eventStream, final Consumer<? super Event> consumer) {
+        int eventsReplayed = 0;
+        try(final Stream<Event> events = eventStream) {
+            final Iterator<Event> iterator = events.iterator();
+            while(iterator.hasNext()) {
+                consumer.accept(iterator.next());
+                eventsReplayed++;
+            }
+        }
+
+        return eventsReplayed;
+    }
+
+    /**
+     * Bring the time index of a stream up to date, creating it if necessary, by recording every {@link Event} after
+     * the last one it has indexed. Publications through this service keep the index current, so the read normally
+     * finds nothing and only picks up {@link Event}s appended by other processes. The head of the stream is not looked
+     * up first, as stores without a direct lookup would read the whole stream to find it.
+     */
+    private StreamTimeIndex catchUpTimeIndex(final String eventStreamId) {
+        final StreamTimeIndex timeIndex =
+                timeIndexes.computeIfAbsent(eventStreamId, id -> new StreamTimeIndex(TIME_INDEX_INTERVAL));
+
+        try(final Stream<Event> events =
+                    streamEventsFromSequenceNumber(eventStreamId, timeIndex.getIndexedSequenceNumber() + 1)) {
+            events.forEach(timeIndex::record);
+        }
+
+        return timeIndex;
+    }
+
+    /**
+     * Stop accepting publications, waiting for any that are being group-committed to complete.
+     */
+    @Override
+    public void close() {
+        if(groupCommitter != null) {
+            groupCommitter.close();
+        }
+    }
+
+    /**
+     * {@link StreamTimeIndex}es by stream, in access order, dropping the least recently used beyond a maximum count.
+     */
+    private static final class TimeIndexCache extends LinkedHashMap<String, StreamTimeIndex> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maximumSize;
+
+        private TimeIndexCache(final int maximumSize) {
+            super(16, 0.75f, true);
+            this.maximumSize = maximumSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, StreamTimeIndex> eldest) {
+            return size() > maximumSize;
+        }
     }
 }
@@ -0,0 +1,129 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.event;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adapts a blocking {@link EventRepository} to {@link AsyncEventRepository} by running each operation on an
+ * {@link Executor}, so that callers composing futures are not blocked even though the executor's threads are.
+ * <p>
+ * The executor bounds how many operations reach the store at once; operations beyond that queue. On runtimes with
+ * virtual threads a virtual-thread-per-task executor can be supplied instead, so that blocked operations do not hold
+ * platform threads.
+ */
+public class ExecutorAsyncEventRepository implements AsyncEventRepository, AutoCloseable {
+
+    private final EventRepository eventRepository;
+
+    private final Executor executor;
+
+    /** Whether the executor was created by, and so is shut down with, this adapter. */
+    private final boolean ownsExecutor;
+
+    /**
+     * Create an adapter running at most {@code maximumConcurrency} operations at once on its own daemon threads,
+     * which are stopped by {@link #close()}.
+     *
+     * @param eventRepository Blocking repository to adapt
+     * @param maximumConcurrency Number of threads, and so of concurrent operations
+     */
+    public ExecutorAsyncEventRepository(final EventRepository eventRepository, final int maximumConcurrency) {
+        if(maximumConcurrency < 1) {
+            throw new IllegalArgumentException("maximumConcurrency must be positive");
+        }
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        final ThreadPoolExecutor threadPool = new ThreadPoolExecutor(
+                maximumConcurrency,
+                maximumConcurrency,
+                30,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    final Thread thread =
+                            new Thread(runnable, "zaes-async-repository-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        threadPool.allowCoreThreadTimeOut(true);
+
+        this.eventRepository = Objects.requireNonNull(eventRepository);
+        this.executor = threadPool;
+        this.ownsExecutor = true;
+    }
+
+    /**
+     * @param eventRepository Blocking repository to adapt
+     * @param executor Executor to run operations on, which remains owned by the caller
+     */
+    public ExecutorAsyncEventRepository(final EventRepository eventRepository, final Executor executor) {
+        this.eventRepository = Objects.requireNonNull(eventRepository);
+        this.executor = Objects.requireNonNull(executor);
+        this.ownsExecutor = false;
+    }
+
+    @Override
+    public CompletableFuture<List<Event>> retrieveEventStream(
+            final String eventStreamId, final int startSequenceNumber, final int endSequenceNumber) {
+        return CompletableFuture.supplyAsync(
+                () -> {
+                    final List<Event> events =
+                            eventRepository.retrieveEventStream(eventStreamId, startSequenceNumber, endSequenceNumber);
+                    return events == null ? Collections.<Event>emptyList() : events;
+                },
+                executor);
+    }
+
+    @Override
+    public CompletableFuture<Integer> retrieveLatestSequenceNumber(final String eventStreamId) {
+        return CompletableFuture.supplyAsync(
+                () -> eventRepository.retrieveLatestSequenceNumber(eventStreamId), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> persistEvents(final String eventStreamId, final List<Event> events) {
+        return CompletableFuture.runAsync(
+                () -> {
+                    eventRepository.persistEvents(eventStreamId, events);
+                    eventRepository.flush();
+                },
+                executor);
+    }
+
+    /**
+     * Stop the adapter's own threads once queued operations are complete; an executor supplied by the caller is left
+     * running.
+     */
+    @Override
+    public void close() {
+        if(ownsExecutor) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.event;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Settings controlling how an {@link EventService} gathers concurrent appends into a single batch before persisting
+ * and flushing them together.
+ */
+public final class GroupCommitPolicy {
+
+    /** Longest time to wait for further appends after the first append of a batch has arrived. */
+    private final Duration maximumWait;
+
+    /** Largest number of {@link Event}s to gather into a single batch. */
+    private final int maximumBatchSize;
+
+    /**
+     * @param maximumWait Longest time to wait for further appends once a batch has been started
+     * @param maximumBatchSize Number of {@link Event}s after which a batch is committed without further waiting
+     */
+    public GroupCommitPolicy(final Duration maximumWait, final int maximumBatchSize) {
+        if(maximumWait.isNegative()) {
+            throw new IllegalArgumentException("maximumWait must not be negative");
+        }
+        if(maximumBatchSize < 1) {
+            throw new IllegalArgumentException("maximumBatchSize must be positive");
+        }
+
+        this.maximumWait = Objects.requireNonNull(maximumWait);
+        this.maximumBatchSize = maximumBatchSize;
+    }
+
+    public Duration getMaximumWait() {
+        return maximumWait;
+    }
+
+    public int getMaximumBatchSize() {
+        return maximumBatchSize;
+    }
+}
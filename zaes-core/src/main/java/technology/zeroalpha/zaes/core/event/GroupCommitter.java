@@ -0,0 +1,336 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.event;
+
+import technology.zeroalpha.zaes.core.listener.EventBus;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gathers appends from many threads into batches that are written to the {@link EventRepository} and flushed once,
+ * in the manner of a write-ahead log. A single committer thread checks each append against the head of its stream,
+ * so appends conflicting with one another are rejected before reaching the repository. Committed {@link Event}s are
+ * handed to the {@link EventBus}, if any, from the committer thread, so listeners receive them in commit order.
+ */
+final class GroupCommitter implements AutoCloseable {
+
+    /** How long the committer thread waits for an append before checking whether it has been closed. */
+    private static final long IDLE_POLL_MILLISECONDS = 100;
+
+    private final EventRepository eventRepository;
+
+    private final GroupCommitPolicy groupCommitPolicy;
+
+    /** Bus to deliver committed {@link Event}s to, or null if there is none. */
+    private final EventBus eventBus;
+
+    private final BlockingQueue<PendingAppend> pendingAppends = new LinkedBlockingQueue<>();
+
+    private final Thread committerThread;
+
+    /** Cleared on close; guarded by {@code this} so that no append can be queued after the committer has stopped. */
+    private volatile boolean running = true;
+
+    /** Error that stopped the committer thread, or null if it is running or was closed; guarded by {@code this}. */
+    private Throwable failure;
+
+    GroupCommitter(
+            final EventRepository eventRepository,
+            final GroupCommitPolicy groupCommitPolicy,
+            final EventBus eventBus) {
+        this.eventRepository = eventRepository;
+        this.groupCommitPolicy = groupCommitPolicy;
+        this.eventBus = eventBus;
+        this.committerThread = new Thread(this::commitLoop, "zaes-group-commit");
+        this.committerThread.setDaemon(true);
+        this.committerThread.start();
+    }
+
+    /**
+     * Queue the {@link Event}s for the next batch and wait until the batch has been committed.
+     *
+     * @throws ConcurrentModificationException If the stream head no longer matches the last seen sequence number
+     */
+    void append(final String eventStreamId, final int lastSeenSequenceNumber, final List<Event> events)
+            throws ConcurrentModificationException {
+        final PendingAppend pendingAppend = new PendingAppend(eventStreamId, lastSeenSequenceNumber, events);
+        synchronized (this) {
+            if(!running) {
+                throw failure == null
+                        ? new IllegalStateException("EventService has been closed")
+                        : new IllegalStateException("Group committer has stopped", failure);
+            }
+            pendingAppends.add(pendingAppend);
+        }
+
+        try {
+            pendingAppend.result.get();
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for events to be committed", ie);
+        } catch (final ExecutionException ee) {
+            if(ee.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ee.getCause();
+            }
+            throw new IllegalStateException(ee.getCause());
+        }
+    }
+
+    /**
+     * Stop accepting appends and wait for those already queued to be committed.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            running = false;
+        }
+
+        try {
+            committerThread.join();
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gather and commit batches until closed. Anything thrown while committing a batch, including an {@link Error}
+     * from the {@link EventRepository}, fails the appends in that batch only. If the loop itself fails, the committer
+     * stops: appends already queued fail, and later ones are rejected rather than waiting for a commit that will never
+     * come.
+     */
+    private void commitLoop() {
+        final List<PendingAppend> batch = new ArrayList<>();
+        try {
+            while(running || !pendingAppends.isEmpty()) {
+                try {
+                    final PendingAppend first = pendingAppends.poll(IDLE_POLL_MILLISECONDS, TimeUnit.MILLISECONDS);
+                    if(first == null) {
+                        continue;
+                    }
+
+                    batch.add(first);
+                    gather(batch);
+                } catch (final InterruptedException ie) {
+                    // Commit whatever has been gathered so that waiting callers are released
+                }
+
+                if(!batch.isEmpty()) {
+                    try {
+                        commit(batch);
+                    } catch (final Throwable t) {
+                        fail(batch, t);
+                    }
+                    batch.clear();
+                }
+            }
+        } catch (final Throwable t) {
+            fail(batch, t);
+            stop(t);
+            throw t;
+        }
+    }
+
+    /**
+     * Stop accepting appends after the committer thread has failed, and fail those still queued.
+     */
+    private void stop(final Throwable cause) {
+        synchronized (this) {
+            running = false;
+            failure = cause;
+        }
+
+        final List<PendingAppend> queued = new ArrayList<>();
+        pendingAppends.drainTo(queued);
+        fail(queued, cause);
+    }
+
+    /**
+     * Fail every append not already completed; appends the batch has already resolved are left as they are.
+     */
+    private static void fail(final List<PendingAppend> appends, final Throwable cause) {
+        appends.forEach(pendingAppend -> pendingAppend.result.completeExceptionally(cause));
+    }
+
+    /**
+     * Add further appends to the batch until the maximum wait has elapsed or the batch is full.
+     */
+    private void gather(final List<PendingAppend> batch) throws InterruptedException {
+        int batchSize = batch.get(0).events.size();
+        final long deadline = System.nanoTime() + groupCommitPolicy.getMaximumWait().toNanos();
+
+        while(batchSize < groupCommitPolicy.getMaximumBatchSize()) {
+            final PendingAppend next = pendingAppends.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if(next == null) {
+                return;
+            }
+
+            batch.add(next);
+            batchSize += next.events.size();
+        }
+    }
+
+    private void commit(final List<PendingAppend> batch) {
+        final Map<String, Integer> streamHeads = new HashMap<>();
+        final Map<String, Integer> startingHeads = new HashMap<>();
+        final Map<String, List<Event>> eventStreams = new LinkedHashMap<>();
+        final List<PendingAppend> accepted = new ArrayList<>(batch.size());
+
+        for(final PendingAppend pendingAppend : batch) {
+            try {
+                final int head = streamHeads.computeIfAbsent(
+                        pendingAppend.eventStreamId, eventRepository::retrieveLatestSequenceNumber);
+                if(head != pendingAppend.lastSeenSequenceNumber) {
+                    pendingAppend.result.completeExceptionally(
+                            conflict(pendingAppend.eventStreamId, pendingAppend.lastSeenSequenceNumber, head));
+                    continue;
+                }
+            } catch (final RuntimeException re) {
+                pendingAppend.result.completeExceptionally(re);
+                continue;
+            }
+
+            eventStreams.computeIfAbsent(pendingAppend.eventStreamId, id -> new ArrayList<>())
+                    .addAll(pendingAppend.events);
+            startingHeads.putIfAbsent(pendingAppend.eventStreamId, pendingAppend.lastSeenSequenceNumber);
+            streamHeads.put(
+                    pendingAppend.eventStreamId,
+                    pendingAppend.lastSeenSequenceNumber + pendingAppend.events.size());
+            accepted.add(pendingAppend);
+        }
+
+        if(accepted.isEmpty()) {
+            return;
+        }
+
+        try {
+            eventRepository.persistEventBatch(eventStreams);
+            eventRepository.flush();
+            complete(accepted);
+        } catch (final ConcurrentModificationException cme) {
+            if(eventRepository.isBatchAtomic()) {
+                commitIndividually(accepted, Collections.emptyList());
+            } else {
+                recoverPartialBatch(accepted, startingHeads, streamHeads);
+            }
+        } catch (final RuntimeException re) {
+            accepted.forEach(pendingAppend -> pendingAppend.result.completeExceptionally(re));
+        }
+    }
+
+    /**
+     * Work out which streams of a rejected batch that was not written atomically made it to the repository, by
+     * re-reading their heads. Appends to streams that reached the head the batch would have left them at are treated
+     * as persisted; streams still at their starting head are retried individually; any other head means another
+     * writer got in first, so those appends conflict.
+     */
+    private void recoverPartialBatch(
+            final List<PendingAppend> appends,
+            final Map<String, Integer> startingHeads,
+            final Map<String, Integer> committedHeads) {
+        final Map<String, Integer> heads = new HashMap<>();
+        final List<PendingAppend> persisted = new ArrayList<>(appends.size());
+        final List<PendingAppend> unwritten = new ArrayList<>(appends.size());
+        for(final PendingAppend pendingAppend : appends) {
+            final int head;
+            try {
+                head = heads.computeIfAbsent(
+                        pendingAppend.eventStreamId, eventRepository::retrieveLatestSequenceNumber);
+            } catch (final RuntimeException re) {
+                pendingAppend.result.completeExceptionally(re);
+                continue;
+            }
+
+            if(head == committedHeads.get(pendingAppend.eventStreamId)) {
+                persisted.add(pendingAppend);
+            } else if(head == startingHeads.get(pendingAppend.eventStreamId)) {
+                unwritten.add(pendingAppend);
+            } else {
+                pendingAppend.result.completeExceptionally(
+                        conflict(pendingAppend.eventStreamId, pendingAppend.lastSeenSequenceNumber, head));
+            }
+        }
+
+        commitIndividually(unwritten, persisted);
+    }
+
+    /**
+     * Fall back to persisting each append on its own after the batch was rejected (e.g. because another process wrote
+     * to one of its streams), so that only conflicting appends fail. Appends already known to have been written by
+     * the batch are flushed and completed along with them.
+     */
+    private void commitIndividually(final List<PendingAppend> appends, final List<PendingAppend> alreadyPersisted) {
+        final List<PendingAppend> persisted = new ArrayList<>(alreadyPersisted);
+        for(final PendingAppend pendingAppend : appends) {
+            try {
+                eventRepository.persistEvents(pendingAppend.eventStreamId, pendingAppend.events);
+                persisted.add(pendingAppend);
+            } catch (final RuntimeException re) {
+                pendingAppend.result.completeExceptionally(re);
+            }
+        }
+
+        try {
+            eventRepository.flush();
+        } catch (final RuntimeException re) {
+            persisted.forEach(pendingAppend -> pendingAppend.result.completeExceptionally(re));
+            return;
+        }
+        complete(persisted);
+    }
+
+    /**
+     * Deliver durably committed appends to the {@link EventBus} and release their callers.
+     */
+    private void complete(final List<PendingAppend> committed) {
+        for(final PendingAppend pendingAppend : committed) {
+            if(eventBus != null) {
+                EventService.deliver(eventBus, pendingAppend.events);
+            }
+            pendingAppend.result.complete(null);
+        }
+    }
+
+    static ConcurrentModificationException conflict(
+            final String eventStreamId, final int lastSeenSequenceNumber, final int head) {
+        return new ConcurrentModificationException("Event Stream " + eventStreamId + " is at sequence number " + head
+                + " but last seen sequence number was " + lastSeenSequenceNumber);
+    }
+
+    private static final class PendingAppend {
+
+        private final String eventStreamId;
+
+        private final int lastSeenSequenceNumber;
+
+        private final List<Event> events;
+
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        private PendingAppend(final String eventStreamId, final int lastSeenSequenceNumber, final List<Event> events) {
+            this.eventStreamId = eventStreamId;
+            this.lastSeenSequenceNumber = lastSeenSequenceNumber;
+            this.events = events;
+        }
+    }
+}
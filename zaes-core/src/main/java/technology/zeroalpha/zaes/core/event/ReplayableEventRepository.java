@@ -0,0 +1,73 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.event;
+
+import technology.zeroalpha.zaes.core.aggregate.AggregateId;
+import technology.zeroalpha.zaes.core.event.serialization.EventSerializer;
+import technology.zeroalpha.zaes.core.event.serialization.ReusableEvents;
+
+import java.util.function.Consumer;
+
+/**
+ * {@link EventRepository} that can replay a stream to a callback rather than return it, for rebuilding state. As the
+ * callback is finished with each {@link Event} before the next is read, a replay may reuse instances: stores pass a
+ * {@link ReusableEvents} to {@link EventSerializer#deserialize(java.nio.ByteBuffer, ReusableEvents)}, so that
+ * {@link Event} classes which opt in are decoded into one instance per class, and set timestamps in their compact form.
+ * Callbacks must therefore not retain the {@link Event}s they are given.
+ * <p>
+ * {@link EventService#replayEvents(String, int, int, Consumer)} uses this interface when the store implements it, and
+ * streams the {@link Event}s otherwise.
+ */
+public interface ReplayableEventRepository extends EventRepository {
+
+    /**
+     * Pass {@link Event}s, in order, of the given Event Stream to the callback, between the provided sequence numbers
+     * (inclusive).
+     *
+     * @param eventStreamId Identifier of stream
+     * @param startSequenceNumber First sequence number to replay
+     * @param endSequenceNumber Last sequence number to replay
+     * @param consumer Callback applying each {@link Event}, which must not retain it
+     * @return Number of {@link Event}s replayed
+     */
+    int replayEventStream(
+            final String eventStreamId,
+            final int startSequenceNumber,
+            final int endSequenceNumber,
+            final Consumer<? super Event> consumer);
+
+    /**
+     * Replay {@link Event}s of the stream of the {@link AggregateId}; see
+     * {@link #replayEventStream(String, int, int, Consumer)}. The default implementation uses the text form of the
+     * identifier.
+     *
+     * @param aggregateId Compact identifier of stream
+     * @param startSequenceNumber First sequence number to replay
+     * @param endSequenceNumber Last sequence number to replay
+     * @param consumer Callback applying each {@link Event}, which must not retain it
+     * @return Number of {@link Event}s replayed
+     */
+    default int replayEventStream(
+            final AggregateId aggregateId,
+            final int startSequenceNumber,
+            final int endSequenceNumber,
+            final Consumer<? super Event> consumer) {
+        return replayEventStream(aggregateId.toString(), startSequenceNumber, endSequenceNumber, consumer);
+    }
+}
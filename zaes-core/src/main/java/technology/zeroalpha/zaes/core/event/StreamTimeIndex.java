@@ -0,0 +1,151 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.event;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Sparse index of a single Event Stream from {@link Event} timestamp to sequence number. The timestamp of every
+ * {@code interval}th {@link Event} is sampled, so a binary search over the samples narrows a date range down to a
+ * sequence number range that overshoots the matching {@link Event}s by at most one interval at each end.
+ * <p>
+ * The index relies on timestamps never decreasing along the stream. If an out-of-order timestamp is seen the index
+ * marks itself as unordered and callers must fall back to filtering the stream. {@link Event}s without a timestamp
+ * fall within no date range, so they are passed over without being sampled.
+ */
+final class StreamTimeIndex {
+
+    private final int interval;
+
+    /** Sampled timestamps, in microseconds since the epoch (rounded down). */
+    private long[] sampleTimestamps = new long[8];
+
+    private int[] sampleSequenceNumbers = new int[8];
+
+    private int sampleCount;
+
+    /** Sequence number of the last {@link Event} recorded. */
+    private int indexedSequenceNumber;
+
+    /** Timestamp of the last {@link Event} recorded, in microseconds since the epoch. */
+    private long latestTimestamp = Long.MIN_VALUE;
+
+    private boolean ordered = true;
+
+    StreamTimeIndex(final int interval) {
+        this.interval = interval;
+    }
+
+    synchronized int getIndexedSequenceNumber() {
+        return indexedSequenceNumber;
+    }
+
+    synchronized boolean isOrdered() {
+        return ordered;
+    }
+
+    /**
+     * Record the next {@link Event} in the stream. {@link Event}s that do not directly follow the last one recorded
+     * are ignored, to be picked up when the index next catches up with the stream.
+     *
+     * @param event {@link Event} to record
+     */
+    synchronized void record(final Event event) {
+        if(event.getSequenceNumber() != indexedSequenceNumber + 1) {
+            return;
+        }
+
+        indexedSequenceNumber = event.getSequenceNumber();
+        if(event.getEventTimestamp() == null) {
+            return;
+        }
+
+        final long timestamp = toMicros(event.getEventTimestamp().toInstant());
+        if(timestamp < latestTimestamp) {
+            ordered = false;
+        }
+        latestTimestamp = timestamp;
+
+        if(sampleCount == 0 || indexedSequenceNumber - sampleSequenceNumbers[sampleCount - 1] >= interval) {
+            if(sampleCount == sampleTimestamps.length) {
+                sampleTimestamps = Arrays.copyOf(sampleTimestamps, sampleCount * 2);
+                sampleSequenceNumbers = Arrays.copyOf(sampleSequenceNumbers, sampleCount * 2);
+            }
+            sampleTimestamps[sampleCount] = timestamp;
+            sampleSequenceNumbers[sampleCount] = indexedSequenceNumber;
+            sampleCount++;
+        }
+    }
+
+    /**
+     * @param instant Start of a date range
+     * @return Sequence number at or before the first {@link Event} with a timestamp at or after the instant
+     */
+    synchronized int firstSequenceNumberFrom(final Instant instant) {
+        // Last sample strictly before the instant; every earlier Event is also before it
+        final int sample = firstSample(toMicros(instant), true) - 1;
+        return sample < 0 ? Integer.MIN_VALUE : sampleSequenceNumbers[sample];
+    }
+
+    /**
+     * @param instant End of a date range
+     * @return Sequence number at or after the last {@link Event} with a timestamp at or before the instant
+     */
+    synchronized int lastSequenceNumberTo(final Instant instant) {
+        // First sample strictly after the instant; every later Event is also after it
+        final int sample = firstSample(toMicros(instant), false);
+        return sample == sampleCount ? Integer.MAX_VALUE : sampleSequenceNumbers[sample] - 1;
+    }
+
+    /**
+     * @param timestamp Timestamp to search for, in microseconds since the epoch
+     * @param inclusive Whether a sample equal to the timestamp matches
+     * @return Index of the first sample with a timestamp after (or equal to, if inclusive) the given one, or the
+     *         sample count if there is none
+     */
+    private int firstSample(final long timestamp, final boolean inclusive) {
+        int low = 0;
+        int high = sampleCount;
+        while(low < high) {
+            final int middle = (low + high) >>> 1;
+            if(sampleTimestamps[middle] > timestamp || (inclusive && sampleTimestamps[middle] == timestamp)) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * @return Microseconds since the epoch, rounded down, saturating at the limits of a long
+     */
+    private static long toMicros(final Instant instant) {
+        if(instant.getEpochSecond() >= Long.MAX_VALUE / 1_000_000L) {
+            return Long.MAX_VALUE;
+        }
+        if(instant.getEpochSecond() <= Long.MIN_VALUE / 1_000_000L) {
+            return Long.MIN_VALUE;
+        }
+
+        return instant.getEpochSecond() * 1_000_000L + instant.getNano() / 1_000;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.event.codec;
+
+import technology.zeroalpha.zaes.core.event.Event;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.function.ToIntFunction;
+
+/**
+ * Encodes {@link Event}s as a fixed-layout header followed by a payload written by the {@link PayloadCodec}
+ * registered for the {@link Event}'s class:
+ * <pre>
+ *   unsigned short  type identifier, from the {@link EventTypeRegistry}
+ *   int             sequence number
+ *   long            timestamp, in microseconds since the epoch
+ *   int             length of payload, followed by the payload
+ * </pre>
+ * As the header is a fixed size, the fields of an encoded {@link Event} can be read without decoding its payload; see
+ * {@link EncodedEvent}. Timestamps are stored as UTC instants truncated to microseconds, so decoded {@link Event}s
+ * have UTC timestamps. Buffers must use big-endian byte order, the {@link ByteBuffer} default.
+ */
+public class BinaryEventCodec {
+
+    public static final int TYPE_ID_OFFSET = 0;
+
+    public static final int SEQUENCE_NUMBER_OFFSET = 2;
+
+    public static final int TIMESTAMP_OFFSET = 6;
+
+    public static final int PAYLOAD_LENGTH_OFFSET = 14;
+
+    public static final int HEADER_LENGTH = 18;
+
+    /** Timestamp recorded for {@link Event}s without one. */
+    static final long NO_TIMESTAMP = Event.NO_TIMESTAMP;
+
+    private static final int INITIAL_BUFFER_SIZE = 256;
+
+    private final EventTypeRegistry eventTypeRegistry;
+
+    /** Per-thread buffer that {@link Event}s are encoded into before being copied to an array of the exact size. */
+    private final ThreadLocal<ByteBuffer> scratchBuffer =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(INITIAL_BUFFER_SIZE));
+
+    /**
+     * @param eventTypeRegistry Registry of the {@link Event} classes that can be encoded
+     */
+    public BinaryEventCodec(final EventTypeRegistry eventTypeRegistry) {
+        this.eventTypeRegistry = eventTypeRegistry;
+    }
+
+    public EventTypeRegistry getEventTypeRegistry() {
+        return eventTypeRegistry;
+    }
+
+    /**
+     * Encode an {@link Event} at the buffer's position, advancing it.
+     *
+     * @param event {@link Event} to encode
+     * @param buffer Buffer to write to
+     * @return Number of bytes written
+     * @throws BufferOverflowException If the buffer does not have enough space remaining, in which case its position
+     *         is unchanged
+     * @throws IllegalArgumentException If the {@link Event}'s class has not been registered
+     */
+    public int encode(final Event event, final ByteBuffer buffer) {
+        final int typeId = eventTypeRegistry.typeIdOf(event.getClass());
+        final int start = buffer.position();
+        try {
+            buffer.putShort((short) typeId);
+            buffer.putInt(event.getSequenceNumber());
+            buffer.putLong(event.getTimestampMicros());
+            buffer.position(start + HEADER_LENGTH);
+            eventTypeRegistry.codecFor(typeId).encode(event, buffer);
+        } catch (final RuntimeException re) {
+            buffer.position(start);
+            throw re;
+        }
+
+        final int payloadLength = buffer.position() - start - HEADER_LENGTH;
+        buffer.putInt(start + PAYLOAD_LENGTH_OFFSET, payloadLength);
+        return HEADER_LENGTH + payloadLength;
+    }
+
+    /**
+     * @param event {@link Event} to encode
+     * @return Encoded {@link Event}
+     * @throws IllegalArgumentException If the {@link Event}'s class has not been registered
+     */
+    public byte[] encode(final Event event) {
+        return encodeToArray(buffer -> encode(event, buffer));
+    }
+
+    /**
+     * Decode the {@link Event} at the buffer's position, advancing it past the {@link Event}.
+     *
+     * @param buffer Buffer to read from
+     * @return Decoded {@link Event}
+     * @throws IllegalStateException If the {@link Event}'s type identifier is not registered
+     */
+    public Event decode(final ByteBuffer buffer) {
+        final EncodedEvent encodedEvent = wrap(buffer, buffer.position());
+        buffer.position(buffer.position() + encodedEvent.getEncodedLength());
+        return encodedEvent.getEvent();
+    }
+
+    /**
+     * @param bytes Encoded {@link Event}
+     * @return Decoded {@link Event}
+     * @throws IllegalStateException If the {@link Event}'s type identifier is not registered
+     */
+    public Event decode(final byte[] bytes) {
+        return decode(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * @param buffer Buffer holding an encoded {@link Event}
+     * @param offset Offset of the {@link Event} in the buffer
+     * @return View of the encoded {@link Event}, whose payload is only decoded if requested
+     */
+    public EncodedEvent wrap(final ByteBuffer buffer, final int offset) {
+        return new EncodedEvent(eventTypeRegistry).wrap(buffer, offset);
+    }
+
+    /**
+     * Encode into the calling thread's scratch buffer, growing it until the encoding fits, then copy the result.
+     *
+     * @param encoder Writes at the buffer's position and returns the number of bytes written
+     */
+    byte[] encodeToArray(final ToIntFunction<ByteBuffer> encoder) {
+        ByteBuffer buffer = scratchBuffer.get();
+        while(true) {
+            buffer.clear();
+            try {
+                final int length = encoder.applyAsInt(buffer);
+                return Arrays.copyOf(buffer.array(), length);
+            } catch (final BufferOverflowException boe) {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+                scratchBuffer.set(buffer);
+            }
+        }
+    }
+
+    static ZonedDateTime fromMicros(final long micros) {
+        if(micros == NO_TIMESTAMP) {
+            return null;
+        }
+
+        return ZonedDateTime.ofInstant(
+                Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L),
+                ZoneOffset.UTC);
+    }
+}
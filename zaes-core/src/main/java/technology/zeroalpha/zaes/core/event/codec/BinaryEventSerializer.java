@@ -0,0 +1,77 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.event.codec;
+
+import technology.zeroalpha.zaes.core.event.Event;
+import technology.zeroalpha.zaes.core.event.serialization.EventSerializer;
+import technology.zeroalpha.zaes.core.event.serialization.ReusableEvents;
+
+import java.nio.ByteBuffer;
+
+/**
+ * {@link EventSerializer} writing an {@link Event}'s type identifier followed by its {@link PayloadCodec} payload, for
+ * stores that keep the sequence number and timestamp in their own record headers. Payloads in buffers are decoded in
+ * place, and during replays an {@link Event} class whose {@link PayloadCodec} opts in to reuse is decoded into one
+ * instance per class.
+ */
+public class BinaryEventSerializer implements EventSerializer {
+
+    private final BinaryEventCodec binaryEventCodec;
+
+    /**
+     * @param eventTypeRegistry Registry of the {@link Event} classes that can be serialized
+     */
+    public BinaryEventSerializer(final EventTypeRegistry eventTypeRegistry) {
+        this.binaryEventCodec = new BinaryEventCodec(eventTypeRegistry);
+    }
+
+    @Override
+    public byte[] serialize(final Event event) {
+        final EventTypeRegistry eventTypeRegistry = binaryEventCodec.getEventTypeRegistry();
+        final int typeId = eventTypeRegistry.typeIdOf(event.getClass());
+        return binaryEventCodec.encodeToArray(buffer -> {
+            buffer.putShort((short) typeId);
+            eventTypeRegistry.codecFor(typeId).encode(event, buffer);
+            return buffer.position();
+        });
+    }
+
+    @Override
+    public Event deserialize(final byte[] payload) {
+        final ByteBuffer buffer = ByteBuffer.wrap(payload);
+        final int typeId = buffer.getShort() & 0xFFFF;
+        return binaryEventCodec.getEventTypeRegistry().codecFor(typeId).decode(buffer.slice());
+    }
+
+    @Override
+    public Event deserialize(final ByteBuffer payload) {
+        final int typeId = payload.getShort() & 0xFFFF;
+        return binaryEventCodec.getEventTypeRegistry().codecFor(typeId).decode(payload);
+    }
+
+    @Override
+    public Event deserialize(final ByteBuffer payload, final ReusableEvents reusableEvents) {
+        final int typeId = payload.getShort() & 0xFFFF;
+        final Event event =
+                binaryEventCodec.getEventTypeRegistry().codecFor(typeId).decode(payload, reusableEvents.get(typeId));
+        reusableEvents.put(typeId, event);
+
+        return event;
+    }
+}
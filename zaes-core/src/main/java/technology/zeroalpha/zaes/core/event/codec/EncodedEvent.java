@@ -0,0 +1,123 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.event.codec;
+
+import technology.zeroalpha.zaes.core.event.Event;
+
+import java.nio.ByteBuffer;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+/**
+ * Flyweight view of an {@link Event} encoded by a {@link BinaryEventCodec}. Header fields are read directly from the
+ * buffer, and the payload is only decoded when {@link #getEvent()} is called, so scans that filter on the header do
+ * not pay for decoding the {@link Event}s they skip. A view may be pointed at successive {@link Event}s with
+ * {@link #wrap(ByteBuffer, int)} to avoid allocating one per {@link Event}.
+ * <p>
+ * Views are not thread-safe, and are only valid while the underlying buffer is unchanged.
+ */
+public final class EncodedEvent {
+
+    private final EventTypeRegistry eventTypeRegistry;
+
+    private ByteBuffer buffer;
+
+    private int offset;
+
+    /** {@link Event} decoded from the current position, or null if it has not yet been decoded. */
+    private Event event;
+
+    /**
+     * @param eventTypeRegistry Registry used to decode payloads
+     */
+    public EncodedEvent(final EventTypeRegistry eventTypeRegistry) {
+        this.eventTypeRegistry = eventTypeRegistry;
+    }
+
+    /**
+     * Point this view at an encoded {@link Event}.
+     *
+     * @param buffer Buffer holding the {@link Event}
+     * @param offset Offset of the {@link Event} in the buffer
+     * @return This view
+     */
+    public EncodedEvent wrap(final ByteBuffer buffer, final int offset) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.event = null;
+        return this;
+    }
+
+    public int getTypeId() {
+        return buffer.getShort(offset + BinaryEventCodec.TYPE_ID_OFFSET) & 0xFFFF;
+    }
+
+    public int getSequenceNumber() {
+        return buffer.getInt(offset + BinaryEventCodec.SEQUENCE_NUMBER_OFFSET);
+    }
+
+    /**
+     * @return Timestamp in microseconds since the epoch, or {@link Long#MIN_VALUE} if the {@link Event} has none
+     */
+    public long getTimestampMicros() {
+        return buffer.getLong(offset + BinaryEventCodec.TIMESTAMP_OFFSET);
+    }
+
+    /**
+     * @return Timestamp in UTC, or null if the {@link Event} has none
+     */
+    public ZonedDateTime getEventTimestamp() {
+        return BinaryEventCodec.fromMicros(getTimestampMicros());
+    }
+
+    public int getPayloadLength() {
+        return buffer.getInt(offset + BinaryEventCodec.PAYLOAD_LENGTH_OFFSET);
+    }
+
+    /**
+     * @return Total length of the encoded {@link Event}, i.e. the offset of the next {@link Event} in a sequence
+     */
+    public int getEncodedLength() {
+        return BinaryEventCodec.HEADER_LENGTH + getPayloadLength();
+    }
+
+    /**
+     * @return Read-only view of the payload bytes
+     */
+    public ByteBuffer getPayload() {
+        final ByteBuffer payload = buffer.asReadOnlyBuffer();
+        payload.limit(offset + getEncodedLength()).position(offset + BinaryEventCodec.HEADER_LENGTH);
+        return payload.slice();
+    }
+
+    /**
+     * @return {@link Event}, decoded on the first call for the current position
+     * @throws IllegalStateException If the {@link Event}'s type identifier is not registered
+     */
+    public Event getEvent() {
+        if(event == null) {
+            final Event decoded = eventTypeRegistry.codecFor(getTypeId()).decode(getPayload());
+            decoded.setSequenceNumber(getSequenceNumber());
+            decoded.setEventTimestamp(getTimestampMicros(), ZoneOffset.UTC);
+            event = decoded;
+        }
+
+        return event;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.event.codec;
+
+import technology.zeroalpha.zaes.core.event.Event;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps {@link Event} classes to the compact numeric type identifiers written in encoded {@link Event} headers, and
+ * to the {@link PayloadCodec}s used for their payloads. Type identifiers are part of the stored format, so once
+ * assigned they must not be reused for a different class.
+ * <p>
+ * Classes should be registered during start-up; lookups are lock-free and may run concurrently with registration.
+ */
+public class EventTypeRegistry {
+
+    /** Largest type identifier, so that identifiers fit in the two bytes reserved in the header. */
+    public static final int MAXIMUM_TYPE_ID = 0xFFFF;
+
+    private final Map<Class<?>, Integer> typeIds = new ConcurrentHashMap<>();
+
+    /** {@link PayloadCodec}s indexed by type identifier; replaced, rather than modified, when a type is added. */
+    private volatile PayloadCodec<?>[] codecs = new PayloadCodec<?>[0];
+
+    /**
+     * @param typeId Identifier of the type, between zero and {@link #MAXIMUM_TYPE_ID}
+     * @param eventClass Class of {@link Event}
+     * @param payloadCodec Codec for the {@link Event}'s payload
+     * @param <E> Type of {@link Event}
+     * @return This registry
+     * @throws IllegalArgumentException If the identifier is out of range, or it or the class is already registered
+     */
+    public synchronized <E extends Event> EventTypeRegistry register(
+            final int typeId, final Class<E> eventClass, final PayloadCodec<E> payloadCodec) {
+        if(typeId < 0 || typeId > MAXIMUM_TYPE_ID) {
+            throw new IllegalArgumentException("Type identifier " + typeId + " out of range");
+        }
+        if(typeIds.containsKey(eventClass)) {
+            throw new IllegalArgumentException(eventClass.getName() + " is already registered");
+        }
+        if(typeId < codecs.length && codecs[typeId] != null) {
+            throw new IllegalArgumentException("Type identifier " + typeId + " is already registered");
+        }
+
+        final PayloadCodec<?>[] newCodecs = Arrays.copyOf(codecs, Math.max(codecs.length, typeId + 1));
+        newCodecs[typeId] = payloadCodec;
+        codecs = newCodecs;
+        typeIds.put(eventClass, typeId);
+
+        return this;
+    }
+
+    /**
+     * @param eventClass Class of {@link Event}
+     * @return Type identifier of the class
+     * @throws IllegalArgumentException If the class has not been registered
+     */
+    public int typeIdOf(final Class<? extends Event> eventClass) {
+        final Integer typeId = typeIds.get(eventClass);
+        if(typeId == null) {
+            throw new IllegalArgumentException(eventClass.getName() + " has not been registered");
+        }
+
+        return typeId;
+    }
+
+    /**
+     * @param typeId Type identifier
+     * @return Codec registered for the type
+     * @throws IllegalStateException If no class is registered with the identifier, e.g. when reading data written by
+     *         a newer version of the application
+     */
+    @SuppressWarnings("unchecked")
+    public PayloadCodec<Event> codecFor(final int typeId) {
+        final PayloadCodec<?>[] currentCodecs = codecs;
+        if(typeId < 0 || typeId >= currentCodecs.length || currentCodecs[typeId] == null) {
+            throw new IllegalStateException("Unknown event type identifier " + typeId);
+        }
+
+        return (PayloadCodec<Event>) currentCodecs[typeId];
+    }
+}
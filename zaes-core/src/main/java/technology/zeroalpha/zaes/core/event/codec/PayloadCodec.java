@@ -0,0 +1,67 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.event.codec;
+
+import technology.zeroalpha.zaes.core.event.Event;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts the payload of one {@link Event} class to and from a compact binary form. Header fields (type, sequence
+ * number and timestamp) are written by the {@link BinaryEventCodec}, so codecs only handle the fields their
+ * {@link Event} class declares.
+ *
+ * @param <E> Type of {@link Event}
+ */
+public interface PayloadCodec<E extends Event> {
+
+    /**
+     * Write the {@link Event}'s payload at the buffer's position, advancing it. If the buffer does not have enough
+     * space remaining a {@link java.nio.BufferOverflowException} may be thrown, in which case the caller retries with
+     * a larger buffer.
+     *
+     * @param event {@link Event} to encode
+     * @param buffer Buffer to write to
+     */
+    void encode(final E event, final ByteBuffer buffer);
+
+    /**
+     * Read a payload written by {@link #encode(Event, ByteBuffer)}.
+     *
+     * @param buffer Buffer positioned at the start of the payload, and limited to its end
+     * @return {@link Event} with its payload restored; header fields are populated by the caller
+     */
+    E decode(final ByteBuffer buffer);
+
+    /**
+     * Read a payload into an existing instance, if this codec's {@link Event} class opts in to reuse during replays.
+     * An {@link Event} passed to a replay is only used until the next {@link Event} of its class is read, so codecs of
+     * mutable {@link Event} classes may overwrite every field of {@code reusable} and return it, allocating nothing.
+     * Only opt in for {@link Event} classes whose handlers never retain the instances they are given. The default
+     * decodes a new instance.
+     *
+     * @param buffer Buffer positioned at the start of the payload, and limited to its end
+     * @param reusable Instance previously returned by this codec during the same replay, or null
+     * @return {@code reusable} with its payload overwritten, or a new {@link Event}; header fields are populated by
+     *         the caller
+     */
+    default E decode(final ByteBuffer buffer, final E reusable) {
+        return decode(buffer);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.event.serialization;
+
+import technology.zeroalpha.zaes.core.event.Event;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts the payload of an {@link Event} to and from bytes for storage. The sequence number and timestamp are
+ * header fields that stores keep alongside the payload themselves, so serializers need not include them.
+ */
+public interface EventSerializer {
+
+    /**
+     * @param event {@link Event} to serialize
+     * @return Serialized payload
+     */
+    byte[] serialize(final Event event);
+
+    /**
+     * @param payload Serialized payload, as produced by {@link #serialize(Event)}
+     * @return {@link Event} with its payload restored; header fields are populated by the caller
+     */
+    Event deserialize(final byte[] payload);
+
+    /**
+     * Deserialize a payload held in a buffer, e.g. a view of a memory-mapped file, reading from its position to its
+     * limit. The default copies the payload to an array; serializers that can read the buffer directly should
+     * override it.
+     *
+     * @param payload Buffer positioned at the start of the payload, and limited to its end
+     * @return {@link Event} with its payload restored; header fields are populated by the caller
+     */
+    default Event deserialize(final ByteBuffer payload) {
+        final byte[] bytes = new byte[payload.remaining()];
+        payload.get(bytes);
+
+        return deserialize(bytes);
+    }
+
+    /**
+     * Deserialize a payload during a replay, in which each {@link Event} is only used until the next one is read.
+     * Serializers may return an instance previously returned with the same {@link ReusableEvents}, refilled, for
+     * {@link Event} classes that opt in to reuse. The default deserializes a new {@link Event}.
+     *
+     * @param payload Buffer positioned at the start of the payload, and limited to its end
+     * @param reusableEvents Instances available for reuse in the current replay
+     * @return {@link Event} with its payload restored; header fields are populated by the caller
+     */
+    default Event deserialize(final ByteBuffer payload, final ReusableEvents reusableEvents) {
+        return deserialize(payload);
+    }
+}
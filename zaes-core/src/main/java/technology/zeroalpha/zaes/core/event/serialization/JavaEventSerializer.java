@@ -0,0 +1,53 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.event.serialization;
+
+import technology.zeroalpha.zaes.core.event.Event;
+
+import java.io.*;
+
+/**
+ * {@link EventSerializer} using standard Java serialization. {@link Event} subclasses must implement
+ * {@link Serializable}; as {@link Event} itself does not, its header fields are not included in the payload.
+ */
+public class JavaEventSerializer implements EventSerializer {
+
+    @Override
+    public byte[] serialize(final Event event) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(event);
+        } catch (final IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public Event deserialize(final byte[] payload) {
+        try(final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+            return (Event) in.readObject();
+        } catch (final IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        } catch (final ClassNotFoundException cnfe) {
+            throw new IllegalStateException("Unable to deserialize event", cnfe);
+        }
+    }
+}
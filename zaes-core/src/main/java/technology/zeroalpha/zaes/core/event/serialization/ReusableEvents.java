@@ -0,0 +1,55 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.event.serialization;
+
+import technology.zeroalpha.zaes.core.event.Event;
+
+import java.util.Arrays;
+
+/**
+ * {@link Event} instances that an {@link EventSerializer} may refill during a single replay, keyed by a number of the
+ * serializer's choosing (e.g. a type identifier). A replay creates one, and passes it to every
+ * {@link EventSerializer#deserialize(java.nio.ByteBuffer, ReusableEvents)} call it makes.
+ * <p>
+ * Not thread-safe.
+ */
+public final class ReusableEvents {
+
+    private Event[] events = new Event[16];
+
+    /**
+     * @param key Non-negative key
+     * @return Instance stored under the key, or null
+     */
+    public Event get(final int key) {
+        return key < events.length ? events[key] : null;
+    }
+
+    /**
+     * @param key Non-negative key
+     * @param event Instance to offer for reuse by later calls with the same key
+     */
+    public void put(final int key, final Event event) {
+        if(key >= events.length) {
+            events = Arrays.copyOf(events, Math.max(key + 1, events.length * 2));
+        }
+
+        events[key] = event;
+    }
+}
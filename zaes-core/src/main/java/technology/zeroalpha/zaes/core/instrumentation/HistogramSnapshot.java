@@ -0,0 +1,107 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.instrumentation;
+
+/**
+ * Point-in-time copy of the values recorded by a {@link RecordingHistogram}. Percentiles are accurate to the precision
+ * the histogram was created with.
+ */
+public final class HistogramSnapshot {
+
+    private final int subBucketHalfCountMagnitude;
+
+    private final long[] counts;
+
+    private final long totalCount;
+
+    private final long sum;
+
+    private final long minimum;
+
+    private final long maximum;
+
+    HistogramSnapshot(
+            final int subBucketHalfCountMagnitude,
+            final long[] counts,
+            final long sum,
+            final long minimum,
+            final long maximum) {
+        this.subBucketHalfCountMagnitude = subBucketHalfCountMagnitude;
+        this.counts = counts;
+        long total = 0;
+        for(final long count : counts) {
+            total += count;
+        }
+        this.totalCount = total;
+        this.sum = sum;
+        this.minimum = total == 0 ? 0 : minimum;
+        this.maximum = total == 0 ? 0 : maximum;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getMinimum() {
+        return minimum;
+    }
+
+    public long getMaximum() {
+        return maximum;
+    }
+
+    /**
+     * @return Mean of the recorded values, or zero if none have been recorded
+     */
+    public double getMean() {
+        return totalCount == 0 ? 0 : (double) sum / totalCount;
+    }
+
+    /**
+     * @param percentile Percentile between 0 and 100
+     * @return Value that the given percentage of recorded values are less than or equivalent to, or zero if none have
+     *         been recorded
+     */
+    public long getValueAtPercentile(final double percentile) {
+        if(totalCount == 0) {
+            return 0;
+        }
+
+        final long countAtPercentile =
+                Math.max(1, (long) Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100 * totalCount));
+        long cumulativeCount = 0;
+        for(int index = 0; index < counts.length; index++) {
+            cumulativeCount += counts[index];
+            if(cumulativeCount >= countAtPercentile) {
+                return Math.max(
+                        minimum,
+                        Math.min(RecordingHistogram.highestValueAt(subBucketHalfCountMagnitude, index), maximum));
+            }
+        }
+
+        return maximum;
+    }
+
+    @Override
+    public String toString() {
+        return "HistogramSnapshot{count=" + totalCount + ", min=" + minimum + ", p50=" + getValueAtPercentile(50)
+                + ", p99=" + getValueAtPercentile(99) + ", p99.9=" + getValueAtPercentile(99.9) + ", max=" + maximum
+                + ", mean=" + String.format("%.1f", getMean()) + "}";
+    }
+}
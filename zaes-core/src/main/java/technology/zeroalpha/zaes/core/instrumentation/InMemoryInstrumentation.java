@@ -0,0 +1,137 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.instrumentation;
+
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link Instrumentation} keeping every metric in memory, from which snapshots and a plain text report can be taken,
+ * e.g. to log periodically or to expose through an existing monitoring endpoint.
+ */
+public class InMemoryInstrumentation implements Instrumentation {
+
+    /** Default largest value tracked by each histogram: an hour, in nanoseconds. */
+    public static final long DEFAULT_HIGHEST_TRACKABLE_VALUE = TimeUnit.HOURS.toNanos(1);
+
+    /** Default number of significant decimal digits each value is counted to. */
+    public static final int DEFAULT_SIGNIFICANT_DIGITS = 2;
+
+    private final long highestTrackableValue;
+
+    private final int significantDigits;
+
+    private final ConcurrentMap<String, RecordingHistogram> histograms = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    public InMemoryInstrumentation() {
+        this(DEFAULT_HIGHEST_TRACKABLE_VALUE, DEFAULT_SIGNIFICANT_DIGITS);
+    }
+
+    /**
+     * @param highestTrackableValue Largest value tracked by each histogram
+     * @param significantDigits Number of significant decimal digits each value is counted to, between 1 and 3
+     */
+    public InMemoryInstrumentation(final long highestTrackableValue, final int significantDigits) {
+        if(significantDigits < 1 || significantDigits > 3) {
+            throw new IllegalArgumentException("significantDigits must be between 1 and 3");
+        }
+
+        this.highestTrackableValue = highestTrackableValue;
+        this.significantDigits = significantDigits;
+    }
+
+    @Override
+    public Histogram histogram(final String name) {
+        return histograms.computeIfAbsent(name, n -> new RecordingHistogram(highestTrackableValue, significantDigits));
+    }
+
+    @Override
+    public Counter counter(final String name) {
+        return counters.computeIfAbsent(name, n -> new LongAdder())::add;
+    }
+
+    /**
+     * @param name Name of histogram
+     * @return Snapshot of the named histogram, which is empty if nothing has looked it up
+     */
+    public HistogramSnapshot getHistogram(final String name) {
+        return ((RecordingHistogram) histogram(name)).snapshot();
+    }
+
+    /**
+     * @param name Name of counter
+     * @return Current value of the named counter, or zero if nothing has looked it up
+     */
+    public long getCount(final String name) {
+        final LongAdder counter = counters.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * @return Report of every metric, one per line in name order, with latencies in microseconds
+     */
+    public String report() {
+        final SortedSet<String> names = new TreeSet<>(histograms.keySet());
+        names.addAll(counters.keySet());
+
+        final StringBuilder report = new StringBuilder();
+        for(final String name : names) {
+            report.append(name);
+            final LongAdder counter = counters.get(name);
+            if(counter != null) {
+                report.append(" count=").append(counter.sum());
+            }
+
+            final RecordingHistogram histogram = histograms.get(name);
+            if(histogram != null) {
+                final HistogramSnapshot snapshot = histogram.snapshot();
+                final boolean latency = name.endsWith(".latency");
+                report.append(" count=").append(snapshot.getTotalCount())
+                        .append(" p50=").append(format(snapshot.getValueAtPercentile(50), latency))
+                        .append(" p99=").append(format(snapshot.getValueAtPercentile(99), latency))
+                        .append(" p99.9=").append(format(snapshot.getValueAtPercentile(99.9), latency))
+                        .append(" max=").append(format(snapshot.getMaximum(), latency));
+            }
+            report.append(System.lineSeparator());
+        }
+
+        return report.toString();
+    }
+
+    /**
+     * @return Names and snapshots of every histogram
+     */
+    public Map<String, HistogramSnapshot> getHistograms() {
+        final Map<String, HistogramSnapshot> snapshots = new TreeMap<>();
+        histograms.forEach((name, histogram) -> snapshots.put(name, histogram.snapshot()));
+        return snapshots;
+    }
+
+    private static String format(final long value, final boolean nanoseconds) {
+        return nanoseconds ? String.format("%.1fus", value / 1000.0) : Long.toString(value);
+    }
+}
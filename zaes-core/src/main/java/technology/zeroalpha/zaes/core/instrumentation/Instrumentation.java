@@ -0,0 +1,48 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.instrumentation;
+
+/**
+ * Service provider interface through which the core services record metrics. Services look up each {@link Histogram}
+ * and {@link Counter} they need once, when they are constructed, so recording a value is a single call on an object
+ * already held; implementations should make recording allocation-free and safe to call from any thread.
+ * <p>
+ * Latencies are recorded in nanoseconds.
+ */
+public interface Instrumentation {
+
+    /**
+     * @param name Name of the distribution, e.g. {@code zaes.event.append.latency}
+     * @return Histogram recording the named distribution; repeated calls with a name return equivalent histograms
+     */
+    Histogram histogram(final String name);
+
+    /**
+     * @param name Name of the count, e.g. {@code zaes.command.conflicts}
+     * @return Counter for the named count; repeated calls with a name return equivalent counters
+     */
+    Counter counter(final String name);
+
+    /**
+     * @return Instrumentation that discards everything recorded, used when none is configured
+     */
+    static Instrumentation noOp() {
+        return NoOpInstrumentation.INSTANCE;
+    }
+}
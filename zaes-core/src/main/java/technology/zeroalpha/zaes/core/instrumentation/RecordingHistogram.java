@@ -0,0 +1,120 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.instrumentation;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe {@link Histogram} holding counts in log-linear buckets, in the style of HdrHistogram.
+ * <p>
+ * Values are grouped by power of two, and each power of two is divided into a fixed number of linear sub-buckets
+ * chosen to give the requested number of significant decimal digits, so every recorded value is counted with a
+ * bounded relative error across the whole trackable range. The counts are preallocated, so recording a value
+ * allocates nothing: it finds the bucket with a few shifts and increments it atomically.
+ */
+public final class RecordingHistogram implements Histogram {
+
+    /** Magnitude of half the number of sub-buckets per power of two. */
+    private final int subBucketHalfCountMagnitude;
+
+    private final long highestTrackableValue;
+
+    private final AtomicLongArray counts;
+
+    private final AtomicLong sum = new AtomicLong();
+
+    private final AtomicLong minimum = new AtomicLong(Long.MAX_VALUE);
+
+    private final AtomicLong maximum = new AtomicLong();
+
+    /**
+     * @param highestTrackableValue Largest value tracked; larger values are counted as this value
+     * @param significantDigits Number of significant decimal digits each value is counted to, between 1 and 3
+     */
+    public RecordingHistogram(final long highestTrackableValue, final int significantDigits) {
+        if(significantDigits < 1 || significantDigits > 3) {
+            throw new IllegalArgumentException("significantDigits must be between 1 and 3");
+        }
+
+        final int subBucketCountMagnitude = 64 - Long.numberOfLeadingZeros(2 * (long) Math.pow(10, significantDigits));
+        this.subBucketHalfCountMagnitude = subBucketCountMagnitude - 1;
+        if(highestTrackableValue < 2L << subBucketHalfCountMagnitude) {
+            throw new IllegalArgumentException("highestTrackableValue is too small for the requested precision");
+        }
+
+        this.highestTrackableValue = highestTrackableValue;
+        this.counts = new AtomicLongArray(countsIndex(subBucketHalfCountMagnitude, highestTrackableValue) + 1);
+    }
+
+    @Override
+    public void record(final long value) {
+        final long trackedValue = Math.min(Math.max(value, 0), highestTrackableValue);
+        counts.incrementAndGet(countsIndex(subBucketHalfCountMagnitude, trackedValue));
+        sum.addAndGet(trackedValue);
+
+        long current;
+        while(trackedValue < (current = minimum.get()) && !minimum.compareAndSet(current, trackedValue)) {
+            // Retry until this value is recorded or a smaller one has been
+        }
+        while(trackedValue > (current = maximum.get()) && !maximum.compareAndSet(current, trackedValue)) {
+            // Retry until this value is recorded or a larger one has been
+        }
+    }
+
+    /**
+     * @return Copy of the counts recorded so far. Values recorded concurrently with the copy may be partially
+     *         reflected, e.g. in the count but not the mean.
+     */
+    public HistogramSnapshot snapshot() {
+        final long[] countsCopy = new long[counts.length()];
+        for(int index = 0; index < countsCopy.length; index++) {
+            countsCopy[index] = counts.get(index);
+        }
+
+        return new HistogramSnapshot(
+                subBucketHalfCountMagnitude, countsCopy, sum.get(), minimum.get(), maximum.get());
+    }
+
+    /**
+     * @return Index of the count that the given non-negative value is recorded in
+     */
+    static int countsIndex(final int subBucketHalfCountMagnitude, final long value) {
+        final long subBucketMask = (2L << subBucketHalfCountMagnitude) - 1;
+        final int bucketIndex = 63 - Long.numberOfLeadingZeros(value | subBucketMask) - subBucketHalfCountMagnitude;
+        final int subBucketIndex = (int) (value >>> bucketIndex);
+
+        return ((bucketIndex + 1) << subBucketHalfCountMagnitude) + subBucketIndex - (1 << subBucketHalfCountMagnitude);
+    }
+
+    /**
+     * @return Largest value counted at the given index
+     */
+    static long highestValueAt(final int subBucketHalfCountMagnitude, final int index) {
+        final int subBucketHalfCount = 1 << subBucketHalfCountMagnitude;
+        int bucketIndex = (index >> subBucketHalfCountMagnitude) - 1;
+        int subBucketIndex = (index & (subBucketHalfCount - 1)) + subBucketHalfCount;
+        if(bucketIndex < 0) {
+            subBucketIndex -= subBucketHalfCount;
+            bucketIndex = 0;
+        }
+
+        return ((long) subBucketIndex << bucketIndex) + (1L << bucketIndex) - 1;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Helpers for stores that keep one small file per key in a directory, replacing it whole on every write.
+ */
+public final class DurableFiles {
+
+    /** Longest hex encoded key used as a file name as it is; longer keys are hashed to stay within name limits. */
+    private static final int MAXIMUM_ENCODED_LENGTH = 200;
+
+    /** Prefix of file names made from a hash, which cannot clash with hex encoded keys as it is not all hex digits. */
+    private static final String HASHED_PREFIX = "sha256-";
+
+    private DurableFiles() {
+    }
+
+    /**
+     * Name a file after a key in a way that is safe on any file system: the key's UTF-8 bytes hex encoded, or if that
+     * would make the name too long, the SHA-256 hash of them, which cannot be turned back into the key.
+     *
+     * @param key Key to name the file after
+     * @param suffix Suffix to append
+     * @return File name
+     */
+    public static String fileName(final String key, final String suffix) {
+        final byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        if(bytes.length * 2 <= MAXIMUM_ENCODED_LENGTH) {
+            return hex(bytes) + suffix;
+        }
+
+        try {
+            return HASHED_PREFIX + hex(MessageDigest.getInstance("SHA-256").digest(bytes)) + suffix;
+        } catch (final NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException("SHA-256 is not available", nsae);
+        }
+    }
+
+    /**
+     * Replace a file's content so that, even after a crash, it holds either its previous content or the new content in
+     * full. The content is written to a temporary file in the same directory and forced to the storage device, which
+     * is then renamed over the file, and the directory forced so that the rename is durable. The temporary file is
+     * deleted if any step fails.
+     *
+     * @param file File to replace
+     * @param content Writes the new content
+     * @throws IOException If the content cannot be written or the file replaced
+     */
+    public static void replace(final Path file, final Content content) throws IOException {
+        final Path directory = file.toAbsolutePath().getParent();
+        final Path temporaryFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try(final FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+                final DataOutputStream out =
+                        new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+                content.writeTo(out);
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException | RuntimeException | Error e) {
+            try {
+                Files.deleteIfExists(temporaryFile);
+            } catch (final IOException ioe) {
+                e.addSuppressed(ioe);
+            }
+            throw e;
+        }
+
+        forceDirectory(directory);
+    }
+
+    /**
+     * Flush a directory's entries to the storage device. Platforms that cannot open a directory for this (e.g.
+     * Windows) make renames durable without it, so the failure to open one is ignored.
+     *
+     * @param directory Directory to flush
+     * @throws IOException If the directory cannot be flushed
+     */
+    public static void forceDirectory(final Path directory) throws IOException {
+        final FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (final IOException ioe) {
+            return;
+        }
+
+        try {
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static String hex(final byte[] bytes) {
+        final StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for(final byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+
+        return hex.toString();
+    }
+
+    /**
+     * Writes the content of a file.
+     */
+    @FunctionalInterface
+    public interface Content {
+
+        /**
+         * @param out Stream to write the content to, which must not be closed
+         * @throws IOException If the content cannot be written
+         */
+        void writeTo(final DataOutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.listener;
+
+import technology.zeroalpha.zaes.core.event.Event;
+import technology.zeroalpha.zaes.core.event.EventRepository;
+import technology.zeroalpha.zaes.core.event.EventService;
+import technology.zeroalpha.zaes.core.listener.checkpoint.CheckpointStore;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Feeds a listener every {@link Event} of a given type in the store's global log, resuming from a checkpoint.
+ * <p>
+ * The subscription reads the log with {@link EventRepository#streamEventsAfterPosition(long)} from the last
+ * checkpointed position, in batches, until it has caught up; it then keeps polling the log from the position it
+ * reached, so there is no hand-over between catching up and live delivery and no {@link Event} is missed or
+ * delivered twice while the subscription runs. The position is checkpointed every {@code checkpointInterval}
+ * {@link Event}s, whenever the subscription catches up, and when it is closed. After a crash the {@link Event}s since
+ * the last checkpoint are delivered again, so listeners should be idempotent.
+ * <p>
+ * The listener is called from a thread dedicated to the subscription. If it throws, the subscription stops without
+ * advancing past the batch containing the failed {@link Event}, so that batch is delivered again when the
+ * subscription is restarted; the error is available from {@link #getFailure()}.
+ *
+ * @param <E> Type of {@link Event} delivered
+ */
+public class CatchUpSubscription<E extends Event> implements AutoCloseable {
+
+    /** Default maximum number of {@link Event}s read from the log at once. */
+    public static final int DEFAULT_BATCH_SIZE = 512;
+
+    /** Default number of {@link Event}s processed between checkpoints while catching up. */
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 4096;
+
+    private final String subscriptionId;
+
+    private final EventService eventService;
+
+    private final CheckpointStore checkpointStore;
+
+    private final Class<E> eventType;
+
+    private final EventListener<? super E> listener;
+
+    private final int batchSize;
+
+    private final int checkpointInterval;
+
+    private final WaitStrategy waitStrategy;
+
+    /** Whether each concrete {@link Event} class is delivered to the listener, resolved once per class. */
+    private final ClassValue<Boolean> routing = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(final Class<?> eventClass) {
+            return eventType.isAssignableFrom(eventClass);
+        }
+    };
+
+    /** Global position of the last {@link Event} of the last batch processed in full. */
+    private volatile long position = Event.NO_POSITION;
+
+    private volatile boolean live;
+
+    private volatile boolean running;
+
+    private volatile Throwable failure;
+
+    private Thread thread;
+
+    /**
+     * Create a subscription reading {@value #DEFAULT_BATCH_SIZE} {@link Event}s at a time, checkpointing every
+     * {@value #DEFAULT_CHECKPOINT_INTERVAL} {@link Event}s and parking for a millisecond at a time when idle.
+     *
+     * @param subscriptionId Identifier the subscription's checkpoint is stored under
+     * @param eventService Service used to read the global log
+     * @param checkpointStore Store of the subscription's checkpoint
+     * @param eventType Type of {@link Event} to deliver, including subtypes
+     * @param listener Listener to deliver {@link Event}s to
+     */
+    public CatchUpSubscription(
+            final String subscriptionId,
+            final EventService eventService,
+            final CheckpointStore checkpointStore,
+            final Class<E> eventType,
+            final EventListener<? super E> listener) {
+        this(
+                subscriptionId,
+                eventService,
+                checkpointStore,
+                eventType,
+                listener,
+                DEFAULT_BATCH_SIZE,
+                DEFAULT_CHECKPOINT_INTERVAL,
+                WaitStrategy.parking(Duration.ofMillis(1)));
+    }
+
+    /**
+     * @param subscriptionId Identifier the subscription's checkpoint is stored under
+     * @param eventService Service used to read the global log
+     * @param checkpointStore Store of the subscription's checkpoint
+     * @param eventType Type of {@link Event} to deliver, including subtypes
+     * @param listener Listener to deliver {@link Event}s to
+     * @param batchSize Maximum number of {@link Event}s read from the log at once
+     * @param checkpointInterval Number of {@link Event}s processed between checkpoints while catching up
+     * @param waitStrategy How the subscription waits when it has caught up
+     */
+    public CatchUpSubscription(
+            final String subscriptionId,
+            final EventService eventService,
+            final CheckpointStore checkpointStore,
+            final Class<E> eventType,
+            final EventListener<? super E> listener,
+            final int batchSize,
+            final int checkpointInterval,
+            final WaitStrategy waitStrategy) {
+        if(batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        if(checkpointInterval < 1) {
+            throw new IllegalArgumentException("checkpointInterval must be positive");
+        }
+
+        this.subscriptionId = Objects.requireNonNull(subscriptionId);
+        this.eventService = Objects.requireNonNull(eventService);
+        this.checkpointStore = Objects.requireNonNull(checkpointStore);
+        this.eventType = Objects.requireNonNull(eventType);
+        this.listener = Objects.requireNonNull(listener);
+        this.batchSize = batchSize;
+        this.checkpointInterval = checkpointInterval;
+        this.waitStrategy = Objects.requireNonNull(waitStrategy);
+    }
+
+    /**
+     * Start delivering {@link Event}s from the last checkpoint on a dedicated thread.
+     *
+     * @return This subscription
+     */
+    public synchronized CatchUpSubscription<E> start() {
+        if(thread != null) {
+            throw new IllegalStateException("Subscription " + subscriptionId + " has already been started");
+        }
+
+        running = true;
+        thread = new Thread(this::run, "zaes-catch-up-" + subscriptionId);
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    /**
+     * Stop the subscription once it has finished its current batch, and checkpoint its position.
+     */
+    @Override
+    public void close() {
+        final Thread stopping;
+        synchronized (this) {
+            running = false;
+            stopping = thread;
+        }
+
+        if(stopping != null) {
+            try {
+                stopping.join();
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public String getSubscriptionId() {
+        return subscriptionId;
+    }
+
+    /**
+     * @return Global position of the last {@link Event} processed, or {@link Event#NO_POSITION} if none has been
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * @return Whether the subscription has caught up with the log and is now following new {@link Event}s
+     */
+    public boolean isLive() {
+        return live;
+    }
+
+    /**
+     * @return Error thrown by the listener or {@link CheckpointStore} that stopped the subscription, or null if it has
+     *         not failed
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    private void run() {
+        long checkpointed;
+        try {
+            checkpointed = checkpointStore.loadCheckpoint(subscriptionId);
+        } catch (final RuntimeException | Error e) {
+            failure = e;
+            running = false;
+            return;
+        }
+
+        position = checkpointed;
+        long sinceCheckpoint = 0;
+        int idleAttempts = 0;
+
+        try {
+            while(running) {
+                final int read = readBatch();
+                if(read < batchSize) {
+                    live = true;
+                }
+
+                sinceCheckpoint += read;
+                if(position != checkpointed && (sinceCheckpoint >= checkpointInterval || read == 0)) {
+                    checkpointStore.saveCheckpoint(subscriptionId, position);
+                    checkpointed = position;
+                    sinceCheckpoint = 0;
+                }
+
+                if(read == 0) {
+                    waitStrategy.idle(idleAttempts++);
+                } else {
+                    idleAttempts = 0;
+                }
+            }
+        } catch (final RuntimeException | Error e) {
+            failure = e;
+            running = false;
+        } finally {
+            if(position != checkpointed) {
+                checkpointStore.saveCheckpoint(subscriptionId, position);
+            }
+        }
+    }
+
+    /**
+     * Deliver the next batch of {@link Event}s after the current position, advancing the position past the batch once
+     * the listener has processed all of it.
+     *
+     * @return Number of {@link Event}s read from the log, including any not delivered to the listener
+     */
+    private int readBatch() {
+        int read = 0;
+        boolean delivered = false;
+        long batchPosition = position;
+        try(final Stream<Event> events = eventService.streamEventsAfterPosition(position).limit(batchSize)) {
+            final Iterator<Event> iterator = events.iterator();
+            while(iterator.hasNext()) {
+                final Event event = iterator.next();
+                if(routing.get(event.getClass())) {
+                    listener.process(eventType.cast(event));
+                    delivered = true;
+                }
+                batchPosition = event.getGlobalPosition();
+                read++;
+            }
+        }
+
+        if(delivered) {
+            listener.onEndOfBatch();
+        }
+        position = batchPosition;
+        return read;
+    }
+}
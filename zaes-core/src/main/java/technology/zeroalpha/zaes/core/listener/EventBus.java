@@ -0,0 +1,337 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.listener;
+
+import technology.zeroalpha.zaes.core.event.Event;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+
+/**
+ * In-process bus delivering published {@link Event}s to subscribed {@link EventListener}s asynchronously.
+ * <p>
+ * {@link Event}s are passed through a preallocated ring buffer in the style of the LMAX Disruptor: publishers claim
+ * slots by advancing a shared cursor, and each subscription has its own thread and sequence, reading every slot
+ * published since it last looked as a single batch. Nothing is allocated per {@link Event}.
+ * <p>
+ * Publishers never wait for subscribers: they are typically appending to an Event Stream, and a slow listener must not
+ * hold up writes. A subscription that falls a whole ring behind finds the slots it has yet to read overwritten; it
+ * skips ahead to the oldest {@link Event} still in the ring and tells its listener how many it missed through
+ * {@link EventListener#onEventsMissed(long)}. {@link Event}s reach the bus only once persisted, so a listener can
+ * recover the missed ones from the store. The ring should be sized to absorb the bursts subscribers are expected to
+ * fall behind by.
+ * <p>
+ * Each subscription is for an {@link Event} type; whether a concrete {@link Event} class matches it is resolved once
+ * per class and cached.
+ */
+public class EventBus implements AutoCloseable {
+
+    private final AtomicReferenceArray<Event> slots;
+
+    private final int bufferSize;
+
+    private final int mask;
+
+    /** Number of bits used to index slots, used to calculate which lap of the ring a sequence belongs to. */
+    private final int indexShift;
+
+    /**
+     * State of each slot: one more than the lap of the ring it was last published for, marking it as readable; the
+     * negation of that while it is being written; or zero if it has never been written. Readers check it either side
+     * of reading a slot to detect it being overwritten.
+     */
+    private final AtomicLongArray slotStates;
+
+    /** Sequence of the last slot claimed by a publisher. */
+    private final AtomicLong claimCursor = new AtomicLong(-1);
+
+    private volatile Subscription<?>[] subscriptions = new Subscription<?>[0];
+
+    private final WaitStrategy waitStrategy;
+
+    /** Called if a listener throws; the subscription continues with the next {@link Event}. */
+    private final BiConsumer<Event, Throwable> errorHandler;
+
+    private volatile boolean running = true;
+
+    /**
+     * @param bufferSize Number of slots in the ring, which must be a power of two
+     * @param waitStrategy How idle subscribers wait
+     * @param errorHandler Called with the {@link Event} and error when a listener throws; the {@link Event} is null if
+     *                     the listener threw at the end of a batch or on being told of missed {@link Event}s
+     */
+    public EventBus(
+            final int bufferSize, final WaitStrategy waitStrategy, final BiConsumer<Event, Throwable> errorHandler) {
+        if(bufferSize < 1 || Integer.bitCount(bufferSize) != 1) {
+            throw new IllegalArgumentException("bufferSize must be a power of two");
+        }
+
+        this.slots = new AtomicReferenceArray<>(bufferSize);
+        this.bufferSize = bufferSize;
+        this.mask = bufferSize - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(bufferSize);
+        this.slotStates = new AtomicLongArray(bufferSize);
+        this.waitStrategy = Objects.requireNonNull(waitStrategy);
+        this.errorHandler = Objects.requireNonNull(errorHandler);
+    }
+
+    /**
+     * Subscribe a listener to all {@link Event}s of the given type (including subclasses) published from now on. The
+     * listener is called from a thread dedicated to it, so it needs no synchronization of its own.
+     *
+     * @param eventType Type of {@link Event} to receive
+     * @param listener Listener to call
+     * @param <E> Type of {@link Event}
+     */
+    public synchronized <E extends Event> void subscribe(
+            final Class<E> eventType, final EventListener<? super E> listener) {
+        if(!running) {
+            throw new IllegalStateException("EventBus has been closed");
+        }
+
+        final Subscription<E> subscription = new Subscription<>(eventType, listener, claimCursor.get());
+        final Subscription<?>[] extended = new Subscription<?>[subscriptions.length + 1];
+        System.arraycopy(subscriptions, 0, extended, 0, subscriptions.length);
+        extended[subscriptions.length] = subscription;
+        subscriptions = extended;
+
+        final Thread thread = new Thread(subscription, "zaes-event-bus-" + eventType.getSimpleName());
+        thread.setDaemon(true);
+        subscription.thread = thread;
+        thread.start();
+    }
+
+    /**
+     * Publish a single {@link Event}, without waiting for subscribers.
+     *
+     * @param event {@link Event} to publish
+     * @throws IllegalStateException If the bus has been closed
+     */
+    public void publish(final Event event) {
+        ensureRunning();
+        write(claimCursor.incrementAndGet(), event);
+    }
+
+    /**
+     * Publish {@link Event}s in order, without waiting for subscribers. Subscribers see them in the same order; if no
+     * other publisher interleaves, they are delivered in the same batch where possible.
+     *
+     * @param events {@link Event}s to publish
+     * @throws IllegalStateException If the bus has been closed
+     */
+    public void publish(final List<? extends Event> events) {
+        ensureRunning();
+        if(events.isEmpty()) {
+            return;
+        }
+
+        long sequence = claimCursor.addAndGet(events.size()) - events.size() + 1;
+        for(final Event event : events) {
+            write(sequence++, event);
+        }
+    }
+
+    /**
+     * Stop accepting {@link Event}s, and stop all subscriptions once they have consumed those already published.
+     */
+    @Override
+    public void close() {
+        final Subscription<?>[] stopping;
+        synchronized (this) {
+            running = false;
+            stopping = subscriptions;
+        }
+
+        for(final Subscription<?> subscription : stopping) {
+            try {
+                subscription.thread.join();
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void ensureRunning() {
+        if(!running) {
+            throw new IllegalStateException("EventBus has been closed");
+        }
+    }
+
+    /**
+     * Write the {@link Event} to the slot for the claimed sequence, marking the slot as being written first so that a
+     * subscriber reading the previous lap's {@link Event} sees it change. Only one publisher writes a slot at a time:
+     * if a publisher for an earlier lap is still writing it, this one waits the few instructions until it finishes.
+     * If a publisher a whole lap ahead has already taken the slot, the {@link Event} is dropped, as every subscriber
+     * still to read it has been overrun.
+     */
+    private void write(final long sequence, final Event event) {
+        final int index = (int) sequence & mask;
+        final long lap = lap(sequence);
+        while(true) {
+            final long state = slotStates.get(index);
+            if(lapOf(state) > lap) {
+                return;
+            }
+            if(state < 0) {
+                Thread.yield();
+            } else if(slotStates.compareAndSet(index, state, -(lap + 1))) {
+                break;
+            }
+        }
+
+        slots.set(index, event);
+        slotStates.set(index, lap + 1);
+    }
+
+    private long lap(final long sequence) {
+        return sequence >>> indexShift;
+    }
+
+    /**
+     * @return Lap of the ring the slot state was published or is being written for, or -1 if never written
+     */
+    private static long lapOf(final long state) {
+        return Math.abs(state) - 1;
+    }
+
+    /**
+     * @return Negative if the slot for the sequence has not been published yet, zero if it holds the sequence's
+     *         {@link Event}, or positive if it has been taken by a later lap
+     */
+    private int compareLap(final long sequence) {
+        final long state = slotStates.get((int) sequence & mask);
+        final long lap = lap(sequence);
+        if(state == lap + 1) {
+            return 0;
+        }
+
+        return lapOf(state) > lap ? 1 : -1;
+    }
+
+    private final class Subscription<E extends Event> implements Runnable {
+
+        private final Class<E> eventType;
+
+        private final EventListener<? super E> listener;
+
+        /** Whether each concrete {@link Event} class is delivered to this subscription, resolved once per class. */
+        private final ClassValue<Boolean> routing = new ClassValue<Boolean>() {
+            @Override
+            protected Boolean computeValue(final Class<?> eventClass) {
+                return eventType.isAssignableFrom(eventClass);
+            }
+        };
+
+        /** Sequence of the last slot claimed when the subscription was made. */
+        private final long startSequence;
+
+        private Thread thread;
+
+        private Subscription(
+                final Class<E> eventType, final EventListener<? super E> listener, final long startSequence) {
+            this.eventType = eventType;
+            this.listener = listener;
+            this.startSequence = startSequence;
+        }
+
+        @Override
+        public void run() {
+            int attempt = 0;
+            long next = startSequence + 1;
+            while(true) {
+                final long claimed = claimCursor.get();
+                if(next <= claimed - bufferSize) {
+                    next = skipTo(next, claimed - bufferSize + 1);
+                }
+
+                boolean delivered = false;
+                boolean overrun = false;
+                long current = next;
+                for(; current <= claimed; current++) {
+                    final int state = compareLap(current);
+                    if(state < 0) {
+                        break;
+                    }
+                    final Event event = slots.get((int) current & mask);
+                    if(state > 0 || compareLap(current) != 0) {
+                        overrun = true;
+                        break;
+                    }
+
+                    if(routing.get(event.getClass())) {
+                        deliver(event);
+                        delivered = true;
+                    }
+                }
+                if(delivered) {
+                    endOfBatch();
+                }
+
+                if(overrun) {
+                    next = skipTo(current, claimCursor.get() - bufferSize + 1);
+                    attempt = 0;
+                } else if(current > next) {
+                    next = current;
+                    attempt = 0;
+                } else {
+                    if(!running && claimCursor.get() < next) {
+                        return;
+                    }
+                    waitStrategy.idle(attempt++);
+                }
+            }
+        }
+
+        /**
+         * Move past {@link Event}s that have been overwritten, telling the listener how many it missed.
+         *
+         * @return Sequence to read next
+         */
+        private long skipTo(final long next, final long oldestAvailable) {
+            try {
+                listener.onEventsMissed(oldestAvailable - next);
+            } catch (final Throwable t) {
+                errorHandler.accept(null, t);
+            }
+
+            return oldestAvailable;
+        }
+
+        private void deliver(final Event event) {
+            try {
+                listener.process(eventType.cast(event));
+            } catch (final Throwable t) {
+                errorHandler.accept(event, t);
+            }
+        }
+
+        private void endOfBatch() {
+            try {
+                listener.onEndOfBatch();
+            } catch (final Throwable t) {
+                errorHandler.accept(null, t);
+            }
+        }
+    }
+}
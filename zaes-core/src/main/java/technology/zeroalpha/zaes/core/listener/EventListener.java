@@ -20,8 +20,30 @@ package technology.zeroalpha.zaes.core.listener;
 
 import technology.zeroalpha.zaes.core.event.Event;
 
+/**
+ * Receives {@link Event}s of a given type as they are published.
+ *
+ * @param <E> Type of {@link Event} listened for
+ */
 @FunctionalInterface
 public interface EventListener<E extends Event> {
 
     void process(final E event);
+
+    /**
+     * Called after the last {@link Event} of each batch delivered to {@link #process(Event)}, allowing listeners to
+     * buffer work (e.g. writes to a read model) and complete it once per batch rather than once per {@link Event}.
+     */
+    default void onEndOfBatch() {
+    }
+
+    /**
+     * Called when the listener fell so far behind that {@link Event}s were overwritten before they could be delivered
+     * to it. Delivery resumes with the oldest {@link Event} still available. Published {@link Event}s have already been
+     * persisted, so a listener that must see every one can read those it missed from the store.
+     *
+     * @param count Number of {@link Event}s skipped, of any type
+     */
+    default void onEventsMissed(final long count) {
+    }
 }
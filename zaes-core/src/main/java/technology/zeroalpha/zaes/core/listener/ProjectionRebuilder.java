@@ -0,0 +1,245 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.listener;
+
+import technology.zeroalpha.zaes.core.event.Event;
+import technology.zeroalpha.zaes.core.event.EventRepository;
+import technology.zeroalpha.zaes.core.event.EventService;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Rebuilds read models by replaying every Event Stream in the store to subscribed {@link EventListener}s.
+ * <p>
+ * Streams are enumerated with {@link EventRepository#streamEventStreamIdentifiers()}, split into partitions and
+ * replayed on a {@link ForkJoinPool}, so a rebuild uses every worker of the pool. The {@link Event}s of each stream
+ * are delivered in order by a single thread, but different streams are replayed concurrently, so listeners must be
+ * thread-safe and must not depend on ordering across streams. {@link EventListener#onEndOfBatch()} is called after
+ * each partition a listener received {@link Event}s from.
+ */
+public class ProjectionRebuilder {
+
+    /** Number of streams replayed by a single task before progress is reported. */
+    private static final int PARTITION_SIZE = 64;
+
+    private final EventService eventService;
+
+    private final ForkJoinPool forkJoinPool;
+
+    private final List<Subscription<?>> subscriptions = new ArrayList<>();
+
+    /**
+     * Create a rebuilder using the common {@link ForkJoinPool}.
+     *
+     * @param eventService Service used to enumerate and read Event Streams
+     */
+    public ProjectionRebuilder(final EventService eventService) {
+        this(eventService, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param eventService Service used to enumerate and read Event Streams
+     * @param forkJoinPool Pool the streams are replayed on; its parallelism bounds the number of concurrent streams
+     */
+    public ProjectionRebuilder(final EventService eventService, final ForkJoinPool forkJoinPool) {
+        this.eventService = Objects.requireNonNull(eventService);
+        this.forkJoinPool = Objects.requireNonNull(forkJoinPool);
+    }
+
+    /**
+     * Register a listener to be fed {@link Event}s of the given type (including subtypes) by subsequent rebuilds.
+     *
+     * @param eventType Type of {@link Event} to deliver
+     * @param listener Thread-safe listener to deliver {@link Event}s to
+     * @param <E> Type of {@link Event}
+     */
+    public synchronized <E extends Event> void subscribe(
+            final Class<E> eventType, final EventListener<? super E> listener) {
+        subscriptions.add(new Subscription<>(eventType, listener));
+    }
+
+    /**
+     * Replay every Event Stream to the subscribed listeners, blocking until complete.
+     *
+     * @return Final progress of the rebuild
+     */
+    public RebuildProgress rebuild() {
+        return rebuild(progress -> { });
+    }
+
+    /**
+     * Replay every Event Stream to the subscribed listeners, blocking until complete.
+     *
+     * @param progressListener Called from worker threads each time a partition of streams completes; must be
+     *        thread-safe and quick
+     * @return Final progress of the rebuild
+     * @throws UnsupportedOperationException If the store cannot enumerate its Event Streams
+     * @throws RuntimeException Thrown by a listener, after which the rebuild is abandoned
+     */
+    public RebuildProgress rebuild(final Consumer<RebuildProgress> progressListener) {
+        final List<String> eventStreamIds;
+        try(final Stream<String> identifiers = eventService.streamEventStreamIdentifiers()) {
+            eventStreamIds = identifiers.collect(Collectors.toList());
+        }
+
+        final Run run = new Run(currentSubscriptions(), eventStreamIds.size(), progressListener);
+        forkJoinPool.invoke(new ReplayTask(run, eventStreamIds, 0, eventStreamIds.size()));
+        return run.progress();
+    }
+
+    private synchronized Subscription<?>[] currentSubscriptions() {
+        return subscriptions.toArray(new Subscription<?>[0]);
+    }
+
+    /**
+     * State shared by the tasks of a single rebuild.
+     */
+    private static final class Run {
+
+        private final Subscription<?>[] subscriptions;
+
+        private final long totalStreams;
+
+        private final Consumer<RebuildProgress> progressListener;
+
+        private final long startTime = System.nanoTime();
+
+        private final LongAdder streamsCompleted = new LongAdder();
+
+        private final LongAdder eventsReplayed = new LongAdder();
+
+        private Run(
+                final Subscription<?>[] subscriptions,
+                final long totalStreams,
+                final Consumer<RebuildProgress> progressListener) {
+            this.subscriptions = subscriptions;
+            this.totalStreams = totalStreams;
+            this.progressListener = progressListener;
+        }
+
+        private RebuildProgress progress() {
+            return new RebuildProgress(
+                    totalStreams,
+                    streamsCompleted.sum(),
+                    eventsReplayed.sum(),
+                    Duration.ofNanos(System.nanoTime() - startTime));
+        }
+    }
+
+    /**
+     * Replays a range of streams, splitting it in half until it is no larger than a partition.
+     */
+    private final class ReplayTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Run run;
+
+        private final List<String> eventStreamIds;
+
+        private final int from;
+
+        private final int to;
+
+        private ReplayTask(final Run run, final List<String> eventStreamIds, final int from, final int to) {
+            this.run = run;
+            this.eventStreamIds = eventStreamIds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from > PARTITION_SIZE) {
+                final int middle = (from + to) >>> 1;
+                invokeAll(
+                        new ReplayTask(run, eventStreamIds, from, middle),
+                        new ReplayTask(run, eventStreamIds, middle, to));
+                return;
+            }
+
+            final boolean[] delivered = new boolean[run.subscriptions.length];
+            long events = 0;
+            for(int i = from; i < to; i++) {
+                try(final Stream<Event> eventStream = eventService.streamAllEvents(eventStreamIds.get(i))) {
+                    final Iterator<Event> iterator = eventStream.iterator();
+                    while(iterator.hasNext()) {
+                        final Event event = iterator.next();
+                        for(int s = 0; s < run.subscriptions.length; s++) {
+                            delivered[s] |= run.subscriptions[s].deliver(event);
+                        }
+                        events++;
+                    }
+                }
+            }
+
+            for(int s = 0; s < run.subscriptions.length; s++) {
+                if(delivered[s]) {
+                    run.subscriptions[s].listener.onEndOfBatch();
+                }
+            }
+
+            run.eventsReplayed.add(events);
+            run.streamsCompleted.add(to - from);
+            run.progressListener.accept(run.progress());
+        }
+    }
+
+    private static final class Subscription<E extends Event> {
+
+        private final Class<E> eventType;
+
+        private final EventListener<? super E> listener;
+
+        /** Whether each concrete {@link Event} class is delivered to this subscription, resolved once per class. */
+        private final ClassValue<Boolean> routing = new ClassValue<Boolean>() {
+            @Override
+            protected Boolean computeValue(final Class<?> eventClass) {
+                return eventType.isAssignableFrom(eventClass);
+            }
+        };
+
+        private Subscription(final Class<E> eventType, final EventListener<? super E> listener) {
+            this.eventType = Objects.requireNonNull(eventType);
+            this.listener = Objects.requireNonNull(listener);
+        }
+
+        /**
+         * @return Whether the {@link Event} was delivered
+         */
+        private boolean deliver(final Event event) {
+            if(!routing.get(event.getClass())) {
+                return false;
+            }
+
+            listener.process(eventType.cast(event));
+            return true;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.listener;
+
+import java.time.Duration;
+
+/**
+ * Snapshot of the progress of a {@link ProjectionRebuilder} run.
+ */
+public final class RebuildProgress {
+
+    private final long totalStreams;
+
+    private final long streamsCompleted;
+
+    private final long eventsReplayed;
+
+    private final Duration elapsed;
+
+    public RebuildProgress(
+            final long totalStreams, final long streamsCompleted, final long eventsReplayed, final Duration elapsed) {
+        this.totalStreams = totalStreams;
+        this.streamsCompleted = streamsCompleted;
+        this.eventsReplayed = eventsReplayed;
+        this.elapsed = elapsed;
+    }
+
+    public long getTotalStreams() {
+        return totalStreams;
+    }
+
+    public long getStreamsCompleted() {
+        return streamsCompleted;
+    }
+
+    public long getEventsReplayed() {
+        return eventsReplayed;
+    }
+
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * @return Fraction of streams replayed, between zero and one
+     */
+    public double getFractionComplete() {
+        return totalStreams == 0 ? 1.0 : (double) streamsCompleted / totalStreams;
+    }
+
+    @Override
+    public String toString() {
+        return "RebuildProgress{" +
+                "streams=" + streamsCompleted + "/" + totalStreams +
+                ", eventsReplayed=" + eventsReplayed +
+                ", elapsed=" + elapsed +
+                '}';
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.listener;
+
+import java.time.Duration;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decides how a subscriber waits on an {@link EventBus} once it has consumed every published
+ * {@link technology.zeroalpha.zaes.core.event.Event}. Strategies trade latency against CPU usage.
+ */
+@FunctionalInterface
+public interface WaitStrategy {
+
+    /**
+     * Wait before checking again for progress.
+     *
+     * @param attempt Number of consecutive times the caller has waited without progress, starting at zero
+     */
+    void idle(final int attempt);
+
+    /**
+     * @return Strategy that never gives up the CPU, giving the lowest latency at the cost of a fully used core per
+     *         waiting thread
+     */
+    static WaitStrategy busySpin() {
+        return attempt -> {
+        };
+    }
+
+    /**
+     * @return Strategy that spins briefly, then yields the CPU to other threads between checks
+     */
+    static WaitStrategy yielding() {
+        return attempt -> {
+            if(attempt >= 100) {
+                Thread.yield();
+            }
+        };
+    }
+
+    /**
+     * @param parkTime Time to park the thread for between checks
+     * @return Strategy that spins briefly, yields for a while, then parks the thread between checks
+     */
+    static WaitStrategy parking(final Duration parkTime) {
+        final long parkNanos = parkTime.toNanos();
+        return attempt -> {
+            if(attempt >= 200) {
+                LockSupport.parkNanos(parkNanos);
+            } else if(attempt >= 100) {
+                Thread.yield();
+            }
+        };
+    }
+}
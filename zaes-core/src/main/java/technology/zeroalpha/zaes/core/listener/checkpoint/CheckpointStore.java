@@ -0,0 +1,40 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.listener.checkpoint;
+
+import technology.zeroalpha.zaes.core.event.Event;
+
+/**
+ * Store of the global position each catch-up subscription has processed up to, so that it can resume after a restart.
+ */
+public interface CheckpointStore {
+
+    /**
+     * @param subscriptionId Identifier of subscription
+     * @return Global position of the last {@link Event} the subscription processed, or {@link Event#NO_POSITION} if it
+     *         has no checkpoint
+     */
+    long loadCheckpoint(final String subscriptionId);
+
+    /**
+     * @param subscriptionId Identifier of subscription
+     * @param globalPosition Global position of the last {@link Event} the subscription processed
+     */
+    void saveCheckpoint(final String subscriptionId, final long globalPosition);
+}
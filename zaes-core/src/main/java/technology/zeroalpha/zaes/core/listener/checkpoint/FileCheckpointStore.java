@@ -0,0 +1,82 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.listener.checkpoint;
+
+import technology.zeroalpha.zaes.core.event.Event;
+import technology.zeroalpha.zaes.core.io.DurableFiles;
+
+import java.io.*;
+import java.nio.file.*;
+
+/**
+ * {@link CheckpointStore} storing the checkpoint of each subscription in its own file within a directory. Files are
+ * replaced atomically and durably, so a checkpoint is never partially written or lost once saved.
+ */
+public class FileCheckpointStore implements CheckpointStore {
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String FILE_SUFFIX = ".checkpoint";
+
+    /** Directory holding checkpoint files. */
+    private final Path directory;
+
+    /**
+     * @param directory Directory to hold checkpoint files, created if it does not exist
+     */
+    public FileCheckpointStore(final Path directory) {
+        try {
+            this.directory = Files.createDirectories(directory);
+        } catch (final IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    @Override
+    public long loadCheckpoint(final String subscriptionId) {
+        try(final DataInputStream in = new DataInputStream(Files.newInputStream(checkpointFile(subscriptionId)))) {
+            final int version = in.readInt();
+            if(version != FORMAT_VERSION) {
+                throw new IOException("Unsupported checkpoint format version " + version);
+            }
+
+            return in.readLong();
+        } catch (final NoSuchFileException nsfe) {
+            return Event.NO_POSITION;
+        } catch (final IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    @Override
+    public void saveCheckpoint(final String subscriptionId, final long globalPosition) {
+        try {
+            DurableFiles.replace(checkpointFile(subscriptionId), out -> {
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(globalPosition);
+            });
+        } catch (final IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    private Path checkpointFile(final String subscriptionId) {
+        return directory.resolve(DurableFiles.fileName(subscriptionId, FILE_SUFFIX));
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.core.listener.checkpoint;
+
+import technology.zeroalpha.zaes.core.event.Event;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link CheckpointStore} holding checkpoints in memory, for tests and for read models that are themselves held in
+ * memory and so are rebuilt on every start.
+ */
+public class InMemoryCheckpointStore implements CheckpointStore {
+
+    private final Map<String, Long> checkpoints = new ConcurrentHashMap<>();
+
+    @Override
+    public long loadCheckpoint(final String subscriptionId) {
+        return checkpoints.getOrDefault(subscriptionId, Event.NO_POSITION);
+    }
+
+    @Override
+    public void saveCheckpoint(final String subscriptionId, final long globalPosition) {
+        checkpoints.put(subscriptionId, globalPosition);
+    }
+}
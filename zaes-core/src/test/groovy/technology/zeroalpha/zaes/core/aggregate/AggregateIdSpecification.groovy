@@ -0,0 +1,103 @@
+package technology.zeroalpha.zaes.core.aggregate
+
+import spock.lang.Specification
+import technology.zeroalpha.zaes.core.event.EventRepository
+import technology.zeroalpha.zaes.core.event.EventService
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class AggregateIdSpecification extends Specification {
+
+    def generator = AggregateIdentifierGenerator.timeOrdered()
+
+    def 'Identifiers round trip through their 26 character text form, which sorts as they do'() {
+        given:
+            def ids = [new AggregateId(0, 0), new AggregateId(0, -1), new AggregateId(-1, -1),
+                       new AggregateId(0x0123456789ABCDEFL, 0xFEDCBA9876543210L)]
+
+        expect:
+            ids.every { AggregateId.parse(it.toString()) == it }
+            ids.every { it.toString().length() == 26 }
+            new AggregateId(0, 0).toString() == '00000000000000000000000000'
+            new AggregateId(-1, -1).toString() == '7ZZZZZZZZZZZZZZZZZZZZZZZZZ'
+            ids.sort(false) == ids.sort(false) { it.toString() }
+    }
+
+    def 'Parsing only accepts the canonical text form, so every parsed identifier prints as the text it came from'() {
+        given:
+            def id = generator.generateNewAggregateId()
+
+        expect:
+            AggregateId.parse(id.toString()).toString() == id.toString()
+            !AggregateId.isAggregateId(text)
+
+        when:
+            AggregateId.parse(text)
+
+        then:
+            thrown(IllegalArgumentException)
+
+        where:
+            text << [null, '', '8ZZZZZZZZZZZZZZZZZZZZZZZZZ', '7ZZZZZZZZZZZZZZZZZZZZZZZZU', UUID.randomUUID().toString(),
+                     '7zzzzzzzzzzzzzzzzzzzzzzzzz', '7ZZZZZZZZZZZZZZZZZZZZZZZZO', '7ZZZZZZZZZZZZZZZZZZZZZZZZI',
+                     '7ZZZZZZZZZZZZZZZZZZZZZZZZL']
+    }
+
+    def 'Identifiers are time-ordered and strictly increasing within a thread'() {
+        given:
+            def before = System.currentTimeMillis()
+
+        when:
+            def ids = (1..10_000).collect { generator.generateNewAggregateId() }
+
+        then:
+            ids == ids.sort(false)
+            ids.toSet().size() == ids.size()
+            ids[0].timestamp.toEpochMilli() >= before
+            ids[-1].timestamp.toEpochMilli() <= System.currentTimeMillis()
+            AggregateId.isAggregateId(generator.generateNewIdentifier())
+    }
+
+    def 'Threads generate unique identifiers without sharing state'() {
+        given:
+            def ids = ConcurrentHashMap.newKeySet()
+            def executor = Executors.newFixedThreadPool(4)
+
+        when:
+            (1..4).each { executor.submit { (1..10_000).each { ids << generator.generateNewAggregateId() } } }
+            executor.shutdown()
+            executor.awaitTermination(10, TimeUnit.SECONDS)
+
+        then:
+            ids.size() == 40_000
+    }
+
+    def 'Aggregates carry compact identifiers, which are used to read their streams'() {
+        given:
+            def eventRepository = Mock(EventRepository)
+            def aggregateService = new AggregateService(TallyAggregate, generator, new EventService(eventRepository))
+
+        when:
+            def created = aggregateService.createNewAggregate()
+
+        then:
+            created.aggregateId != null
+            created.aggregateIdentifier == created.aggregateId.toString()
+
+        when:
+            def built = aggregateService.buildLatestAggregate(created.aggregateId)
+
+        then:
+            1 * eventRepository.streamEventStream(created.aggregateId, Integer.MIN_VALUE, Integer.MAX_VALUE) >> {
+                [new TallyEvent(sequence: 1, amount: 7)].stream()
+            }
+            built.aggregateId.is(created.aggregateId)
+            built.total == 7
+
+        expect:
+            new TallyAggregate(aggregateIdentifier: 'not-compact').aggregateId == null
+            new TallyAggregate(aggregateIdentifier: created.aggregateIdentifier).aggregateId == created.aggregateId
+    }
+}
@@ -0,0 +1,321 @@
+package technology.zeroalpha.zaes.core.aggregate
+
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+import spock.lang.Unroll
+import technology.zeroalpha.zaes.core.aggregate.snapshot.FileSnapshotRepository
+import technology.zeroalpha.zaes.core.aggregate.snapshot.InMemorySnapshotRepository
+import technology.zeroalpha.zaes.core.aggregate.snapshot.JavaSnapshotSerializer
+import technology.zeroalpha.zaes.core.aggregate.snapshot.Snapshot
+import technology.zeroalpha.zaes.core.aggregate.snapshot.SnapshotPolicy
+import technology.zeroalpha.zaes.core.aggregate.snapshot.SnapshotRepository
+import technology.zeroalpha.zaes.core.event.Event
+import technology.zeroalpha.zaes.core.event.EventRepository
+import technology.zeroalpha.zaes.core.event.EventService
+import technology.zeroalpha.zaes.core.event.ReplayableEventRepository
+
+import java.nio.file.Files
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+import java.time.ZoneOffset
+import java.time.ZonedDateTime
+import java.util.function.Consumer
+
+class AggregateServiceSpecification extends Specification {
+
+    @Rule
+    TemporaryFolder temporaryFolder = new TemporaryFolder()
+
+    def aggregateIdentifier = 'aggregate-identifier'
+
+    def events = []
+
+    def eventRepository = Stub(EventRepository) {
+        streamEventStream(_ as String) >> { events.stream() }
+        streamEventStream(_ as String, _ as Integer, _ as Integer) >> { String id, int start, int end ->
+            events.findAll { it.sequenceNumber >= start && it.sequenceNumber <= end }.stream()
+        }
+    }
+
+    def eventService = new EventService(eventRepository)
+
+    def 'Rebuilding without snapshots applies every Event in the stream'() {
+        given:
+            appendEvents(1..5)
+            def aggregateService = new AggregateService(TallyAggregate, Mock(AggregateIdentifierGenerator), eventService)
+
+        when:
+            def aggregate = aggregateService.buildLatestAggregate(aggregateIdentifier)
+
+        then:
+            aggregate.aggregateIdentifier == aggregateIdentifier
+            aggregate.sequenceNumber == 5
+            aggregate.total == 15
+            aggregate.eventsApplied == 5
+    }
+
+    @Unroll
+    def 'Snapshot plus tail produces the same state as a full replay using #repositoryType'() {
+        given:
+            def snapshotRepository = repositoryFactory.call(temporaryFolder)
+            def fullReplayService =
+                    new AggregateService(TallyAggregate, Mock(AggregateIdentifierGenerator), eventService)
+            def snapshottingService = new AggregateService(
+                    TallyAggregate,
+                    Mock(AggregateIdentifierGenerator),
+                    eventService,
+                    snapshotRepository,
+                    SnapshotPolicy.everyEvents(10))
+
+        when: 'the stream is first rebuilt, triggering a snapshot'
+            appendEvents(1..25)
+            snapshottingService.buildLatestAggregate(aggregateIdentifier)
+
+        and: 'more Events are appended'
+            appendEvents(26..32)
+            def fromSnapshot = snapshottingService.buildLatestAggregate(aggregateIdentifier)
+            def fromReplay = fullReplayService.buildLatestAggregate(aggregateIdentifier)
+
+        then:
+            snapshotRepository.retrieveLatestSnapshot(aggregateIdentifier).get().sequenceNumber == 25
+            fromSnapshot.aggregateIdentifier == fromReplay.aggregateIdentifier
+            fromSnapshot.sequenceNumber == fromReplay.sequenceNumber
+            fromSnapshot.total == fromReplay.total
+
+        and: 'only the tail was replayed on top of the snapshot'
+            fromSnapshot.eventsApplied == 32
+            fromSnapshot.eventsReplayedSinceRestore == 7
+
+        where:
+            repositoryType     | repositoryFactory
+            'in-memory store'  | { folder -> new InMemorySnapshotRepository() }
+            'file-based store' | { folder -> new FileSnapshotRepository(folder.newFolder().toPath()) }
+    }
+
+    def 'No snapshot is taken until the policy is satisfied'() {
+        given:
+            def snapshotRepository = new InMemorySnapshotRepository()
+            def aggregateService = new AggregateService(
+                    TallyAggregate,
+                    Mock(AggregateIdentifierGenerator),
+                    eventService,
+                    snapshotRepository,
+                    SnapshotPolicy.everyEvents(10))
+            appendEvents(1..9)
+
+        when:
+            aggregateService.buildLatestAggregate(aggregateIdentifier)
+
+        then:
+            !snapshotRepository.retrieveLatestSnapshot(aggregateIdentifier).isPresent()
+    }
+
+    def 'Several Aggregates are built with a single bulk read, starting after any snapshots'() {
+        given:
+            def streams = [a: (1..4), b: (1..2), c: (1..30)].collectEntries { id, range ->
+                [id, range.collect { new TallyEvent(sequence: it, amount: it) }]
+            }
+            def bulkRepository = Mock(EventRepository)
+            def snapshotRepository = new InMemorySnapshotRepository()
+            def aggregateService = new AggregateService(
+                    TallyAggregate,
+                    Mock(AggregateIdentifierGenerator),
+                    new EventService(bulkRepository),
+                    snapshotRepository,
+                    SnapshotPolicy.everyEvents(10))
+            def snapshotted = new TallyAggregate(aggregateIdentifier: 'c', total: 210)
+            snapshotted.applyEvent(new TallyEvent(sequence: 20, amount: 0))
+            snapshotRepository.saveSnapshot(
+                    new Snapshot('c', 20, ZonedDateTime.now(), new JavaSnapshotSerializer().serialize(snapshotted)))
+
+        when:
+            def aggregates = aggregateService.buildLatestAggregates(['b', 'a', 'missing', 'c', 'a'])
+
+        then:
+            1 * bulkRepository.retrieveEventStreams([b: Integer.MIN_VALUE, a: Integer.MIN_VALUE,
+                                                     missing: Integer.MIN_VALUE, c: 21]) >> { Map<String, Integer> from ->
+                from.collectEntries { id, start -> [id, (streams[id] ?: []).findAll { it.sequenceNumber >= start }] }
+            }
+            0 * bulkRepository.retrieveEventStream(*_)
+            0 * bulkRepository.streamEventStream(*_)
+            aggregates.keySet().toList() == ['b', 'a', 'missing', 'c']
+            aggregates*.value*.total == [3, 10, 0, 465]
+            aggregates*.value*.sequenceNumber == [2, 4, 0, 30]
+            aggregates.c.eventsReplayedSinceRestore == 10
+            snapshotRepository.retrieveLatestSnapshot('c').get().sequenceNumber == 30
+    }
+
+    def 'Aggregates are rebuilt through the replay path of stores that offer one'() {
+        given:
+            def replayableRepository = Mock(ReplayableEventRepository)
+            def aggregateService = new AggregateService(
+                    TallyAggregate, Mock(AggregateIdentifierGenerator), new EventService(replayableRepository))
+            def reused = new TallyEvent()
+
+        when:
+            def aggregate = aggregateService.buildLatestAggregate(aggregateIdentifier)
+
+        then:
+            1 * replayableRepository.replayEventStream(aggregateIdentifier, Integer.MIN_VALUE, Integer.MAX_VALUE, _) >> {
+                String id, int start, int end, Consumer<Event> consumer ->
+                    (1..3).each {
+                        reused.sequence = it
+                        reused.amount = it * 10
+                        reused.setEventTimestamp(it * 1_000_000L, ZoneOffset.UTC)
+                        consumer.accept(reused)
+                    }
+                    3
+            }
+            0 * replayableRepository.streamEventStream(*_)
+            aggregate.total == 60
+            aggregate.sequenceNumber == 3
+            aggregate.lastModificationDate == ZonedDateTime.of(1970, 1, 1, 0, 0, 3, 0, ZoneOffset.UTC)
+    }
+
+    def 'File-based snapshots are not replaced by older snapshots'() {
+        given:
+            def snapshotRepository = new FileSnapshotRepository(temporaryFolder.newFolder().toPath())
+            def aggregateService = new AggregateService(
+                    TallyAggregate,
+                    Mock(AggregateIdentifierGenerator),
+                    eventService,
+                    snapshotRepository,
+                    SnapshotPolicy.everyEvents(1))
+            appendEvents(1..3)
+            aggregateService.buildLatestAggregate(aggregateIdentifier)
+            def latest = snapshotRepository.retrieveLatestSnapshot(aggregateIdentifier).get()
+
+        when:
+            snapshotRepository.saveSnapshot(new Snapshot(
+                    aggregateIdentifier, 1, latest.snapshotTimestamp, new byte[0]))
+
+        then:
+            snapshotRepository.retrieveLatestSnapshot(aggregateIdentifier).get().sequenceNumber == 3
+    }
+
+    def 'A damaged snapshot file is treated as no snapshot, and replaced by the next rebuild'() {
+        given:
+            def directory = temporaryFolder.newFolder().toPath()
+            def snapshotRepository = new FileSnapshotRepository(directory)
+            def aggregateService = new AggregateService(
+                    TallyAggregate,
+                    Mock(AggregateIdentifierGenerator),
+                    eventService,
+                    snapshotRepository,
+                    SnapshotPolicy.everyEvents(1))
+            appendEvents(1..3)
+            aggregateService.buildLatestAggregate(aggregateIdentifier)
+            def file = directory.resolve(directory.toFile().list().first())
+            Files.write(file, Arrays.copyOf(Files.readAllBytes(file), (int) Files.size(file) - 10))
+
+        expect: 'the truncated file reads as no snapshot'
+            !snapshotRepository.retrieveLatestSnapshot(aggregateIdentifier).isPresent()
+
+        when:
+            def aggregate = aggregateService.buildLatestAggregate(aggregateIdentifier)
+
+        then: 'the whole stream is replayed and a new snapshot written over the damaged file'
+            aggregate.total == 6
+            aggregate.eventsApplied == 3
+            snapshotRepository.retrieveLatestSnapshot(aggregateIdentifier).get().sequenceNumber == 3
+    }
+
+    def 'File-based snapshots are kept for identifiers too long to be file names, leaving no temporary files'() {
+        given:
+            def directory = temporaryFolder.newFolder().toPath()
+            def snapshotRepository = new FileSnapshotRepository(directory)
+            def longIdentifier = 'x' * 300
+            def state = new JavaSnapshotSerializer().serialize(new TallyAggregate(aggregateIdentifier: longIdentifier))
+
+        when:
+            snapshotRepository.saveSnapshot(new Snapshot(longIdentifier, 7, ZonedDateTime.now(), state))
+
+        then:
+            snapshotRepository.retrieveLatestSnapshot(longIdentifier).get().sequenceNumber == 7
+            !snapshotRepository.retrieveLatestSnapshot('x' * 299).isPresent()
+            directory.toFile().list().size() == 1
+    }
+
+    def 'A failure to save a snapshot does not fail the rebuild'() {
+        given:
+            def snapshotRepository = Stub(SnapshotRepository) {
+                retrieveLatestSnapshot(_) >> Optional.empty()
+                saveSnapshot(_) >> { throw new UncheckedIOException(new IOException('No space left on device')) }
+            }
+            def aggregateService = new AggregateService(
+                    TallyAggregate,
+                    Mock(AggregateIdentifierGenerator),
+                    eventService,
+                    snapshotRepository,
+                    SnapshotPolicy.everyEvents(1))
+            appendEvents(1..3)
+
+        when:
+            def aggregate = aggregateService.buildLatestAggregate(aggregateIdentifier)
+
+        then:
+            aggregate.total == 6
+    }
+
+    def 'Snapshots are timestamped by the clock of the policy'() {
+        given:
+            def now = Instant.parse('2016-06-01T12:00:00Z')
+            def snapshotRepository = new InMemorySnapshotRepository()
+            def aggregateService = new AggregateService(
+                    TallyAggregate,
+                    Mock(AggregateIdentifierGenerator),
+                    eventService,
+                    snapshotRepository,
+                    SnapshotPolicy.everyPeriod(Duration.ofHours(1), Clock.fixed(now, ZoneOffset.UTC)))
+            appendEvents(1..3)
+
+        when:
+            aggregateService.buildLatestAggregate(aggregateIdentifier)
+
+        then:
+            snapshotRepository.retrieveLatestSnapshot(aggregateIdentifier).get().snapshotTimestamp.toInstant() == now
+    }
+
+    private void appendEvents(final IntRange sequenceNumbers) {
+        sequenceNumbers.each { events << new TallyEvent(sequence: it, amount: it) }
+    }
+}
+
+class TallyEvent extends Event {
+
+    int sequence
+
+    int amount
+
+    @Override
+    int getSequenceNumber() {
+        sequence
+    }
+}
+
+class TallyAggregate extends Aggregate {
+
+    int total
+
+    int eventsApplied
+
+    transient int eventsReplayedSinceRestore
+
+    TallyAggregate() {
+    }
+
+    TallyAggregate(final TallyAggregate aggregate) {
+        super(aggregate)
+        total = aggregate.total
+        eventsApplied = aggregate.eventsApplied
+    }
+
+    @Override
+    protected void processEvent(final Event event) {
+        total += ((TallyEvent) event).amount
+        eventsApplied++
+        eventsReplayedSinceRestore++
+    }
+}
@@ -0,0 +1,167 @@
+package technology.zeroalpha.zaes.core.aggregate
+
+import spock.lang.Specification
+import technology.zeroalpha.zaes.core.event.Event
+
+class EventHandlerSpecification extends Specification {
+
+    def 'Events are routed to the handler for their class, or their nearest superclass'() {
+        given:
+            def account = new Account()
+
+        when:
+            account.applyEvent(new Deposited(amount: 10))
+            account.applyEvent(new Withdrawn(amount: 3))
+            account.applyEvent(new BonusDeposited(amount: 5))
+            account.applyEvent(new Renamed())
+
+        then:
+            account.balance == 12
+            account.deposits == 1
+    }
+
+    def 'Private handlers are invoked, and exceptions they throw are propagated unwrapped'() {
+        given:
+            def ledger = new PrivateLedger()
+
+        when:
+            ledger.applyEvent(new Deposited(amount: 10))
+
+        then:
+            ledger.total == 10
+
+        when:
+            ledger.applyEvent(new Withdrawn(amount: 1))
+
+        then:
+            def e = thrown(IllegalArgumentException)
+            e.message == 'Withdrawals not supported'
+    }
+
+    def 'Handlers overridden by a subclass are invoked once'() {
+        given:
+            def account = new AuditedAccount()
+
+        when:
+            account.applyEvent(new Deposited(amount: 10))
+
+        then:
+            account.balance == 10
+            account.audited == 1
+    }
+
+    def 'Invalid handlers are rejected'() {
+        when:
+            aggregate.applyEvent(new Deposited(amount: 1))
+
+        then:
+            thrown(IllegalStateException)
+
+        where:
+            aggregate << [new NonVoidHandler(), new AmbiguousHandlers()]
+    }
+
+    def 'Aggregates without a no-argument constructor are rejected when the service is created'() {
+        when:
+            new AggregateService(NoDefaultConstructor, Mock(AggregateIdentifierGenerator), null)
+
+        then:
+            thrown(AggregateInstantiationException)
+    }
+
+    def 'Exceptions thrown by an Aggregate constructor are wrapped'() {
+        given:
+            def aggregateService =
+                    new AggregateService(FailingConstructor, Mock(AggregateIdentifierGenerator), null)
+
+        when:
+            aggregateService.createNewAggregate()
+
+        then:
+            def e = thrown(AggregateInstantiationException)
+            e.cause instanceof UnsupportedOperationException
+    }
+}
+
+class Deposited extends Event {
+    int amount
+}
+
+class BonusDeposited extends Deposited {
+}
+
+class Withdrawn extends Event {
+    int amount
+}
+
+class Renamed extends Event {
+}
+
+class Account extends Aggregate {
+    int balance
+    int deposits
+
+    @EventHandler
+    void on(final Deposited event) {
+        balance += event.amount
+        deposits += event instanceof BonusDeposited ? 0 : 1
+    }
+
+    @EventHandler
+    void on(final Withdrawn event) {
+        balance -= event.amount
+    }
+}
+
+class AuditedAccount extends Account {
+    int audited
+
+    @EventHandler
+    @Override
+    void on(final Deposited event) {
+        audited++
+        super.on(event)
+    }
+}
+
+class PrivateLedger extends Aggregate {
+    int total
+
+    @EventHandler
+    private void deposited(final Deposited event) {
+        total += event.amount
+    }
+
+    @EventHandler
+    private void withdrawn(final Withdrawn event) {
+        throw new IllegalArgumentException('Withdrawals not supported')
+    }
+}
+
+class NonVoidHandler extends Aggregate {
+    @EventHandler
+    int on(final Deposited event) {
+        event.amount
+    }
+}
+
+class AmbiguousHandlers extends Aggregate {
+    @EventHandler
+    void first(final Deposited event) {
+    }
+
+    @EventHandler
+    void second(final Deposited event) {
+    }
+}
+
+class NoDefaultConstructor extends Aggregate {
+    NoDefaultConstructor(final String name) {
+    }
+}
+
+class FailingConstructor extends Aggregate {
+    FailingConstructor() {
+        throw new UnsupportedOperationException()
+    }
+}
@@ -0,0 +1,212 @@
+package technology.zeroalpha.zaes.core.aggregate.cache
+
+import spock.lang.Specification
+import technology.zeroalpha.zaes.core.aggregate.AggregateIdentifierGenerator
+import technology.zeroalpha.zaes.core.aggregate.TallyAggregate
+import technology.zeroalpha.zaes.core.aggregate.TallyEvent
+import technology.zeroalpha.zaes.core.event.EventRepository
+import technology.zeroalpha.zaes.core.event.EventService
+
+class CachingAggregateServiceSpecification extends Specification {
+
+    def streams = [:].withDefault { [] }
+
+    def eventRepository = Mock(EventRepository)
+
+    def aggregateCache = new AggregateCache<TallyAggregate>(2)
+
+    def aggregateService = new CachingAggregateService(
+            TallyAggregate, Mock(AggregateIdentifierGenerator), new EventService(eventRepository), aggregateCache)
+
+    def setup() {
+        eventRepository.streamEventStream(_ as String) >> { String id -> streams[id].stream() }
+        eventRepository.streamEventStream(_ as String, _ as Integer, _ as Integer) >> { String id, int start, int end ->
+            streams[id].findAll { it.sequenceNumber >= start && it.sequenceNumber <= end }.stream()
+        }
+    }
+
+    def 'A cache hit only applies Events appended since the Aggregate was cached'() {
+        given:
+            appendEvents('a', 1..3)
+            def first = aggregateService.buildLatestAggregate('a')
+            appendEvents('a', 4..5)
+
+        when:
+            def second = aggregateService.buildLatestAggregate('a')
+
+        then:
+            0 * eventRepository.streamEventStream('a')
+            1 * eventRepository.streamEventStream('a', 4, Integer.MAX_VALUE) >> { streams['a'][3..4].stream() }
+            !second.is(first)
+            second.sequenceNumber == 5
+            second.total == 15
+            first.sequenceNumber == 3
+
+        and:
+            with(aggregateService.cacheStatistics) {
+                hitCount == 1
+                missCount == 1
+                evictionCount == 0
+            }
+    }
+
+    def 'Bulk builds read the tails of cached Aggregates and the streams of the rest together'() {
+        given:
+            appendEvents('a', 1..3)
+            appendEvents('b', 1..2)
+            def cached = aggregateService.buildLatestAggregate('a')
+            appendEvents('a', 4..5)
+
+        when:
+            def aggregates = aggregateService.buildLatestAggregates(['a', 'b'])
+
+        then:
+            1 * eventRepository.retrieveEventStreams([b: Integer.MIN_VALUE]) >> [b: streams['b']]
+            1 * eventRepository.retrieveEventStreams([a: 4]) >> [a: streams['a'][3..4]]
+            !aggregates.a.is(cached)
+            aggregates.a.total == 15
+            aggregates.b.total == 3
+            aggregateCache.get('a').total == 15
+            !aggregateCache.get('b').is(aggregates.b)
+            aggregateCache.get('b').total == 3
+    }
+
+    def 'Callers receive copies, so changes to one do not reach the cache or other callers'() {
+        given:
+            appendEvents('a', 1..2)
+            def first = aggregateService.buildLatestAggregate('a')
+
+        when:
+            first.applyEvent(new TallyEvent(sequence: 3, amount: 100))
+            def second = aggregateService.buildLatestAggregate('a')
+
+        then:
+            second.total == 3
+            second.sequenceNumber == 2
+            aggregateCache.get('a').total == 3
+            !aggregateCache.get('a').is(first)
+            !aggregateCache.get('a').is(second)
+    }
+
+    def 'Least recently used Aggregates are evicted once the cache is full'() {
+        given:
+            appendEvents('a', 1..1)
+            appendEvents('b', 1..2)
+            appendEvents('c', 1..3)
+
+        when:
+            aggregateService.buildLatestAggregate('a')
+            aggregateService.buildLatestAggregate('b')
+            aggregateService.buildLatestAggregate('a')
+            aggregateService.buildLatestAggregate('c')
+
+        then:
+            aggregateCache.get('a') != null
+            aggregateCache.get('b') == null
+            aggregateCache.get('c') != null
+            aggregateService.cacheStatistics.evictionCount == 1
+    }
+
+    def 'Weight-bounded caches evict until the combined weight fits'() {
+        given:
+            def cache = new AggregateCache<TallyAggregate>(10, { it.sequenceNumber } as AggregateWeigher)
+            def light = new TallyAggregate(aggregateIdentifier: 'light')
+            light.applyEvent(new TallyEvent(sequence: 4, amount: 0))
+            def heavy = new TallyAggregate(aggregateIdentifier: 'heavy')
+            heavy.applyEvent(new TallyEvent(sequence: 9, amount: 0))
+
+        when:
+            cache.put(light)
+            cache.put(heavy)
+
+        then:
+            cache.get('light') == null
+            cache.get('heavy').is(heavy)
+            with(cache.statistics) {
+                size == 1
+                weight == 9
+                evictionCount == 1
+            }
+    }
+
+    def 'Invalidated Aggregates are rebuilt from their stream'() {
+        given:
+            appendEvents('a', 1..2)
+            aggregateService.buildLatestAggregate('a')
+
+        when:
+            aggregateService.invalidate('a')
+            aggregateService.buildLatestAggregate('a')
+
+        then:
+            1 * eventRepository.streamEventStream('a') >> { streams['a'].stream() }
+    }
+
+    def 'A cached Aggregate that fails to apply an Event is dropped rather than kept part way through it'() {
+        given:
+            appendEvents('a', 1..2)
+            aggregateService.buildLatestAggregate('a')
+            streams['a'] << new UnreadableTallyEvent(sequence: 3)
+
+        when:
+            aggregateService.buildLatestAggregate('a')
+
+        then:
+            thrown(IllegalStateException)
+            aggregateCache.get('a') == null
+
+        when:
+            streams['a'][2] = new TallyEvent(sequence: 3, amount: 3)
+            def rebuilt = aggregateService.buildLatestAggregate('a')
+
+        then:
+            rebuilt.total == 6
+            rebuilt.sequenceNumber == 3
+    }
+
+    def 'Published Events that fail to apply to the cached Aggregate drop it without failing the publisher'() {
+        given:
+            appendEvents('a', 1..2)
+            aggregateService.buildLatestAggregate('a')
+
+        when:
+            aggregateService.recordPublished('a', [new UnreadableTallyEvent(sequence: 3)])
+
+        then:
+            noExceptionThrown()
+            aggregateCache.get('a') == null
+    }
+
+    def 'Callers may supply a cheaper copier, which is used for every copy handed out'() {
+        given:
+            def copies = 0
+            def copyingService = new CachingAggregateService<TallyAggregate>(
+                    TallyAggregate, Mock(AggregateIdentifierGenerator), new EventService(eventRepository),
+                    aggregateCache, { copies++; new TallyAggregate(it) } as AggregateCopier)
+            appendEvents('a', 1..3)
+
+        when:
+            def first = copyingService.buildLatestAggregate('a')
+            def second = copyingService.buildLatestAggregate('a')
+
+        then:
+            copies == 2
+            !first.is(second)
+            !second.is(aggregateCache.get('a'))
+            second.total == 6
+            second.sequenceNumber == 3
+            second.aggregateIdentifier == 'a'
+    }
+
+    private void appendEvents(final String eventStreamId, final IntRange sequenceNumbers) {
+        sequenceNumbers.each { streams[eventStreamId] << new TallyEvent(sequence: it, amount: it) }
+    }
+}
+
+class UnreadableTallyEvent extends TallyEvent {
+
+    @Override
+    int getAmount() {
+        throw new IllegalStateException('Unreadable event')
+    }
+}
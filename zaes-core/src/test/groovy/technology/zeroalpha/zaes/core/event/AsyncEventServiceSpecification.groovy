@@ -0,0 +1,73 @@
+package technology.zeroalpha.zaes.core.event
+
+import spock.lang.Specification
+
+import java.util.concurrent.CompletionException
+import java.util.concurrent.TimeUnit
+
+class AsyncEventServiceSpecification extends Specification {
+
+    def eventRepository = new ListEventRepository()
+
+    def asyncEventRepository = new ExecutorAsyncEventRepository(eventRepository, 2)
+
+    def asyncEventService = new AsyncEventService(asyncEventRepository)
+
+    def cleanup() {
+        asyncEventRepository.close()
+    }
+
+    def 'Blocking EventRepository calls run on the adapter threads'() {
+        given:
+            def repository = Mock EventRepository
+            def adapter = new ExecutorAsyncEventRepository(repository, 1)
+            def thread = null
+
+        when:
+            def events = adapter.retrieveEventStream('stream', 1, 10).get(10, TimeUnit.SECONDS)
+            adapter.close()
+
+        then:
+            1 * repository.retrieveEventStream('stream', 1, 10) >> { thread = Thread.currentThread(); null }
+            events.isEmpty()
+            thread.name.startsWith('zaes-async-repository-')
+    }
+
+    def 'Published Events are sequenced and persisted once the future completes'() {
+        given:
+            eventRepository.events = [new ListEvent(sequenceNumber: 1)]
+            def unpublished = [new ListEvent(), new ListEvent()]
+
+        when:
+            asyncEventService.publishEvents('stream', 1, unpublished).get(10, TimeUnit.SECONDS)
+
+        then:
+            unpublished*.sequenceNumber == [2, 3]
+            unpublished.every { it.eventTimestamp != null }
+            eventRepository.events*.sequenceNumber == [1, 2, 3]
+    }
+
+    def 'Publishing after the stream has moved on completes exceptionally without persisting'() {
+        given:
+            eventRepository.events = [new ListEvent(sequenceNumber: 1), new ListEvent(sequenceNumber: 2)]
+
+        when:
+            asyncEventService.publishEvents('stream', 1, [new ListEvent()]).join()
+
+        then:
+            def ce = thrown(CompletionException)
+            ce.cause instanceof ConcurrentModificationException
+            eventRepository.events.size() == 2
+    }
+
+    def 'Retrieval completes with the Events of the stream'() {
+        given:
+            eventRepository.events = [new ListEvent(sequenceNumber: 1), new ListEvent(sequenceNumber: 2)]
+
+        when:
+            def events = asyncEventService.retrieveAllEvents('stream').get(10, TimeUnit.SECONDS)
+
+        then:
+            events*.sequenceNumber == [1, 2]
+    }
+}
@@ -2,6 +2,15 @@ package technology.zeroalpha.zaes.core.event
 
 import spock.lang.Specification
 
+import java.time.Duration
+import java.time.ZoneOffset
+import java.time.ZonedDateTime
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.stream.Collectors
+import java.util.stream.Stream
+
 class EventServiceSpecification extends Specification {
 
     def eventRepository = Mock EventRepository
@@ -41,4 +50,418 @@ class EventServiceSpecification extends Specification {
         then:
             events == [firstEvent, secondEvent]
     }
+
+    def 'If EventRepository returns null on calls to streamAllEvents() then return an empty Stream'() {
+        given:
+            def aggregateIdentifier = 'aggregate-identifier'
+            eventRepository.streamEventStream(aggregateIdentifier) >> null
+
+        when:
+            def events = eventService.streamAllEvents(aggregateIdentifier)
+
+        then:
+            events.count() == 0
+    }
+
+    def 'List-based EventRepositories are adapted to Streams'() {
+        given:
+            def firstEvent = Mock Event
+            def secondEvent = Mock Event
+            def listRepository = new ListEventRepository(events: [firstEvent, secondEvent])
+
+        when:
+            def events = new EventService(listRepository).streamEventsFromSequenceNumber('aggregate-identifier', 1)
+
+        then:
+            events.collect(Collectors.toList()) == [firstEvent, secondEvent]
+    }
+
+    def 'Publishing assigns sequence numbers and timestamps, then persists and flushes the Events'() {
+        given:
+            def events = [new ListEvent(), new ListEvent()]
+            eventRepository.retrieveLatestSequenceNumber('stream') >> 4
+
+        when:
+            eventService.publishEvents('stream', 4, events)
+
+        then:
+            1 * eventRepository.persistEvents('stream', events)
+
+        then:
+            1 * eventRepository.flush()
+            events*.sequenceNumber == [5, 6]
+            events.every { it.eventTimestamp != null }
+    }
+
+    def 'Publishing against a stale sequence number throws ConcurrentModificationException'() {
+        given:
+            eventRepository.retrieveLatestSequenceNumber('stream') >> 5
+
+        when:
+            eventService.publishEvents('stream', 4, [new ListEvent()])
+
+        then:
+            thrown(ConcurrentModificationException)
+            0 * eventRepository.persistEvents(*_)
+    }
+
+    def 'Concurrent publications are group-committed into shared batches'() {
+        given:
+            def batches = Collections.synchronizedList([])
+            def flushes = new AtomicInteger()
+            def repository = Stub(EventRepository) {
+                persistEventBatch(_) >> { Map eventStreams -> batches << new HashMap(eventStreams) }
+                flush() >> { flushes.incrementAndGet() }
+            }
+            def groupCommittingService =
+                    new EventService(repository, new GroupCommitPolicy(Duration.ofMillis(250), 1000))
+            def start = new CountDownLatch(1)
+
+        when:
+            def threads = (1..20).collect { index ->
+                Thread.start {
+                    start.await()
+                    groupCommittingService.publishEvents("stream-$index", 0, [new ListEvent()])
+                }
+            }
+            start.countDown()
+            threads*.join()
+            groupCommittingService.close()
+
+        then:
+            batches.sum { it.size() } == 20
+            batches.size() < 20
+            flushes.get() == batches.size()
+    }
+
+    def 'Only the later of two conflicting group-committed publications fails'() {
+        given:
+            def groupCommittingService =
+                    new EventService(eventRepository, new GroupCommitPolicy(Duration.ofMillis(250), 1000))
+            def start = new CountDownLatch(1)
+            def failures = new AtomicInteger()
+
+        when:
+            def threads = (1..2).collect {
+                Thread.start {
+                    start.await()
+                    try {
+                        groupCommittingService.publishEvents('stream', 0, [new ListEvent()])
+                    } catch (ConcurrentModificationException cme) {
+                        failures.incrementAndGet()
+                    }
+                }
+            }
+            start.countDown()
+            threads*.join()
+            groupCommittingService.close()
+
+        then:
+            failures.get() == 1
+            1 * eventRepository.persistEventBatch({ it['stream'].size() == 1 })
+    }
+
+    def 'A partially written batch only fails the appends that conflicted and never writes an Event twice'() {
+        given:
+            def repository = new StreamMapEventRepository(interferingStream: 'b')
+            def groupCommittingService =
+                    new EventService(repository, new GroupCommitPolicy(Duration.ofMillis(500), 1000))
+            def start = new CountDownLatch(1)
+            def failures = new ConcurrentHashMap()
+
+        when:
+            def threads = [a: 1, b: 2, c: 1].collect { stream, count ->
+                Thread.start {
+                    start.await()
+                    try {
+                        groupCommittingService.publishEvents(stream, 0, (1..count).collect { new ListEvent() })
+                    } catch (ConcurrentModificationException cme) {
+                        failures[stream] = cme
+                    }
+                }
+            }
+            start.countDown()
+            threads*.join()
+            groupCommittingService.close()
+
+        then:
+            failures.keySet() == ['b'] as Set
+            repository.streams.a*.sequenceNumber == [1]
+            repository.streams.b*.sequenceNumber == [1]
+            repository.streams.c*.sequenceNumber == [1]
+    }
+
+    def 'An Error from the store fails only the batch it was thrown for, and later publications are committed'() {
+        given:
+            def batches = Collections.synchronizedList([])
+            def repository = Stub(EventRepository) {
+                persistEventBatch(_) >>
+                        { throw new StackOverflowError() } >>
+                        { Map eventStreams -> batches << eventStreams }
+            }
+            def groupCommittingService =
+                    new EventService(repository, new GroupCommitPolicy(Duration.ofMillis(10), 1000))
+
+        when:
+            groupCommittingService.publishEvents('a', 0, [new ListEvent()])
+
+        then:
+            def ise = thrown(IllegalStateException)
+            ise.cause instanceof StackOverflowError
+
+        when:
+            groupCommittingService.publishEvents('b', 0, [new ListEvent()])
+            groupCommittingService.close()
+
+        then:
+            batches*.keySet() == [['b'] as Set]
+    }
+
+    def 'Date range queries return the Events within the range, inclusive'() {
+        given:
+            def events = timedEvents(500)
+            stubStream(events)
+
+        expect:
+            eventService.retrieveEventsToDate('stream', minutes(100))*.sequenceNumber == (1..100).toList()
+            eventService.retrieveEventsFromDate('stream', minutes(450))*.sequenceNumber == (450..500).toList()
+            eventService.retrieveEventsBetweenDates('stream', minutes(200), minutes(203))*.sequenceNumber ==
+                    [200, 201, 202, 203]
+            eventService.retrieveEventsBetweenDates('stream', minutes(600), minutes(700)).isEmpty()
+    }
+
+    def 'Date range queries only read the part of the stream around the range once the index is built'() {
+        given:
+            def events = timedEvents(1000)
+            stubStream(events)
+            eventService.retrieveEventsToDate('stream', minutes(1))
+
+        when:
+            def result = eventService.retrieveEventsBetweenDates('stream', minutes(500), minutes(510))
+
+        then:
+            result*.sequenceNumber == (500..510).toList()
+            0 * eventRepository.streamEventStream('stream', { it < 500 - 64 }, _)
+            1 * eventRepository.streamEventStream('stream', { it >= 500 - 64 }, { it <= 510 + 64 }) >> {
+                String id, int start, int end -> events.subList(start - 1, end).stream()
+            }
+    }
+
+    def 'Newly published Events are added to the time index'() {
+        given:
+            def events = timedEvents(10)
+            stubStream(events)
+            eventRepository.retrieveLatestSequenceNumber('stream') >> { events.size() }
+            eventRepository.persistEvents('stream', _) >> { String id, List<Event> published -> events.addAll(published) }
+            eventService.retrieveEventsToDate('stream', minutes(1))
+
+        when:
+            def event = new ListEvent()
+            event.eventTimestamp = minutes(20)
+            eventService.publishEvents('stream', 10, [event])
+
+        then:
+            eventService.retrieveEventsFromDate('stream', minutes(15))*.sequenceNumber == [11]
+    }
+
+    def 'Time indexes are kept for a bounded number of streams'() {
+        given:
+            eventRepository.streamEventStream(_ as String, _ as Integer, _ as Integer) >> { Stream.empty() }
+
+        when:
+            (1..2000).each { eventService.retrieveEventsToDate("stream-$it", minutes(1)) }
+
+        then:
+            eventService.timeIndexes.size() == 1024
+            eventService.timeIndexes.containsKey('stream-2000')
+            !eventService.timeIndexes.containsKey('stream-1')
+    }
+
+    def 'Date range queries go straight to stores that index timestamps themselves'() {
+        given:
+            def events = timedEvents(3)
+            eventRepository.timeIndexed >> true
+
+        when:
+            def result = eventService.retrieveEventsToDate('stream', minutes(2))
+
+        then:
+            1 * eventRepository.retrieveEventStream('stream', _ as ZonedDateTime, minutes(2)) >> events.subList(0, 2)
+            0 * eventRepository.streamEventStream(*_)
+            result*.sequenceNumber == [1, 2]
+    }
+
+    def 'Streams with out of order timestamps fall back to the EventRepository'() {
+        given:
+            def events = timedEvents(3)
+            events[1].eventTimestamp = minutes(10)
+            stubStream(events)
+
+        when:
+            eventService.retrieveEventsToDate('stream', minutes(5))
+
+        then:
+            1 * eventRepository.retrieveEventStream('stream', _ as ZonedDateTime, minutes(5)) >> [events[0], events[2]]
+    }
+
+    def 'Date range queries against a store without a head lookup do not read the whole stream each time'() {
+        given:
+            def repository = new RangeCountingEventRepository(events: timedEvents(1000))
+            def service = new EventService(repository)
+            service.retrieveEventsToDate('stream', minutes(1))
+            repository.eventsRead = 0
+
+        when:
+            def results = (1..10).collect { service.retrieveEventsBetweenDates('stream', minutes(500), minutes(510)) }
+
+        then:
+            results.every { it*.sequenceNumber == (500..510).toList() }
+            repository.eventsRead <= 10 * (11 + 2 * 64)
+    }
+
+    def 'Events without a timestamp are indexed past and never match a date range'() {
+        given:
+            def events = timedEvents(200)
+            events[99].eventTimestamp = null
+            stubStream(events)
+
+        expect:
+            eventService.retrieveEventsBetweenDates('stream', minutes(98), minutes(102))*.sequenceNumber ==
+                    [98, 99, 101, 102]
+            eventService.retrieveEventsFromDate('stream', minutes(199))*.sequenceNumber == [199, 200]
+    }
+
+    private List<Event> timedEvents(final int count) {
+        (1..count).collect {
+            def event = new ListEvent()
+            event.sequenceNumber = it
+            event.eventTimestamp = minutes(it)
+            event
+        }
+    }
+
+    private void stubStream(final List<Event> events) {
+        eventRepository.streamEventStream('stream', _ as Integer, _ as Integer) >> { String id, int start, int end ->
+            events.findAll { it.sequenceNumber >= start && it.sequenceNumber <= end }.stream()
+        }
+    }
+
+    private static ZonedDateTime minutes(final int minutes) {
+        ZonedDateTime.of(2016, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC).plusMinutes(minutes)
+    }
+}
+
+
+class ListEventRepository implements EventRepository {
+
+    List<Event> events = []
+
+    @Override
+    List<Event> retrieveEventStream(final String eventStreamId) {
+        events
+    }
+
+    @Override
+    List<Event> retrieveEventStream(
+            final String eventStreamId, final int startSequenceNumber, final int endSequenceNumber) {
+        events
+    }
+
+    @Override
+    List<Event> retrieveEventStream(
+            final String eventStreamId, final ZonedDateTime startDate, final ZonedDateTime endDate) {
+        events
+    }
+
+    @Override
+    void persistEvents(final String eventStreamId, final List<Event> events) {
+        this.events.addAll(events)
+    }
+}
+
+/**
+ * Keeps streams apart and rejects appends that do not follow the head of their stream, writing batches one stream at a
+ * time as {@link EventRepository#persistEventBatch(Map)} does by default. Another writer appends to the interfering
+ * stream just before it is first written.
+ */
+class StreamMapEventRepository implements EventRepository {
+
+    Map<String, List<Event>> streams = [:].withDefault { [] }
+
+    String interferingStream
+
+    @Override
+    synchronized List<Event> retrieveEventStream(final String eventStreamId) {
+        new ArrayList<>(streams[eventStreamId])
+    }
+
+    @Override
+    List<Event> retrieveEventStream(
+            final String eventStreamId, final int startSequenceNumber, final int endSequenceNumber) {
+        throw new UnsupportedOperationException()
+    }
+
+    @Override
+    List<Event> retrieveEventStream(
+            final String eventStreamId, final ZonedDateTime startDate, final ZonedDateTime endDate) {
+        throw new UnsupportedOperationException()
+    }
+
+    @Override
+    synchronized int retrieveLatestSequenceNumber(final String eventStreamId) {
+        streams[eventStreamId].size()
+    }
+
+    @Override
+    synchronized void persistEvents(final String eventStreamId, final List<Event> events) {
+        if(eventStreamId == interferingStream) {
+            streams[eventStreamId] << new ListEvent(sequenceNumber: streams[eventStreamId].size() + 1)
+            interferingStream = null
+        }
+        if(events.first().sequenceNumber != streams[eventStreamId].size() + 1) {
+            throw new ConcurrentModificationException("Stream $eventStreamId has moved on")
+        }
+        streams[eventStreamId].addAll(events)
+    }
+}
+
+/**
+ * Serves sequence number ranges from a single stream and counts the {@link Event}s read, relying on the default
+ * {@link EventRepository#retrieveLatestSequenceNumber(String)}, which reads the whole stream.
+ */
+class RangeCountingEventRepository implements EventRepository {
+
+    List<Event> events = []
+
+    int eventsRead
+
+    @Override
+    List<Event> retrieveEventStream(final String eventStreamId) {
+        eventsRead += events.size()
+        events
+    }
+
+    @Override
+    List<Event> retrieveEventStream(
+            final String eventStreamId, final int startSequenceNumber, final int endSequenceNumber) {
+        def range = events.findAll {
+            it.sequenceNumber >= startSequenceNumber && it.sequenceNumber <= endSequenceNumber
+        }
+        eventsRead += range.size()
+        range
+    }
+
+    @Override
+    List<Event> retrieveEventStream(
+            final String eventStreamId, final ZonedDateTime startDate, final ZonedDateTime endDate) {
+        throw new UnsupportedOperationException()
+    }
+
+    @Override
+    void persistEvents(final String eventStreamId, final List<Event> events) {
+        this.events.addAll(events)
+    }
+}
+
+class ListEvent extends Event {
 }
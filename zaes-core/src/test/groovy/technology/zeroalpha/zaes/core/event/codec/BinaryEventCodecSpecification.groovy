@@ -0,0 +1,234 @@
+package technology.zeroalpha.zaes.core.event.codec
+
+import spock.lang.Specification
+import technology.zeroalpha.zaes.core.event.Event
+import technology.zeroalpha.zaes.core.event.serialization.ReusableEvents
+
+import java.nio.BufferOverflowException
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets
+import java.time.ZoneId
+import java.time.ZoneOffset
+import java.time.ZonedDateTime
+
+class BinaryEventCodecSpecification extends Specification {
+
+    def noteCodec = new NoteCodec()
+
+    def registry = new EventTypeRegistry()
+            .register(1, NoteEvent, noteCodec)
+            .register(2, CountEvent, new CountCodec())
+
+    def codec = new BinaryEventCodec(registry)
+
+    def 'Events round trip with their header fields, and timestamps are restored in UTC to the microsecond'() {
+        given:
+            def timestamp = ZonedDateTime.of(2017, 3, 4, 5, 6, 7, 123_456_789, ZoneId.of('Europe/London'))
+            def event = note(7, timestamp, 'hello')
+
+        when:
+            def decoded = codec.decode(codec.encode(event))
+
+        then:
+            decoded instanceof NoteEvent
+            decoded.text == 'hello'
+            decoded.sequenceNumber == 7
+            decoded.eventTimestamp == timestamp.withNano(123_456_000).withZoneSameInstant(ZoneOffset.UTC)
+    }
+
+    def 'Headers of a sequence of Events can be read without decoding their payloads'() {
+        given:
+            def buffer = ByteBuffer.allocate(1024)
+            (1..5).each { codec.encode(note(it, ZonedDateTime.now(), "note $it"), buffer) }
+            codec.encode(new CountEvent(count: 3), buffer)
+            buffer.flip()
+
+        when:
+            def view = new EncodedEvent(registry)
+            def headers = []
+            for(int offset = 0; offset < buffer.limit(); offset += view.encodedLength) {
+                view.wrap(buffer, offset)
+                headers << [view.typeId, view.sequenceNumber]
+            }
+
+        then:
+            headers == [[1, 1], [1, 2], [1, 3], [1, 4], [1, 5], [2, 0]]
+            noteCodec.decoded == 0
+
+        when:
+            def second = codec.wrap(buffer, codec.wrap(buffer, 0).encodedLength)
+            def event = second.event
+
+        then:
+            event.text == 'note 2'
+            noteCodec.decoded == 1
+    }
+
+    def 'Payloads larger than the scratch buffer are encoded'() {
+        given:
+            def text = 'x' * 10_000
+
+        expect:
+            codec.decode(codec.encode(note(1, null, text))).text == text
+    }
+
+    def 'A full buffer is left unchanged'() {
+        given:
+            def buffer = ByteBuffer.allocate(20)
+            buffer.position(2)
+
+        when:
+            codec.encode(note(1, null, 'too long to fit'), buffer)
+
+        then:
+            thrown(BufferOverflowException)
+            buffer.position() == 2
+    }
+
+    def 'Unregistered classes and unknown type identifiers are rejected'() {
+        when:
+            codec.encode(new UnregisteredEvent())
+
+        then:
+            thrown(IllegalArgumentException)
+
+        when:
+            def bytes = codec.encode(new CountEvent(count: 1))
+            bytes[1] = 9
+            codec.decode(bytes)
+
+        then:
+            thrown(IllegalStateException)
+    }
+
+    def 'Type identifiers and classes may only be registered once'() {
+        when:
+            registry.register(typeId, eventClass, new CountCodec())
+
+        then:
+            thrown(IllegalArgumentException)
+
+        where:
+            typeId | eventClass
+            2      | UnregisteredEvent
+            3      | CountEvent
+            65536  | UnregisteredEvent
+    }
+
+    def 'The serializer writes the type identifier and payload only'() {
+        given:
+            def serializer = new BinaryEventSerializer(registry)
+
+        when:
+            def payload = serializer.serialize(new CountEvent(count: 42))
+
+        then:
+            payload.length == 2 + 4
+            serializer.deserialize(payload).count == 42
+    }
+
+    def 'During replays only Event classes whose codecs opt in are decoded into a reused instance'() {
+        given:
+            def serializer = new BinaryEventSerializer(registry)
+            def reusableEvents = new ReusableEvents()
+            def counts = [1, 2].collect { ByteBuffer.wrap(serializer.serialize(new CountEvent(count: it))) }
+            def notes = ['a', 'b'].collect { ByteBuffer.wrap(serializer.serialize(new NoteEvent(text: it))) }
+
+        when:
+            def firstCount = serializer.deserialize(counts[0], reusableEvents)
+            def secondCount = serializer.deserialize(counts[1], reusableEvents)
+            def firstNote = serializer.deserialize(notes[0], reusableEvents)
+            def secondNote = serializer.deserialize(notes[1], reusableEvents)
+
+        then:
+            secondCount.is(firstCount)
+            secondCount.count == 2
+            !secondNote.is(firstNote)
+            [firstNote, secondNote]*.text == ['a', 'b']
+    }
+
+    def 'Compact timestamps are only expanded when requested, and zoned timestamps have a compact form'() {
+        given:
+            def london = ZoneId.of('Europe/London')
+            def event = new CountEvent()
+
+        when:
+            event.setEventTimestamp(1_488_603_967_123_456L, london)
+
+        then:
+            event.timestampMicros == 1_488_603_967_123_456L
+            event.timestampZone.is(london)
+            event.eventTimestamp == ZonedDateTime.of(2017, 3, 4, 5, 6, 7, 123_456_000, london)
+
+        when:
+            event.eventTimestamp = ZonedDateTime.of(1969, 12, 31, 23, 59, 59, 999_999_999, ZoneOffset.UTC)
+
+        then:
+            event.timestampMicros == -1L
+            event.timestampZone == ZoneOffset.UTC
+
+        when:
+            event.setEventTimestamp(Event.NO_TIMESTAMP, london)
+
+        then:
+            event.eventTimestamp == null
+            event.timestampZone == null
+    }
+
+    private static NoteEvent note(final int sequenceNumber, final ZonedDateTime timestamp, final String text) {
+        def event = new NoteEvent(text: text)
+        event.sequenceNumber = sequenceNumber
+        event.eventTimestamp = timestamp
+        event
+    }
+}
+
+class NoteEvent extends Event {
+    String text
+}
+
+class CountEvent extends Event {
+    int count
+}
+
+class UnregisteredEvent extends Event {
+}
+
+class NoteCodec implements PayloadCodec<NoteEvent> {
+    int decoded
+
+    @Override
+    void encode(final NoteEvent event, final ByteBuffer buffer) {
+        buffer.put(event.text.getBytes(StandardCharsets.UTF_8))
+    }
+
+    @Override
+    NoteEvent decode(final ByteBuffer buffer) {
+        decoded++
+        def bytes = new byte[buffer.remaining()]
+        buffer.get(bytes)
+        new NoteEvent(text: new String(bytes, StandardCharsets.UTF_8))
+    }
+}
+
+class CountCodec implements PayloadCodec<CountEvent> {
+    @Override
+    void encode(final CountEvent event, final ByteBuffer buffer) {
+        buffer.putInt(event.count)
+    }
+
+    @Override
+    CountEvent decode(final ByteBuffer buffer) {
+        new CountEvent(count: buffer.getInt())
+    }
+
+    @Override
+    CountEvent decode(final ByteBuffer buffer, final CountEvent reusable) {
+        if(reusable == null) {
+            return decode(buffer)
+        }
+
+        reusable.count = buffer.getInt()
+        reusable
+    }
+}
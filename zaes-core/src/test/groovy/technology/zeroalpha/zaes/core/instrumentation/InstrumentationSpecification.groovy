@@ -0,0 +1,126 @@
+package technology.zeroalpha.zaes.core.instrumentation
+
+import spock.lang.Specification
+import technology.zeroalpha.zaes.core.aggregate.AggregateIdentifierGenerator
+import technology.zeroalpha.zaes.core.aggregate.AggregateService
+import technology.zeroalpha.zaes.core.aggregate.TallyAggregate
+import technology.zeroalpha.zaes.core.aggregate.TallyEvent
+import technology.zeroalpha.zaes.core.event.EventRepository
+import technology.zeroalpha.zaes.core.event.EventService
+
+class InstrumentationSpecification extends Specification {
+
+    def instrumentation = new InMemoryInstrumentation()
+
+    def 'Histograms report percentiles to the requested precision across the whole range'() {
+        given:
+            def histogram = new RecordingHistogram(1_000_000_000L, 2)
+
+        when:
+            (1..10_000).each { histogram.record(it * 1000L) }
+            def snapshot = histogram.snapshot()
+
+        then:
+            snapshot.totalCount == 10_000
+            snapshot.minimum == 1000
+            snapshot.maximum == 10_000_000
+            snapshot.mean == 5_000_500.0
+            within(snapshot.getValueAtPercentile(50), 5_000_000)
+            within(snapshot.getValueAtPercentile(99), 9_900_000)
+            within(snapshot.getValueAtPercentile(99.9), 9_990_000)
+            snapshot.getValueAtPercentile(100) == 10_000_000
+    }
+
+    def 'Small values are counted exactly and out of range values are clamped'() {
+        given:
+            def histogram = new RecordingHistogram(1_000_000L, 2)
+
+        when:
+            [0, 1, 2, 3, 100, 255].each { histogram.record(it) }
+            histogram.record(-5)
+            histogram.record(5_000_000)
+            def snapshot = histogram.snapshot()
+
+        then:
+            snapshot.totalCount == 8
+            snapshot.minimum == 0
+            snapshot.getValueAtPercentile(50) == 2
+            snapshot.getValueAtPercentile(75) == 100
+            snapshot.maximum == 1_000_000
+    }
+
+    def 'Recorders are looked up once and shared by name'() {
+        when:
+            instrumentation.histogram('zaes.test.latency').record(1500)
+            instrumentation.histogram('zaes.test.latency').record(2500)
+            instrumentation.counter('zaes.test.count').increment()
+            instrumentation.counter('zaes.test.count').add(2)
+
+        then:
+            instrumentation.getHistogram('zaes.test.latency').totalCount == 2
+            instrumentation.getCount('zaes.test.count') == 3
+            instrumentation.getCount('unknown') == 0
+            instrumentation.report().readLines() == [
+                    'zaes.test.count count=3',
+                    'zaes.test.latency count=2 p50=1.5us p99=2.5us p99.9=2.5us max=2.5us']
+    }
+
+    def 'The no-op instrumentation discards everything'() {
+        expect:
+            Instrumentation.noOp().histogram('any').is(Instrumentation.noOp().counter('other'))
+            Instrumentation.noOp().histogram('any').record(1) == null
+    }
+
+    def 'Services record reads, appends, conflicts and rehydration'() {
+        given:
+            def events = (1..5).collect { new TallyEvent(sequence: it, amount: it) }
+            def eventRepository = Stub(EventRepository) {
+                retrieveEventStream(_ as String) >> events
+                streamEventStream(_ as String) >> { events.stream() }
+                retrieveLatestSequenceNumber(_ as String) >> 5
+            }
+            def eventService = new EventService(eventRepository, null, null, instrumentation)
+            def aggregateService = new AggregateService(
+                    TallyAggregate, Mock(AggregateIdentifierGenerator), eventService, instrumentation)
+
+        when:
+            eventService.retrieveAllEvents('tally')
+            aggregateService.buildLatestAggregate('tally')
+            eventService.publishEvents('tally', 5, [new TallyEvent(amount: 1), new TallyEvent(amount: 2)])
+            eventService.publishEvents('tally', 4, [new TallyEvent(amount: 3)])
+
+        then:
+            thrown(ConcurrentModificationException)
+            instrumentation.getHistogram(EventService.READ_LATENCY).totalCount == 1
+            instrumentation.getHistogram(EventService.READ_BATCH_SIZE).maximum == 5
+            instrumentation.getHistogram(EventService.APPEND_LATENCY).totalCount == 1
+            instrumentation.getHistogram(EventService.APPEND_BATCH_SIZE).maximum == 2
+            instrumentation.getCount(EventService.APPEND_CONFLICTS) == 1
+            instrumentation.getHistogram(AggregateService.REHYDRATION_LATENCY).totalCount == 1
+            instrumentation.getHistogram(AggregateService.EVENTS_REPLAYED).maximum == 5
+    }
+
+    def 'Bulk builds record the rehydration of each Aggregate'() {
+        given:
+            def eventRepository = Stub(EventRepository) {
+                retrieveEventStreams(_ as Map) >> [
+                        a: (1..3).collect { new TallyEvent(sequence: it, amount: it) },
+                        b: (1..7).collect { new TallyEvent(sequence: it, amount: it) }]
+            }
+            def eventService = new EventService(eventRepository, null, null, instrumentation)
+            def aggregateService = new AggregateService(
+                    TallyAggregate, Mock(AggregateIdentifierGenerator), eventService, instrumentation)
+
+        when:
+            aggregateService.buildLatestAggregates(['a', 'b'])
+
+        then:
+            instrumentation.getHistogram(AggregateService.REHYDRATION_LATENCY).totalCount == 2
+            instrumentation.getHistogram(AggregateService.EVENTS_REPLAYED).totalCount == 2
+            instrumentation.getHistogram(AggregateService.EVENTS_REPLAYED).maximum == 7
+    }
+
+    private static boolean within(final long actual, final long expected) {
+        Math.abs(actual - expected) <= expected / 100
+    }
+}
@@ -0,0 +1,161 @@
+package technology.zeroalpha.zaes.core.listener
+
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+import technology.zeroalpha.zaes.core.event.Event
+import technology.zeroalpha.zaes.core.event.EventRepository
+import technology.zeroalpha.zaes.core.event.EventService
+import technology.zeroalpha.zaes.core.listener.checkpoint.CheckpointStore
+import technology.zeroalpha.zaes.core.listener.checkpoint.FileCheckpointStore
+import technology.zeroalpha.zaes.core.listener.checkpoint.InMemoryCheckpointStore
+
+import java.util.concurrent.CopyOnWriteArrayList
+
+class CatchUpSubscriptionSpecification extends Specification {
+
+    @Rule
+    TemporaryFolder temporaryFolder = new TemporaryFolder()
+
+    def conditions = new PollingConditions(timeout: 10)
+
+    /** Global log of the stub repository, with positions spaced apart as they need not be contiguous. */
+    def log = new CopyOnWriteArrayList<Event>()
+
+    def eventRepository = Stub(EventRepository) {
+        streamEventsAfterPosition(_ as Long) >> { long position ->
+            log.toList().stream().filter { it.globalPosition > position }
+        }
+    }
+
+    def eventService = new EventService(eventRepository)
+
+    def checkpointStore = new InMemoryCheckpointStore()
+
+    def 'Past Events are caught up on and new Events followed, without gaps or duplicates'() {
+        given:
+            append(1..250)
+            def received = new CopyOnWriteArrayList<Integer>()
+            def subscription = new CatchUpSubscription('deposits', eventService, checkpointStore, DepositEvent,
+                    { DepositEvent event -> received << event.amount } as EventListener, 32, 100, WaitStrategy.yielding())
+
+        when:
+            subscription.start()
+
+        then:
+            conditions.eventually {
+                assert subscription.live
+                assert received == (1..250).findAll { it % 2 }
+            }
+
+        when:
+            append(251..300)
+
+        then:
+            conditions.eventually {
+                assert received == (1..300).findAll { it % 2 }
+                assert checkpointStore.loadCheckpoint('deposits') == 3000
+            }
+
+        cleanup:
+            subscription.close()
+    }
+
+    def 'A restarted subscription resumes from its checkpoint'() {
+        given:
+            append(1..10)
+            checkpointStore.saveCheckpoint('deposits', 60)
+            def received = new CopyOnWriteArrayList<Integer>()
+
+        when:
+            def subscription = new CatchUpSubscription('deposits', eventService, checkpointStore, DepositEvent,
+                    { DepositEvent event -> received << event.amount } as EventListener).start()
+
+        then:
+            conditions.eventually {
+                assert received == [7, 9]
+            }
+
+        when:
+            subscription.close()
+
+        then:
+            subscription.position == 100
+            checkpointStore.loadCheckpoint('deposits') == 100
+    }
+
+    def 'A failing listener stops the subscription before the failed batch'() {
+        given:
+            append(1..10)
+            def subscription = new CatchUpSubscription('failing', eventService, checkpointStore, Event,
+                    { Event event ->
+                        if(event.globalPosition == 70) {
+                            throw new IllegalStateException('read model unavailable')
+                        }
+                    } as EventListener, 4, 1, WaitStrategy.yielding())
+
+        when:
+            subscription.start()
+
+        then:
+            conditions.eventually {
+                assert subscription.failure instanceof IllegalStateException
+            }
+            subscription.close()
+            subscription.position == 40
+            checkpointStore.loadCheckpoint('failing') == 40
+            !subscription.live
+    }
+
+    def 'A checkpoint that cannot be loaded stops the subscription with the failure recorded'() {
+        given:
+            def failingStore = Stub(CheckpointStore) {
+                loadCheckpoint(_) >> { throw new UncheckedIOException(new IOException('disk unavailable')) }
+            }
+            def subscription = new CatchUpSubscription('unloadable', eventService, failingStore, Event,
+                    { Event event -> } as EventListener)
+
+        when:
+            subscription.start()
+
+        then:
+            conditions.eventually {
+                assert subscription.failure instanceof UncheckedIOException
+            }
+            subscription.close()
+            !subscription.live
+    }
+
+    def 'Checkpoints are stored in files that survive being reopened'() {
+        given:
+            def directory = temporaryFolder.newFolder().toPath()
+            def store = new FileCheckpointStore(directory)
+
+        expect:
+            store.loadCheckpoint('orders/summary') == Event.NO_POSITION
+
+        when:
+            store.saveCheckpoint('orders/summary', 42)
+            store.saveCheckpoint('orders/summary', 4096)
+
+        then:
+            new FileCheckpointStore(directory).loadCheckpoint('orders/summary') == 4096
+            new FileCheckpointStore(directory).loadCheckpoint('other') == Event.NO_POSITION
+
+        when: 'an identifier too long to be a file name is checkpointed'
+            store.saveCheckpoint('projection/' * 30, 7)
+
+        then: 'it gets its own file, and no temporary files are left behind'
+            new FileCheckpointStore(directory).loadCheckpoint('projection/' * 30) == 7
+            directory.toFile().list().size() == 2
+    }
+
+    private void append(final Iterable<Integer> amounts) {
+        amounts.each { amount ->
+            def event = amount % 2 ? new DepositEvent(amount: amount) : new WithdrawalEvent()
+            event.globalPosition = amount * 10
+            log << event
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package technology.zeroalpha.zaes.core.listener
+
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+import technology.zeroalpha.zaes.core.event.Event
+import technology.zeroalpha.zaes.core.event.EventRepository
+import technology.zeroalpha.zaes.core.event.EventService
+import technology.zeroalpha.zaes.core.event.StreamMapEventRepository
+
+import java.time.Duration
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+class EventBusSpecification extends Specification {
+
+    def conditions = new PollingConditions(timeout: 10)
+
+    def errors = new CopyOnWriteArrayList()
+
+    def eventBus = new EventBus(8, WaitStrategy.parking(Duration.ofNanos(50_000)), { event, error -> errors << error })
+
+    def cleanup() {
+        eventBus.close()
+    }
+
+    def 'Listeners receive every published Event of their type, in order, while the ring has room for them'() {
+        given:
+            eventBus = new EventBus(128, WaitStrategy.parking(Duration.ofNanos(50_000)), { event, error -> })
+            def deposits = new CopyOnWriteArrayList()
+            def all = new CopyOnWriteArrayList()
+            eventBus.subscribe(DepositEvent, { deposits << it } as EventListener)
+            eventBus.subscribe(Event, { all << it } as EventListener)
+            def events = (1..100).collect { it % 2 ? new DepositEvent(amount: it) : new WithdrawalEvent() }
+
+        when:
+            events.each { eventBus.publish(it) }
+            eventBus.close()
+
+        then:
+            all == events
+            deposits*.amount == (1..100).findAll { it % 2 }
+    }
+
+    def 'Listeners are told when each batch ends'() {
+        given:
+            def received = new CopyOnWriteArrayList()
+            def batches = new CopyOnWriteArrayList()
+            eventBus.subscribe(DepositEvent, new EventListener<DepositEvent>() {
+                def current = []
+
+                void process(final DepositEvent event) {
+                    current << event
+                    received << event
+                }
+
+                void onEndOfBatch() {
+                    batches << current.size()
+                    current = []
+                }
+            })
+
+        when:
+            eventBus.publish((1..5).collect { new DepositEvent(amount: it) })
+            eventBus.close()
+
+        then:
+            received*.amount == [1, 2, 3, 4, 5]
+            batches.sum() == 5
+            batches.size() <= 5
+    }
+
+    def 'A slow listener does not hold up other listeners while the ring has space'() {
+        given:
+            def release = new CountDownLatch(1)
+            def fastReceived = new CopyOnWriteArrayList()
+            eventBus.subscribe(Event, { release.await(10, TimeUnit.SECONDS) } as EventListener)
+            eventBus.subscribe(Event, { fastReceived << it } as EventListener)
+
+        when:
+            (1..4).each { eventBus.publish(new DepositEvent(amount: it)) }
+
+        then:
+            conditions.eventually {
+                assert fastReceived.size() == 4
+            }
+
+        cleanup:
+            release.countDown()
+    }
+
+    def 'Publishers are not held up by a slow listener, which skips the Events it missed and is told how many'() {
+        given:
+            def release = new CountDownLatch(1)
+            def received = new CopyOnWriteArrayList()
+            def missed = new AtomicLong()
+            eventBus.subscribe(DepositEvent, new EventListener<DepositEvent>() {
+                void process(final DepositEvent event) {
+                    release.await(10, TimeUnit.SECONDS)
+                    received << event.amount
+                }
+
+                void onEventsMissed(final long count) {
+                    missed.addAndGet(count)
+                }
+            })
+
+        when:
+            (1..50).each { eventBus.publish(new DepositEvent(amount: it)) }
+            release.countDown()
+            eventBus.close()
+
+        then:
+            received.size() + missed.get() == 50
+            received.size() <= 8 + 1
+            received == received.sort(false)
+            received.last() == 50
+            errors.empty
+    }
+
+    def 'Concurrent publishers overrunning a small ring never deliver an Event twice or lose one unreported'() {
+        given:
+            def errorHandler = { event, error -> errors << error }
+            eventBus = new EventBus(2, WaitStrategy.parking(Duration.ofNanos(1_000)), errorHandler)
+            def received = new CopyOnWriteArrayList()
+            def missed = new AtomicLong()
+            eventBus.subscribe(DepositEvent, new EventListener<DepositEvent>() {
+                void process(final DepositEvent event) {
+                    received << event.amount
+                }
+
+                void onEventsMissed(final long count) {
+                    missed.addAndGet(count)
+                }
+            })
+
+        when:
+            (0..3).collect { publisher ->
+                Thread.start { (1..5000).each { eventBus.publish(new DepositEvent(amount: publisher * 10000 + it)) } }
+            }*.join()
+            eventBus.close()
+
+        then:
+            received.size() + missed.get() == 20000
+            received.unique(false) == received
+            (0..3).every { publisher ->
+                def own = received.findAll { it.intdiv(10000) == publisher }
+                own == own.sort(false)
+            }
+            errors.empty
+    }
+
+    def 'Publishing to a closed bus is rejected'() {
+        given:
+            eventBus.close()
+
+        when:
+            (1..20).each { eventBus.publish(new DepositEvent(amount: it)) }
+
+        then:
+            thrown(IllegalStateException)
+    }
+
+    def 'Listener errors are passed to the error handler and delivery continues'() {
+        given:
+            def received = new CopyOnWriteArrayList()
+            eventBus.subscribe(DepositEvent, {
+                if(it.amount == 2) {
+                    throw new IllegalArgumentException('Bad deposit')
+                }
+                received << it.amount
+            } as EventListener)
+
+        when:
+            eventBus.publish((1..3).collect { new DepositEvent(amount: it) })
+            eventBus.close()
+
+        then:
+            received == [1, 3]
+            errors*.message == ['Bad deposit']
+    }
+
+    def 'EventService delivers Events to the bus once they are persisted'() {
+        given:
+            def received = new CopyOnWriteArrayList()
+            eventBus.subscribe(DepositEvent, { received << it } as EventListener)
+            def eventRepository = Mock(EventRepository)
+            def eventService = new EventService(eventRepository, eventBus)
+
+        when:
+            eventService.publishEvents('stream', 0, [new DepositEvent(amount: 1), new DepositEvent(amount: 2)])
+
+        then:
+            1 * eventRepository.persistEvents('stream', _)
+            conditions.eventually {
+                assert received*.sequenceNumber == [1, 2]
+            }
+    }
+
+    def 'Without group commit, concurrent publications to a stream reach listeners in sequence order'() {
+        given:
+            def received = new CopyOnWriteArrayList()
+            def secondDelivered = new CountDownLatch(1)
+            eventBus.subscribe(DepositEvent, {
+                received << it.sequenceNumber
+                if(it.sequenceNumber == 2) {
+                    secondDelivered.countDown()
+                }
+            } as EventListener)
+            def firstFlush = new CountDownLatch(1)
+            def eventRepository = new StreamMapEventRepository() {
+                @Override
+                void flush() {
+                    if(firstFlush.count > 0) {
+                        firstFlush.countDown()
+                        // Give the second publication the chance to overtake the first before it is delivered
+                        secondDelivered.await(500, TimeUnit.MILLISECONDS)
+                    }
+                }
+            }
+            def eventService = new EventService(eventRepository, eventBus)
+
+        when:
+            def first = Thread.start { eventService.publishEvents('stream', 0, [new DepositEvent(amount: 1)]) }
+            firstFlush.await(10, TimeUnit.SECONDS)
+            eventService.publishEvents('stream', 1, [new DepositEvent(amount: 2)])
+            first.join()
+
+        then:
+            conditions.eventually {
+                assert received == [1, 2]
+            }
+    }
+}
+
+class DepositEvent extends Event {
+
+    int amount
+}
+
+class WithdrawalEvent extends Event {
+}
\ No newline at end of file
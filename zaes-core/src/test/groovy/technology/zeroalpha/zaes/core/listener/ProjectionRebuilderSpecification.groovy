@@ -0,0 +1,108 @@
+package technology.zeroalpha.zaes.core.listener
+
+import spock.lang.Specification
+import technology.zeroalpha.zaes.core.event.Event
+import technology.zeroalpha.zaes.core.event.EventRepository
+import technology.zeroalpha.zaes.core.event.EventService
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.atomic.AtomicInteger
+
+class ProjectionRebuilderSpecification extends Specification {
+
+    def streams = (1..500).collectEntries { stream ->
+        ["stream-$stream".toString(), (1..(stream % 7 + 1)).collect { sequence ->
+            def event = sequence % 2 ? new DepositEvent(amount: stream) : new WithdrawalEvent()
+            event.sequenceNumber = sequence
+            event
+        }]
+    }
+
+    def eventRepository = Stub(EventRepository) {
+        streamEventStreamIdentifiers() >> { streams.keySet().stream() }
+        streamEventStream(_ as String) >> { String id -> streams[id].stream() }
+    }
+
+    def pool = new ForkJoinPool(4)
+
+    def rebuilder = new ProjectionRebuilder(new EventService(eventRepository), pool)
+
+    def cleanup() {
+        pool.shutdown()
+    }
+
+    def 'Every stream is replayed to listeners of matching types, in order within each stream'() {
+        given:
+            def received = new ConcurrentHashMap<Integer, List<Integer>>()
+            def deposits = new AtomicInteger()
+            rebuilder.subscribe(Event, { Event event ->
+                def stream = event instanceof DepositEvent ? event.amount : -1
+                if(stream > 0) {
+                    received.computeIfAbsent(stream, { new CopyOnWriteArrayList() }) << event.sequenceNumber
+                }
+            } as EventListener)
+            rebuilder.subscribe(DepositEvent, { deposits.incrementAndGet() } as EventListener)
+
+        when:
+            def progress = rebuilder.rebuild()
+
+        then:
+            progress.totalStreams == 500
+            progress.streamsCompleted == 500
+            progress.eventsReplayed == streams.values().sum { it.size() }
+            progress.fractionComplete == 1.0
+            deposits.get() == streams.values().sum { it.count { it instanceof DepositEvent } }
+            received.every { stream, sequences -> sequences == sequences.sort(false) }
+            received.size() == 500
+    }
+
+    def 'Progress is reported as partitions complete, and listeners are told when each batch ends'() {
+        given:
+            def reports = new CopyOnWriteArrayList<RebuildProgress>()
+            def batches = new AtomicInteger()
+            rebuilder.subscribe(Event, new EventListener<Event>() {
+                void process(final Event event) {
+                }
+
+                void onEndOfBatch() {
+                    batches.incrementAndGet()
+                }
+            })
+
+        when:
+            rebuilder.rebuild({ reports << it })
+
+        then:
+            reports.size() > 1
+            reports.size() == batches.get()
+            reports*.streamsCompleted.max() == 500
+            reports.every { it.totalStreams == 500 }
+    }
+
+    def 'A failing listener abandons the rebuild'() {
+        given:
+            rebuilder.subscribe(WithdrawalEvent, { throw new IllegalStateException('read model unavailable') } as EventListener)
+
+        when:
+            rebuilder.rebuild()
+
+        then:
+            def e = thrown(IllegalStateException)
+            e.message.contains('read model unavailable')
+    }
+
+    def 'Stores that cannot enumerate streams are reported'() {
+        given:
+            def rebuilder = new ProjectionRebuilder(new EventService(Mock(EventRepository) {
+                streamEventStreamIdentifiers() >> { throw new UnsupportedOperationException() }
+            }))
+
+        when:
+            rebuilder.rebuild()
+
+        then:
+            thrown(UnsupportedOperationException)
+    }
+}
@@ -20,26 +20,349 @@ package technology.zeroalpha.zaes.cqrs.command;
 
 import technology.zeroalpha.zaes.core.aggregate.Aggregate;
 import technology.zeroalpha.zaes.core.aggregate.AggregateService;
+import technology.zeroalpha.zaes.core.event.AsyncEventService;
 import technology.zeroalpha.zaes.core.event.Event;
+import technology.zeroalpha.zaes.core.event.EventService;
+import technology.zeroalpha.zaes.core.instrumentation.Counter;
+import technology.zeroalpha.zaes.core.instrumentation.Histogram;
+import technology.zeroalpha.zaes.core.instrumentation.Instrumentation;
 
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+/**
+ * Handles {@link Command}s by loading the target {@link Aggregate}, deciding which {@link Event}s the {@link Command}
+ * raises, and publishing them.
+ * <p>
+ * If the {@link Aggregate}'s stream is modified between it being loaded and the {@link Event}s being published, the
+ * publication fails with a {@link ConcurrentModificationException}; the {@link Aggregate} is then reloaded and the
+ * {@link Command} decided again, up to the configured number of attempts.
+ * <p>
+ * If an {@link AsyncEventService} is configured, {@link Command}s can also be processed without blocking the caller
+ * with {@link #processAsync(String, Command)}, which composes loading, deciding and publishing as futures.
+ *
+ * @param <A> Type of {@link Aggregate}
+ * @param <C> Type of {@link Command}
+ */
 public abstract class CommandProcessor<A extends Aggregate, C extends Command<A>> {
 
+    /** Histogram of the time taken to process a {@link Command}, including every attempt, in nanoseconds. */
+    public static final String COMMAND_LATENCY = "zaes.command.latency";
+
+    /** Counter of attempts whose publication conflicted with another modification of the stream. */
+    public static final String COMMAND_CONFLICTS = "zaes.command.conflicts";
+
+    /** Counter of attempts made after a conflict. */
+    public static final String COMMAND_RETRIES = "zaes.command.retries";
+
+    /** Histogram of the number of {@link Command}s in each batch passed to {@link #processBatch}. */
+    public static final String COMMAND_BATCH_SIZE = "zaes.command.batch-size";
+
     private final AggregateService<A> aggregateService;
 
+    /** Service used to publish raised {@link Event}s, or null if {@link Event}s are not published. */
+    private final EventService eventService;
+
+    /** Service used to read and publish {@link Event}s without blocking, or null if only blocking use is supported. */
+    private final AsyncEventService asyncEventService;
+
+    /** Number of times a {@link Command} is attempted before a {@link ConcurrentModificationException} is rethrown. */
+    private final int maximumAttempts;
+
+    private final Histogram commandLatency;
+
+    private final Counter commandConflicts;
+
+    private final Counter commandRetries;
+
+    private final Histogram commandBatchSize;
+
+    /**
+     * Create a processor that decides {@link Command}s without publishing the resulting {@link Event}s.
+     *
+     * @param aggregateService Service used to load {@link Aggregate}s
+     */
     public CommandProcessor(final AggregateService<A> aggregateService) {
         this.aggregateService = aggregateService;
+        this.eventService = null;
+        this.asyncEventService = null;
+        this.maximumAttempts = 1;
+        this.commandLatency = Instrumentation.noOp().histogram(COMMAND_LATENCY);
+        this.commandConflicts = Instrumentation.noOp().counter(COMMAND_CONFLICTS);
+        this.commandRetries = Instrumentation.noOp().counter(COMMAND_RETRIES);
+        this.commandBatchSize = Instrumentation.noOp().histogram(COMMAND_BATCH_SIZE);
     }
 
-    public void process(final C command) {
+    /**
+     * @param aggregateService Service used to load {@link Aggregate}s
+     * @param eventService Service used to publish raised {@link Event}s
+     * @param maximumAttempts Number of times to attempt each {@link Command} when its publication conflicts
+     */
+    public CommandProcessor(
+            final AggregateService<A> aggregateService, final EventService eventService, final int maximumAttempts) {
+        this(aggregateService, eventService, maximumAttempts, Instrumentation.noOp());
+    }
+
+    /**
+     * @param aggregateService Service used to load {@link Aggregate}s
+     * @param eventService Service used to publish raised {@link Event}s
+     * @param maximumAttempts Number of times to attempt each {@link Command} when its publication conflicts
+     * @param instrumentation Instrumentation to record latency, conflicts and retries with
+     */
+    public CommandProcessor(
+            final AggregateService<A> aggregateService,
+            final EventService eventService,
+            final int maximumAttempts,
+            final Instrumentation instrumentation) {
+        this(aggregateService, eventService, null, maximumAttempts, instrumentation);
+    }
+
+    /**
+     * @param aggregateService Service used to load {@link Aggregate}s
+     * @param eventService Service used to publish raised {@link Event}s
+     * @param asyncEventService Service used to read and publish {@link Event}s by {@link #processAsync}
+     * @param maximumAttempts Number of times to attempt each {@link Command} when its publication conflicts
+     * @param instrumentation Instrumentation to record latency, conflicts and retries with
+     */
+    public CommandProcessor(
+            final AggregateService<A> aggregateService,
+            final EventService eventService,
+            final AsyncEventService asyncEventService,
+            final int maximumAttempts,
+            final Instrumentation instrumentation) {
+        if(maximumAttempts < 1) {
+            throw new IllegalArgumentException("maximumAttempts must be positive");
+        }
+
+        this.aggregateService = aggregateService;
+        this.eventService = eventService;
+        this.asyncEventService = asyncEventService;
+        this.maximumAttempts = maximumAttempts;
+        this.commandLatency = instrumentation.histogram(COMMAND_LATENCY);
+        this.commandConflicts = instrumentation.counter(COMMAND_CONFLICTS);
+        this.commandRetries = instrumentation.counter(COMMAND_RETRIES);
+        this.commandBatchSize = instrumentation.histogram(COMMAND_BATCH_SIZE);
+    }
+
+    /**
+     * Process a {@link Command} against a newly created {@link Aggregate}.
+     *
+     * @param command {@link Command} to process
+     * @return {@link Event}s raised by the {@link Command}
+     */
+    public List<Event> process(final C command) {
+        final long start = System.nanoTime();
         final A aggregate = aggregateService.createNewAggregate();
-        processCommand(aggregate, command);
+        final List<Event> events = decideAndPublish(aggregate, command);
+        commandLatency.recordSince(start);
+
+        return events;
+    }
+
+    /**
+     * Process a {@link Command} against the current state of an existing {@link Aggregate}.
+     *
+     * @param aggregateIdentifier Identifier of {@link Aggregate}
+     * @param command {@link Command} to process
+     * @return {@link Event}s raised by the {@link Command}
+     * @throws ConcurrentModificationException If every attempt conflicted with another modification of the stream
+     */
+    public List<Event> process(final String aggregateIdentifier, final C command)
+            throws ConcurrentModificationException {
+        final long start = System.nanoTime();
+        for(int attempt = 1; ; attempt++) {
+            final A aggregate = aggregateService.buildLatestAggregate(aggregateIdentifier);
+            try {
+                final List<Event> events = decideAndPublish(aggregate, command);
+                commandLatency.recordSince(start);
+
+                return events;
+            } catch (final ConcurrentModificationException cme) {
+                commandConflicts.increment();
+                if(attempt >= maximumAttempts) {
+                    commandLatency.recordSince(start);
+                    throw cme;
+                }
+                commandRetries.increment();
+            }
+        }
     }
 
-    public void process(final String aggregateIdentifier, final C command) {
-        final A aggregate = aggregateService.buildLatestAggregate(aggregateIdentifier);
-        processCommand(aggregate, command);
+    /**
+     * Process several {@link Command}s against the current state of an existing {@link Aggregate}, in order, loading
+     * the {@link Aggregate} once and publishing all the raised {@link Event}s in a single append. Each {@link Command}
+     * is decided against the {@link Aggregate} with the {@link Event}s of the {@link Command}s before it applied.
+     * <p>
+     * A {@link Command} whose processing throws is rejected without affecting the others. If the append conflicts,
+     * the {@link Aggregate} is reloaded and the whole batch decided again, up to the configured number of attempts.
+     *
+     * @param aggregateIdentifier Identifier of {@link Aggregate}
+     * @param commands {@link Command}s to process, in order
+     * @return Result of each {@link Command}, in the same order
+     * @throws ConcurrentModificationException If every attempt conflicted with another modification of the stream
+     */
+    public List<CommandResult> processBatch(final String aggregateIdentifier, final List<? extends C> commands)
+            throws ConcurrentModificationException {
+        final long start = System.nanoTime();
+        commandBatchSize.record(commands.size());
+        for(int attempt = 1; ; attempt++) {
+            final A aggregate = aggregateService.buildLatestAggregate(aggregateIdentifier);
+            final int lastSeenSequenceNumber = aggregate.getSequenceNumber();
+            final List<CommandResult> results = new ArrayList<>(commands.size());
+            final List<Event> unpublishedEvents = new ArrayList<>();
+            for(final C command : commands) {
+                final List<Event> events;
+                try {
+                    events = processCommand(aggregate, command);
+                } catch (final RuntimeException re) {
+                    results.add(CommandResult.failure(re));
+                    continue;
+                }
+
+                if(events != null) {
+                    // Provisional sequence numbers, matching those publication assigns, so the Aggregate reflects
+                    // the Events when deciding the next Command
+                    for(final Event event : events) {
+                        event.setSequenceNumber(aggregate.getSequenceNumber() + 1);
+                        aggregate.applyEvent(event);
+                    }
+                    unpublishedEvents.addAll(events);
+                }
+                results.add(CommandResult.success(events));
+            }
+
+            if(unpublishedEvents.isEmpty() || eventService == null) {
+                commandLatency.recordSince(start);
+                return results;
+            }
+
+            try {
+                eventService.publishEvents(aggregateIdentifier, lastSeenSequenceNumber, unpublishedEvents);
+                aggregateService.recordPublished(aggregateIdentifier, unpublishedEvents);
+                commandLatency.recordSince(start);
+
+                return results;
+            } catch (final ConcurrentModificationException cme) {
+                commandConflicts.increment();
+                if(attempt >= maximumAttempts) {
+                    commandLatency.recordSince(start);
+                    throw cme;
+                }
+                commandRetries.increment();
+            }
+        }
+    }
+
+    /**
+     * Process a {@link Command} against a newly created {@link Aggregate} without blocking on the store.
+     *
+     * @param command {@link Command} to process
+     * @return Future of the {@link Event}s raised by the {@link Command}
+     * @throws IllegalStateException If no {@link AsyncEventService} is configured
+     */
+    public CompletableFuture<List<Event>> processAsync(final C command) {
+        requireAsyncEventService();
+        final long start = System.nanoTime();
+
+        return decideAndPublishAsync(aggregateService.createNewAggregate(), command)
+                .whenComplete((events, throwable) -> commandLatency.recordSince(start));
+    }
+
+    /**
+     * Process a {@link Command} against the current state of an existing {@link Aggregate} without blocking on the
+     * store. Conflicting attempts are retried as {@link #process(String, Command)} does, each retry being chained onto
+     * the failed attempt rather than waited for.
+     *
+     * @param aggregateIdentifier Identifier of {@link Aggregate}
+     * @param command {@link Command} to process
+     * @return Future of the {@link Event}s raised by the {@link Command}, which completes exceptionally with a
+     *         {@link ConcurrentModificationException} if every attempt conflicted
+     * @throws IllegalStateException If no {@link AsyncEventService} is configured
+     */
+    public CompletableFuture<List<Event>> processAsync(final String aggregateIdentifier, final C command) {
+        requireAsyncEventService();
+        final long start = System.nanoTime();
+
+        return attemptAsync(aggregateIdentifier, command, 1)
+                .whenComplete((events, throwable) -> commandLatency.recordSince(start));
+    }
+
+    private CompletableFuture<List<Event>> attemptAsync(
+            final String aggregateIdentifier, final C command, final int attempt) {
+        return aggregateService.buildLatestAggregateAsync(aggregateIdentifier, asyncEventService)
+                .thenCompose(aggregate -> decideAndPublishAsync(aggregate, command))
+                .<CompletableFuture<List<Event>>>handle((events, throwable) -> {
+                    if(throwable == null) {
+                        return CompletableFuture.completedFuture(events);
+                    }
+
+                    final Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                            ? throwable.getCause()
+                            : throwable;
+                    if(!(cause instanceof ConcurrentModificationException)) {
+                        return failed(cause);
+                    }
+
+                    commandConflicts.increment();
+                    if(attempt >= maximumAttempts) {
+                        return failed(cause);
+                    }
+                    commandRetries.increment();
+
+                    return attemptAsync(aggregateIdentifier, command, attempt + 1);
+                })
+                .thenCompose(future -> future);
+    }
+
+    /**
+     * Decide which {@link Event}s the {@link Command} raises, publish them through the {@link AsyncEventService}, then
+     * apply them to the {@link Aggregate} once they are durable.
+     */
+    private CompletableFuture<List<Event>> decideAndPublishAsync(final A aggregate, final C command) {
+        final int lastSeenSequenceNumber = aggregate.getSequenceNumber();
+        final List<Event> events = processCommand(aggregate, command);
+        if(events == null || events.isEmpty()) {
+            return CompletableFuture.completedFuture(events);
+        }
+
+        return asyncEventService
+                .publishEvents(aggregate.getAggregateIdentifier(), lastSeenSequenceNumber, events)
+                .thenApply(published -> {
+                    events.forEach(aggregate::applyEvent);
+                    aggregateService.recordPublished(aggregate.getAggregateIdentifier(), events);
+                    return events;
+                });
+    }
+
+    private void requireAsyncEventService() {
+        if(asyncEventService == null) {
+            throw new IllegalStateException("No AsyncEventService configured");
+        }
+    }
+
+    private static <T> CompletableFuture<T> failed(final Throwable throwable) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(throwable);
+        return future;
+    }
+
+    /**
+     * Decide which {@link Event}s the {@link Command} raises, publish them, then apply them to the {@link Aggregate}
+     * so that it reflects its stream.
+     */
+    private List<Event> decideAndPublish(final A aggregate, final C command) {
+        final int lastSeenSequenceNumber = aggregate.getSequenceNumber();
+        final List<Event> events = processCommand(aggregate, command);
+        if(eventService != null && events != null && !events.isEmpty()) {
+            eventService.publishEvents(aggregate.getAggregateIdentifier(), lastSeenSequenceNumber, events);
+            events.forEach(aggregate::applyEvent);
+            aggregateService.recordPublished(aggregate.getAggregateIdentifier(), events);
+        }
+
+        return events;
     }
 
     protected abstract List<Event> processCommand(final A aggregate, final C command);
@@ -0,0 +1,77 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.cqrs.command;
+
+import technology.zeroalpha.zaes.core.event.Event;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Outcome of one {@link Command} processed as part of a batch: either the {@link Event}s it raised, or the exception
+ * thrown while deciding it.
+ */
+public final class CommandResult {
+
+    private final List<Event> events;
+
+    private final RuntimeException failure;
+
+    private CommandResult(final List<Event> events, final RuntimeException failure) {
+        this.events = events;
+        this.failure = failure;
+    }
+
+    /**
+     * @param events {@link Event}s raised by the {@link Command}
+     * @return Result of a {@link Command} that was accepted
+     */
+    public static CommandResult success(final List<Event> events) {
+        return new CommandResult(events, null);
+    }
+
+    /**
+     * @param failure Exception thrown while deciding the {@link Command}
+     * @return Result of a {@link Command} that was rejected
+     */
+    public static CommandResult failure(final RuntimeException failure) {
+        return new CommandResult(null, Objects.requireNonNull(failure));
+    }
+
+    /**
+     * @return Whether the {@link Command} was accepted and its {@link Event}s published
+     */
+    public boolean isSuccessful() {
+        return failure == null;
+    }
+
+    /**
+     * @return {@link Event}s raised by the {@link Command}, or null if it was rejected
+     */
+    public List<Event> getEvents() {
+        return events;
+    }
+
+    /**
+     * @return Exception thrown while deciding the {@link Command}, or null if it was accepted
+     */
+    public RuntimeException getFailure() {
+        return failure;
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.cqrs.command;
+
+import technology.zeroalpha.zaes.core.aggregate.Aggregate;
+import technology.zeroalpha.zaes.core.event.Event;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs {@link Command}s through a {@link CommandProcessor} on a fixed set of single-threaded lanes. Every
+ * {@link Command} for a given {@link Aggregate} is routed to the same lane by hashing its identifier, so
+ * {@link Command}s for one {@link Aggregate} run one at a time in submission order and never conflict with each other,
+ * while {@link Command}s for different {@link Aggregate}s run in parallel.
+ * <p>
+ * Each lane has a bounded queue. When a lane is full, the {@link RejectionPolicy} decides whether the submitting
+ * thread fails or waits, providing backpressure to callers.
+ *
+ * @param <A> Type of {@link Aggregate}
+ * @param <C> Type of {@link Command}
+ */
+public class CommandScheduler<A extends Aggregate, C extends Command<A>> implements AutoCloseable {
+
+    private final CommandProcessor<A, C> commandProcessor;
+
+    private final ThreadPoolExecutor[] lanes;
+
+    private final RejectionPolicy rejectionPolicy;
+
+    /** Lane to use for the next {@link Command} creating a new {@link Aggregate}. */
+    private final AtomicInteger nextNewAggregateLane = new AtomicInteger();
+
+    /**
+     * Create a scheduler with one lane per available processor.
+     *
+     * @param commandProcessor Processor to run {@link Command}s through
+     * @param queueCapacity Maximum number of {@link Command}s waiting in each lane
+     * @param rejectionPolicy Action taken when a lane is full
+     */
+    public CommandScheduler(
+            final CommandProcessor<A, C> commandProcessor,
+            final int queueCapacity,
+            final RejectionPolicy rejectionPolicy) {
+        this(commandProcessor, Runtime.getRuntime().availableProcessors(), queueCapacity, rejectionPolicy);
+    }
+
+    /**
+     * @param commandProcessor Processor to run {@link Command}s through
+     * @param laneCount Number of lanes, each served by its own thread
+     * @param queueCapacity Maximum number of {@link Command}s waiting in each lane
+     * @param rejectionPolicy Action taken when a lane is full
+     */
+    public CommandScheduler(
+            final CommandProcessor<A, C> commandProcessor,
+            final int laneCount,
+            final int queueCapacity,
+            final RejectionPolicy rejectionPolicy) {
+        if(laneCount < 1) {
+            throw new IllegalArgumentException("laneCount must be positive");
+        }
+        if(queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity must be positive");
+        }
+
+        this.commandProcessor = Objects.requireNonNull(commandProcessor);
+        this.rejectionPolicy = Objects.requireNonNull(rejectionPolicy);
+        this.lanes = new ThreadPoolExecutor[laneCount];
+        for(int lane = 0; lane < laneCount; lane++) {
+            final String threadName = "zaes-command-lane-" + lane;
+            lanes[lane] = new ThreadPoolExecutor(
+                    1,
+                    1,
+                    0,
+                    TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    runnable -> {
+                        final Thread thread = new Thread(runnable, threadName);
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    new ThreadPoolExecutor.AbortPolicy());
+        }
+    }
+
+    /**
+     * Schedule a {@link Command} against an existing {@link Aggregate}. It will run after every {@link Command}
+     * previously submitted for the same {@link Aggregate}.
+     *
+     * @param aggregateIdentifier Identifier of {@link Aggregate}
+     * @param command {@link Command} to process
+     * @return Future completed with the {@link Event}s raised, or with the exception thrown by the processor
+     * @throws RejectedExecutionException If the lane is full and the policy is {@link RejectionPolicy#ABORT}
+     */
+    public CompletableFuture<List<Event>> submit(final String aggregateIdentifier, final C command) {
+        return submit(laneFor(aggregateIdentifier), () -> commandProcessor.process(aggregateIdentifier, command));
+    }
+
+    /**
+     * Schedule a {@link Command} against a new {@link Aggregate}. As new {@link Aggregate}s cannot conflict, these
+     * {@link Command}s are spread across the lanes in turn.
+     *
+     * @param command {@link Command} to process
+     * @return Future completed with the {@link Event}s raised, or with the exception thrown by the processor
+     * @throws RejectedExecutionException If the lane is full and the policy is {@link RejectionPolicy#ABORT}
+     */
+    public CompletableFuture<List<Event>> submit(final C command) {
+        final int lane = Math.floorMod(nextNewAggregateLane.getAndIncrement(), lanes.length);
+        return submit(lanes[lane], () -> commandProcessor.process(command));
+    }
+
+    /**
+     * Stop accepting {@link Command}s and wait for those already queued to complete.
+     */
+    @Override
+    public void close() {
+        for(final ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+
+        try {
+            for(final ThreadPoolExecutor lane : lanes) {
+                lane.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private CompletableFuture<List<Event>> submit(
+            final ThreadPoolExecutor lane, final Callable<List<Event>> processing) {
+        final CompletableFuture<List<Event>> result = new CompletableFuture<>();
+        final Runnable task = () -> {
+            try {
+                result.complete(processing.call());
+            } catch (final Throwable t) {
+                result.completeExceptionally(t);
+            }
+        };
+
+        try {
+            lane.execute(task);
+        } catch (final RejectedExecutionException ree) {
+            if(lane.isShutdown()) {
+                throw ree;
+            }
+
+            switch (rejectionPolicy) {
+                case BLOCK:
+                    enqueueWhenSpaceAvailable(lane, task);
+                    break;
+                case FAIL:
+                    result.completeExceptionally(ree);
+                    break;
+                default:
+                    throw ree;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Wait for room in the lane's queue. The lane's thread is always running once a task has been rejected, so the
+     * task will be picked up from the queue.
+     */
+    private static void enqueueWhenSpaceAvailable(final ThreadPoolExecutor lane, final Runnable task) {
+        try {
+            lane.getQueue().put(task);
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for space in command lane", ie);
+        }
+
+        if(lane.isShutdown() && lane.remove(task)) {
+            throw new RejectedExecutionException("Command scheduler has been closed");
+        }
+    }
+
+    private ThreadPoolExecutor laneFor(final String aggregateIdentifier) {
+        final int hash = aggregateIdentifier.hashCode();
+        return lanes[Math.floorMod(hash ^ (hash >>> 16), lanes.length)];
+    }
+}
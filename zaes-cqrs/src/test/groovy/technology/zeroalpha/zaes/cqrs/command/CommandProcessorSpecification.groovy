@@ -0,0 +1,321 @@
+package technology.zeroalpha.zaes.cqrs.command
+
+import spock.lang.Specification
+import technology.zeroalpha.zaes.core.aggregate.Aggregate
+import technology.zeroalpha.zaes.core.aggregate.AggregateService
+import technology.zeroalpha.zaes.core.aggregate.cache.AggregateCache
+import technology.zeroalpha.zaes.core.aggregate.cache.CachingAggregateService
+import technology.zeroalpha.zaes.core.event.AsyncEventRepository
+import technology.zeroalpha.zaes.core.event.AsyncEventService
+import technology.zeroalpha.zaes.core.event.Event
+import technology.zeroalpha.zaes.core.event.EventRepository
+import technology.zeroalpha.zaes.core.event.EventService
+import technology.zeroalpha.zaes.core.instrumentation.InMemoryInstrumentation
+
+import java.time.ZonedDateTime
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class CommandProcessorSpecification extends Specification {
+
+    def asyncEventRepository = Mock AsyncEventRepository
+
+    def asyncEventService = new AsyncEventService(asyncEventRepository)
+
+    def aggregateService = new AggregateService<TallyAggregate>(TallyAggregate, null, null)
+
+    def instrumentation = new InMemoryInstrumentation()
+
+    def 'A batch is decided against one load of the Aggregate and published in a single append'() {
+        given:
+            def eventRepository = Spy(TallyEventRepository)
+            eventRepository.events << new TallyEvent(sequenceNumber: 1)
+            def eventService = new EventService(eventRepository)
+            def processor = new TallyCommandProcessor(
+                    new AggregateService<TallyAggregate>(TallyAggregate, null, eventService), eventService,
+                    instrumentation)
+
+        when:
+            def results = processor.processBatch(
+                    'tally', [new TallyCommand(), new TallyCommand(reject: true), new TallyCommand()])
+
+        then:
+            1 * eventRepository.persistEvents('tally', _)
+            processor.seen == [1, 2, 2]
+            results*.successful == [true, false, true]
+            results[1].failure instanceof IllegalArgumentException
+            results.findAll { it.successful }.collect { it.events*.sequenceNumber } == [[2], [3]]
+            eventRepository.events*.sequenceNumber == [1, 2, 3]
+            instrumentation.getHistogram(CommandProcessor.COMMAND_BATCH_SIZE).maximum == 3
+    }
+
+    def 'A conflicting batch is decided again against the reloaded Aggregate'() {
+        given:
+            def eventRepository = new TallyEventRepository()
+            eventRepository.interloper = new TallyEvent(sequenceNumber: 1)
+            def eventService = new EventService(eventRepository)
+            def processor = new TallyCommandProcessor(
+                    new AggregateService<TallyAggregate>(TallyAggregate, null, eventService), eventService,
+                    instrumentation)
+
+        when:
+            def results = processor.processBatch('tally', [new TallyCommand(), new TallyCommand()])
+
+        then:
+            processor.seen == [0, 1, 1, 2]
+            results.collect { it.events*.sequenceNumber } == [[2], [3]]
+            eventRepository.events*.sequenceNumber == [1, 2, 3]
+            instrumentation.getCount(CommandProcessor.COMMAND_CONFLICTS) == 1
+            instrumentation.getCount(CommandProcessor.COMMAND_RETRIES) == 1
+    }
+
+    def 'A batch is decided on a copy of the cached Aggregate, which only takes the Events once they are published'() {
+        given:
+            def eventRepository = new TallyEventRepository()
+            eventRepository.events << new TallyEvent(sequenceNumber: 1, total: 1)
+            def eventService = new EventService(eventRepository)
+            def aggregateCache = new AggregateCache<TallyAggregate>(10)
+            def cachingService = new CachingAggregateService<TallyAggregate>(
+                    TallyAggregate, null, eventService, aggregateCache)
+            cachingService.buildLatestAggregate('tally')
+            def processor = new TallyCommandProcessor(cachingService, eventService, instrumentation)
+
+        when:
+            eventRepository.interloper = new TallyEvent(sequenceNumber: 2, total: 2)
+            processor.processBatch('tally', [new TallyCommand(), new TallyCommand()])
+
+        then:
+            processor.seen == [1, 2, 2, 3]
+            eventRepository.events*.total == [1, 2, 3, 4]
+            aggregateCache.get('tally').sequenceNumber == 4
+            aggregateCache.get('tally').total == 4
+    }
+
+    def 'Concurrent commands on a cached Aggregate are each decided against committed state'() {
+        given:
+            def eventRepository = new SerializedTallyEventRepository()
+            def eventService = new EventService(eventRepository)
+            def cachingService = new CachingAggregateService<TallyAggregate>(
+                    TallyAggregate, null, eventService, new AggregateCache<TallyAggregate>(10))
+            def processor = new TallyCommandProcessor(cachingService, eventService, 1000, instrumentation)
+            def executor = Executors.newFixedThreadPool(4)
+
+        when:
+            def futures = (1..4).collect {
+                executor.submit({ 50.times { processor.process('tally', new TallyCommand()) } } as Runnable)
+            }
+            futures*.get(60, TimeUnit.SECONDS)
+
+        then:
+            eventRepository.events*.sequenceNumber == (1..200).toList()
+            eventRepository.events*.total == (1..200).toList()
+            cachingService.buildLatestAggregate('tally').total == 200
+
+        cleanup:
+            executor.shutdownNow()
+    }
+
+    def 'Events are published against the sequence number the Aggregate had before the Command was decided'() {
+        given:
+            def eventRepository = new TallyEventRepository()
+            eventRepository.events << new TallyEvent(sequenceNumber: 1, total: 1)
+            def eventService = new EventService(eventRepository)
+            def processor = new TallyCommandProcessor(
+                    new AggregateService<TallyAggregate>(TallyAggregate, null, eventService), eventService,
+                    instrumentation)
+
+        when:
+            def events = processor.process('tally', new TallyCommand(trial: true))
+
+        then:
+            events*.sequenceNumber == [2]
+            eventRepository.events*.total == [1, 2]
+            instrumentation.getCount(CommandProcessor.COMMAND_CONFLICTS) == 0
+    }
+
+    def 'Asynchronous processing retries a conflicting publication against the reloaded Aggregate'() {
+        given:
+            def first = new TallyEvent(sequenceNumber: 1)
+            def second = new TallyEvent(sequenceNumber: 2)
+            asyncEventRepository.retrieveEventStream('tally', _, _) >>> [
+                    CompletableFuture.completedFuture([first]),
+                    CompletableFuture.completedFuture([first, second])]
+            asyncEventRepository.retrieveLatestSequenceNumber('tally') >> CompletableFuture.completedFuture(2)
+            def processor = new TallyCommandProcessor(aggregateService, asyncEventService, instrumentation)
+
+        when:
+            def events = processor.processAsync('tally', new TallyCommand()).get(10, TimeUnit.SECONDS)
+
+        then:
+            1 * asyncEventRepository.persistEvents('tally', _) >> CompletableFuture.completedFuture(null)
+            events*.sequenceNumber == [3]
+            processor.seen == [1, 2]
+            instrumentation.getCount(CommandProcessor.COMMAND_CONFLICTS) == 1
+            instrumentation.getCount(CommandProcessor.COMMAND_RETRIES) == 1
+            instrumentation.getHistogram(CommandProcessor.COMMAND_LATENCY).totalCount == 1
+    }
+
+    def 'Asynchronous processing fails with the conflict once attempts are exhausted'() {
+        given:
+            asyncEventRepository.retrieveEventStream('tally', _, _) >> CompletableFuture.completedFuture([])
+            asyncEventRepository.retrieveLatestSequenceNumber('tally') >> CompletableFuture.completedFuture(5)
+            def processor = new TallyCommandProcessor(aggregateService, asyncEventService, instrumentation)
+
+        when:
+            processor.processAsync('tally', new TallyCommand()).join()
+
+        then:
+            def ce = thrown(CompletionException)
+            ce.cause instanceof ConcurrentModificationException
+            0 * asyncEventRepository.persistEvents(_, _)
+            instrumentation.getCount(CommandProcessor.COMMAND_CONFLICTS) == 2
+            instrumentation.getCount(CommandProcessor.COMMAND_RETRIES) == 1
+    }
+
+    def 'Asynchronous processing requires an AsyncEventService'() {
+        given:
+            def processor = new TallyCommandProcessor(aggregateService, (AsyncEventService) null, instrumentation)
+
+        when:
+            processor.processAsync('tally', new TallyCommand())
+
+        then:
+            thrown(IllegalStateException)
+    }
+}
+
+class TallyAggregate extends Aggregate {
+
+    int total
+
+    @Override
+    protected void processEvent(final Event event) {
+        total = ((TallyEvent) event).total
+    }
+}
+
+class TallyEvent extends Event {
+
+    /** Total of the Aggregate once the Event is applied, as decided from the state the command saw. */
+    int total
+}
+
+class TallyCommand extends Command<TallyAggregate> {
+
+    boolean reject
+
+    /** Whether the decision applies a trial Event to the Aggregate, moving it past the state it was loaded at. */
+    boolean trial
+}
+
+class TallyCommandProcessor extends CommandProcessor<TallyAggregate, TallyCommand> {
+
+    List<Integer> seen = Collections.synchronizedList([])
+
+    TallyCommandProcessor(
+            final AggregateService<TallyAggregate> aggregateService,
+            final AsyncEventService asyncEventService,
+            final InMemoryInstrumentation instrumentation) {
+        super(aggregateService, null, asyncEventService, 2, instrumentation)
+    }
+
+    TallyCommandProcessor(
+            final AggregateService<TallyAggregate> aggregateService,
+            final EventService eventService,
+            final InMemoryInstrumentation instrumentation) {
+        this(aggregateService, eventService, 2, instrumentation)
+    }
+
+    TallyCommandProcessor(
+            final AggregateService<TallyAggregate> aggregateService,
+            final EventService eventService,
+            final int maximumAttempts,
+            final InMemoryInstrumentation instrumentation) {
+        super(aggregateService, eventService, null, maximumAttempts, instrumentation)
+    }
+
+    @Override
+    protected List<Event> processCommand(final TallyAggregate aggregate, final TallyCommand command) {
+        seen << aggregate.sequenceNumber
+        if(command.reject) {
+            throw new IllegalArgumentException('Rejected')
+        }
+        if(command.trial) {
+            aggregate.applyEvent(new TallyEvent(sequenceNumber: aggregate.sequenceNumber + 1, total: aggregate.total))
+            return [new TallyEvent(total: aggregate.total + 1)]
+        }
+        [new TallyEvent(total: aggregate.total + 1)]
+    }
+}
+
+class TallyEventRepository implements EventRepository {
+
+    List<Event> events = []
+
+    /** Event appended by another writer just before the next head check, or null. */
+    Event interloper
+
+    @Override
+    List<Event> retrieveEventStream(final String eventStreamId) {
+        new ArrayList<>(events)
+    }
+
+    @Override
+    List<Event> retrieveEventStream(
+            final String eventStreamId, final int startSequenceNumber, final int endSequenceNumber) {
+        events.findAll { it.sequenceNumber >= startSequenceNumber && it.sequenceNumber <= endSequenceNumber }
+    }
+
+    @Override
+    List<Event> retrieveEventStream(
+            final String eventStreamId, final ZonedDateTime startDate, final ZonedDateTime endDate) {
+        throw new UnsupportedOperationException()
+    }
+
+    @Override
+    int retrieveLatestSequenceNumber(final String eventStreamId) {
+        if(interloper != null) {
+            events << interloper
+            interloper = null
+        }
+        events.empty ? 0 : events.last().sequenceNumber
+    }
+
+    @Override
+    void persistEvents(final String eventStreamId, final List<Event> events) {
+        this.events.addAll(events)
+    }
+}
+
+/**
+ * {@link TallyEventRepository} safe for concurrent use, which rejects appends that do not follow the head of the stream.
+ */
+class SerializedTallyEventRepository extends TallyEventRepository {
+
+    @Override
+    synchronized List<Event> retrieveEventStream(final String eventStreamId) {
+        super.retrieveEventStream(eventStreamId)
+    }
+
+    @Override
+    synchronized List<Event> retrieveEventStream(
+            final String eventStreamId, final int startSequenceNumber, final int endSequenceNumber) {
+        super.retrieveEventStream(eventStreamId, startSequenceNumber, endSequenceNumber)
+    }
+
+    @Override
+    synchronized int retrieveLatestSequenceNumber(final String eventStreamId) {
+        super.retrieveLatestSequenceNumber(eventStreamId)
+    }
+
+    @Override
+    synchronized void persistEvents(final String eventStreamId, final List<Event> events) {
+        def head = super.retrieveLatestSequenceNumber(eventStreamId)
+        if(events.first().sequenceNumber != head + 1) {
+            throw new ConcurrentModificationException("Stream is at $head")
+        }
+        super.persistEvents(eventStreamId, events)
+    }
+}
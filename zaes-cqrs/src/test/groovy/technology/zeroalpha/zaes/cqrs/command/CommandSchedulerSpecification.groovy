@@ -0,0 +1,187 @@
+package technology.zeroalpha.zaes.cqrs.command
+
+import spock.lang.Specification
+import technology.zeroalpha.zaes.core.aggregate.Aggregate
+import technology.zeroalpha.zaes.core.aggregate.AggregateService
+import technology.zeroalpha.zaes.core.event.Event
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.TimeUnit
+
+class CommandSchedulerSpecification extends Specification {
+
+    def aggregateService = Stub(AggregateService, constructorArgs: [CounterAggregate, null, null]) {
+        buildLatestAggregate(_ as String) >> { String id -> new CounterAggregate(aggregateIdentifier: id) }
+    }
+
+    def 'Commands for the same Aggregate run one at a time in submission order'() {
+        given:
+            def processor = new RecordingCommandProcessor(aggregateService)
+            def scheduler = new CommandScheduler(processor, 4, 1000, RejectionPolicy.BLOCK)
+
+        when:
+            def futures = (1..200).collect { scheduler.submit('aggregate', new CounterCommand(value: it)) }
+            futures*.get(10, TimeUnit.SECONDS)
+            scheduler.close()
+
+        then:
+            processor.processed.collect { it.value } == (1..200).toList()
+            processor.threads.unique().size() == 1
+            processor.maximumConcurrency == 1
+    }
+
+    def 'Commands for different Aggregates run in parallel'() {
+        given:
+            def processor = new RecordingCommandProcessor(aggregateService)
+            def barrier = new CountDownLatch(2)
+            processor.onProcess = {
+                barrier.countDown()
+                assert barrier.await(10, TimeUnit.SECONDS)
+            }
+            def scheduler = new CommandScheduler(processor, 2, 10, RejectionPolicy.ABORT)
+            def lanes = laneThreadNames(2, (1..100).collect { "aggregate-$it".toString() })
+            def first = lanes.keySet().first()
+            def second = lanes.keySet().find { lanes[it] != lanes[first] }
+
+        when:
+            def futures = [scheduler.submit(first, new CounterCommand()), scheduler.submit(second, new CounterCommand())]
+            futures*.get(10, TimeUnit.SECONDS)
+            scheduler.close()
+
+        then:
+            processor.threads.unique().size() == 2
+    }
+
+    def 'A full lane blocks the submitter until there is room when the policy is to block'() {
+        given:
+            def processor = new RecordingCommandProcessor(aggregateService)
+            def release = new CountDownLatch(1)
+            processor.onProcess = { release.await() }
+            def scheduler = new CommandScheduler(processor, 1, 1, RejectionPolicy.BLOCK)
+            def running = scheduler.submit('aggregate', new CounterCommand(value: 1))
+            def queued = scheduler.submit('aggregate', new CounterCommand(value: 2))
+            def blocked = null
+            def submitter = Thread.start { blocked = scheduler.submit('aggregate', new CounterCommand(value: 3)) }
+
+        when:
+            submitter.join(200)
+
+        then:
+            submitter.alive
+            blocked == null
+
+        when:
+            release.countDown()
+            submitter.join(10000)
+            blocked.get(10, TimeUnit.SECONDS)
+            scheduler.close()
+
+        then:
+            !submitter.alive
+            running.get() != null
+            queued.get() != null
+            processor.processed.collect { it.value } == [1, 2, 3]
+    }
+
+    def 'Full lanes apply the rejection policy'() {
+        given:
+            def processor = new RecordingCommandProcessor(aggregateService)
+            def release = new CountDownLatch(1)
+            processor.onProcess = { release.await() }
+            def scheduler = new CommandScheduler(processor, 1, 1, policy)
+
+        when:
+            def running = scheduler.submit('aggregate', new CounterCommand())
+            def queued = scheduler.submit('aggregate', new CounterCommand())
+            def rejected = null
+            def thrown = null
+            try {
+                rejected = scheduler.submit('aggregate', new CounterCommand())
+            } catch (RejectedExecutionException ree) {
+                thrown = ree
+            }
+            release.countDown()
+            scheduler.close()
+
+        then:
+            running.get() != null
+            queued.get() != null
+            (thrown != null) == expectThrown
+            if(!expectThrown) {
+                try {
+                    rejected.get()
+                    assert false
+                } catch (ExecutionException ee) {
+                    assert ee.cause instanceof RejectedExecutionException
+                }
+            }
+
+        where:
+            policy                 | expectThrown
+            RejectionPolicy.ABORT  | true
+            RejectionPolicy.FAIL   | false
+    }
+
+    /**
+     * Run a command for each identifier through a scheduler with the given number of lanes and report the name of
+     * the lane thread each one ran on.
+     */
+    private Map<String, String> laneThreadNames(final int laneCount, final List<String> identifiers) {
+        def processor = new RecordingCommandProcessor(aggregateService)
+        def scheduler = new CommandScheduler(processor, laneCount, identifiers.size(), RejectionPolicy.ABORT)
+        def lanes = Collections.synchronizedMap(new LinkedHashMap<String, String>())
+        identifiers.each { id -> lanes[id] = null }
+        processor.onProcess = { CounterCommand command -> lanes[command.identifier] = Thread.currentThread().name }
+        identifiers.collect { scheduler.submit(it, new CounterCommand(identifier: it)) }*.get(10, TimeUnit.SECONDS)
+        scheduler.close()
+        lanes
+    }
+}
+
+class CounterAggregate extends Aggregate {
+
+    @Override
+    protected void processEvent(final Event event) {
+    }
+}
+
+class CounterCommand extends Command<CounterAggregate> {
+
+    int value
+
+    String identifier
+}
+
+class RecordingCommandProcessor extends CommandProcessor<CounterAggregate, CounterCommand> {
+
+    List<CounterCommand> processed = new CopyOnWriteArrayList<>()
+
+    List<Thread> threads = new CopyOnWriteArrayList<>()
+
+    Closure onProcess = {}
+
+    volatile int concurrency
+
+    volatile int maximumConcurrency
+
+    RecordingCommandProcessor(final AggregateService<CounterAggregate> aggregateService) {
+        super(aggregateService)
+    }
+
+    @Override
+    protected List<Event> processCommand(final CounterAggregate aggregate, final CounterCommand command) {
+        synchronized (this) {
+            maximumConcurrency = Math.max(maximumConcurrency, ++concurrency)
+        }
+        onProcess.call(command)
+        processed << command
+        threads << Thread.currentThread()
+        synchronized (this) {
+            concurrency--
+        }
+        []
+    }
+}
@@ -0,0 +1,715 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.jdbc;
+
+import technology.zeroalpha.zaes.core.event.Event;
+import technology.zeroalpha.zaes.core.event.EventRepository;
+import technology.zeroalpha.zaes.core.event.serialization.EventSerializer;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * {@link EventRepository} storing Event Streams in a relational database table, accessed through JDBC. Each
+ * {@link Event} is one row, keyed by its stream identifier and sequence number; the payload is written with an
+ * {@link EventSerializer} and the timestamp is held as nanoseconds since the epoch, alongside its zone.
+ * <p>
+ * The primary key on {@code (stream_id, sequence_number)} is the concurrency control: an append that reuses a
+ * sequence number already in the stream violates it, and is rolled back and rejected with a
+ * {@link ConcurrentModificationException}. {@link Event}s are inserted with multi-row {@code INSERT} statements of up
+ * to {@value #MAXIMUM_ROWS_PER_INSERT} rows, all in one transaction; a batch spanning several streams shares the
+ * statements and the transaction, so it is written in full or not at all.
+ * <p>
+ * Range reads are paged by sequence number (keyset pagination), so each page is a short indexed query resuming after
+ * the last sequence number read, and only one page is held in memory however long the stream. Timestamp range reads
+ * use a secondary index on {@code (stream_id, timestamp_nanos)}. Bulk reads of several streams select up to
+ * {@value #MAXIMUM_STREAMS_PER_SELECT} streams with each query, and stream identifiers are enumerated a page at a
+ * time in identifier order, both from the primary key.
+ * <p>
+ * Connections are kept open between calls, up to a configured number, so that the statements prepared on them can be
+ * reused. {@link #createSchema()} creates the table and index using SQL accepted by H2; other databases whose binary
+ * column type is not {@code VARBINARY} (e.g. {@code BYTEA} for PostgreSQL) can pass their type to
+ * {@link #createSchema(String)}, or create the equivalent schema themselves.
+ */
+public class JdbcEventRepository implements EventRepository, Closeable {
+
+    /** Default name of the table holding {@link Event}s. */
+    public static final String DEFAULT_TABLE_NAME = "zaes_event";
+
+    /** Default number of {@link Event}s read by each range query. */
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+
+    /** Default number of idle connections kept open. */
+    public static final int DEFAULT_MAXIMUM_IDLE_CONNECTIONS = 8;
+
+    /** Default column type of the payload, as accepted by H2. */
+    public static final String DEFAULT_PAYLOAD_TYPE = "VARBINARY";
+
+    /** Largest number of rows written by a single {@code INSERT} statement. */
+    static final int MAXIMUM_ROWS_PER_INSERT = 64;
+
+    /** Largest number of streams read by a single bulk {@code SELECT} statement. */
+    static final int MAXIMUM_STREAMS_PER_SELECT = 64;
+
+    private static final Pattern TABLE_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private static final Pattern COLUMN_TYPE = Pattern.compile("[A-Za-z][A-Za-z0-9_ ]*(\\([0-9]+\\))?");
+
+    /** SQLSTATE class of integrity constraint violations, including duplicate keys. */
+    private static final String INTEGRITY_CONSTRAINT_VIOLATION = "23";
+
+    private final DataSource dataSource;
+
+    private final EventSerializer eventSerializer;
+
+    private final String tableName;
+
+    private final int pageSize;
+
+    private final int fetchSize;
+
+    /** {@code INSERT} statement for each number of rows, indexed by row count. */
+    private final String[] insertStatements = new String[MAXIMUM_ROWS_PER_INSERT + 1];
+
+    private final String selectBySequenceNumber;
+
+    private final String selectByTimestamp;
+
+    private final String selectLatestSequenceNumber;
+
+    /** Bulk {@code SELECT} statement for each number of streams, indexed by stream count. */
+    private final String[] selectStreamsStatements = new String[MAXIMUM_STREAMS_PER_SELECT + 1];
+
+    private final String selectFirstStreamIdentifiers;
+
+    private final String selectStreamIdentifiersAfter;
+
+    private final BlockingQueue<JdbcSession> idleSessions;
+
+    private final ConcurrentMap<String, ZoneId> zoneIds = new ConcurrentHashMap<>();
+
+    private volatile boolean closed;
+
+    /**
+     * @param dataSource Source of connections to the database
+     * @param eventSerializer Serializer for {@link Event} payloads
+     */
+    public JdbcEventRepository(final DataSource dataSource, final EventSerializer eventSerializer) {
+        this(dataSource, eventSerializer, DEFAULT_TABLE_NAME, DEFAULT_PAGE_SIZE, DEFAULT_PAGE_SIZE,
+                DEFAULT_MAXIMUM_IDLE_CONNECTIONS);
+    }
+
+    /**
+     * @param dataSource Source of connections to the database
+     * @param eventSerializer Serializer for {@link Event} payloads
+     * @param tableName Name of the table holding {@link Event}s
+     * @param pageSize Number of {@link Event}s read by each range query
+     * @param fetchSize Number of rows the driver fetches from the database at a time within each page
+     * @param maximumIdleConnections Number of connections, with their prepared statements, kept open between calls
+     */
+    public JdbcEventRepository(
+            final DataSource dataSource,
+            final EventSerializer eventSerializer,
+            final String tableName,
+            final int pageSize,
+            final int fetchSize,
+            final int maximumIdleConnections) {
+        if(!TABLE_NAME.matcher(tableName).matches()) {
+            throw new IllegalArgumentException("Invalid table name: " + tableName);
+        }
+        if(pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+        if(fetchSize < 1) {
+            throw new IllegalArgumentException("fetchSize must be positive");
+        }
+        if(maximumIdleConnections < 1) {
+            throw new IllegalArgumentException("maximumIdleConnections must be positive");
+        }
+
+        this.dataSource = Objects.requireNonNull(dataSource);
+        this.eventSerializer = Objects.requireNonNull(eventSerializer);
+        this.tableName = tableName;
+        this.pageSize = pageSize;
+        this.fetchSize = fetchSize;
+        this.idleSessions = new ArrayBlockingQueue<>(maximumIdleConnections);
+
+        final String select = "SELECT sequence_number, timestamp_nanos, zone_id, payload FROM " + tableName
+                + " WHERE stream_id = ? AND sequence_number >= ? AND ";
+        this.selectBySequenceNumber = select + "sequence_number <= ? ORDER BY sequence_number";
+        this.selectByTimestamp = select + "timestamp_nanos BETWEEN ? AND ? ORDER BY sequence_number";
+        this.selectLatestSequenceNumber = "SELECT MAX(sequence_number) FROM " + tableName + " WHERE stream_id = ?";
+        this.selectFirstStreamIdentifiers = "SELECT DISTINCT stream_id FROM " + tableName + " ORDER BY stream_id";
+        this.selectStreamIdentifiersAfter =
+                "SELECT DISTINCT stream_id FROM " + tableName + " WHERE stream_id > ? ORDER BY stream_id";
+
+        final StringBuilder selectStreams = new StringBuilder(
+                "SELECT sequence_number, timestamp_nanos, zone_id, payload, stream_id FROM " + tableName + " WHERE ");
+        for(int streams = 1; streams <= MAXIMUM_STREAMS_PER_SELECT; streams++) {
+            selectStreams.append(streams == 1 ? "" : " OR ").append("(stream_id = ? AND sequence_number >= ?)");
+            selectStreamsStatements[streams] = selectStreams + " ORDER BY stream_id, sequence_number";
+        }
+
+        final StringBuilder insert = new StringBuilder("INSERT INTO ").append(tableName)
+                .append(" (stream_id, sequence_number, timestamp_nanos, zone_id, payload) VALUES ");
+        for(int rows = 1; rows <= MAXIMUM_ROWS_PER_INSERT; rows++) {
+            insert.append(rows == 1 ? "" : ", ").append("(?, ?, ?, ?, ?)");
+            insertStatements[rows] = insert.toString();
+        }
+    }
+
+    /**
+     * Create the table and its timestamp index if they do not already exist, with a {@value #DEFAULT_PAYLOAD_TYPE}
+     * payload column.
+     */
+    public void createSchema() {
+        createSchema(DEFAULT_PAYLOAD_TYPE);
+    }
+
+    /**
+     * Create the table and its timestamp index if they do not already exist.
+     *
+     * @param payloadType Column type of the payload, e.g. {@code BYTEA} for PostgreSQL
+     */
+    public void createSchema(final String payloadType) {
+        if(!COLUMN_TYPE.matcher(payloadType).matches()) {
+            throw new IllegalArgumentException("Invalid column type: " + payloadType);
+        }
+
+        withSession(session -> {
+            try(final Statement statement = session.getConnection().createStatement()) {
+                statement.execute("CREATE TABLE IF NOT EXISTS " + tableName + " ("
+                        + "stream_id VARCHAR(255) NOT NULL, "
+                        + "sequence_number INTEGER NOT NULL, "
+                        + "timestamp_nanos BIGINT NOT NULL, "
+                        + "zone_id VARCHAR(64) NOT NULL, "
+                        + "payload " + payloadType + " NOT NULL, "
+                        + "CONSTRAINT " + tableName + "_pk PRIMARY KEY (stream_id, sequence_number))");
+                statement.execute("CREATE INDEX IF NOT EXISTS " + tableName + "_timestamp ON " + tableName
+                        + " (stream_id, timestamp_nanos)");
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public List<Event> retrieveEventStream(final String eventStreamId) {
+        return retrieveEventStream(eventStreamId, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Event> retrieveEventStream(
+            final String eventStreamId, final int startSequenceNumber, final int endSequenceNumber) {
+        try(final Stream<Event> events = streamEventStream(eventStreamId, startSequenceNumber, endSequenceNumber)) {
+            return events.collect(Collectors.toList());
+        }
+    }
+
+    @Override
+    public List<Event> retrieveEventStream(
+            final String eventStreamId, final ZonedDateTime startDate, final ZonedDateTime endDate) {
+        try(final Stream<Event> events = streamEventStream(eventStreamId, startDate, endDate)) {
+            return events.collect(Collectors.toList());
+        }
+    }
+
+    @Override
+    public Stream<Event> streamEventStream(final String eventStreamId) {
+        return streamEventStream(eventStreamId, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Stream<Event> streamEventStream(
+            final String eventStreamId, final int startSequenceNumber, final int endSequenceNumber) {
+        return streamPages(selectBySequenceNumber, eventStreamId, startSequenceNumber, endSequenceNumber);
+    }
+
+    @Override
+    public Stream<Event> streamEventStream(
+            final String eventStreamId, final ZonedDateTime startDate, final ZonedDateTime endDate) {
+        return streamPages(
+                selectByTimestamp,
+                eventStreamId,
+                Integer.MIN_VALUE,
+                saturatedEpochNanos(startDate.toInstant()),
+                saturatedEpochNanos(endDate.toInstant()));
+    }
+
+    /**
+     * Read the streams {@value #MAXIMUM_STREAMS_PER_SELECT} at a time, each query selecting every stream's
+     * {@link Event}s from its start sequence number by the primary key.
+     *
+     * @param startSequenceNumbers First sequence number to retrieve (inclusive) of each stream, keyed by identifier
+     * @return Ordered list of {@link Event}s of each stream, keyed by identifier in the order given, with an empty
+     *         list for any stream that does not exist
+     */
+    @Override
+    public Map<String, List<Event>> retrieveEventStreams(final Map<String, Integer> startSequenceNumbers) {
+        final Map<String, List<Event>> eventStreams = new LinkedHashMap<>();
+        startSequenceNumbers.keySet().forEach(eventStreamId ->
+                eventStreams.put(Objects.requireNonNull(eventStreamId), new ArrayList<>()));
+
+        final List<Map.Entry<String, Integer>> starts = new ArrayList<>(startSequenceNumbers.entrySet());
+        for(int offset = 0; offset < starts.size(); offset += MAXIMUM_STREAMS_PER_SELECT) {
+            final List<Map.Entry<String, Integer>> chunk =
+                    starts.subList(offset, Math.min(offset + MAXIMUM_STREAMS_PER_SELECT, starts.size()));
+            withSession(session -> {
+                final PreparedStatement statement = session.prepare(selectStreamsStatements[chunk.size()]);
+                statement.setFetchSize(fetchSize);
+                int parameter = 1;
+                for(final Map.Entry<String, Integer> start : chunk) {
+                    statement.setString(parameter++, start.getKey());
+                    statement.setInt(parameter++, start.getValue());
+                }
+
+                try(final ResultSet resultSet = statement.executeQuery()) {
+                    while(resultSet.next()) {
+                        eventStreams.get(resultSet.getString(5)).add(readEvent(resultSet));
+                    }
+                }
+                return null;
+            });
+        }
+
+        return eventStreams;
+    }
+
+    /**
+     * Enumerate the identifiers a page at a time in identifier order, each page resuming after the last identifier
+     * read.
+     *
+     * @return Identifiers of Event Streams, in identifier order, which must be closed after use
+     */
+    @Override
+    public Stream<String> streamEventStreamIdentifiers() {
+        ensureOpen();
+
+        return StreamSupport.stream(
+                new Spliterators.AbstractSpliterator<String>(
+                        Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL) {
+                    private List<String> page = Collections.emptyList();
+
+                    private int next;
+
+                    private boolean lastPage;
+
+                    @Override
+                    public boolean tryAdvance(final Consumer<? super String> action) {
+                        if(next == page.size()) {
+                            if(lastPage) {
+                                return false;
+                            }
+
+                            page = readIdentifierPage(page.isEmpty() ? null : page.get(page.size() - 1));
+                            next = 0;
+                            lastPage = page.size() < pageSize;
+                            if(page.isEmpty()) {
+                                return false;
+                            }
+                        }
+
+                        action.accept(page.get(next++));
+                        return true;
+                    }
+                },
+                false);
+    }
+
+    /**
+     * @param eventStreamId Identifier of stream
+     * @return Sequence number of the last {@link Event} in the stream, or zero if the stream is empty
+     */
+    @Override
+    public int retrieveLatestSequenceNumber(final String eventStreamId) {
+        return withSession(session -> {
+            final PreparedStatement statement = session.prepare(selectLatestSequenceNumber);
+            statement.setString(1, eventStreamId);
+            try(final ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getInt(1) : 0;
+            }
+        });
+    }
+
+    /**
+     * Insert the {@link Event}s in a single transaction.
+     *
+     * @param eventStreamId Identifier of stream
+     * @param events {@link Event}s to append
+     * @throws ConcurrentModificationException If any {@link Event}'s sequence number is already in the stream, in
+     *                                         which case none are inserted
+     */
+    @Override
+    public void persistEvents(final String eventStreamId, final List<Event> events)
+            throws ConcurrentModificationException {
+        persistEventBatch(Collections.singletonMap(eventStreamId, events));
+    }
+
+    /**
+     * Insert the {@link Event}s of every stream in a single transaction, streams sharing the multi-row
+     * {@code INSERT} statements so that a batch of up to {@value #MAXIMUM_ROWS_PER_INSERT} {@link Event}s is one round
+     * trip to the database.
+     *
+     * @param eventStreams {@link Event}s to append, keyed by Event Stream identifier
+     * @throws ConcurrentModificationException If any {@link Event}'s sequence number is already in its stream, in
+     *                                         which case nothing is inserted
+     */
+    @Override
+    public void persistEventBatch(final Map<String, List<Event>> eventStreams)
+            throws ConcurrentModificationException {
+        // Serialize every row first, so that a payload that cannot be written fails the batch before anything is sent
+        final List<Row> rows = new ArrayList<>();
+        eventStreams.forEach((eventStreamId, events) -> events.forEach(event -> rows.add(row(eventStreamId, event))));
+        if(rows.isEmpty()) {
+            return;
+        }
+
+        withSession(session -> {
+            final Connection connection = session.getConnection();
+            // A single statement is atomic by itself, so only larger batches need an explicit transaction
+            final boolean transaction = rows.size() > MAXIMUM_ROWS_PER_INSERT;
+            if(transaction) {
+                connection.setAutoCommit(false);
+            }
+
+            try {
+                for(int offset = 0; offset < rows.size(); offset += MAXIMUM_ROWS_PER_INSERT) {
+                    insert(session, rows, offset, Math.min(MAXIMUM_ROWS_PER_INSERT, rows.size() - offset));
+                }
+                if(transaction) {
+                    connection.commit();
+                }
+            } catch (final SQLException sqle) {
+                if(transaction) {
+                    connection.rollback();
+                }
+                if(sqle.getSQLState() != null && sqle.getSQLState().startsWith(INTEGRITY_CONSTRAINT_VIOLATION)) {
+                    throw conflict(eventStreams);
+                }
+                throw sqle;
+            } catch (final RuntimeException | Error e) {
+                // Restoring auto-commit below would commit the rows already inserted, so roll them back first
+                if(transaction) {
+                    try {
+                        connection.rollback();
+                    } catch (final SQLException sqle) {
+                        e.addSuppressed(sqle);
+                    }
+                }
+                throw e;
+            } finally {
+                if(transaction) {
+                    connection.setAutoCommit(true);
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * @return True, as every batch is inserted in a single transaction
+     */
+    @Override
+    public boolean isBatchAtomic() {
+        return true;
+    }
+
+    /**
+     * @return True, as date range reads use the index on {@code (stream_id, timestamp_nanos)}
+     */
+    @Override
+    public boolean isTimeIndexed() {
+        return true;
+    }
+
+    /**
+     * Release idle connections. Connections in use are closed as they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        JdbcSession session;
+        while((session = idleSessions.poll()) != null) {
+            session.close();
+        }
+    }
+
+    private Row row(final String eventStreamId, final Event event) {
+        final ZonedDateTime timestamp =
+                Objects.requireNonNull(event.getEventTimestamp(), "Event timestamp must be assigned");
+        return new Row(
+                eventStreamId,
+                event.getSequenceNumber(),
+                epochNanos(timestamp.toInstant()),
+                timestamp.getZone().getId(),
+                eventSerializer.serialize(event));
+    }
+
+    private void insert(
+            final JdbcSession session,
+            final List<Row> rows,
+            final int offset,
+            final int count) throws SQLException {
+        final PreparedStatement statement = session.prepare(insertStatements[count]);
+        int parameter = 1;
+        for(final Row row : rows.subList(offset, offset + count)) {
+            statement.setString(parameter++, row.eventStreamId);
+            statement.setInt(parameter++, row.sequenceNumber);
+            statement.setLong(parameter++, row.timestampNanos);
+            statement.setString(parameter++, row.zoneId);
+            statement.setBytes(parameter++, row.payload);
+        }
+        statement.executeUpdate();
+    }
+
+    private static ConcurrentModificationException conflict(final Map<String, List<Event>> eventStreams) {
+        if(eventStreams.size() == 1) {
+            final Map.Entry<String, List<Event>> eventStream = eventStreams.entrySet().iterator().next();
+            final List<Event> events = eventStream.getValue();
+            return new ConcurrentModificationException("Stream " + eventStream.getKey()
+                    + " already contains one of sequence numbers " + events.get(0).getSequenceNumber()
+                    + " to " + events.get(events.size() - 1).getSequenceNumber());
+        }
+        return new ConcurrentModificationException(
+                "One of streams " + eventStreams.keySet() + " already contains a sequence number being appended");
+    }
+
+    /**
+     * Stream the rows matched by the query one page at a time, each page resuming after the last sequence number
+     * read. The query's parameters are the stream identifier, the sequence number to resume from, then the bounds.
+     */
+    private Stream<Event> streamPages(
+            final String query, final String eventStreamId, final int startSequenceNumber, final long... bounds) {
+        Objects.requireNonNull(eventStreamId);
+        ensureOpen();
+
+        return StreamSupport.stream(
+                new Spliterators.AbstractSpliterator<Event>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+                    private int nextSequenceNumber = startSequenceNumber;
+
+                    private List<Event> page = Collections.emptyList();
+
+                    private int next;
+
+                    private boolean lastPage;
+
+                    @Override
+                    public boolean tryAdvance(final Consumer<? super Event> action) {
+                        if(next == page.size()) {
+                            if(lastPage) {
+                                return false;
+                            }
+
+                            page = readPage(query, eventStreamId, nextSequenceNumber, bounds);
+                            next = 0;
+                            if(page.isEmpty()) {
+                                return false;
+                            }
+
+                            final int lastSequenceNumber = page.get(page.size() - 1).getSequenceNumber();
+                            lastPage = page.size() < pageSize || lastSequenceNumber == Integer.MAX_VALUE;
+                            nextSequenceNumber = lastSequenceNumber + 1;
+                        }
+
+                        action.accept(page.get(next++));
+                        return true;
+                    }
+                },
+                false);
+    }
+
+    private List<Event> readPage(
+            final String query, final String eventStreamId, final int nextSequenceNumber, final long[] bounds) {
+        return withSession(session -> {
+            final PreparedStatement statement = session.prepare(query);
+            statement.setMaxRows(pageSize);
+            statement.setFetchSize(fetchSize);
+            statement.setString(1, eventStreamId);
+            statement.setInt(2, nextSequenceNumber);
+            for(int bound = 0; bound < bounds.length; bound++) {
+                statement.setLong(3 + bound, bounds[bound]);
+            }
+
+            final List<Event> events = new ArrayList<>(Math.min(pageSize, fetchSize));
+            try(final ResultSet resultSet = statement.executeQuery()) {
+                while(resultSet.next()) {
+                    events.add(readEvent(resultSet));
+                }
+            }
+
+            return events;
+        });
+    }
+
+    /**
+     * @param lastEventStreamId Last identifier of the previous page, or null to read the first page
+     */
+    private List<String> readIdentifierPage(final String lastEventStreamId) {
+        return withSession(session -> {
+            final PreparedStatement statement = session.prepare(
+                    lastEventStreamId == null ? selectFirstStreamIdentifiers : selectStreamIdentifiersAfter);
+            statement.setMaxRows(pageSize);
+            statement.setFetchSize(fetchSize);
+            if(lastEventStreamId != null) {
+                statement.setString(1, lastEventStreamId);
+            }
+
+            final List<String> eventStreamIds = new ArrayList<>(Math.min(pageSize, fetchSize));
+            try(final ResultSet resultSet = statement.executeQuery()) {
+                while(resultSet.next()) {
+                    eventStreamIds.add(resultSet.getString(1));
+                }
+            }
+
+            return eventStreamIds;
+        });
+    }
+
+    /**
+     * Read the {@link Event} at the current row, whose first four columns are its sequence number, timestamp, zone and
+     * payload.
+     */
+    private Event readEvent(final ResultSet resultSet) throws SQLException {
+        final Event event = eventSerializer.deserialize(resultSet.getBytes(4));
+        event.setSequenceNumber(resultSet.getInt(1));
+        final long epochNanos = resultSet.getLong(2);
+        final ZoneId zoneId = zoneIds.computeIfAbsent(resultSet.getString(3), ZoneId::of);
+        if(epochNanos % 1_000 == 0) {
+            // Compact form, so that no ZonedDateTime is created unless one is requested
+            event.setEventTimestamp(epochNanos / 1_000, zoneId);
+        } else {
+            event.setEventTimestamp(ZonedDateTime.ofInstant(Instant.ofEpochSecond(0, epochNanos), zoneId));
+        }
+
+        return event;
+    }
+
+    /**
+     * Run the operation with an idle connection, or a new one if none is idle, then return the connection to the
+     * idle set. Connections on which an operation failed are closed rather than reused.
+     */
+    private <T> T withSession(final SessionOperation<T> operation) {
+        ensureOpen();
+
+        JdbcSession session = idleSessions.poll();
+        if(session == null) {
+            try {
+                session = new JdbcSession(dataSource.getConnection());
+            } catch (final SQLException sqle) {
+                throw new JdbcEventStoreException("Unable to connect to event store", sqle);
+            }
+        }
+
+        final T result;
+        try {
+            result = operation.apply(session);
+        } catch (final ConcurrentModificationException cme) {
+            release(session);
+            throw cme;
+        } catch (final SQLException sqle) {
+            session.close();
+            throw new JdbcEventStoreException("Event store operation failed", sqle);
+        } catch (final RuntimeException | Error e) {
+            session.close();
+            throw e;
+        }
+
+        release(session);
+        return result;
+    }
+
+    private void release(final JdbcSession session) {
+        if(closed || !idleSessions.offer(session)) {
+            session.close();
+        }
+    }
+
+    private void ensureOpen() {
+        if(closed) {
+            throw new IllegalStateException("Repository has been closed");
+        }
+    }
+
+    private static long epochNanos(final Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000_000L), instant.getNano());
+    }
+
+    /**
+     * @return Nanoseconds since the epoch, or the nearest representable value for instants outside that range
+     */
+    private static long saturatedEpochNanos(final Instant instant) {
+        try {
+            return epochNanos(instant);
+        } catch (final ArithmeticException ae) {
+            return instant.getEpochSecond() < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Column values of one {@link Event}, ready to bind to an {@code INSERT}.
+     */
+    private static final class Row {
+
+        private final String eventStreamId;
+
+        private final int sequenceNumber;
+
+        private final long timestampNanos;
+
+        private final String zoneId;
+
+        private final byte[] payload;
+
+        private Row(
+                final String eventStreamId,
+                final int sequenceNumber,
+                final long timestampNanos,
+                final String zoneId,
+                final byte[] payload) {
+            this.eventStreamId = eventStreamId;
+            this.sequenceNumber = sequenceNumber;
+            this.timestampNanos = timestampNanos;
+            this.zoneId = zoneId;
+            this.payload = payload;
+        }
+    }
+
+    @FunctionalInterface
+    private interface SessionOperation<T> {
+
+        T apply(final JdbcSession session) throws SQLException;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link Connection} together with the statements prepared on it, so that each statement is parsed and planned
+ * once per connection rather than once per call. Only used by one thread at a time.
+ */
+class JdbcSession implements AutoCloseable {
+
+    private final Connection connection;
+
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+    JdbcSession(final Connection connection) {
+        this.connection = connection;
+    }
+
+    Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * @param sql Statement text
+     * @return Statement previously prepared from the same text on this connection, or a newly prepared one
+     * @throws SQLException If the statement cannot be prepared
+     */
+    PreparedStatement prepare(final String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if(statement == null) {
+            statement = connection.prepareStatement(sql);
+            statements.put(sql, statement);
+        }
+
+        return statement;
+    }
+
+    /**
+     * Close the connection, and so its statements, ignoring any failure as the connection is being discarded.
+     */
+    @Override
+    public void close() {
+        statements.clear();
+        try {
+            connection.close();
+        } catch (final SQLException ignored) {
+            // Nothing further can be done with a connection that fails to close
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package technology.zeroalpha.zaes.jdbc
+
+import org.h2.jdbcx.JdbcDataSource
+import spock.lang.Specification
+import technology.zeroalpha.zaes.core.event.Event
+import technology.zeroalpha.zaes.core.event.serialization.JavaEventSerializer
+
+import java.time.ZoneId
+import java.time.ZoneOffset
+import java.time.ZonedDateTime
+
+class JdbcEventRepositorySpecification extends Specification {
+
+    def startTime = ZonedDateTime.of(2016, 1, 1, 9, 0, 0, 123456789, ZoneId.of('Europe/London'))
+
+    def dataSource = Spy(JdbcDataSource)
+
+    def repository = new JdbcEventRepository(dataSource, new JavaEventSerializer(), 'zaes_event', 4, 2, 2)
+
+    def setup() {
+        dataSource.setURL("jdbc:h2:mem:${UUID.randomUUID()};DB_CLOSE_DELAY=-1")
+        repository.createSchema()
+    }
+
+    def cleanup() {
+        repository.close()
+    }
+
+    def 'Persisted Events are read back in order with their headers and payloads'() {
+        given:
+            repository.persistEvents('a', events(1..3))
+            repository.persistEvents('b', events(1..2))
+
+        when:
+            def stream = repository.retrieveEventStream('a')
+
+        then:
+            stream*.sequenceNumber == [1, 2, 3]
+            stream*.amount == [10, 20, 30]
+            stream*.eventTimestamp == [startTime.plusMinutes(1), startTime.plusMinutes(2), startTime.plusMinutes(3)]
+            repository.retrieveEventStream('b')*.sequenceNumber == [1, 2]
+            repository.retrieveEventStream('unknown').isEmpty()
+            repository.retrieveLatestSequenceNumber('a') == 3
+            repository.retrieveLatestSequenceNumber('unknown') == 0
+    }
+
+    def 'Range reads page through the stream by sequence number'() {
+        given:
+            repository.persistEvents('a', events(1..150))
+
+        expect:
+            repository.retrieveEventStream('a')*.sequenceNumber == (1..150).toList()
+            repository.retrieveEventStream('a', 7, 16)*.sequenceNumber == (7..16).toList()
+            repository.retrieveEventStream('a', 149, 200)*.sequenceNumber == [149, 150]
+            repository.streamEventStream('a', 3, 150).limit(5).collect { it.sequenceNumber } == (3..7).toList()
+    }
+
+    def 'Date range reads return the Events within the range, inclusive'() {
+        given:
+            repository.persistEvents('a', events(1..10))
+
+        expect:
+            repository.retrieveEventStream('a', startTime.plusMinutes(3), startTime.plusMinutes(8))*.sequenceNumber ==
+                    (3..8).toList()
+            repository.retrieveEventStream(
+                    'a',
+                    ZonedDateTime.of(-100000, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC),
+                    ZonedDateTime.of(100000, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC)).size() == 10
+    }
+
+    def 'Reusing a sequence number is rejected with ConcurrentModificationException'() {
+        given:
+            repository.persistEvents('a', events(1..3))
+
+        when:
+            repository.persistEvents('a', events(3..4))
+
+        then:
+            thrown(ConcurrentModificationException)
+            repository.retrieveLatestSequenceNumber('a') == 3
+    }
+
+    def 'A rejected batch spanning several statements is rolled back in full'() {
+        given:
+            repository.persistEvents('a', events([100]))
+
+        when:
+            repository.persistEvents('a', events(1..100))
+
+        then:
+            thrown(ConcurrentModificationException)
+            repository.retrieveEventStream('a')*.sequenceNumber == [100]
+    }
+
+    def 'A batch across several streams is written together, or not at all if any stream conflicts'() {
+        given:
+            repository.persistEvents('c', events([1]))
+
+        when:
+            repository.persistEventBatch([a: events(1..2), b: events(1..3)])
+
+        then:
+            repository.retrieveEventStream('a')*.sequenceNumber == [1, 2]
+            repository.retrieveEventStream('b')*.sequenceNumber == [1, 2, 3]
+            repository.batchAtomic
+
+        when:
+            repository.persistEventBatch([d: events(1..70), c: events(1..2)])
+
+        then:
+            thrown(ConcurrentModificationException)
+            repository.retrieveLatestSequenceNumber('d') == 0
+            repository.retrieveEventStream('c')*.sequenceNumber == [1]
+    }
+
+    def 'A batch spanning several statements is not written at all if any Event fails to serialize'() {
+        given:
+            def batch = events(1..69) + [new UnserializableEvent(sequenceNumber: 70, eventTimestamp: startTime)]
+
+        when:
+            repository.persistEvents('a', batch)
+
+        then:
+            thrown(RuntimeException)
+            repository.retrieveLatestSequenceNumber('a') == 0
+
+        when:
+            repository.persistEvents('a', events(1..70))
+
+        then:
+            repository.retrieveLatestSequenceNumber('a') == 70
+    }
+
+    def 'Several streams are read with one query per chunk of streams, each from its own sequence number'() {
+        given:
+            def identifiers = (1..70).collect { "stream-$it".toString() }
+            identifiers.each { repository.persistEvents(it, events(1..3)) }
+            def starts = identifiers.reverse().collectEntries { [(it): 2] }
+            starts['missing'] = 1
+            starts['stream-1'] = Integer.MIN_VALUE
+
+        when:
+            def eventStreams = repository.retrieveEventStreams(starts)
+
+        then:
+            eventStreams.keySet().toList() == starts.keySet().toList()
+            eventStreams['stream-1']*.sequenceNumber == [1, 2, 3]
+            eventStreams['stream-70']*.sequenceNumber == [2, 3]
+            eventStreams['stream-70']*.amount == [20, 30]
+            eventStreams['stream-70']*.eventTimestamp == [startTime.plusMinutes(2), startTime.plusMinutes(3)]
+            eventStreams['missing'].isEmpty()
+            eventStreams.values().sum { it.size() } == 2 * 70 + 1
+    }
+
+    def 'Every Event Stream is enumerated once, a page at a time'() {
+        given:
+            def identifiers = (1..10).collect { "stream-$it".toString() } + ['']
+            identifiers.each { repository.persistEvents(it, events(1..2)) }
+
+        expect:
+            repository.streamEventStreamIdentifiers().collect() == identifiers.sort()
+    }
+
+    def 'The payload column type can be chosen for the database'() {
+        given:
+            def otherRepository = new JdbcEventRepository(dataSource, new JavaEventSerializer(), 'other_event', 4, 2, 2)
+
+        when:
+            otherRepository.createSchema('VARBINARY(1000000)')
+            otherRepository.persistEvents('a', events(1..2))
+
+        then:
+            otherRepository.retrieveEventStream('a')*.amount == [10, 20]
+
+        when:
+            otherRepository.createSchema('VARBINARY; DROP TABLE zaes_event')
+
+        then:
+            thrown(IllegalArgumentException)
+
+        cleanup:
+            otherRepository.close()
+    }
+
+    def 'Connections and their prepared statements are reused between calls'() {
+        when:
+            (1..20).each {
+                repository.persistEvents('a', events([it]))
+                repository.retrieveEventStream('a', it, it)
+            }
+
+        then:
+            0 * dataSource.getConnection()
+            repository.retrieveLatestSequenceNumber('a') == 20
+    }
+
+    private List<Event> events(final Iterable<Integer> sequenceNumbers) {
+        sequenceNumbers.collect {
+            def event = new AmountEvent(amount: it * 10)
+            event.sequenceNumber = it
+            event.eventTimestamp = startTime.plusMinutes(it)
+            event
+        }
+    }
+}
+
+class AmountEvent extends Event implements Serializable {
+
+    int amount
+}
+
+class UnserializableEvent extends Event implements Serializable {
+
+    Object payload = new Object()
+}
@@ -0,0 +1,305 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.log;
+
+import technology.zeroalpha.zaes.core.io.DurableFiles;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A sealed {@link Segment} compacted into a compressed archive file. The records are split, at record boundaries,
+ * into blocks that are each compressed with Deflate, and a block index maps offsets within the original segment to
+ * the block holding them, so records keep their positions and are read by decompressing only their block. The file
+ * is laid out as:
+ * <pre>
+ *   int    magic number
+ *   int    format version
+ *   int    length of the records in the original segment
+ *   int    number of blocks
+ *   block index, for each block:
+ *     int    offset of the block's first record in the original segment
+ *     int    uncompressed length
+ *     int    offset of the compressed block in this file
+ *     int    compressed length
+ *   compressed blocks, in order
+ * </pre>
+ * Each block is a zlib stream, whose checksum is verified as it is decompressed. Archives are immutable.
+ */
+final class ArchivedSegment {
+
+    static final String FILE_SUFFIX = ".archive";
+
+    /** Suffix of an archive still being written, which only takes its final name once complete. */
+    static final String TEMPORARY_FILE_SUFFIX = FILE_SUFFIX + ".tmp";
+
+    private static final int MAGIC = 0x5a414152;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int HEADER_LENGTH = 16;
+
+    private static final int BLOCK_ENTRY_LENGTH = 16;
+
+    private final int index;
+
+    private final MappedByteBuffer mapping;
+
+    private final int dataLength;
+
+    private final int[] blockStarts;
+
+    private final int[] blockLengths;
+
+    private final int[] blockOffsets;
+
+    private final int[] compressedLengths;
+
+    private final BlockCache blockCache;
+
+    private ArchivedSegment(final int index, final MappedByteBuffer mapping, final BlockCache blockCache)
+            throws IOException {
+        if(mapping.capacity() < HEADER_LENGTH || mapping.getInt(0) != MAGIC) {
+            throw new IOException("Not a segment archive: " + fileName(index));
+        }
+        if(mapping.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Unsupported archive format version " + mapping.getInt(4) + ": " + fileName(index));
+        }
+
+        this.index = index;
+        this.mapping = mapping;
+        this.dataLength = mapping.getInt(8);
+        this.blockCache = blockCache;
+
+        final int blockCount = mapping.getInt(12);
+        this.blockStarts = new int[blockCount];
+        this.blockLengths = new int[blockCount];
+        this.blockOffsets = new int[blockCount];
+        this.compressedLengths = new int[blockCount];
+        for(int block = 0; block < blockCount; block++) {
+            final int entry = HEADER_LENGTH + block * BLOCK_ENTRY_LENGTH;
+            blockStarts[block] = mapping.getInt(entry);
+            blockLengths[block] = mapping.getInt(entry + 4);
+            blockOffsets[block] = mapping.getInt(entry + 8);
+            compressedLengths[block] = mapping.getInt(entry + 12);
+        }
+    }
+
+    /**
+     * Compact the records of a sealed segment into an archive file alongside it. The archive is written to a
+     * temporary file and moved into place, so it is either complete or absent; the segment file is left for the
+     * caller to delete.
+     *
+     * @param directory Directory holding the log
+     * @param segment Sealed segment, which must not be appended to
+     * @param blockSize Uncompressed size at which blocks are cut; larger records form a block of their own
+     * @param blockCache Cache for blocks decompressed from the archive
+     * @return The new archive
+     * @throws IOException If the archive cannot be written
+     */
+    static ArchivedSegment write(
+            final Path directory, final Segment segment, final int blockSize, final BlockCache blockCache)
+            throws IOException {
+        final ByteBuffer records = segment.view();
+        final int dataLength = segment.getWritePosition();
+
+        final List<int[]> blocks = new ArrayList<>();
+        int blockStart = 0;
+        int position = 0;
+        while(position < dataLength) {
+            final int recordLength = 4 + records.getInt(position);
+            if(position > blockStart && position + recordLength - blockStart > blockSize) {
+                blocks.add(new int[] { blockStart, position - blockStart });
+                blockStart = position;
+            }
+            position += recordLength;
+        }
+        if(position > blockStart) {
+            blocks.add(new int[] { blockStart, position - blockStart });
+        }
+
+        final ByteBuffer index = ByteBuffer.allocate(HEADER_LENGTH + blocks.size() * BLOCK_ENTRY_LENGTH);
+        index.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(dataLength).putInt(blocks.size());
+
+        final Path temporaryFile = directory.resolve(temporaryFileName(segment.getIndex()));
+        final Deflater deflater = new Deflater();
+        try(final FileChannel channel = FileChannel.open(temporaryFile,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            channel.position(index.capacity());
+
+            byte[] input = new byte[0];
+            byte[] output = new byte[0];
+            int fileOffset = index.capacity();
+            for(final int[] block : blocks) {
+                if(input.length < block[1]) {
+                    input = new byte[block[1]];
+                    output = new byte[block[1] + block[1] / 1000 + 64];
+                }
+                LogRecord.readBytes(records, block[0], input, block[1]);
+
+                deflater.reset();
+                deflater.setInput(input, 0, block[1]);
+                deflater.finish();
+                int compressedLength = 0;
+                while(!deflater.finished()) {
+                    if(compressedLength == output.length) {
+                        output = Arrays.copyOf(output, output.length * 2);
+                    }
+                    compressedLength += deflater.deflate(output, compressedLength, output.length - compressedLength);
+                }
+
+                writeFully(channel, ByteBuffer.wrap(output, 0, compressedLength));
+                index.putInt(block[0]).putInt(block[1]).putInt(fileOffset).putInt(compressedLength);
+                fileOffset += compressedLength;
+            }
+
+            index.flip();
+            channel.position(0);
+            writeFully(channel, index);
+            channel.force(true);
+        } finally {
+            deflater.end();
+        }
+
+        Files.move(temporaryFile, directory.resolve(fileName(segment.getIndex())), StandardCopyOption.ATOMIC_MOVE);
+        // Make the rename durable before the caller deletes the segment, so a crash cannot lose both
+        DurableFiles.forceDirectory(directory);
+        return open(directory, segment.getIndex(), blockCache);
+    }
+
+    /**
+     * @param directory Directory holding the log
+     * @param index Index of the archived segment
+     * @param blockCache Cache for blocks decompressed from the archive
+     * @return Mapped archive
+     * @throws IOException If the archive cannot be read or is not in a supported format
+     */
+    static ArchivedSegment open(final Path directory, final int index, final BlockCache blockCache)
+            throws IOException {
+        try(final FileChannel channel = FileChannel.open(directory.resolve(fileName(index)), StandardOpenOption.READ)) {
+            // The mapping remains valid once the channel has been closed
+            final MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new ArchivedSegment(index, mapping, blockCache);
+        }
+    }
+
+    static String fileName(final int index) {
+        return String.format("%010d", index) + FILE_SUFFIX;
+    }
+
+    static String temporaryFileName(final int index) {
+        return String.format("%010d", index) + TEMPORARY_FILE_SUFFIX;
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return Length of the records in the original segment; offsets from here on are past the last record
+     */
+    int getDataLength() {
+        return dataLength;
+    }
+
+    int blockCount() {
+        return blockStarts.length;
+    }
+
+    /**
+     * @return Offset of the block's first record in the original segment
+     */
+    int blockStart(final int block) {
+        return blockStarts[block];
+    }
+
+    /**
+     * @param offset Offset of a record in the original segment
+     * @return View of the decompressed block holding the record, positioned at the start of the record
+     */
+    ByteBuffer recordView(final int offset) {
+        int block = Arrays.binarySearch(blockStarts, offset);
+        if(block < 0) {
+            block = -block - 2;
+        }
+
+        final ByteBuffer view = blockView(block);
+        view.position(offset - blockStarts[block]);
+
+        return view;
+    }
+
+    /**
+     * @return New read-only view of the decompressed block, for use by a single reader
+     */
+    ByteBuffer blockView(final int block) {
+        byte[] records = blockCache.get(index, block);
+        if(records == null) {
+            records = decompress(block);
+            blockCache.put(index, block, records);
+        }
+
+        return ByteBuffer.wrap(records).asReadOnlyBuffer();
+    }
+
+    private byte[] decompress(final int block) {
+        final byte[] compressed = new byte[compressedLengths[block]];
+        LogRecord.readBytes(mapping, blockOffsets[block], compressed);
+
+        final byte[] records = new byte[blockLengths[block]];
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int length = 0;
+            while(length < records.length) {
+                final int inflated = inflater.inflate(records, length, records.length - length);
+                if(inflated == 0 && (inflater.needsInput() || inflater.finished())) {
+                    throw new DataFormatException("Block ends after " + length + " of " + records.length + " bytes");
+                }
+                length += inflated;
+            }
+        } catch (final DataFormatException dfe) {
+            throw new UncheckedIOException(
+                    new IOException("Corrupt block " + block + " in " + fileName(index), dfe));
+        } finally {
+            inflater.end();
+        }
+
+        return records;
+    }
+
+    private static void writeFully(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.log;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least-recently-used cache of decompressed archive blocks, shared by all the {@link ArchivedSegment}s of a log so
+ * that reading consecutive records decompresses each block once.
+ */
+final class BlockCache {
+
+    private final Blocks blocks;
+
+    /**
+     * @param capacity Number of blocks to retain
+     */
+    BlockCache(final int capacity) {
+        this.blocks = new Blocks(capacity);
+    }
+
+    synchronized byte[] get(final int segmentIndex, final int blockNumber) {
+        return blocks.get(key(segmentIndex, blockNumber));
+    }
+
+    synchronized void put(final int segmentIndex, final int blockNumber, final byte[] block) {
+        blocks.put(key(segmentIndex, blockNumber), block);
+    }
+
+    private static long key(final int segmentIndex, final int blockNumber) {
+        return ((long) segmentIndex << 32) | blockNumber;
+    }
+
+    /**
+     * Blocks by segment index and block number, in access order, dropping the least recently used beyond capacity.
+     */
+    private static final class Blocks extends LinkedHashMap<Long, byte[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        private Blocks(final int capacity) {
+            super(capacity * 2, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Long, byte[]> eldest) {
+            return size() > capacity;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.log;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Layout of the records written to the log. Each record is laid out as:
+ * <pre>
+ *   int    length of the remainder of the record
+ *   int    CRC32 checksum of the body
+ *   body:
+ *     byte   flags
+ *     short  length of stream identifier, followed by its UTF-8 bytes
+ *     int    sequence number
+ *     long   timestamp seconds since the epoch
+ *     int    timestamp nanosecond adjustment
+ *     short  length of time-zone identifier, followed by its UTF-8 bytes
+ *     int    length of payload, followed by the serialized payload
+ * </pre>
+ * A length of zero marks the end of the data in a segment, as segments are zero-filled when created.
+ */
+final class LogRecord {
+
+    /** Set on the last record of each batch, so that partially written batches can be discarded on recovery. */
+    static final byte END_OF_BATCH = 1;
+
+    /** Bytes preceding the body: length and checksum. */
+    static final int PREAMBLE_LENGTH = 8;
+
+    private LogRecord() {
+    }
+
+    /**
+     * @return Number of bytes required to encode a record with the given fields
+     */
+    static int encodedLength(final byte[] eventStreamId, final byte[] zoneId, final byte[] payload) {
+        return PREAMBLE_LENGTH + 1 + 2 + eventStreamId.length + 4 + 8 + 4 + 2 + zoneId.length + 4 + payload.length;
+    }
+
+    /**
+     * Encode a record at the current position of the buffer, which must have enough space remaining.
+     */
+    static void encode(
+            final ByteBuffer buffer,
+            final byte flags,
+            final byte[] eventStreamId,
+            final int sequenceNumber,
+            final long epochSecond,
+            final int nanoOfSecond,
+            final byte[] zoneId,
+            final byte[] payload,
+            final CRC32 checksum) {
+        final int start = buffer.position();
+        buffer.position(start + PREAMBLE_LENGTH);
+        buffer.put(flags);
+        buffer.putShort((short) eventStreamId.length).put(eventStreamId);
+        buffer.putInt(sequenceNumber);
+        buffer.putLong(epochSecond);
+        buffer.putInt(nanoOfSecond);
+        buffer.putShort((short) zoneId.length).put(zoneId);
+        buffer.putInt(payload.length).put(payload);
+        final int end = buffer.position();
+
+        buffer.putInt(start, end - start - 4);
+        buffer.putInt(start + 4, checksum(buffer, start + PREAMBLE_LENGTH, end, checksum));
+    }
+
+    /**
+     * Validate the record at the given position.
+     *
+     * @return Total length of the record, or -1 if there is no complete, valid record at the position
+     */
+    static int validate(final ByteBuffer segment, final int position, final CRC32 checksum) {
+        if(position + PREAMBLE_LENGTH > segment.capacity()) {
+            return -1;
+        }
+
+        final int length = segment.getInt(position);
+        if(length < PREAMBLE_LENGTH - 4 || position + 4L + length > segment.capacity()) {
+            return -1;
+        }
+
+        final int end = position + 4 + length;
+        if(segment.getInt(position + 4) != checksum(segment, position + PREAMBLE_LENGTH, end, checksum)) {
+            return -1;
+        }
+
+        return length + 4;
+    }
+
+    static byte flags(final ByteBuffer segment, final int position) {
+        return segment.get(position + PREAMBLE_LENGTH);
+    }
+
+    /**
+     * @return Offset of the stream identifier length within a record
+     */
+    static int eventStreamIdOffset(final int position) {
+        return position + PREAMBLE_LENGTH + 1;
+    }
+
+    static String eventStreamId(final ByteBuffer segment, final int position) {
+        final int offset = eventStreamIdOffset(position);
+        final byte[] bytes = new byte[segment.getShort(offset)];
+        readBytes(segment, offset + 2, bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return Offset of the sequence number within a record
+     */
+    static int sequenceNumberOffset(final ByteBuffer segment, final int position) {
+        final int offset = eventStreamIdOffset(position);
+        return offset + 2 + segment.getShort(offset);
+    }
+
+    static void readBytes(final ByteBuffer segment, final int offset, final byte[] destination) {
+        readBytes(segment, offset, destination, destination.length);
+    }
+
+    static void readBytes(final ByteBuffer segment, final int offset, final byte[] destination, final int length) {
+        final ByteBuffer view = segment.duplicate();
+        view.position(offset);
+        view.get(destination, 0, length);
+    }
+
+    private static int checksum(final ByteBuffer buffer, final int from, final int to, final CRC32 checksum) {
+        checksum.reset();
+        final ByteBuffer view = buffer.duplicate();
+        view.limit(to).position(from);
+        checksum.update(view);
+
+        return (int) checksum.getValue();
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * A single fixed-size, memory-mapped file within the log. Records are only ever appended, by a single writer, while
+ * any number of readers access earlier records through their own views of the mapping.
+ */
+final class Segment implements Closeable {
+
+    /** Position of the segment within the log, used to build record positions and file names. */
+    private final int index;
+
+    private final Path file;
+
+    private final MappedByteBuffer mapping;
+
+    /** View of the mapping used only by the writer, so that its position does not disturb readers. */
+    private final ByteBuffer writeView;
+
+    /** Offset at which the next record will be written. Only accessed by the writer. */
+    private int writePosition;
+
+    private Segment(final int index, final Path file, final MappedByteBuffer mapping) {
+        this.index = index;
+        this.file = file;
+        this.mapping = mapping;
+        this.writeView = mapping.duplicate();
+    }
+
+    /**
+     * Open (creating and pre-sizing if necessary) the segment file with the given index. Existing files larger than
+     * the requested size are mapped in full.
+     *
+     * @param directory Directory holding the log
+     * @param index Index of the segment
+     * @param size Size of a new segment in bytes
+     * @return Mapped segment
+     * @throws IOException If the file cannot be created or mapped
+     */
+    static Segment open(final Path directory, final int index, final int size) throws IOException {
+        final Path file = directory.resolve(fileName(index));
+        try(final RandomAccessFile randomAccessFile = new RandomAccessFile(file.toFile(), "rw")) {
+            if(randomAccessFile.length() < size) {
+                randomAccessFile.setLength(size);
+            }
+
+            final MappedByteBuffer mapping = randomAccessFile
+                    .getChannel()
+                    .map(FileChannel.MapMode.READ_WRITE, 0, Math.min(randomAccessFile.length(), Integer.MAX_VALUE));
+
+            // The mapping remains valid once the file has been closed
+            return new Segment(index, file, mapping);
+        }
+    }
+
+    static String fileName(final int index) {
+        return String.format("%010d.segment", index);
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    int capacity() {
+        return mapping.capacity();
+    }
+
+    int getWritePosition() {
+        return writePosition;
+    }
+
+    void setWritePosition(final int writePosition) {
+        this.writePosition = writePosition;
+    }
+
+    int remaining() {
+        return mapping.capacity() - writePosition;
+    }
+
+    /**
+     * Append the remaining bytes of the given buffer at the current write position.
+     *
+     * @param records Encoded records to write
+     * @return Offset at which the bytes were written
+     */
+    int append(final ByteBuffer records) {
+        final int position = writePosition;
+        writeView.clear();
+        writeView.position(position);
+        writeView.put(records);
+        writePosition = writeView.position();
+
+        return position;
+    }
+
+    /**
+     * Overwrite a range with zeroes, e.g. to discard a partially written batch.
+     *
+     * @param from First offset to clear
+     * @param to Offset after the last one to clear
+     */
+    void clear(final int from, final int to) {
+        for(int position = from; position < to; position++) {
+            mapping.put(position, (byte) 0);
+        }
+    }
+
+    /**
+     * @return New read-only view of the whole segment, for use by a single reader
+     */
+    ByteBuffer view() {
+        return mapping.asReadOnlyBuffer();
+    }
+
+    /**
+     * Flush any modified pages to the underlying storage device.
+     */
+    void force() {
+        mapping.force();
+    }
+
+    @Override
+    public void close() {
+        force();
+    }
+}
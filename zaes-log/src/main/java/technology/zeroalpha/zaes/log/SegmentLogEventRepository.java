@@ -0,0 +1,1002 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.log;
+
+import technology.zeroalpha.zaes.core.aggregate.AggregateId;
+import technology.zeroalpha.zaes.core.event.Event;
+import technology.zeroalpha.zaes.core.event.EventRepository;
+import technology.zeroalpha.zaes.core.event.ReplayableEventRepository;
+import technology.zeroalpha.zaes.core.event.serialization.EventSerializer;
+import technology.zeroalpha.zaes.core.event.serialization.ReusableEvents;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32;
+
+/**
+ * {@link EventRepository} storing all Event Streams in a single append-only log, split across fixed-size,
+ * memory-mapped segment files. An in-memory index maps each stream's sequence numbers to record positions, so range
+ * reads seek directly to the records required.
+ * <p>
+ * Sequence numbers within each stream must start at one and be contiguous; an append whose first sequence number does
+ * not follow the current head of the stream is rejected with a {@link ConcurrentModificationException}. All records
+ * persisted by a single call are written as one batch, which is discarded as a whole if it was only partially
+ * written when the process stopped.
+ * <p>
+ * Appends are written to the page cache and are made durable by {@link #sync()} (which {@link #flush()} calls, so
+ * that an {@link technology.zeroalpha.zaes.core.event.EventService} flushes after each commit), or by the operating
+ * system in its own time. The index is rebuilt by scanning the segments when the repository is opened.
+ * <p>
+ * Old history can be moved to a cold tier with {@link #archiveSegments(int)}, which compacts sealed segments into
+ * Deflate-compressed archive files with a block index. Archived records keep their positions and are read by
+ * decompressing only the blocks holding them, through a cache shared by all archives, so sequential replays and range
+ * reads decompress each block once. Recent segments stay uncompressed for fast appends and tail reads.
+ * <p>
+ * Replays for rehydration ({@link #replayEventStream(String, int, int, Consumer)}) decode each record in place: the
+ * payload is passed to the {@link EventSerializer} as a view of the segment, {@link Event} instances are reused for
+ * classes that opt in, and a stream's zone identifier is resolved once rather than for every record. Streams named by
+ * the text form of an {@link AggregateId} are also indexed by the identifier's two longs, so reads and replays by
+ * {@link AggregateId} look the stream up without building or hashing its text form.
+ */
+public class SegmentLogEventRepository implements ReplayableEventRepository, Closeable {
+
+    /** Default size of each segment file. */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    /** Uncompressed size at which archive blocks are cut. */
+    static final int ARCHIVE_BLOCK_SIZE = 64 * 1024;
+
+    /** Number of decompressed archive blocks cached. */
+    private static final int BLOCK_CACHE_CAPACITY = 64;
+
+    /** Bound on the seconds of timestamps held in microseconds, well clear of overflowing a long. */
+    private static final long MAXIMUM_COMPACT_EPOCH_SECOND = Long.MAX_VALUE / 1_000_000L - 1;
+
+    private final Path directory;
+
+    private final EventSerializer eventSerializer;
+
+    private final int segmentSize;
+
+    /**
+     * All segments, in order, or null where a segment has been archived. Replaced when a new segment is added or one
+     * is archived.
+     */
+    private volatile Segment[] segments;
+
+    /**
+     * Archived segments by index, or null where a segment has not been archived. An archive is always published here
+     * before its segment is removed from {@link #segments}.
+     */
+    private volatile ArchivedSegment[] archives = new ArchivedSegment[0];
+
+    private final BlockCache blockCache = new BlockCache(BLOCK_CACHE_CAPACITY);
+
+    /** Held while archiving, so that only one caller compacts segments at a time. */
+    private final Object archiveLock = new Object();
+
+    /** Segment currently being appended to. Only accessed by the writer. */
+    private Segment activeSegment;
+
+    /** Global position just past the last complete batch; only records before it are read by global position. */
+    private volatile long committedPosition;
+
+    private final ConcurrentMap<String, StreamIndex> streamIndexes = new ConcurrentHashMap<>();
+
+    /** The same indexes as {@link #streamIndexes} for streams named by the text form of an {@link AggregateId}. */
+    private final ConcurrentMap<AggregateId, StreamIndex> aggregateStreamIndexes = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, ZoneId> zoneIds = new ConcurrentHashMap<>();
+
+    /** Buffer used by the writer to encode each batch before it is copied into the active segment. */
+    private ByteBuffer batchBuffer = ByteBuffer.allocate(64 * 1024);
+
+    private final CRC32 writeChecksum = new CRC32();
+
+    private volatile boolean closed;
+
+    /**
+     * @param directory Directory holding the segment files, created if it does not exist
+     * @param eventSerializer Serializer for {@link Event} payloads
+     */
+    public SegmentLogEventRepository(final Path directory, final EventSerializer eventSerializer) {
+        this(directory, eventSerializer, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param directory Directory holding the segment files, created if it does not exist
+     * @param eventSerializer Serializer for {@link Event} payloads
+     * @param segmentSize Size of each new segment file in bytes, which limits the size of a single batch
+     */
+    public SegmentLogEventRepository(
+            final Path directory, final EventSerializer eventSerializer, final int segmentSize) {
+        if(segmentSize < 1024) {
+            throw new IllegalArgumentException("segmentSize must be at least 1024 bytes");
+        }
+
+        this.directory = directory;
+        this.eventSerializer = Objects.requireNonNull(eventSerializer);
+        this.segmentSize = segmentSize;
+
+        try {
+            Files.createDirectories(directory);
+            this.segments = recover();
+        } catch (final IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+        this.activeSegment = segments[segments.length - 1];
+        this.committedPosition = position(activeSegment.getIndex(), activeSegment.getWritePosition());
+    }
+
+    @Override
+    public List<Event> retrieveEventStream(final String eventStreamId) {
+        return retrieveEventStream(eventStreamId, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Event> retrieveEventStream(
+            final String eventStreamId, final int startSequenceNumber, final int endSequenceNumber) {
+        try(final Stream<Event> events = streamEventStream(eventStreamId, startSequenceNumber, endSequenceNumber)) {
+            return events.collect(Collectors.toList());
+        }
+    }
+
+    @Override
+    public List<Event> retrieveEventStream(
+            final String eventStreamId, final ZonedDateTime startDate, final ZonedDateTime endDate) {
+        try(final Stream<Event> events = streamEventStream(eventStreamId, startDate, endDate)) {
+            return events.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Read every requested stream in a single pass over the log: the records of all the streams are visited in log
+     * order, merging the positions held by their indexes, so each segment is read from start to end once rather than
+     * once per stream.
+     */
+    @Override
+    public Map<String, List<Event>> retrieveEventStreams(final Map<String, Integer> startSequenceNumbers) {
+        ensureOpen();
+
+        final Map<String, List<Event>> eventStreams = new LinkedHashMap<>();
+        final PriorityQueue<StreamCursor> cursors = new PriorityQueue<>(
+                Math.max(1, startSequenceNumbers.size()), Comparator.comparingLong(StreamCursor::position));
+        startSequenceNumbers.forEach((eventStreamId, startSequenceNumber) -> {
+            final List<Event> events = new ArrayList<>();
+            eventStreams.put(eventStreamId, events);
+
+            final StreamIndex streamIndex = streamIndexes.get(eventStreamId);
+            if(streamIndex != null) {
+                final StreamCursor cursor = new StreamCursor(
+                        streamIndex,
+                        Math.max(startSequenceNumber, streamIndex.getFirstSequenceNumber()),
+                        streamIndex.getLastSequenceNumber(),
+                        events);
+                if(cursor.hasNext()) {
+                    cursors.add(cursor);
+                }
+            }
+        });
+
+        StreamCursor cursor;
+        while((cursor = cursors.poll()) != null) {
+            cursor.events.add(readEvent(cursor.position()));
+            cursor.sequenceNumber++;
+            if(cursor.hasNext()) {
+                cursors.add(cursor);
+            }
+        }
+
+        return eventStreams;
+    }
+
+    @Override
+    public Stream<String> streamEventStreamIdentifiers() {
+        ensureOpen();
+        return new ArrayList<>(streamIndexes.keySet()).stream();
+    }
+
+    @Override
+    public Stream<Event> streamEventStream(final String eventStreamId) {
+        return streamEventStream(eventStreamId, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Stream<Event> streamEventStream(
+            final String eventStreamId, final int startSequenceNumber, final int endSequenceNumber) {
+        ensureOpen();
+
+        return streamEvents(streamIndexes.get(eventStreamId), startSequenceNumber, endSequenceNumber);
+    }
+
+    @Override
+    public Stream<Event> streamEventStream(
+            final AggregateId aggregateId, final int startSequenceNumber, final int endSequenceNumber) {
+        ensureOpen();
+
+        return streamEvents(aggregateStreamIndexes.get(aggregateId), startSequenceNumber, endSequenceNumber);
+    }
+
+    /**
+     * @param streamIndex Index of the stream, or null if it has no {@link Event}s
+     */
+    private Stream<Event> streamEvents(
+            final StreamIndex streamIndex, final int startSequenceNumber, final int endSequenceNumber) {
+        if(streamIndex == null) {
+            return Stream.empty();
+        }
+
+        final int first = Math.max(startSequenceNumber, streamIndex.getFirstSequenceNumber());
+        final int last = Math.min(endSequenceNumber, streamIndex.getLastSequenceNumber());
+        if(first > last) {
+            return Stream.empty();
+        }
+
+        return IntStream.rangeClosed(first, last).mapToLong(streamIndex::position).mapToObj(this::readEvent);
+    }
+
+    @Override
+    public Stream<Event> streamEventStream(
+            final String eventStreamId, final ZonedDateTime startDate, final ZonedDateTime endDate) {
+        ensureOpen();
+
+        final StreamIndex streamIndex = streamIndexes.get(eventStreamId);
+        if(streamIndex == null) {
+            return Stream.empty();
+        }
+
+        final Instant start = startDate.toInstant();
+        final Instant end = endDate.toInstant();
+        final int last = streamIndex.getLastSequenceNumber();
+        if(!streamIndex.isOrdered()) {
+            return IntStream
+                    .rangeClosed(streamIndex.getFirstSequenceNumber(), last)
+                    .mapToLong(streamIndex::position)
+                    .filter(position -> {
+                        final Instant timestamp = readTimestamp(position);
+                        return !timestamp.isBefore(start) && !timestamp.isAfter(end);
+                    })
+                    .mapToObj(this::readEvent);
+        }
+
+        // Timestamps never decrease, so the matching records are a contiguous run bounded by binary search
+        final int from = searchTimestamp(streamIndex, last, start, true);
+        final int to = searchTimestamp(streamIndex, last, end, false) - 1;
+        if(from > to) {
+            return Stream.empty();
+        }
+
+        return IntStream.rangeClosed(from, to).mapToLong(streamIndex::position).mapToObj(this::readEvent);
+    }
+
+    /**
+     * @return True, as each stream's date ranges are found by binary search over its records when its timestamps are
+     *         in order, which the index rebuilt on opening tracks
+     */
+    @Override
+    public boolean isTimeIndexed() {
+        return true;
+    }
+
+    @Override
+    public int replayEventStream(
+            final String eventStreamId,
+            final int startSequenceNumber,
+            final int endSequenceNumber,
+            final Consumer<? super Event> consumer) {
+        ensureOpen();
+
+        return replayEvents(streamIndexes.get(eventStreamId), startSequenceNumber, endSequenceNumber, consumer);
+    }
+
+    @Override
+    public int replayEventStream(
+            final AggregateId aggregateId,
+            final int startSequenceNumber,
+            final int endSequenceNumber,
+            final Consumer<? super Event> consumer) {
+        ensureOpen();
+
+        return replayEvents(
+                aggregateStreamIndexes.get(aggregateId), startSequenceNumber, endSequenceNumber, consumer);
+    }
+
+    /**
+     * @param streamIndex Index of the stream, or null if it has no {@link Event}s
+     */
+    private int replayEvents(
+            final StreamIndex streamIndex,
+            final int startSequenceNumber,
+            final int endSequenceNumber,
+            final Consumer<? super Event> consumer) {
+        if(streamIndex == null) {
+            return 0;
+        }
+
+        final int first = Math.max(startSequenceNumber, streamIndex.getFirstSequenceNumber());
+        final int last = Math.min(endSequenceNumber, streamIndex.getLastSequenceNumber());
+        final ReplayReader replayReader = new ReplayReader();
+        for(int sequenceNumber = first; sequenceNumber <= last; sequenceNumber++) {
+            consumer.accept(replayReader.readEvent(streamIndex.position(sequenceNumber)));
+        }
+
+        return Math.max(0, last - first + 1);
+    }
+
+    /**
+     * Stream {@link Event}s in the order they were appended. Global positions are the location of each record in the
+     * log (segment index in the high 32 bits, offset in the low 32 bits), so they increase but are not contiguous.
+     *
+     * @param globalPosition Position of a previously read {@link Event}, or {@link Event#NO_POSITION}
+     * @return {@link Event}s after the position, up to the last batch committed when this method was called
+     */
+    @Override
+    public Stream<Event> streamEventsAfterPosition(final long globalPosition) {
+        ensureOpen();
+
+        final long end = committedPosition;
+        final long start = globalPosition == Event.NO_POSITION ? position(0, 0) : nextRecord(globalPosition);
+        return StreamSupport.stream(
+                new Spliterators.AbstractSpliterator<Event>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+                    private long position = start;
+
+                    @Override
+                    public boolean tryAdvance(final Consumer<? super Event> action) {
+                        position = skipSegmentEnd(position);
+                        if(position >= end) {
+                            return false;
+                        }
+
+                        action.accept(readEvent(position));
+                        position = nextRecord(position);
+                        return true;
+                    }
+                },
+                false);
+    }
+
+    @Override
+    public void persistEvents(final String eventStreamId, final List<Event> events)
+            throws ConcurrentModificationException {
+        persistEventBatch(Collections.singletonMap(eventStreamId, events));
+    }
+
+    /**
+     * Append {@link Event}s for several streams as a single batch, which is either recovered in full or discarded in
+     * full after a restart. If any stream does not continue from its current head, nothing is written.
+     *
+     * @param eventStreams {@link Event}s to append, keyed by Event Stream identifier
+     * @throws ConcurrentModificationException If any stream does not continue from its current head
+     */
+    @Override
+    public synchronized void persistEventBatch(final Map<String, List<Event>> eventStreams)
+            throws ConcurrentModificationException {
+        ensureOpen();
+
+        int recordCount = 0;
+        for(final Map.Entry<String, List<Event>> eventStream : eventStreams.entrySet()) {
+            int expectedSequenceNumber = retrieveLatestSequenceNumber(eventStream.getKey()) + 1;
+            for(final Event event : eventStream.getValue()) {
+                if(event.getSequenceNumber() != expectedSequenceNumber) {
+                    throw new ConcurrentModificationException("Expected sequence number " + expectedSequenceNumber
+                            + " in stream " + eventStream.getKey() + " but was " + event.getSequenceNumber());
+                }
+                expectedSequenceNumber++;
+            }
+            recordCount += eventStream.getValue().size();
+        }
+        if(recordCount == 0) {
+            return;
+        }
+
+        final int[] recordOffsets = encodeBatch(eventStreams, recordCount);
+        if(batchBuffer.remaining() > activeSegment.remaining()) {
+            rollSegment();
+        }
+
+        final int batchPosition = activeSegment.append(batchBuffer);
+        int record = 0;
+        for(final Map.Entry<String, List<Event>> eventStream : eventStreams.entrySet()) {
+            if(eventStream.getValue().isEmpty()) {
+                continue;
+            }
+
+            final StreamIndex existingIndex = streamIndexes.get(eventStream.getKey());
+            final StreamIndex streamIndex = existingIndex == null
+                    ? new StreamIndex(eventStream.getValue().get(0).getSequenceNumber())
+                    : existingIndex;
+            for(final Event event : eventStream.getValue()) {
+                final long position = position(activeSegment.getIndex(), batchPosition + recordOffsets[record++]);
+                final ZonedDateTime timestamp = event.getEventTimestamp();
+                streamIndex.append(position, timestamp.toEpochSecond(), timestamp.getNano());
+                event.setGlobalPosition(position);
+            }
+
+            if(existingIndex == null) {
+                streamIndexes.put(eventStream.getKey(), indexAggregate(eventStream.getKey(), streamIndex));
+            }
+        }
+
+        committedPosition = position(activeSegment.getIndex(), activeSegment.getWritePosition());
+    }
+
+    /**
+     * @return True, as every stream of a batch is checked before its single record is appended
+     */
+    @Override
+    public boolean isBatchAtomic() {
+        return true;
+    }
+
+    /**
+     * @param eventStreamId Identifier of stream
+     * @return Sequence number of the last {@link Event} in the stream, or zero if the stream is empty
+     */
+    @Override
+    public int retrieveLatestSequenceNumber(final String eventStreamId) {
+        final StreamIndex streamIndex = streamIndexes.get(eventStreamId);
+        return streamIndex == null ? 0 : streamIndex.getLastSequenceNumber();
+    }
+
+    /**
+     * Equivalent to {@link #sync()}.
+     */
+    @Override
+    public void flush() {
+        sync();
+    }
+
+    /**
+     * Flush all appended records to the storage device.
+     */
+    public synchronized void sync() {
+        ensureOpen();
+        activeSegment.force();
+    }
+
+    /**
+     * Compact every sealed segment older than the given number of most recent segments into a compressed archive,
+     * then delete its segment file. Archiving runs alongside appends and reads, which are only paused while each
+     * archive is swapped in. Readers already holding a view of an archived segment keep reading it from its mapping,
+     * which on most platforms outlives the deletion of its file.
+     *
+     * @param hotSegmentCount Number of most recent segments, including the one being appended to, to leave
+     *                        uncompressed
+     * @return Number of segments archived
+     */
+    public int archiveSegments(final int hotSegmentCount) {
+        if(hotSegmentCount < 1) {
+            throw new IllegalArgumentException("hotSegmentCount must be positive");
+        }
+
+        synchronized (archiveLock) {
+            ensureOpen();
+
+            final Segment[] currentSegments = segments;
+            int archived = 0;
+            for(int index = 0; index < currentSegments.length - hotSegmentCount; index++) {
+                final Segment segment = currentSegments[index];
+                if(segment == null) {
+                    continue;
+                }
+
+                try {
+                    final ArchivedSegment archive =
+                            ArchivedSegment.write(directory, segment, ARCHIVE_BLOCK_SIZE, blockCache);
+                    replaceWithArchive(archive);
+                    Files.delete(segment.getFile());
+                } catch (final IOException ioe) {
+                    throw new UncheckedIOException(ioe);
+                }
+                archived++;
+            }
+
+            return archived;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if(!closed) {
+            closed = true;
+            for(final Segment segment : segments) {
+                if(segment != null) {
+                    segment.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Encode the batch into {@link #batchBuffer}, leaving it ready to be read.
+     *
+     * @return Offset of each record within the batch, in the order of the streams and their {@link Event}s
+     */
+    private int[] encodeBatch(final Map<String, List<Event>> eventStreams, final int recordCount) {
+        final int[] recordOffsets = new int[recordCount];
+        int record = 0;
+
+        batchBuffer.clear();
+        for(final Map.Entry<String, List<Event>> eventStream : eventStreams.entrySet()) {
+            final byte[] eventStreamIdBytes = eventStream.getKey().getBytes(StandardCharsets.UTF_8);
+            for(final Event event : eventStream.getValue()) {
+                final ZonedDateTime timestamp =
+                        Objects.requireNonNull(event.getEventTimestamp(), "Event timestamp must be assigned");
+                final byte[] zoneId = timestamp.getZone().getId().getBytes(StandardCharsets.UTF_8);
+                final byte[] payload = eventSerializer.serialize(event);
+
+                final int recordLength = LogRecord.encodedLength(eventStreamIdBytes, zoneId, payload);
+                ensureBatchCapacity(recordLength);
+
+                recordOffsets[record] = batchBuffer.position();
+                LogRecord.encode(
+                        batchBuffer,
+                        ++record == recordCount ? LogRecord.END_OF_BATCH : 0,
+                        eventStreamIdBytes,
+                        event.getSequenceNumber(),
+                        timestamp.toEpochSecond(),
+                        timestamp.getNano(),
+                        zoneId,
+                        payload,
+                        writeChecksum);
+            }
+        }
+        batchBuffer.flip();
+
+        if(batchBuffer.remaining() > segmentSize) {
+            throw new IllegalArgumentException(
+                    "Batch of " + batchBuffer.remaining() + " bytes exceeds segment size of " + segmentSize);
+        }
+
+        return recordOffsets;
+    }
+
+    private void ensureBatchCapacity(final int recordLength) {
+        if(batchBuffer.remaining() < recordLength) {
+            final int requiredCapacity = batchBuffer.position() + recordLength;
+            final ByteBuffer largerBuffer = ByteBuffer.allocate(Math.max(requiredCapacity, batchBuffer.capacity() * 2));
+            batchBuffer.flip();
+            largerBuffer.put(batchBuffer);
+            batchBuffer = largerBuffer;
+        }
+    }
+
+    private void rollSegment() {
+        activeSegment.force();
+        try {
+            activeSegment = Segment.open(directory, activeSegment.getIndex() + 1, segmentSize);
+        } catch (final IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+
+        final Segment[] extendedSegments = Arrays.copyOf(segments, segments.length + 1);
+        extendedSegments[extendedSegments.length - 1] = activeSegment;
+        segments = extendedSegments;
+    }
+
+    /**
+     * Publish the archive, then drop its segment, so that readers which no longer find the segment find the archive.
+     */
+    private synchronized void replaceWithArchive(final ArchivedSegment archive) {
+        final ArchivedSegment[] extendedArchives = Arrays.copyOf(archives, Math.max(archives.length, segments.length));
+        extendedArchives[archive.getIndex()] = archive;
+        archives = extendedArchives;
+
+        final Segment[] remainingSegments = segments.clone();
+        remainingSegments[archive.getIndex()] = null;
+        segments = remainingSegments;
+    }
+
+    /**
+     * @return New view of the segment or archive block holding the record at the given position, positioned at the
+     *         start of the record
+     */
+    private ByteBuffer recordView(final long position) {
+        final Segment segment = segments[segmentIndex(position)];
+        if(segment == null) {
+            return archives[segmentIndex(position)].recordView(offset(position));
+        }
+
+        final ByteBuffer view = segment.view();
+        view.position(offset(position));
+
+        return view;
+    }
+
+    private Event readEvent(final long position) {
+        final ByteBuffer segment = recordView(position);
+        int offset = LogRecord.sequenceNumberOffset(segment, segment.position());
+
+        final int sequenceNumber = segment.getInt(offset);
+        final long epochSecond = segment.getLong(offset + 4);
+        final int nanoOfSecond = segment.getInt(offset + 12);
+        offset += 16;
+
+        final ZoneId zoneId = zoneId(segment, offset);
+        offset += 2 + segment.getShort(offset);
+
+        final byte[] payload = new byte[segment.getInt(offset)];
+        LogRecord.readBytes(segment, offset + 4, payload);
+
+        final Event event = eventSerializer.deserialize(payload);
+        event.setGlobalPosition(position);
+        event.setSequenceNumber(sequenceNumber);
+        setEventTimestamp(event, epochSecond, nanoOfSecond, zoneId);
+
+        return event;
+    }
+
+    /**
+     * Set the timestamp in its compact form if it has no sub-microsecond part, as for every timestamp taken from a
+     * microsecond clock, so that no {@link ZonedDateTime} is created unless one is requested.
+     */
+    private static void setEventTimestamp(
+            final Event event, final long epochSecond, final int nanoOfSecond, final ZoneId zoneId) {
+        if(nanoOfSecond % 1_000 == 0 && Math.abs(epochSecond) < MAXIMUM_COMPACT_EPOCH_SECOND) {
+            event.setEventTimestamp(epochSecond * 1_000_000L + nanoOfSecond / 1_000, zoneId);
+        } else {
+            event.setEventTimestamp(ZonedDateTime.ofInstant(Instant.ofEpochSecond(epochSecond, nanoOfSecond), zoneId));
+        }
+    }
+
+    /**
+     * @return Position of the record following the one at the given position
+     */
+    private long nextRecord(final long position) {
+        final ByteBuffer record = recordView(position);
+        return position + 4 + record.getInt(record.position());
+    }
+
+    /**
+     * @return The given position, or the start of the next segment if there are no more records in its segment
+     */
+    private long skipSegmentEnd(final long position) {
+        final Segment[] currentSegments = segments;
+        final int segmentIndex = segmentIndex(position);
+        if(segmentIndex + 1 >= currentSegments.length) {
+            return position;
+        }
+
+        final Segment segment = currentSegments[segmentIndex];
+        final int offset = offset(position);
+        if(segment == null) {
+            return offset >= archives[segmentIndex].getDataLength() ? position(segmentIndex + 1, 0) : position;
+        }
+        if(offset + 4 > segment.capacity() || segment.view().getInt(offset) == 0) {
+            return position(segmentIndex + 1, 0);
+        }
+
+        return position;
+    }
+
+    /**
+     * @param streamIndex Index of a stream whose timestamps are in order
+     * @param last Last sequence number to consider
+     * @param instant Instant to search for
+     * @param inclusive Whether a record with a timestamp equal to the instant matches
+     * @return First sequence number up to {@code last} whose timestamp is after (or equal to, if inclusive) the
+     *         instant, or {@code last + 1} if there is none
+     */
+    private int searchTimestamp(
+            final StreamIndex streamIndex, final int last, final Instant instant, final boolean inclusive) {
+        int low = streamIndex.getFirstSequenceNumber();
+        int high = last + 1;
+        while(low < high) {
+            final int middle = (low + high) >>> 1;
+            final int comparison = readTimestamp(streamIndex.position(middle)).compareTo(instant);
+            if(comparison > 0 || (inclusive && comparison == 0)) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+
+        return low;
+    }
+
+    private Instant readTimestamp(final long position) {
+        final ByteBuffer segment = recordView(position);
+        final int offset = LogRecord.sequenceNumberOffset(segment, segment.position());
+
+        return Instant.ofEpochSecond(segment.getLong(offset + 4), segment.getInt(offset + 12));
+    }
+
+    private ZoneId zoneId(final ByteBuffer segment, final int offset) {
+        final byte[] bytes = new byte[segment.getShort(offset)];
+        LogRecord.readBytes(segment, offset + 2, bytes);
+
+        return zoneIds.computeIfAbsent(new String(bytes, StandardCharsets.UTF_8), ZoneId::of);
+    }
+
+    /**
+     * Open every segment and archive in the directory, rebuilding the stream indexes from their records. Any partially
+     * written batch at the end of a segment is cleared, and the write position of the last segment is set after the
+     * last complete batch. Archives left incomplete by a crash are deleted; their segments are still in place.
+     *
+     * @return All segments, in order, with null in place of those that have been archived
+     */
+    private Segment[] recover() throws IOException {
+        try(final DirectoryStream<Path> files =
+                    Files.newDirectoryStream(directory, "*" + ArchivedSegment.TEMPORARY_FILE_SUFFIX)) {
+            for(final Path file : files) {
+                Files.delete(file);
+            }
+        }
+
+        final SortedSet<Integer> indexes = new TreeSet<>();
+        final Set<Integer> archivedIndexes = new HashSet<>();
+        try(final DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.{segment,archive}")) {
+            for(final Path file : files) {
+                final String fileName = file.getFileName().toString();
+                final int index = Integer.parseInt(fileName.substring(0, fileName.indexOf('.')));
+                indexes.add(index);
+                if(fileName.endsWith(ArchivedSegment.FILE_SUFFIX)) {
+                    archivedIndexes.add(index);
+                }
+            }
+        }
+
+        // The segment being appended to is never archived, so one is opened after the last archive if necessary
+        final int lastIndex = indexes.isEmpty()
+                ? 0
+                : indexes.last() + (archivedIndexes.contains(indexes.last()) ? 1 : 0);
+        final Segment[] recoveredSegments = new Segment[lastIndex + 1];
+        final ArchivedSegment[] recoveredArchives = new ArchivedSegment[lastIndex + 1];
+        for(int index = 0; index <= lastIndex; index++) {
+            if(archivedIndexes.contains(index)) {
+                // Archives only take their final name once complete, so a segment file beside one is left over
+                Files.deleteIfExists(directory.resolve(Segment.fileName(index)));
+                recoveredArchives[index] = ArchivedSegment.open(directory, index, blockCache);
+                recoverArchive(recoveredArchives[index]);
+            } else {
+                recoveredSegments[index] = Segment.open(directory, index, segmentSize);
+                recoverSegment(recoveredSegments[index]);
+            }
+        }
+
+        archives = recoveredArchives;
+        return recoveredSegments;
+    }
+
+    private void recoverArchive(final ArchivedSegment archive) {
+        for(int block = 0; block < archive.blockCount(); block++) {
+            final ByteBuffer view = archive.blockView(block);
+            for(int position = 0; position < view.capacity(); position += 4 + view.getInt(position)) {
+                indexRecord(view, position, archive.getIndex(), archive.blockStart(block) + position);
+            }
+        }
+    }
+
+    private void recoverSegment(final Segment segment) {
+        final ByteBuffer view = segment.view();
+        final CRC32 checksum = new CRC32();
+        final List<Integer> pendingBatch = new ArrayList<>();
+
+        int position = 0;
+        int batchStart = 0;
+        int recordLength;
+        while((recordLength = LogRecord.validate(view, position, checksum)) > 0) {
+            pendingBatch.add(position);
+            position += recordLength;
+
+            if((LogRecord.flags(view, pendingBatch.get(pendingBatch.size() - 1)) & LogRecord.END_OF_BATCH) != 0) {
+                for(final int recordPosition : pendingBatch) {
+                    indexRecord(view, recordPosition, segment.getIndex(), recordPosition);
+                }
+                pendingBatch.clear();
+                batchStart = position;
+            }
+        }
+
+        final int trailingLength = position + 4 <= view.capacity() ? view.getInt(position) : 0;
+        if(position > batchStart || trailingLength != 0) {
+            final long claimedEnd = position + 4L + Math.max(0, trailingLength);
+            segment.clear(batchStart, (int) Math.min(claimedEnd, segment.capacity()));
+        }
+        segment.setWritePosition(batchStart);
+    }
+
+    /**
+     * @param records Segment or archive block holding the record
+     * @param recordPosition Position of the record within {@code records}
+     * @param segmentIndex Index of the segment holding the record
+     * @param offset Offset of the record within the segment
+     */
+    private void indexRecord(
+            final ByteBuffer records, final int recordPosition, final int segmentIndex, final int offset) {
+        final String eventStreamId = LogRecord.eventStreamId(records, recordPosition);
+        final int sequenceNumberOffset = LogRecord.sequenceNumberOffset(records, recordPosition);
+        final int sequenceNumber = records.getInt(sequenceNumberOffset);
+
+        streamIndexes
+                .computeIfAbsent(eventStreamId, id -> indexAggregate(id, new StreamIndex(sequenceNumber)))
+                .append(
+                        position(segmentIndex, offset),
+                        records.getLong(sequenceNumberOffset + 4),
+                        records.getInt(sequenceNumberOffset + 12));
+    }
+
+    /**
+     * Also index a new stream by {@link AggregateId} if it is named by the text form of one. Each identifier has
+     * exactly one text form, so the two maps always agree.
+     *
+     * @param eventStreamId Identifier of the new stream
+     * @param streamIndex Index of the new stream
+     * @return The index
+     */
+    private StreamIndex indexAggregate(final String eventStreamId, final StreamIndex streamIndex) {
+        if(AggregateId.isAggregateId(eventStreamId)) {
+            aggregateStreamIndexes.put(AggregateId.parse(eventStreamId), streamIndex);
+        }
+
+        return streamIndex;
+    }
+
+    private void ensureOpen() {
+        if(closed) {
+            throw new IllegalStateException("Repository has been closed");
+        }
+    }
+
+    private static long position(final int segmentIndex, final int offset) {
+        return ((long) segmentIndex << 32) | offset;
+    }
+
+    private static int segmentIndex(final long position) {
+        return (int) (position >>> 32);
+    }
+
+    private static int offset(final long position) {
+        return (int) position;
+    }
+
+    /**
+     * Reads the records of a single replay, in order. Records in a live segment are read through one view of it, and
+     * the zone identifier of the previous record is compared in place, so a record is only copied if its
+     * {@link EventSerializer} needs an array.
+     */
+    private final class ReplayReader {
+
+        private final ReusableEvents reusableEvents = new ReusableEvents();
+
+        /** Index of the live segment {@link #segmentView} views, or -1. */
+        private int viewedSegmentIndex = -1;
+
+        private ByteBuffer segmentView;
+
+        /** UTF-8 form of {@link #zoneId}. */
+        private byte[] zoneIdBytes = new byte[0];
+
+        private ZoneId zoneId;
+
+        private Event readEvent(final long position) {
+            final ByteBuffer record = view(position);
+            int offset = LogRecord.sequenceNumberOffset(record, record.position());
+
+            final int sequenceNumber = record.getInt(offset);
+            final long epochSecond = record.getLong(offset + 4);
+            final int nanoOfSecond = record.getInt(offset + 12);
+            offset += 16;
+
+            final ZoneId recordZoneId = zoneId(record, offset);
+            offset += 2 + record.getShort(offset);
+
+            final int payloadLength = record.getInt(offset);
+            record.limit(offset + 4 + payloadLength).position(offset + 4);
+            final Event event = eventSerializer.deserialize(record, reusableEvents);
+            record.limit(record.capacity());
+
+            event.setGlobalPosition(position);
+            event.setSequenceNumber(sequenceNumber);
+            setEventTimestamp(event, epochSecond, nanoOfSecond, recordZoneId);
+
+            return event;
+        }
+
+        /**
+         * @return View positioned at the start of the record, which is only valid until the next call
+         */
+        private ByteBuffer view(final long position) {
+            final int segmentIndex = segmentIndex(position);
+            if(segmentIndex != viewedSegmentIndex) {
+                final Segment segment = segments[segmentIndex];
+                if(segment == null) {
+                    return recordView(position);
+                }
+
+                segmentView = segment.view();
+                viewedSegmentIndex = segmentIndex;
+            }
+
+            segmentView.position(offset(position));
+            return segmentView;
+        }
+
+        private ZoneId zoneId(final ByteBuffer record, final int offset) {
+            final int length = record.getShort(offset);
+            if(zoneId == null || length != zoneIdBytes.length || !zoneIdMatches(record, offset + 2)) {
+                zoneIdBytes = new byte[length];
+                LogRecord.readBytes(record, offset + 2, zoneIdBytes);
+                zoneId = zoneIds.computeIfAbsent(new String(zoneIdBytes, StandardCharsets.UTF_8), ZoneId::of);
+            }
+
+            return zoneId;
+        }
+
+        private boolean zoneIdMatches(final ByteBuffer record, final int offset) {
+            for(int index = 0; index < zoneIdBytes.length; index++) {
+                if(record.get(offset + index) != zoneIdBytes[index]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Position within a stream's index during a bulk read.
+     */
+    private static final class StreamCursor {
+
+        private final StreamIndex streamIndex;
+
+        private final int lastSequenceNumber;
+
+        private final List<Event> events;
+
+        private int sequenceNumber;
+
+        private StreamCursor(
+                final StreamIndex streamIndex,
+                final int sequenceNumber,
+                final int lastSequenceNumber,
+                final List<Event> events) {
+            this.streamIndex = streamIndex;
+            this.sequenceNumber = sequenceNumber;
+            this.lastSequenceNumber = lastSequenceNumber;
+            this.events = events;
+        }
+
+        private boolean hasNext() {
+            return sequenceNumber <= lastSequenceNumber;
+        }
+
+        private long position() {
+            return streamIndex.position(sequenceNumber);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zero Alpha Technology Limited
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package technology.zeroalpha.zaes.log;
+
+import java.util.Arrays;
+
+/**
+ * Maps the sequence numbers of a single Event Stream to the positions of their records in the log. Sequence numbers
+ * within a stream are contiguous, so positions are held in an array offset by the first sequence number.
+ * <p>
+ * There is a single writer; readers may access the index concurrently. The writer stores a position before
+ * publishing the new size through a volatile write, so any position a reader can see refers to a complete record.
+ * <p>
+ * The index also tracks whether timestamps never decrease along the stream, in which case a date range can be found
+ * by binary search over the records.
+ */
+final class StreamIndex {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** Sequence number of the first record in the stream. */
+    private final int firstSequenceNumber;
+
+    private volatile long[] positions = new long[INITIAL_CAPACITY];
+
+    private volatile int size;
+
+    /** Timestamp of the last record, compared with each new one. Only accessed by the writer. */
+    private long lastEpochSecond = Long.MIN_VALUE;
+
+    private int lastNanoOfSecond;
+
+    /** Whether no record has an earlier timestamp than the one before it; written before the size is published. */
+    private boolean ordered = true;
+
+    StreamIndex(final int firstSequenceNumber) {
+        this.firstSequenceNumber = firstSequenceNumber;
+    }
+
+    int getFirstSequenceNumber() {
+        return firstSequenceNumber;
+    }
+
+    /**
+     * @return Sequence number of the last record in the stream, or one less than the first if there are none
+     */
+    int getLastSequenceNumber() {
+        return firstSequenceNumber + size - 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Read after {@link #size()} or {@link #getLastSequenceNumber()}, this covers at least every record within that
+     * size.
+     *
+     * @return Whether timestamps never decrease along the stream
+     */
+    boolean isOrdered() {
+        return ordered;
+    }
+
+    /**
+     * @param sequenceNumber Sequence number, which must be within the range of the index
+     * @return Position of the record with the given sequence number
+     */
+    long position(final int sequenceNumber) {
+        return positions[sequenceNumber - firstSequenceNumber];
+    }
+
+    /**
+     * Record the position of the next sequence number. Only called by the writer.
+     *
+     * @param position Position of record
+     * @param epochSecond Seconds since the epoch of the record's timestamp
+     * @param nanoOfSecond Nanoseconds within the second of the record's timestamp
+     */
+    void append(final long position, final long epochSecond, final int nanoOfSecond) {
+        if(epochSecond < lastEpochSecond || (epochSecond == lastEpochSecond && nanoOfSecond < lastNanoOfSecond)) {
+            ordered = false;
+        }
+        lastEpochSecond = epochSecond;
+        lastNanoOfSecond = nanoOfSecond;
+
+        final int currentSize = size;
+        long[] currentPositions = positions;
+        if(currentSize == currentPositions.length) {
+            currentPositions = Arrays.copyOf(currentPositions, currentSize * 2);
+            positions = currentPositions;
+        }
+
+        currentPositions[currentSize] = position;
+        size = currentSize + 1;
+    }
+}
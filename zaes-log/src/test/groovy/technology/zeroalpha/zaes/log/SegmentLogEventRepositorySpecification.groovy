@@ -0,0 +1,409 @@
+package technology.zeroalpha.zaes.log
+
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+import technology.zeroalpha.zaes.core.aggregate.AggregateId
+import technology.zeroalpha.zaes.core.event.Event
+import technology.zeroalpha.zaes.core.event.codec.BinaryEventSerializer
+import technology.zeroalpha.zaes.core.event.codec.EventTypeRegistry
+import technology.zeroalpha.zaes.core.event.codec.PayloadCodec
+import technology.zeroalpha.zaes.core.event.serialization.JavaEventSerializer
+
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.time.ZoneId
+import java.time.ZoneOffset
+import java.time.ZonedDateTime
+import java.util.function.Consumer
+
+class SegmentLogEventRepositorySpecification extends Specification {
+
+    @Rule
+    TemporaryFolder temporaryFolder = new TemporaryFolder()
+
+    def startTime = ZonedDateTime.of(2016, 1, 1, 9, 0, 0, 0, ZoneId.of('Europe/London'))
+
+    def directory
+
+    def repository
+
+    def setup() {
+        directory = temporaryFolder.newFolder().toPath()
+        repository = new SegmentLogEventRepository(directory, new JavaEventSerializer(), 4096)
+    }
+
+    def cleanup() {
+        repository.close()
+    }
+
+    def 'Persisted Events are read back in order with their headers and payloads'() {
+        given:
+            repository.persistEvents('a', events(1..3))
+            repository.persistEvents('b', events(1..2))
+
+        when:
+            def stream = repository.retrieveEventStream('a')
+
+        then:
+            stream*.sequenceNumber == [1, 2, 3]
+            stream*.amount == [10, 20, 30]
+            stream*.eventTimestamp == [startTime.plusMinutes(1), startTime.plusMinutes(2), startTime.plusMinutes(3)]
+            repository.retrieveEventStream('b')*.sequenceNumber == [1, 2]
+            repository.retrieveEventStream('unknown').isEmpty()
+    }
+
+    def 'Every Event Stream can be enumerated, including after recovery'() {
+        given:
+            repository.persistEvents('a', events(1..3))
+            repository.persistEvents('b', events(1..2))
+
+        expect:
+            repository.streamEventStreamIdentifiers().collect() as Set == ['a', 'b'] as Set
+
+        when:
+            repository.close()
+            repository = new SegmentLogEventRepository(directory, new JavaEventSerializer(), 4096)
+
+        then:
+            repository.streamEventStreamIdentifiers().collect() as Set == ['a', 'b'] as Set
+    }
+
+    def 'Several streams are read in one pass, each from its own sequence number'() {
+        given:
+            (1..40).each { repository.persistEvents(['a', 'b', 'c'][it % 3], events([(it + 2).intdiv(3)])) }
+
+        when:
+            def eventStreams = repository.retrieveEventStreams([c: 5, missing: 1, a: Integer.MIN_VALUE])
+
+        then:
+            directory.toFile().list().findAll { it.endsWith('.segment') }.size() > 1
+            eventStreams.keySet().toList() == ['c', 'missing', 'a']
+            eventStreams.c*.sequenceNumber == (5..13).toList()
+            eventStreams.missing.isEmpty()
+            eventStreams.a*.globalPosition == repository.retrieveEventStream('a')*.globalPosition
+            eventStreams.a*.amount == (1..13).collect { it * 10 }
+    }
+
+    def 'Sequence number ranges are served from the index'() {
+        given:
+            repository.persistEvents('a', events(1..10))
+
+        expect:
+            repository.retrieveEventStream('a', 4, 6)*.sequenceNumber == [4, 5, 6]
+            repository.retrieveEventStream('a', 8, Integer.MAX_VALUE)*.sequenceNumber == [8, 9, 10]
+            repository.retrieveEventStream('a', 11, 20).isEmpty()
+    }
+
+    def 'Date ranges are inclusive'() {
+        given:
+            repository.persistEvents('a', events(1..5))
+
+        expect:
+            repository.retrieveEventStream('a', startTime.plusMinutes(2), startTime.plusMinutes(4))*.sequenceNumber ==
+                    [2, 3, 4]
+    }
+
+    def 'Date ranges are found from the index rebuilt on opening, including streams whose timestamps go back'() {
+        given:
+            (1..40).collate(10).each { repository.persistEvents('a', events(it)) }
+            def unordered = events(1..5)
+            unordered[2].eventTimestamp = startTime
+            repository.persistEvents('b', unordered)
+            repository.close()
+            repository = new SegmentLogEventRepository(directory, new JavaEventSerializer(), 4096)
+
+        expect:
+            repository.timeIndexed
+            repository.retrieveEventStream('a', startTime.plusMinutes(20), startTime.plusMinutes(22))*.sequenceNumber ==
+                    [20, 21, 22]
+            repository.retrieveEventStream('a', startTime.plusMinutes(41), startTime.plusMinutes(50)).isEmpty()
+            repository.retrieveEventStream('a', startTime, startTime.plusMinutes(1))*.sequenceNumber == [1]
+            repository.retrieveEventStream('b', startTime, startTime.plusMinutes(2))*.sequenceNumber == [1, 2, 3]
+    }
+
+    def 'Appends that do not follow the head of the stream are rejected'() {
+        given:
+            repository.persistEvents('a', events(1..2))
+
+        when:
+            repository.persistEvents('a', events(sequenceNumbers))
+
+        then:
+            thrown(ConcurrentModificationException)
+            repository.retrieveLatestSequenceNumber('a') == 2
+
+        where:
+            sequenceNumbers << [2..3, 4..5, [3, 5]]
+    }
+
+    def 'Batches spanning several streams are rejected as a whole if any stream conflicts'() {
+        given:
+            repository.persistEvents('a', events(1..2))
+
+        when:
+            repository.persistEventBatch([b: events(1..2), a: events(2..2)])
+
+        then:
+            thrown(ConcurrentModificationException)
+            repository.retrieveLatestSequenceNumber('b') == 0
+
+        when:
+            repository.persistEventBatch([b: events(1..2), a: events(3..3)])
+
+        then:
+            repository.retrieveEventStream('a')*.sequenceNumber == [1, 2, 3]
+            repository.retrieveEventStream('b')*.sequenceNumber == [1, 2]
+    }
+
+    def 'Appends roll over into new segments and survive a restart'() {
+        given:
+            (1..50).each { repository.persistEvents('a', events(it..it)) }
+            repository.persistEvents('b', events(1..3))
+
+        when:
+            repository.close()
+            repository = new SegmentLogEventRepository(directory, new JavaEventSerializer(), 4096)
+
+        then:
+            directory.toFile().list().findAll { it.endsWith('.segment') }.size() > 1
+            repository.retrieveEventStream('a')*.sequenceNumber == (1..50).toList()
+            repository.retrieveEventStream('b')*.amount == [10, 20, 30]
+
+        when:
+            repository.persistEvents('a', events(51..51))
+
+        then:
+            repository.retrieveLatestSequenceNumber('a') == 51
+    }
+
+    def 'The global log is read in append order across segments, after any position'() {
+        given:
+            (1..50).each { repository.persistEvents(it % 2 ? 'a' : 'b', events((it + 1).intdiv(2)..(it + 1).intdiv(2))) }
+
+        when:
+            def all = repository.streamEventsAfterPosition(Event.NO_POSITION).collect()
+
+        then:
+            directory.toFile().list().findAll { it.endsWith('.segment') }.size() > 1
+            all.size() == 50
+            all*.globalPosition == all*.globalPosition.sort(false)
+            all*.globalPosition.toSet().size() == 50
+            all*.sequenceNumber == (1..50).collect { (it + 1).intdiv(2) }
+
+        expect:
+            repository.streamEventsAfterPosition(all[29].globalPosition).collect()*.globalPosition ==
+                    all[30..49]*.globalPosition
+            repository.streamEventsAfterPosition(all[49].globalPosition).collect().isEmpty()
+            repository.retrieveEventStream('a')*.globalPosition == all[(0..49).step(2)]*.globalPosition
+    }
+
+    def 'Reading the global log only includes batches committed when the read began'() {
+        given:
+            def appended = events(1..2)
+            repository.persistEvents('a', appended)
+            def reader = repository.streamEventsAfterPosition(Event.NO_POSITION)
+
+        when:
+            repository.persistEvents('a', events(3..3))
+
+        then:
+            reader.collect()*.globalPosition == appended*.globalPosition
+            repository.streamEventsAfterPosition(appended[1].globalPosition).collect()*.sequenceNumber == [3]
+
+        when:
+            repository.close()
+            repository = new SegmentLogEventRepository(directory, new JavaEventSerializer(), 4096)
+
+        then:
+            repository.streamEventsAfterPosition(Event.NO_POSITION).collect()*.sequenceNumber == [1, 2, 3]
+    }
+
+    def 'Archived segments are compressed, and read back unchanged including after recovery'() {
+        given:
+            repository.close()
+            repository = new SegmentLogEventRepository(directory, new JavaEventSerializer(), 128 * 1024)
+            (1..400).each {
+                def first = (it - 1).intdiv(2) * 10 + 1
+                repository.persistEvents(['a', 'b'][it % 2], events(first..(first + 9)))
+            }
+            def streamA = repository.retrieveEventStream('a')
+            def log = repository.streamEventsAfterPosition(Event.NO_POSITION).collect()
+            def segmentFiles = directory.toFile().listFiles().findAll { it.name.endsWith('.segment') }
+            def sealedLength = segmentFiles.sort { it.name }.init().sum { lastNonZeroByte(it.toPath()) + 1 }
+
+        when:
+            def archived = repository.archiveSegments(1)
+            def archiveFiles = directory.toFile().listFiles().findAll { it.name.endsWith('.archive') }
+
+        then:
+            segmentFiles.size() > 2
+            archived == segmentFiles.size() - 1
+            archiveFiles.size() == archived
+            directory.toFile().list().count { it.endsWith('.segment') } == 1
+            archiveFiles.sum { it.length() } < sealedLength.intdiv(4)
+            repository.archiveSegments(1) == 0
+
+        and:
+            repository.retrieveEventStream('a')*.globalPosition == streamA*.globalPosition
+            repository.retrieveEventStream('a')*.amount == streamA*.amount
+            repository.retrieveEventStream('b', 95, 105)*.sequenceNumber == (95..105).toList()
+            repository.retrieveEventStream('a', startTime.plusMinutes(500), startTime.plusMinutes(509))
+                    *.sequenceNumber == (500..509).toList()
+            repository.streamEventsAfterPosition(Event.NO_POSITION).collect()*.globalPosition == log*.globalPosition
+            repository.streamEventsAfterPosition(log[500].globalPosition).count() == log.size() - 501
+            def replayed = []
+            repository.replayEventStream('a', 1, Integer.MAX_VALUE, { replayed << it.amount } as Consumer) == 2000
+            replayed == streamA*.amount
+
+        when:
+            repository.persistEvents('a', events(2001..2001))
+            repository.close()
+            repository = new SegmentLogEventRepository(directory, new JavaEventSerializer(), 128 * 1024)
+
+        then:
+            repository.retrieveEventStream('a')*.globalPosition.init() == streamA*.globalPosition
+            repository.retrieveEventStream('a')*.sequenceNumber == (1..2001).toList()
+            repository.streamEventsAfterPosition(Event.NO_POSITION).count() == log.size() + 1
+    }
+
+    def 'An archive left incomplete by a crash is deleted on recovery, keeping its segment'() {
+        given:
+            (1..50).each { repository.persistEvents('a', events(it..it)) }
+            repository.close()
+            def incomplete = directory.resolve(ArchivedSegment.temporaryFileName(0))
+            incomplete.bytes = new byte[100]
+
+        when:
+            repository = new SegmentLogEventRepository(directory, new JavaEventSerializer(), 4096)
+
+        then:
+            !incomplete.toFile().exists()
+            repository.retrieveEventStream('a')*.sequenceNumber == (1..50).toList()
+            repository.archiveSegments(1) > 0
+            directory.toFile().list().count { it.endsWith(ArchivedSegment.TEMPORARY_FILE_SUFFIX) } == 0
+    }
+
+    def 'Replays read records in place, reusing Events whose codecs opt in'() {
+        given:
+            repository.close()
+            def registry = new EventTypeRegistry().register(1, AmountEvent, new AmountCodec())
+            repository = new SegmentLogEventRepository(directory, new BinaryEventSerializer(registry), 4096)
+            def written = events(1..300)
+            written[10].eventTimestamp = startTime.withZoneSameInstant(ZoneOffset.UTC)
+            written[20].eventTimestamp = startTime.plusNanos(1)
+            written.collate(30).each { repository.persistEvents('a', it) }
+            def instances = [] as Set
+            def replayed = []
+
+        when:
+            def count = repository.replayEventStream('a', 2, 299, { Event event ->
+                instances << System.identityHashCode(event)
+                replayed << [event.sequenceNumber, event.amount, event.eventTimestamp, event.globalPosition]
+            } as Consumer)
+
+        then:
+            count == 298
+            instances.size() == 1
+            replayed*.getAt(0) == (2..299).toList()
+            replayed*.getAt(1) == written[1..298]*.amount
+            replayed*.getAt(2) == written[1..298]*.eventTimestamp
+            replayed*.getAt(3) == repository.retrieveEventStream('a', 2, 299)*.globalPosition
+            replayed*.getAt(3).collect { it >>> 32 }.unique().size() > 1
+            repository.replayEventStream('a', 301, 400, { assert false } as Consumer) == 0
+            repository.replayEventStream('unknown', 1, 10, { assert false } as Consumer) == 0
+    }
+
+    def 'Streams named by an AggregateId are read and replayed by the AggregateId, including after recovery'() {
+        given:
+            def aggregateId = new AggregateId(0x0155_7A3C_9B00_1234L, 0x5678_9ABC_DEF0_1357L)
+            repository.persistEvents(aggregateId.toString(), events(1..5))
+            repository.persistEvents('other', events(1..2))
+
+        expect:
+            repository.streamEventStream(aggregateId, 2, 4).collect()*.sequenceNumber == [2, 3, 4]
+            repository.replayEventStream(aggregateId, 1, 5, {} as Consumer) == 5
+            repository.streamEventStream(new AggregateId(0, 1), 1, 5).count() == 0
+
+        when:
+            repository.close()
+            repository = new SegmentLogEventRepository(directory, new JavaEventSerializer(), 4096)
+            repository.persistEvents(aggregateId.toString(), events(6..7))
+
+        then:
+            repository.streamEventStream(aggregateId, 1, Integer.MAX_VALUE).collect()*.amount ==
+                    (1..7).collect { it * 10 }
+            repository.replayEventStream(aggregateId, 6, 10, {} as Consumer) == 2
+    }
+
+    def 'A partially written batch is discarded on recovery'() {
+        given:
+            repository.persistEvents('a', events(1..2))
+            repository.persistEvents('a', events(3..5))
+            repository.close()
+
+        and: 'the end of the last record is lost'
+            def segmentFile = directory.resolve('0000000000.segment')
+            def lastRecordEnd = lastNonZeroByte(segmentFile) + 1
+            FileChannel.open(segmentFile, StandardOpenOption.WRITE).withCloseable {
+                it.write(ByteBuffer.allocate(16), lastRecordEnd - 16)
+            }
+
+        when:
+            repository = new SegmentLogEventRepository(directory, new JavaEventSerializer(), 4096)
+
+        then:
+            repository.retrieveEventStream('a')*.sequenceNumber == [1, 2]
+
+        when:
+            repository.persistEvents('a', events(3..3))
+
+        then:
+            repository.retrieveEventStream('a')*.sequenceNumber == [1, 2, 3]
+    }
+
+    private List<Event> events(final Iterable<Integer> sequenceNumbers) {
+        sequenceNumbers.collect {
+            def event = new AmountEvent(amount: it * 10)
+            event.sequenceNumber = it
+            event.eventTimestamp = startTime.plusMinutes(it)
+            event
+        }
+    }
+
+    private static int lastNonZeroByte(final Path file) {
+        def bytes = file.bytes
+        def position = bytes.length - 1
+        while(bytes[position] == 0) {
+            position--
+        }
+        position
+    }
+}
+
+class AmountEvent extends Event implements Serializable {
+
+    int amount
+}
+
+class AmountCodec implements PayloadCodec<AmountEvent> {
+
+    @Override
+    void encode(final AmountEvent event, final ByteBuffer buffer) {
+        buffer.putInt(event.amount)
+    }
+
+    @Override
+    AmountEvent decode(final ByteBuffer buffer) {
+        new AmountEvent(amount: buffer.getInt())
+    }
+
+    @Override
+    AmountEvent decode(final ByteBuffer buffer, final AmountEvent reusable) {
+        def event = reusable ?: new AmountEvent()
+        event.amount = buffer.getInt()
+        event
+    }
+}